@@ -9,7 +9,9 @@ import io.permazen.Session;
 import io.permazen.SessionMode;
 import io.permazen.cli.CliSession;
 import io.permazen.kv.KVTransaction;
+import io.permazen.kv.util.BinarySerializer;
 import io.permazen.kv.util.XMLSerializer;
+import io.permazen.parse.ParseException;
 import io.permazen.parse.Parser;
 import io.permazen.util.ParseContext;
 
@@ -22,18 +24,20 @@ import java.util.Map;
 public class KVLoadCommand extends AbstractKVCommand {
 
     public KVLoadCommand() {
-        super("kvload -R:reset file.xml:file");
+        super("kvload -R:reset -b:binary -threads:threads:int file.xml:file");
     }
 
     @Override
     public String getHelpSummary() {
-        return "Load key/value pairs from an XML file";
+        return "Load key/value pairs from an XML or binary file";
     }
 
     @Override
     public String getHelpDetail() {
         return "Imports key/value pairs from an XML file created previously via `kvsave'. Does NOT remove any key/value pairs"
           + "already in the database unless the `-R' flag is given, in which case the database is completely wiped first."
+          + "\n\nThe `-b' flag indicates the file is in binary format, i.e., was created via `kvsave -b'. Binary files"
+          + " are imported in chunks, which may be applied in parallel using multiple threads via the `-threads' flag."
           + "\n\nWARNING: this command can corrupt a Permazen database.";
     }
 
@@ -49,17 +53,27 @@ public class KVLoadCommand extends AbstractKVCommand {
 
     @Override
     public CliSession.Action getAction(CliSession session, ParseContext ctx, boolean complete, Map<String, Object> params) {
-        return new LoadAction(params.containsKey("reset"), (File)params.get("file.xml"));
+        final boolean binary = params.containsKey("binary");
+        final Integer threads = (Integer)params.get("threads");
+        if (threads != null && threads <= 0)
+            throw new ParseException(ctx, "invalid number of threads " + threads);
+        if (threads != null && !binary)
+            throw new ParseException(ctx, "`-threads' requires `-b'");
+        return new LoadAction(params.containsKey("reset"), (File)params.get("file.xml"), binary, threads != null ? threads : 1);
     }
 
     private static class LoadAction implements CliSession.Action, Session.RetryableAction {
 
         private final boolean reset;
         private final File file;
+        private final boolean binary;
+        private final int threads;
 
-        LoadAction(boolean reset, File file) {
+        LoadAction(boolean reset, File file, boolean binary, int threads) {
             this.reset = reset;
             this.file = file;
+            this.binary = binary;
+            this.threads = threads;
         }
 
         @Override
@@ -67,9 +81,14 @@ public class KVLoadCommand extends AbstractKVCommand {
             final KVTransaction kvt = session.getKVTransaction();
             if (this.reset)
                 kvt.removeRange(null, null);
-            final int count;
+            final long count;
             try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(this.file))) {
-                count = new XMLSerializer(kvt).read(input);
+                if (this.binary) {
+                    final BinarySerializer serializer = new BinarySerializer(kvt);
+                    serializer.setParallelism(this.threads);
+                    count = serializer.read(input);
+                } else
+                    count = new XMLSerializer(kvt).read(input);
             }
             session.getWriter().println("Read " + count + " key/value pairs from `" + this.file + "'");
         }
@@ -8,7 +8,9 @@ package io.permazen.cli.cmd;
 import io.permazen.Session;
 import io.permazen.SessionMode;
 import io.permazen.cli.CliSession;
+import io.permazen.kv.util.BinarySerializer;
 import io.permazen.kv.util.XMLSerializer;
+import io.permazen.parse.ParseException;
 import io.permazen.parse.Parser;
 import io.permazen.util.ParseContext;
 
@@ -30,12 +32,12 @@ import org.dellroad.stuff.xml.IndentXMLStreamWriter;
 public class KVSaveCommand extends AbstractCommand {
 
     public KVSaveCommand() {
-        super("kvsave -i:indent -w:weak file.xml:file minKey? maxKey?");
+        super("kvsave -i:indent -w:weak -b:binary -threads:threads:int file.xml:file minKey? maxKey?");
     }
 
     @Override
     public String getHelpSummary() {
-        return "Exports key/value pairs to an XML file";
+        return "Exports key/value pairs to an XML or binary file";
     }
 
     @Override
@@ -44,6 +46,8 @@ public class KVSaveCommand extends AbstractCommand {
           + "\n\nIf `minKey' and/or `maxKey' are specified, the keys are restricted to the specified range."
           + " `minKey' and `maxKey' may be given as hexadecimal strings or C-style doubly-quoted strings.\n"
           + "The `-i' flag causes the output XML to be indented.\n"
+          + "The `-b' flag selects a compact binary format instead of XML; the binary format can be written"
+          + " and read back in parallel using multiple threads, as specified by the `-threads' flag.\n"
           + "If the `-w' flag is given, for certain key/value stores a weaker consistency level is used for"
           + " the tranasction to reduce the chance of conflicts.";
     }
@@ -67,9 +71,15 @@ public class KVSaveCommand extends AbstractCommand {
         final boolean weak = params.containsKey("weak");
         final byte[] minKey = (byte[])params.get("minKey");
         final byte[] maxKey = (byte[])params.get("maxKey");
+        final boolean binary = params.containsKey("binary");
+        final Integer threads = (Integer)params.get("threads");
+        if (threads != null && threads <= 0)
+            throw new ParseException(ctx, "invalid number of threads " + threads);
+        if (threads != null && !binary)
+            throw new ParseException(ctx, "`-threads' requires `-b'");
 
         // Return action
-        return new SaveAction(file, indent, weak, minKey, maxKey);
+        return new SaveAction(file, indent, weak, minKey, maxKey, binary, threads != null ? threads : 1);
     }
 
     private static class SaveAction implements CliSession.Action, Session.RetryableAction, Session.HasTransactionOptions {
@@ -79,13 +89,17 @@ public class KVSaveCommand extends AbstractCommand {
         private final boolean weak;
         private final byte[] minKey;
         private final byte[] maxKey;
+        private final boolean binary;
+        private final int threads;
 
-        SaveAction(File file, boolean indent, boolean weak, byte[] minKey, byte[] maxKey) {
+        SaveAction(File file, boolean indent, boolean weak, byte[] minKey, byte[] maxKey, boolean binary, int threads) {
             this.file = file;
             this.indent = indent;
             this.weak = weak;
             this.minKey = minKey;
             this.maxKey = maxKey;
+            this.binary = binary;
+            this.threads = threads;
         }
 
         @Override
@@ -94,14 +108,20 @@ public class KVSaveCommand extends AbstractCommand {
               new AtomicUpdateFileOutputStream(this.file) : new FileOutputStream(this.file);
             final BufferedOutputStream output = new BufferedOutputStream(updateOutput);
             boolean success = false;
-            final int count;
+            final long count;
             try {
-                XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
-                if (this.indent)
-                    writer = new IndentXMLStreamWriter(writer);
-                writer.writeStartDocument("UTF-8", "1.0");
-                final XMLSerializer serializer = new XMLSerializer(session.getKVTransaction());
-                count = serializer.write(writer, this.minKey, this.maxKey);
+                if (this.binary) {
+                    final BinarySerializer serializer = new BinarySerializer(session.getKVTransaction());
+                    serializer.setParallelism(this.threads);
+                    count = serializer.write(output, this.minKey, this.maxKey);
+                } else {
+                    XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+                    if (this.indent)
+                        writer = new IndentXMLStreamWriter(writer);
+                    writer.writeStartDocument("UTF-8", "1.0");
+                    final XMLSerializer serializer = new XMLSerializer(session.getKVTransaction());
+                    count = serializer.write(writer, this.minKey, this.maxKey);
+                }
                 output.flush();
                 success = true;
             } finally {
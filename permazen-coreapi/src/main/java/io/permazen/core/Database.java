@@ -79,6 +79,7 @@ public class Database {
     private final KVDatabase kvdb;
 
     private volatile Schemas lastSchemas;
+    private volatile boolean garbageCollectSchemas;
 
     /**
      * Constructor.
@@ -109,6 +110,36 @@ public class Database {
         return this.kvdb;
     }
 
+    /**
+     * Determine whether schema versions no longer used by any object are automatically deleted.
+     *
+     * @return true if unused schema versions are garbage collected
+     * @see #setGarbageCollectSchemas setGarbageCollectSchemas()
+     */
+    public boolean isGarbageCollectSchemas() {
+        return this.garbageCollectSchemas;
+    }
+
+    /**
+     * Configure whether schema versions no longer used by any object are automatically deleted.
+     *
+     * <p>
+     * Every transaction reads and verifies every schema version recorded in the database, so over time a growing
+     * number of obsolete schema versions adds overhead. When this option is enabled, each transaction that deletes
+     * or upgrades objects keeps track of their old schema versions, and just prior to commit, any such schema version
+     * (other than the transaction's own schema version) that no longer has any objects is deleted, as if by
+     * {@link Transaction#deleteSchemaVersion Transaction.deleteSchemaVersion()}. Each check costs one
+     * range read in the object version index per affected schema version.
+     *
+     * <p>
+     * Default is false.
+     *
+     * @param garbageCollectSchemas true to automatically delete unused schema versions
+     */
+    public void setGarbageCollectSchemas(boolean garbageCollectSchemas) {
+        this.garbageCollectSchemas = garbageCollectSchemas;
+    }
+
     /**
      * Create a new transaction.
      *
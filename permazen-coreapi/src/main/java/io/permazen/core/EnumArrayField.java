@@ -30,6 +30,8 @@ public class EnumArrayField extends SimpleField<Object> {
      * @param storageId field storage ID
      * @param schema schema version
      * @param indexed whether this field is indexed
+     * @param compressed whether this field's values are compressed when stored
+     * @param compressionDictionary preset compression dictionary, or null for none
      * @param baseType base component type
      * @param fieldType field type
      * @param dimensions number of dimensions
@@ -40,8 +42,9 @@ public class EnumArrayField extends SimpleField<Object> {
      */
     @SuppressWarnings("unchecked")
     EnumArrayField(String name, int storageId, Schema schema,
-      boolean indexed, EnumFieldType baseType, FieldType<?> fieldType, int dimensions) {
-        super(name, storageId, schema, (FieldType<Object>)fieldType, indexed);
+      boolean indexed, boolean compressed, String compressionDictionary,
+      EnumFieldType baseType, FieldType<?> fieldType, int dimensions) {
+        super(name, storageId, schema, (FieldType<Object>)fieldType, indexed, compressed, compressionDictionary);
         Preconditions.checkArgument(dimensions >= 1 && dimensions <= ArrayType.MAX_DIMENSIONS);
         this.baseType = baseType;
         this.dimensions = dimensions;
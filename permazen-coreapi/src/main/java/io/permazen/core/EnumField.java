@@ -25,13 +25,16 @@ public class EnumField extends SimpleField<EnumValue> {
      * @param schema schema version
      * @param idents the unique enum identifiers
      * @param indexed whether this field is indexed
+     * @param compressed whether this field's values are compressed when stored
+     * @param compressionDictionary preset compression dictionary, or null for none
      * @throws IllegalArgumentException if any parameter is null
      * @throws IllegalArgumentException if {@code name} is invalid
      * @throws IllegalArgumentException if {@code storageId} is invalid
      * @throws IllegalArgumentException if any identifier in {@code idents} is null, duplicate, or not a valid Java identifier
      */
-    EnumField(String name, int storageId, Schema schema, boolean indexed, List<String> idents) {
-        super(name, storageId, schema, new EnumFieldType(idents), indexed);
+    EnumField(String name, int storageId, Schema schema, boolean indexed,
+      boolean compressed, String compressionDictionary, List<String> idents) {
+        super(name, storageId, schema, new EnumFieldType(idents), indexed, compressed, compressionDictionary);
     }
 
 // Public methods
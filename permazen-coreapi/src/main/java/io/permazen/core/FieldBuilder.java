@@ -91,7 +91,8 @@ class FieldBuilder extends SchemaFieldSwitchAdapter<Field<?>> {
     @Override
     public EnumField caseEnumSchemaField(EnumSchemaField field) {
         Preconditions.checkArgument(field.getEncodingSignature() == 0, "encoding signature must be zero");
-        return new EnumField(field.getName(), field.getStorageId(), this.schema, field.isIndexed(), field.getIdentifiers());
+        return new EnumField(field.getName(), field.getStorageId(), this.schema, field.isIndexed(),
+          field.isCompressed(), field.getCompressionDictionary(), field.getIdentifiers());
     }
 
     @Override
@@ -103,7 +104,8 @@ class FieldBuilder extends SchemaFieldSwitchAdapter<Field<?>> {
         for (int dims = 0; dims < field.getDimensions(); dims++)
             fieldType = this.fieldTypeRegistry.getArrayType(fieldType);
         return new EnumArrayField(field.getName(), field.getStorageId(),
-          this.schema, field.isIndexed(), baseType, fieldType, field.getDimensions());
+          this.schema, field.isIndexed(), field.isCompressed(), field.getCompressionDictionary(),
+          baseType, fieldType, field.getDimensions());
     }
 
     @Override
@@ -116,7 +118,8 @@ class FieldBuilder extends SchemaFieldSwitchAdapter<Field<?>> {
     // This method exists solely to bind the generic type parameters
     private <T> SimpleField<T> buildSimpleField(SimpleSchemaField field, String fieldName, FieldType<T> fieldType) {
         assert field.getEncodingSignature() == fieldType.getEncodingSignature();
-        return new SimpleField<>(fieldName, field.getStorageId(), this.schema, fieldType, field.isIndexed());
+        return new SimpleField<>(fieldName, field.getStorageId(), this.schema, fieldType,
+          field.isIndexed(), field.isCompressed(), field.getCompressionDictionary());
     }
 
     // This method exists solely to bind the generic type parameters
@@ -16,17 +16,26 @@ import io.permazen.util.CloseableIterator;
 import io.permazen.util.UnsignedIntEncoder;
 
 import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
 import java.util.RandomAccess;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.Collectors;
 
 /**
  * {@link List} implementation for {@link ListField}s.
+ *
+ * <p>
+ * Because each list element's key encodes its index, inserting or removing elements requires rewriting the
+ * elements that follow. To minimize the cost, those elements are streamed through a single range query, so only
+ * as many of them as are being inserted or removed are held in memory at once, and only positions whose value
+ * actually changes are rewritten and re-indexed.
  */
 class JSList<E> extends AbstractList<E> implements RandomAccess {
 
@@ -160,24 +169,26 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
           .map(this::buildValue)
           .collect(Collectors.toCollection(() -> new ArrayList<>(numElems)));
 
-        // Make room for elements
+        // Check bounds
         final int size = this.size();
         if (index < 0 || index > size || size + numElems == Integer.MAX_VALUE || size + numElems < 0)
             throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
-        this.shift(index, index + numElems, size);
+        if (numElems == 0)
+            return false;
 
-        // Add entries
+        // Shift the existing elements at index and beyond up, inserting the new values in front of them
+        this.modCount++;
+        final ArrayDeque<byte[]> pending = new ArrayDeque<>(values);      // values waiting to be written, in order
+        this.scanValues(index, size, (oldValue, position) -> {
+            pending.add(oldValue);
+            this.updateValue(position, oldValue, pending.remove());
+        });
+        for (int position = size; !pending.isEmpty(); position++)
+            this.updateValue(position, null, pending.remove());
+
+        // Notify field monitors
         for (int i = 0; i < numElems; i++) {
-            final byte[] key = this.buildKey(index);
-            final byte[] value = values.get(i);
             final E elem = elems.get(i);
-
-            // Update list content and index
-            this.tx.kvt.put(key, value);
-            if (this.field.elementField.indexed)
-                this.field.addIndexEntry(this.tx, this.id, this.field.elementField, key, value);
-
-            // Notify field monitors
             if (!this.tx.disableListenerNotifications) {
                 final int index2 = index;
                 this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
@@ -194,7 +205,7 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
         }
 
         // Done
-        return numElems > 0;
+        return true;
     }
 
     @Override
@@ -262,17 +273,35 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
         // Check bounds
         if (min < 0 || max < min || max > size)
             throw new IndexOutOfBoundsException("min = " + min + ", max = " + max + ", size = " + size);
+        if (min == max)
+            return;
 
-        // Delete index entries
-        if (this.field.elementField.indexed)
-            this.deleteIndexEntries(min, max);
+        // Shift the elements at max and beyond down, overwriting the removed elements
+        this.modCount++;
+        final int numRemoved = max - min;
+        final ArrayList<byte[]> removedValues = new ArrayList<>(numRemoved);
+        final ArrayDeque<byte[]> window = new ArrayDeque<>(numRemoved);   // old values of positions awaiting new values
+        this.scanValues(min, size, (oldValue, position) -> {
+            if (position < max)
+                removedValues.add(oldValue);
+            window.add(oldValue);
+            if (position >= max)
+                this.updateValue(position - numRemoved, window.remove(), oldValue);
+        });
+
+        // Delete list entries beyond the new end of the list
+        final int newSize = size - numRemoved;
+        if (this.field.elementField.indexed) {
+            int position = newSize;
+            for (byte[] oldValue : window)
+                this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, this.buildKey(position++), oldValue);
+        }
+        this.tx.kvt.removeRange(this.buildKey(newSize), ByteUtil.getKeyAfterPrefix(this.contentPrefix));
 
         // Notify field monitors
         if (!this.tx.disableListenerNotifications) {
             for (int i = min; i < max; i++) {
-                final byte[] value = this.tx.kvt.get(this.buildKey(i));
-                if (value == null)
-                    throw new InconsistentDatabaseException("list entry at index " + i + " not found");
+                final byte[] value = removedValues.get(i - min);
                 final int i2 = i;
                 this.tx.addFieldChangeNotification(new ListFieldChangeNotifier() {
 
@@ -291,77 +320,38 @@ class JSList<E> extends AbstractList<E> implements RandomAccess {
                 });
             }
         }
-
-        // Shift
-        this.shift(max, min, size);
     }
 
-    // Shift a contiguous range of list elements; values created or removed are not handled
-    private void shift(int from, int to, int size) {
-
-        // Bump modification counter (structural modification)
-        this.modCount++;
-
-        // Plan direction of copy operation to avoid overwrites
-        int len = size - from;
-        int src;
-        int dst;
-        int step;
-        if (to < from) {
-            src = from;
-            dst = to;
-            step = 1;
-        } else {
-            src = from + len - 1;
-            dst = to + len - 1;
-            step = -1;
-            len = size - from;
-        }
-
-        // Copy list elements; note we remove the old index entries but not the old list entries
-        while (len-- > 0) {
-
-            // Read value at src
-            final byte[] srcKey = this.buildKey(src);
-            final byte[] value = this.tx.kvt.get(srcKey);
-            if (value == null)
-                throw new InconsistentDatabaseException("list entry at index " + src + " not found");
-
-            // Delete index entry for value at src
-            if (this.field.elementField.indexed)
-                this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, srcKey, value);
-
-            // Write value to dst
-            final byte[] dstKey = this.buildKey(dst);
-            this.tx.kvt.put(dstKey, value);
-
-            // Add index entry for value at dst
-            if (this.field.elementField.indexed)
-                this.field.addIndexEntry(this.tx, this.id, this.field.elementField, dstKey, value);
-
-            // Advance
-            src += step;
-            dst += step;
-        }
-
-        // Delete the old list entries that did not get overwritten; only happens when deleting items
-        if (to < from) {
-            final int newSize = size - (from - to);
-            final byte[] minKey = this.buildKey(newSize);
-            final byte[] maxKey = ByteUtil.getKeyAfterPrefix(this.contentPrefix);
-            this.tx.kvt.removeRange(minKey, maxKey);
+    // Stream the encoded values of the list elements in the given range, in order, through a single range query.
+    // The visitor may modify list entries it has already been given, but no others.
+    private void scanValues(int min, int max, ObjIntConsumer<byte[]> visitor) {
+        if (min == max)
+            return;
+        int position = min;
+        try (CloseableIterator<KVPair> i = this.tx.kvt.getRange(this.buildKey(min), this.buildKey(max), false)) {
+            while (i.hasNext()) {
+                final KVPair pair = i.next();
+                final int index = UnsignedIntEncoder.read(new ByteReader(pair.getKey(), this.contentPrefix.length));
+                if (index != position)
+                    throw new InconsistentDatabaseException("list entry at index " + position + " not found");
+                visitor.accept(pair.getValue(), position++);
+            }
         }
+        if (position != max)
+            throw new InconsistentDatabaseException("list entry at index " + position + " not found");
     }
 
-    private void deleteIndexEntries(int min, int max) {
-        assert this.field.elementField.indexed;
-        for (int i = min; i < max; i++) {
-            final byte[] key = this.buildKey(i);
-            final byte[] value = this.tx.kvt.get(key);
-            if (value == null)
-                throw new InconsistentDatabaseException("list entry at index " + i + " not found");
-            this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, key, value);
-        }
+    // Change the value of the list entry at the given position (null oldValue means no entry yet), unless unchanged
+    private void updateValue(int position, byte[] oldValue, byte[] newValue) {
+        if (oldValue != null && Arrays.equals(oldValue, newValue))
+            return;
+        final boolean indexed = this.field.elementField.indexed;
+        final byte[] key = this.buildKey(position);
+        if (oldValue != null && indexed)
+            this.field.removeIndexEntry(this.tx, this.id, this.field.elementField, key, oldValue);
+        this.tx.kvt.put(key, newValue);
+        if (indexed)
+            this.field.addIndexEntry(this.tx, this.id, this.field.elementField, key, newValue);
     }
 
     private byte[] buildKey(int index) {
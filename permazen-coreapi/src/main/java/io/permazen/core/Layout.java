@@ -76,6 +76,13 @@ public final class Layout {
       METADATA_PREFIX_BYTE, (byte)0xff
     };
 
+    // Compressed field value headers
+    private static final byte FIELD_VALUE_UNCOMPRESSED = (byte)0x00;
+    private static final byte FIELD_VALUE_DEFLATED = (byte)0x01;
+
+    // Field values shorter than this are never worth compressing
+    private static final int FIELD_VALUE_MIN_COMPRESS_LENGTH = 32;
+
     // Note: this string must not ever change
     private static final byte[] SCHEMA_XML_COMPRESSION_DICTIONARY = (""
       + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
@@ -195,6 +202,21 @@ public final class Layout {
         return VERSION_INDEX_PREFIX.clone();
     }
 
+    /**
+     * Get the {@link KeyRange} containing all object version index entries for the specified schema version.
+     *
+     * @param version schema version
+     * @return object version index key range for {@code version}
+     * @throws IllegalArgumentException if {@code version} is non-positive
+     */
+    public static KeyRange getObjectVersionIndexKeyRange(int version) {
+        Preconditions.checkArgument(version > 0, "non-positive version");
+        final ByteWriter writer = new ByteWriter(VERSION_INDEX_PREFIX.length + 5);
+        writer.write(VERSION_INDEX_PREFIX);
+        UnsignedIntEncoder.write(writer, version);
+        return KeyRange.forPrefix(writer.getBytes());
+    }
+
     /**
      * Get the common prefix of all user-defined meta-data keys.
      *
@@ -345,6 +367,105 @@ public final class Layout {
         return value;
     }
 
+    /**
+     * Encode a simple field value for storage in a field that has compression enabled.
+     *
+     * <p>
+     * The result consists of a header byte followed by either the original {@code value}, if compression would
+     * not make it any smaller, or else the {@code value} compressed using "deflate" with the given preset dictionary.
+     * Index entries are not affected by compression; they always contain the original {@code value}.
+     *
+     * @param value encoded field value
+     * @param dictionary preset compression dictionary, or null for none
+     * @return encoded value for key/value pair
+     * @throws IllegalArgumentException if {@code value} is null
+     * @see #decompressFieldValue decompressFieldValue()
+     */
+    public static byte[] compressFieldValue(byte[] value, byte[] dictionary) {
+
+        // Sanity check
+        Preconditions.checkArgument(value != null, "null value");
+
+        // Try to compress
+        if (value.length >= FIELD_VALUE_MIN_COMPRESS_LENGTH) {
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                if (dictionary != null)
+                    deflater.setDictionary(dictionary);
+                deflater.setInput(value);
+                deflater.finish();
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream(value.length);
+                compressed.write(FIELD_VALUE_DEFLATED);
+                final byte[] temp = new byte[Math.min(value.length, 1000)];
+                int r;
+                while ((r = deflater.deflate(temp)) != 0 && compressed.size() <= value.length)
+                    compressed.write(temp, 0, r);
+                if (deflater.finished() && compressed.size() <= value.length)
+                    return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        // Not worth compressing
+        final byte[] result = new byte[1 + value.length];
+        result[0] = FIELD_VALUE_UNCOMPRESSED;
+        System.arraycopy(value, 0, result, 1, value.length);
+        return result;
+    }
+
+    /**
+     * Decode a simple field value previously encoded by {@link #compressFieldValue compressFieldValue()}.
+     *
+     * @param value encoded value from key/value pair
+     * @param dictionary preset compression dictionary, or null for none; must match the one used for compression
+     * @return original encoded field value
+     * @throws IllegalArgumentException if {@code value} is null
+     * @throws IllegalArgumentException if {@code value} is invalid
+     */
+    public static byte[] decompressFieldValue(byte[] value, byte[] dictionary) {
+
+        // Sanity check
+        Preconditions.checkArgument(value != null, "null value");
+        if (value.length == 0)
+            throw new IllegalArgumentException("invalid compressed field value: missing header");
+
+        // Decode
+        switch (value[0]) {
+        case FIELD_VALUE_UNCOMPRESSED:
+        {
+            final byte[] result = new byte[value.length - 1];
+            System.arraycopy(value, 1, result, 0, result.length);
+            return result;
+        }
+        case FIELD_VALUE_DEFLATED:
+        {
+            final Inflater inflater = new Inflater(true);
+            try {
+                if (dictionary != null)
+                    inflater.setDictionary(dictionary);
+                final byte[] input = new byte[value.length];                         // note: extra trailing byte required
+                System.arraycopy(value, 1, input, 0, value.length - 1);
+                inflater.setInput(input);
+                final ByteArrayOutputStream decompressed = new ByteArrayOutputStream(value.length * 4);
+                final byte[] temp = new byte[1000];
+                int r;
+                while ((r = inflater.inflate(temp)) != 0)
+                    decompressed.write(temp, 0, r);
+                if (!inflater.finished())
+                    throw new IllegalArgumentException("invalid compressed field value: truncated data");
+                return decompressed.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("invalid compressed field value: " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+        default:
+            throw new IllegalArgumentException(String.format("invalid compressed field value: unknown header 0x%02x", value[0]));
+        }
+    }
+
     /**
      * Get the key in the meta-data area corresponding to the schema with the given version number.
      *
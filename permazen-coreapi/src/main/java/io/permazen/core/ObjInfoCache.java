@@ -0,0 +1,216 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of {@link ObjInfo}s used by {@link Transaction}.
+ *
+ * <p>
+ * This class implements the Adaptive Replacement Cache (ARC) algorithm, which balances between recently used
+ * and frequently used entries. As a result, a large scan that touches many objects only once does not evict
+ * the working set of objects that are accessed repeatedly. Consecutive accesses to the same object, such as
+ * reading several of its fields, count as a single reference; otherwise, every object visited by a scan would
+ * appear to be "frequently" used.
+ *
+ * <p>
+ * Instances are not thread safe.
+ */
+class ObjInfoCache {
+
+    private final LinkedHashMap<ObjId, ObjInfo> recent = new LinkedHashMap<>();     // "T1": seen once recently, LRU first
+    private final LinkedHashMap<ObjId, ObjInfo> frequent = new LinkedHashMap<>();   // "T2": seen twice or more, LRU first
+    private final LinkedHashSet<ObjId> recentGhosts = new LinkedHashSet<>();        // "B1": recently evicted from T1
+    private final LinkedHashSet<ObjId> frequentGhosts = new LinkedHashSet<>();      // "B2": recently evicted from T2
+
+    private ObjId lastAccessed;                                                     // most recently accessed object
+    private int capacity;
+    private int target;                                                             // adaptive target size for T1
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of cached entries
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    ObjInfoCache(int capacity) {
+        this.setCapacity(capacity);
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Change the capacity of this cache, evicting entries if necessary.
+     *
+     * @param capacity maximum number of cached entries
+     * @throws IllegalArgumentException if {@code capacity} is not positive
+     */
+    public void setCapacity(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity <= 0");
+        this.capacity = capacity;
+        this.target = Math.min(this.target, capacity);
+        while (this.size() > capacity)
+            this.replace(false);
+        while (this.recentGhosts.size() + this.frequentGhosts.size() > capacity) {
+            ObjInfoCache.removeEldest(this.recentGhosts.size() > this.frequentGhosts.size() ?
+              this.recentGhosts : this.frequentGhosts);
+        }
+    }
+
+    public int size() {
+        return this.recent.size() + this.frequent.size();
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the cached entry for the given object, if any, and record the access.
+     *
+     * <p>
+     * If {@code id} is the same object as the previous access, this is not counted as a new reference.
+     *
+     * @param id object ID
+     * @return cached entry, or null if not found
+     */
+    public ObjInfo get(ObjId id) {
+        if (id.equals(this.lastAccessed))
+            return this.peek(id);
+        this.lastAccessed = id;
+        ObjInfo info = this.recent.remove(id);
+        if (info == null)
+            info = this.frequent.remove(id);
+        if (info == null) {
+            this.misses++;
+            return null;
+        }
+        this.frequent.put(id, info);
+        this.hits++;
+        return info;
+    }
+
+    /**
+     * Get the cached entry for the given object, if any, without recording the access.
+     *
+     * @param id object ID
+     * @return cached entry, or null if not found
+     */
+    public ObjInfo peek(ObjId id) {
+        final ObjInfo info = this.recent.get(id);
+        return info != null ? info : this.frequent.get(id);
+    }
+
+    /**
+     * Add or replace the entry for the given object.
+     *
+     * @param id object ID
+     * @param info object info
+     */
+    public void put(ObjId id, ObjInfo info) {
+
+        // Adding an entry counts as an access
+        this.lastAccessed = id;
+
+        // Replace existing entry in place
+        if (this.recent.containsKey(id)) {
+            this.recent.put(id, info);
+            return;
+        }
+        if (this.frequent.containsKey(id)) {
+            this.frequent.put(id, info);
+            return;
+        }
+
+        // Recently evicted from T1? Then T1 should be bigger
+        if (this.recentGhosts.remove(id)) {
+            final int delta = Math.max(this.frequentGhosts.size() / (this.recentGhosts.size() + 1), 1);
+            this.target = Math.min(this.target + delta, this.capacity);
+            if (this.size() >= this.capacity)
+                this.replace(false);
+            this.frequent.put(id, info);
+            return;
+        }
+
+        // Recently evicted from T2? Then T2 should be bigger
+        if (this.frequentGhosts.remove(id)) {
+            final int delta = Math.max(this.recentGhosts.size() / (this.frequentGhosts.size() + 1), 1);
+            this.target = Math.max(this.target - delta, 0);
+            if (this.size() >= this.capacity)
+                this.replace(true);
+            this.frequent.put(id, info);
+            return;
+        }
+
+        // Completely new entry
+        if (this.recent.size() + this.recentGhosts.size() >= this.capacity) {
+            if (this.recent.size() < this.capacity) {
+                ObjInfoCache.removeEldest(this.recentGhosts);
+                if (this.size() >= this.capacity)
+                    this.replace(false);
+            } else
+                ObjInfoCache.removeEldest(this.recent.keySet());
+        } else {
+            final int total = this.size() + this.recentGhosts.size() + this.frequentGhosts.size();
+            if (total >= this.capacity) {
+                if (total >= 2 * this.capacity)
+                    ObjInfoCache.removeEldest(this.frequentGhosts);
+                if (this.size() >= this.capacity)
+                    this.replace(false);
+            }
+        }
+        this.recent.put(id, info);
+    }
+
+    /**
+     * Remove the entry for the given object, if any.
+     *
+     * @param id object ID
+     */
+    public void remove(ObjId id) {
+        this.recent.remove(id);
+        this.frequent.remove(id);
+        this.recentGhosts.remove(id);
+        this.frequentGhosts.remove(id);
+    }
+
+    // Evict the LRU entry from either T1 or T2, depending on the current target size of T1
+    private void replace(boolean inFrequentGhosts) {
+        final int recentSize = this.recent.size();
+        if (this.frequent.isEmpty()
+          || (recentSize > 0 && (recentSize > this.target || (inFrequentGhosts && recentSize == this.target))))
+            this.recentGhosts.add(this.evictEldest(this.recent));
+        else
+            this.frequentGhosts.add(this.evictEldest(this.frequent));
+    }
+
+    private ObjId evictEldest(Map<ObjId, ObjInfo> map) {
+        final ObjId id = map.keySet().iterator().next();
+        map.remove(id);
+        return id;
+    }
+
+    private static void removeEldest(Set<ObjId> set) {
+        final Iterator<ObjId> i = set.iterator();
+        i.next();
+        i.remove();
+    }
+}
@@ -130,12 +130,20 @@ public class Schemas {
         throw new IllegalArgumentException(message);                        // should never get here
     }
 
-    boolean deleteVersion(int version) {
+    /**
+     * Create a copy of this instance with the specified schema version removed.
+     *
+     * <p>
+     * This instance is not modified, as it may be shared with other transactions.
+     *
+     * @param version schema version to remove
+     * @return new instance without {@code version}, or null if {@code version} is not found
+     */
+    Schemas deleteVersion(int version) {
         final TreeMap<Integer, Schema> newVersions = new TreeMap<>(this.versions);
         if (newVersions.remove(version) == null)
-            return false;
-        this.initialize(newVersions);
-        return true;
+            return null;
+        return new Schemas(newVersions);
     }
 
     private String getDescription(Class<? extends StorageInfo> type) {
@@ -10,6 +10,7 @@ import com.google.common.base.Preconditions;
 import io.permazen.core.util.ObjIdMap;
 import io.permazen.util.ByteWriter;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Map;
 
@@ -31,6 +32,8 @@ public class SimpleField<T> extends Field<T> {
 
     final FieldType<T> fieldType;
     final boolean indexed;
+    final boolean compressed;
+    final byte[] compressionDictionary;
 
     ComplexField<?> parent;
     Map<CompositeIndex, Integer> compositeIndexMap;         // maps index to this field's offset in field list
@@ -48,9 +51,31 @@ public class SimpleField<T> extends Field<T> {
      * @throws IllegalArgumentException if {@code storageId} is zero or less
      */
     SimpleField(String name, int storageId, Schema schema, FieldType<T> fieldType, boolean indexed) {
+        this(name, storageId, schema, fieldType, indexed, false, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name the name of the field
+     * @param storageId field storage ID
+     * @param schema schema version
+     * @param fieldType field type
+     * @param indexed whether this field is indexed
+     * @param compressed whether this field's values are compressed when stored
+     * @param compressionDictionary preset compression dictionary, or null for none
+     * @throws IllegalArgumentException if any parameter other than {@code compressionDictionary} is null
+     * @throws IllegalArgumentException if {@code name} is invalid
+     * @throws IllegalArgumentException if {@code storageId} is zero or less
+     */
+    SimpleField(String name, int storageId, Schema schema, FieldType<T> fieldType,
+      boolean indexed, boolean compressed, String compressionDictionary) {
         super(name, storageId, schema, fieldType.getTypeToken());
         this.fieldType = fieldType;
         this.indexed = indexed;
+        this.compressed = compressed;
+        this.compressionDictionary = compressed && compressionDictionary != null ?
+          compressionDictionary.getBytes(StandardCharsets.UTF_8) : null;
     }
 
 // Public methods
@@ -73,6 +98,19 @@ public class SimpleField<T> extends Field<T> {
         return this.indexed;
     }
 
+    /**
+     * Determine whether this field's values are compressed when stored.
+     *
+     * <p>
+     * Compression is transparent: field values read and written, as well as index entries, are unaffected.
+     *
+     * @return true if this field's values are compressed
+     * @see Layout#compressFieldValue Layout.compressFieldValue()
+     */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
     /**
      * Set the value of this field in the given object.
      * Does not alter the schema version of the object.
@@ -113,7 +151,8 @@ public class SimpleField<T> extends Field<T> {
 
     @Override
     public String toString() {
-        return (this.indexed ? "indexed " : "") + "field `" + this.name + "' of type " + this.fieldType.typeToken;
+        return (this.indexed ? "indexed " : "") + (this.compressed ? "compressed " : "")
+          + "field `" + this.name + "' of type " + this.fieldType.typeToken;
     }
 
 // Non-public methods
@@ -158,8 +197,48 @@ public class SimpleField<T> extends Field<T> {
         }
         final ByteWriter writer = new ByteWriter();
         this.fieldType.write(writer, value);
-        final byte[] result = writer.getBytes();
-        return Arrays.equals(result, this.fieldType.getDefaultValue()) ? null : result;
+        return this.nullIfDefault(writer.getBytes());
+    }
+
+    /**
+     * Normalize an encoded value so that the default value is represented by null.
+     *
+     * @param value encoded value
+     * @return {@code value}, or null if {@code value} equals the encoded default value
+     */
+    byte[] nullIfDefault(byte[] value) {
+        return Arrays.equals(value, this.fieldType.getDefaultValue()) ? null : value;
+    }
+
+    /**
+     * Convert an encoded value into the form actually stored in the key/value store.
+     *
+     * @param value encoded value, or null for default value
+     * @return stored value, or null if {@code value} is null
+     */
+    byte[] toStoredValue(byte[] value) {
+        return this.compressed && value != null ? Layout.compressFieldValue(value, this.compressionDictionary) : value;
+    }
+
+    /**
+     * Convert a value read from the key/value store back into its encoded form.
+     *
+     * @param value stored value, or null if not present (i.e., default value)
+     * @return encoded value, or null if {@code value} is null
+     * @throws IllegalArgumentException if {@code value} is invalid
+     */
+    byte[] fromStoredValue(byte[] value) {
+        return this.compressed && value != null ? Layout.decompressFieldValue(value, this.compressionDictionary) : value;
+    }
+
+    /**
+     * Determine whether values stored by this field and the given field have the same stored form.
+     *
+     * @param that other field
+     * @return true if stored values are interchangeable
+     */
+    boolean isStorageCompatible(SimpleField<?> that) {
+        return this.compressed == that.compressed && Arrays.equals(this.compressionDictionary, that.compressionDictionary);
     }
 
     @Override
@@ -8,24 +8,32 @@ package io.permazen.core;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 
+import io.permazen.core.type.DoubleType;
+import io.permazen.core.type.FloatType;
+import io.permazen.core.type.IntegerType;
+import io.permazen.core.type.LongType;
 import io.permazen.core.type.ReferenceFieldType;
 import io.permazen.core.util.ObjIdMap;
 import io.permazen.core.util.ObjIdSet;
+import io.permazen.kv.AsyncKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVTransaction;
 import io.permazen.kv.KVTransactionException;
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.util.ExecutorAsyncKVStore;
 import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.ByteReader;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.ByteWriter;
 import io.permazen.util.CloseableIterator;
+import io.permazen.util.LongEncoder;
 import io.permazen.util.NavigableSets;
 import io.permazen.util.UnsignedIntEncoder;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,7 +46,11 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
@@ -191,7 +203,7 @@ public class Transaction {
 
     private static final int MAX_GENERATED_KEY_ATTEMPTS
       = Integer.parseInt(System.getProperty(Transaction.class.getName() + ".MAX_GENERATED_KEY_ATTEMPTS", "64"));
-    private static final int MAX_OBJ_INFO_CACHE_ENTRIES
+    private static final int DEFAULT_OBJ_INFO_CACHE_CAPACITY
       = Integer.parseInt(System.getProperty(Transaction.class.getName() + ".MAX_OBJ_INFO_CACHE_ENTRIES", "1000"));
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
@@ -199,7 +211,7 @@ public class Transaction {
     // Meta-data
     final Database db;
     final KVTransaction kvt;
-    final Schemas schemas;
+    volatile Schemas schemas;                                                       // replaced if a schema version is deleted
     final Schema schema;
 
     // TX state
@@ -234,9 +246,11 @@ public class Transaction {
     @GuardedBy("this")
     private final ThreadLocal<TreeMap<Integer, ArrayList<FieldChangeNotifier<?>>>> pendingNotifications = new ThreadLocal<>();
     @GuardedBy("this")
-    private final ObjIdMap<ObjInfo> objInfoCache = new ObjIdMap<>();
+    private final ObjInfoCache objInfoCache = new ObjInfoCache(DEFAULT_OBJ_INFO_CACHE_CAPACITY);
     @GuardedBy("this")
     private Object userObject;
+    @GuardedBy("this")
+    private TreeSet<Integer> schemaGCVersions;                                      // versions that have lost objects
 
     // Recording of deleted assignments used during a copy() operation (otherwise should be null)
     private ObjIdMap<ReferenceField> deletedAssignments;
@@ -318,12 +332,48 @@ public class Transaction {
             throw new InvalidSchemaException("one or more version " + version + " objects still exist in database");
 
         // Delete schema version
-        if (!this.schemas.deleteVersion(version))
+        return this.doDeleteSchemaVersion(version);
+    }
+
+    private boolean doDeleteSchemaVersion(int version) {
+        assert Thread.holdsLock(this);
+        final Schemas newSchemas = this.schemas.deleteVersion(version);
+        if (newSchemas == null)
             return false;
+        this.schemas = newSchemas;
         this.kvt.remove(Layout.getSchemaKey(version));
         return true;
     }
 
+    /**
+     * Record that an object having the given schema version has been deleted or upgraded.
+     */
+    private void recordSchemaGCVersion(int version) {
+        assert Thread.holdsLock(this);
+        if (version == this.schema.versionNumber || !this.db.isGarbageCollectSchemas())
+            return;
+        if (this.schemaGCVersions == null)
+            this.schemaGCVersions = new TreeSet<>();
+        this.schemaGCVersions.add(version);
+    }
+
+    /**
+     * Delete any schema versions recorded by {@link #recordSchemaGCVersion} that no longer have any objects.
+     */
+    private void garbageCollectSchemas() {
+        assert Thread.holdsLock(this);
+        if (this.schemaGCVersions == null || this.isReadOnly())
+            return;
+        for (int version : this.schemaGCVersions) {
+            final KeyRange range = Layout.getObjectVersionIndexKeyRange(version);
+            if (this.kvt.getAtLeast(range.getMin(), range.getMax()) != null)
+                continue;
+            if (this.doDeleteSchemaVersion(version) && this.log.isDebugEnabled())
+                this.log.debug("deleted schema version " + version + " which is no longer used by any objects");
+        }
+        this.schemaGCVersions = null;
+    }
+
     /**
      * Get the underlying key/value store transaction.
      *
@@ -361,6 +411,9 @@ public class Transaction {
             this.rollback();
             throw new RollbackOnlyTransactionException(this);
         }
+
+        // Delete unused schema versions
+        this.garbageCollectSchemas();
         this.ending = true;
 
         // Do beforeCommit() and beforeCompletion() callbacks
@@ -567,6 +620,58 @@ public class Transaction {
         this.kvt.setTimeout(timeout);
     }
 
+    /**
+     * Get the capacity of this transaction's object meta-data cache.
+     *
+     * <p>
+     * Each object's meta-data (schema version, etc.) must be read before the object's fields can be accessed.
+     * This transaction caches the meta-data for up to this many objects, favoring objects that are accessed repeatedly
+     * over objects that are accessed only once (e.g., during a large scan).
+     *
+     * <p>
+     * The default capacity is 1000, which may be overridden by setting the system property
+     * {@code io.permazen.core.Transaction.MAX_OBJ_INFO_CACHE_ENTRIES}.
+     *
+     * @return maximum number of objects whose meta-data is cached
+     */
+    public synchronized int getObjInfoCacheCapacity() {
+        return this.objInfoCache.getCapacity();
+    }
+
+    /**
+     * Change the capacity of this transaction's object meta-data cache.
+     *
+     * @param capacity maximum number of objects whose meta-data is cached
+     * @throws IllegalArgumentException if {@code capacity} is zero or negative
+     * @see #getObjInfoCacheCapacity
+     */
+    public synchronized void setObjInfoCacheCapacity(int capacity) {
+        this.objInfoCache.setCapacity(capacity);
+    }
+
+    /**
+     * Get the number of times an object's meta-data was found in this transaction's object meta-data cache.
+     *
+     * @return number of cache hits
+     * @see #getObjInfoCacheCapacity
+     */
+    public synchronized long getObjInfoCacheHits() {
+        return this.objInfoCache.getHits();
+    }
+
+    /**
+     * Get the number of times an object's meta-data was not found in this transaction's object meta-data cache.
+     *
+     * <p>
+     * Each cache miss requires reading the object's meta-data from the key/value store.
+     *
+     * @return number of cache misses
+     * @see #getObjInfoCacheCapacity
+     */
+    public synchronized long getObjInfoCacheMisses() {
+        return this.objInfoCache.getMisses();
+    }
+
     /**
      * Register a transaction {@link Callback} to be invoked when this transaction completes.
      * Callbacks will be invoked in the order they are registered, but <i>duplicate registrations are ignored</i>.
@@ -767,12 +872,10 @@ public class Transaction {
         if (this.stale)
             throw new StaleTransactionException(this);
         assert this.kvt.get(id.getBytes()) == null;
-        assert this.objInfoCache.get(id) == null;
+        assert this.objInfoCache.peek(id) == null;
 
         // Write object meta-data and update object info cache
         ObjInfo.write(this, id, versionNumber, false);
-        if (this.objInfoCache.size() >= MAX_OBJ_INFO_CACHE_ENTRIES)
-            this.objInfoCache.removeOne();
         this.objInfoCache.put(id, new ObjInfo(this, id, versionNumber, false, schema, objType));
 
         // Write object version index entry
@@ -937,7 +1040,8 @@ public class Transaction {
         final ObjId id = info.getId();
         final ObjType type = info.getObjType();
         type.indexedSimpleFields
-          .forEach(field -> this.kvt.remove(Transaction.buildSimpleIndexEntry(field, id, this.kvt.get(field.buildKey(id)))));
+          .forEach(field -> this.kvt.remove(Transaction.buildSimpleIndexEntry(field, id,
+            field.fromStoredValue(this.kvt.get(field.buildKey(id))))));
 
         // Delete object's composite index entries
         for (CompositeIndex index : type.compositeIndexes.values())
@@ -954,6 +1058,7 @@ public class Transaction {
 
         // Delete object schema version entry
         this.kvt.remove(Layout.buildVersionIndexKey(id, info.getVersion()));
+        this.recordSchemaGCVersion(info.getVersion());
 
         // Update ObjInfo cache
         this.objInfoCache.remove(id);
@@ -975,6 +1080,95 @@ public class Transaction {
         return this.getObjectInfoIfExists(id, false) != null;
     }
 
+    /**
+     * Load the meta-data for multiple objects, reading from the key/value store concurrently when possible.
+     *
+     * <p>
+     * Normally each object's meta-data is read individually the first time the object is accessed, so accessing
+     * many objects for the first time requires many serial round trips to the key/value store. This method
+     * instead issues all of the reads at once and then waits for them to complete, preloading the results into
+     * this transaction's object meta-data cache. This is most useful when the key/value store is remote.
+     *
+     * <p>
+     * If the underlying key/value transaction implements {@link AsyncKVStore}, its native asynchronous reads are used.
+     * Otherwise, if {@code executor} is not null the reads are performed concurrently using {@code executor},
+     * else they are performed serially.
+     *
+     * <p>
+     * Objects that are already cached are not read again. No more objects than the cache
+     * {@linkplain #getObjInfoCacheCapacity capacity} can remain cached, so loading more than that is counter-productive.
+     *
+     * <p>
+     * This method does <i>not</i> change any object's schema version.
+     *
+     * @param ids object IDs of the objects to load
+     * @param executor executor for concurrent reads when the key/value transaction does not support
+     *  asynchronous reads natively, or null to read serially in that case
+     * @return the number of objects in {@code ids} that exist
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws IllegalArgumentException if {@code ids} or any element therein is null
+     */
+    public synchronized int loadObjects(Collection<? extends ObjId> ids, Executor executor) {
+
+        // Sanity check
+        Preconditions.checkArgument(ids != null, "null ids");
+        if (this.stale)
+            throw new StaleTransactionException(this);
+
+        // Determine which objects need to be read
+        final ArrayList<ObjId> loadIds = new ArrayList<>(ids.size());
+        final ArrayList<byte[]> loadKeys = new ArrayList<>(ids.size());
+        final ObjIdSet seen = new ObjIdSet();
+        int count = 0;
+        for (ObjId id : ids) {
+            Preconditions.checkArgument(id != null, "null id");
+            if (!seen.add(id))
+                continue;
+            if (this.objInfoCache.peek(id) != null) {
+                count++;
+                continue;
+            }
+            try {
+                this.schemas.verifyStorageInfo(id.getStorageId(), ObjTypeStorageInfo.class);
+            } catch (UnknownTypeException e) {
+                continue;
+            }
+            loadIds.add(id);
+            loadKeys.add(id.getBytes());
+        }
+        if (loadIds.isEmpty())
+            return count;
+
+        // Read meta-data
+        final List<byte[]> values;
+        if (this.kvt instanceof AsyncKVStore || executor != null) {
+            final AsyncKVStore asyncKV = this.kvt instanceof AsyncKVStore ?
+              (AsyncKVStore)this.kvt : new ExecutorAsyncKVStore(this.kvt, executor);
+            try {
+                values = asyncKV.getAllAsync(loadKeys).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException)e.getCause();
+                throw e;
+            }
+        } else {
+            values = new ArrayList<>(loadKeys.size());
+            for (byte[] key : loadKeys)
+                values.add(this.kvt.get(key));
+        }
+
+        // Populate cache
+        for (int i = 0; i < loadIds.size(); i++) {
+            final byte[] value = values.get(i);
+            if (value == null)
+                continue;
+            final ObjId id = loadIds.get(i);
+            this.objInfoCache.put(id, new ObjInfo(this, id, value));
+            count++;
+        }
+        return count;
+    }
+
     /**
      * Copy an object into a (possibly different) transaction.
      *
@@ -1195,7 +1389,7 @@ public class Transaction {
             // Create object's simple field index entries
             dstType.indexedSimpleFields
               .forEach(field -> {
-                final byte[] fieldValue = dstTx.kvt.get(field.buildKey(dstId));     // can be null (if field has default value)
+                final byte[] fieldValue = field.fromStoredValue(dstTx.kvt.get(field.buildKey(dstId)));  // null if default value
                 final byte[] indexKey = Transaction.buildSimpleIndexEntry(field, dstId, fieldValue);
                 dstTx.kvt.put(indexKey, ByteUtil.EMPTY);
             });
@@ -1434,7 +1628,7 @@ public class Transaction {
                     @SuppressWarnings("shadow")
                     public <T> Void caseSimpleField(SimpleField<T> oldField) {
                         final byte[] key = Field.buildKey(id, oldField.storageId);
-                        final byte[] oldValue = Transaction.this.kvt.get(key);
+                        final byte[] oldValue = oldField.fromStoredValue(Transaction.this.kvt.get(key));
                         oldValueMap.put(oldField.storageId, oldValue != null ?
                           oldField.fieldType.read(new ByteReader(oldValue)) : oldField.fieldType.getDefaultValueObject());
                         return null;
@@ -1495,17 +1689,26 @@ public class Transaction {
                     // Add/remove indexes as needed
                     final byte[] key = Field.buildKey(id, oldField.storageId);
                     if (oldField.indexed && (reset || !newField.indexed)) {
-                        final byte[] value = Transaction.this.kvt.get(key);
+                        final byte[] value = oldField.fromStoredValue(Transaction.this.kvt.get(key));
                         Transaction.this.kvt.remove(Transaction.buildSimpleIndexEntry(oldField, id, value));
                     }
                     if (newField != null && newField.indexed && (reset || !oldField.indexed)) {
-                        final byte[] value = !reset ? Transaction.this.kvt.get(key) : null;
+                        final byte[] value = !reset ? oldField.fromStoredValue(Transaction.this.kvt.get(key)) : null;
                         Transaction.this.kvt.put(Transaction.buildSimpleIndexEntry(newField, id, value), ByteUtil.EMPTY);
                     }
 
                     // Reset field value if needed
-                    if (reset)
+                    if (reset) {
                         Transaction.this.kvt.remove(key);
+                        return null;
+                    }
+
+                    // Re-encode field value if compression changed
+                    if (!newField.isStorageCompatible(oldField)) {
+                        final byte[] value = Transaction.this.kvt.get(key);
+                        if (value != null)
+                            Transaction.this.kvt.put(key, newField.toStoredValue(oldField.fromStoredValue(value)));
+                    }
                     return null;
                 }
 
@@ -1607,6 +1810,7 @@ public class Transaction {
         // Update object version index entry
         this.kvt.remove(Layout.buildVersionIndexKey(id, oldVersion));
         this.kvt.put(Layout.buildVersionIndexKey(id, newVersion), ByteUtil.EMPTY);
+        this.recordSchemaGCVersion(oldVersion);
 
     //////// Notify listeners
 
@@ -1770,22 +1974,32 @@ public class Transaction {
         Preconditions.checkArgument(id != null, "null id");
         this.checkStaleFieldAccess(id, storageId);
 
-        // Get object info
-        final ObjInfo info = this.getObjectInfo(id, updateVersion);
-
         // Find field
-        final SimpleField<?> field = info.getObjType().simpleFields.get(storageId);
-        if (field == null)
-            throw new UnknownFieldException(info.getObjType(), storageId, "simple field");
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
 
         // Read field
-        final byte[] key = field.buildKey(id);
-        final byte[] value = this.kvt.get(key);
+        final byte[] value = this.readSimpleFieldValue(id, field);
 
         // Decode value
         return value != null ? field.fieldType.read(new ByteReader(value)) : field.fieldType.getDefaultValueObject();
     }
 
+    // Get object info (possibly updating schema version) and find the specified simple field
+    private SimpleField<?> findSimpleField(ObjId id, int storageId, boolean updateVersion) {
+        assert Thread.holdsLock(this);
+        final ObjInfo info = this.getObjectInfo(id, updateVersion);
+        final SimpleField<?> field = info.getObjType().simpleFields.get(storageId);
+        if (field == null)
+            throw new UnknownFieldException(info.getObjType(), storageId, "simple field");
+        return field;
+    }
+
+    // Read the encoded value of a simple field, or null if the field has its default value
+    private byte[] readSimpleFieldValue(ObjId id, SimpleField<?> field) {
+        assert Thread.holdsLock(this);
+        return field.fromStoredValue(this.kvt.get(field.buildKey(id)));
+    }
+
     /**
      * Change the value of a {@link SimpleField} in an object, optionally updating the object's schema version.
      *
@@ -1816,32 +2030,47 @@ public class Transaction {
 
     private synchronized void doWriteSimpleField(ObjId id, int storageId, final Object newObj, boolean updateVersion) {
 
-        // Get object info
-        final ObjInfo info = this.getObjectInfo(id, updateVersion);
-
         // Find field
-        final SimpleField<?> field = info.getObjType().simpleFields.get(storageId);
-        if (field == null)
-            throw new UnknownFieldException(info.getObjType(), storageId, "simple field");
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+
+        // Write value
+        this.doWriteSimpleField(id, field, newObj);
+    }
+
+    private void doWriteSimpleField(ObjId id, SimpleField<?> field, Object newObj) {
 
         // Check for deleted assignment
         if (field instanceof ReferenceField)
             this.checkDeletedAssignment(id, (ReferenceField)field, (ObjId)newObj);
 
-        // Get new value
+        // Encode and write new value
+        this.doWriteSimpleField(id, field, field.encode(newObj), newObj);
+    }
+
+    /**
+     * Write an already-encoded value to a simple field and update indexes and notify monitors as needed.
+     *
+     * @param id object ID
+     * @param field the field
+     * @param newValue new encoded value, or null for the field's default value
+     * @param newObj new value in object form; only used (and so need only be non-null) when the field is monitored
+     */
+    private void doWriteSimpleField(ObjId id, SimpleField<?> field, byte[] newValue, final Object newObj) {
+        assert Thread.holdsLock(this);
+
+        // Get key
         final byte[] key = field.buildKey(id);
-        final byte[] newValue = field.encode(newObj);
 
         // Before setting the new value, read the old value if one of the following is true:
         //  - The field is being monitored -> we need to filter out "changes" that don't actually change anything
         //  - The field is indexed -> we need the old value so we can remove the old index entry
         // If neither of the above is true, then there's no need to read the old value.
+        final boolean monitored = this.isMonitored(id, field);
         byte[] oldValue = null;
-        if (field.indexed || field.compositeIndexMap != null
-          || (!this.disableListenerNotifications && this.hasFieldMonitor(id, field.storageId))) {
+        if (field.indexed || field.compositeIndexMap != null || monitored) {
 
             // Get old value
-            oldValue = this.kvt.get(key);
+            oldValue = field.fromStoredValue(this.kvt.get(key));
 
             // Compare new to old value
             if (oldValue != null ? newValue != null && Arrays.equals(oldValue, newValue) : newValue == null)
@@ -1850,7 +2079,7 @@ public class Transaction {
 
         // Update value
         if (newValue != null)
-            this.kvt.put(key, newValue);
+            this.kvt.put(key, field.toStoredValue(newValue));
         else
             this.kvt.remove(key);
 
@@ -1875,7 +2104,7 @@ public class Transaction {
                         fieldStart = oldWriter.getLength();
                         otherValue = oldValue;
                     } else
-                        otherValue = this.kvt.get(otherField.buildKey(id));         // can be null (if field has default value)
+                        otherValue = otherField.fromStoredValue(this.kvt.get(otherField.buildKey(id)));  // null if default
                     oldWriter.write(otherValue != null ? otherValue : otherField.fieldType.getDefaultValue());
                     if (otherField == field)
                         fieldEnd = oldWriter.getLength();
@@ -1900,7 +2129,7 @@ public class Transaction {
         }
 
         // Notify monitors
-        if (!this.disableListenerNotifications) {
+        if (monitored) {
             final Object oldObj = oldValue != null ?
               field.fieldType.read(new ByteReader(oldValue)) : field.fieldType.getDefaultValueObject();
             this.addFieldChangeNotification(new SimpleFieldChangeNotifier(field, id) {
@@ -1913,6 +2142,209 @@ public class Transaction {
         }
     }
 
+    /**
+     * Read the value of an {@code int} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version.
+     *
+     * <p>
+     * This method behaves like {@link #readSimpleField readSimpleField()} followed by unboxing the result,
+     * but when the field is encoded by {@link IntegerType} (the normal case) the value is decoded directly.
+     * {@link #readLongField readLongField()}, {@link #readFloatField readFloatField()}, and
+     * {@link #readDoubleField readDoubleField()} do the same for the other primitive types.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws DeletedObjectException if no object with ID equal to {@code id} is found
+     * @throws UnknownTypeException if {@code id} specifies an unknown object type
+     * @throws UnknownFieldException if no {@link SimpleField} corresponding to {@code storageId} exists in the object
+     * @throws IllegalArgumentException if {@code id} is null
+     * @throws TypeNotInSchemaVersionException {@code updateVersion} is true and the object could not be updated because
+     *   the object's type does not exist in the schema version associated with this transaction
+     * @throws ClassCastException if the field's values are not {@code int}s
+     * @see #writeIntField writeIntField()
+     */
+    public synchronized int readIntField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findPrimitiveField(id, storageId, updateVersion, IntegerType.class);
+        if (field == null)
+            return (Integer)this.readSimpleField(id, storageId, updateVersion);
+        final byte[] value = this.readSimpleFieldValue(id, field);
+        return value != null ? ((IntegerType)field.fieldType).readInt(new ByteReader(value)) : 0;
+    }
+
+    /**
+     * Change the value of an {@code int} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version.
+     *
+     * <p>
+     * This method behaves like {@link #writeSimpleField writeSimpleField()} with a boxed value, but when the field
+     * is encoded by {@link IntegerType} (the normal case) the value is encoded directly, and a boxed value is only
+     * created if the field is being monitored. {@link #writeLongField writeLongField()},
+     * {@link #writeFloatField writeFloatField()}, and {@link #writeDoubleField writeDoubleField()} do the same
+     * for the other primitive types.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws DeletedObjectException if no object with ID equal to {@code id} is found
+     * @throws UnknownTypeException if {@code id} specifies an unknown object type
+     * @throws UnknownFieldException if no {@link SimpleField} corresponding to {@code storageId} exists in the object
+     * @throws TypeNotInSchemaVersionException {@code updateVersion} is true and the object could not be updated because
+     *   the object's type does not exist in the schema version associated with this transaction
+     * @throws IllegalArgumentException if {@code value} is not an appropriate value for the field
+     * @throws IllegalArgumentException if {@code id} is null
+     * @see #readIntField readIntField()
+     */
+    public void writeIntField(final ObjId id, final int storageId, final int value, final boolean updateVersion) {
+        this.writePrimitiveField(id, storageId, updateVersion, IntegerType.class, (type, writer) -> type.writeInt(writer, value),
+          () -> value);
+    }
+
+    /**
+     * Read the value of a {@code long} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #readIntField readIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws ClassCastException if the field's values are not {@code long}s
+     * @see #writeLongField writeLongField()
+     */
+    public synchronized long readLongField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findPrimitiveField(id, storageId, updateVersion, LongType.class);
+        if (field == null)
+            return (Long)this.readSimpleField(id, storageId, updateVersion);
+        final byte[] value = this.readSimpleFieldValue(id, field);
+        return value != null ? ((LongType)field.fieldType).readLong(new ByteReader(value)) : 0L;
+    }
+
+    /**
+     * Change the value of a {@code long} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #writeIntField writeIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @see #readLongField readLongField()
+     */
+    public void writeLongField(final ObjId id, final int storageId, final long value, final boolean updateVersion) {
+        this.writePrimitiveField(id, storageId, updateVersion, LongType.class, (type, writer) -> type.writeLong(writer, value),
+          () -> value);
+    }
+
+    /**
+     * Read the value of a {@code float} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #readIntField readIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws ClassCastException if the field's values are not {@code float}s
+     * @see #writeFloatField writeFloatField()
+     */
+    public synchronized float readFloatField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findPrimitiveField(id, storageId, updateVersion, FloatType.class);
+        if (field == null)
+            return (Float)this.readSimpleField(id, storageId, updateVersion);
+        final byte[] value = this.readSimpleFieldValue(id, field);
+        return value != null ? ((FloatType)field.fieldType).readFloat(new ByteReader(value)) : 0.0f;
+    }
+
+    /**
+     * Change the value of a {@code float} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #writeIntField writeIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @see #readFloatField readFloatField()
+     */
+    public void writeFloatField(final ObjId id, final int storageId, final float value, final boolean updateVersion) {
+        this.writePrimitiveField(id, storageId, updateVersion, FloatType.class, (type, writer) -> type.writeFloat(writer, value),
+          () -> value);
+    }
+
+    /**
+     * Read the value of a {@code double} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #readIntField readIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @return value of the field in the object
+     * @throws ClassCastException if the field's values are not {@code double}s
+     * @see #writeDoubleField writeDoubleField()
+     */
+    public synchronized double readDoubleField(ObjId id, int storageId, boolean updateVersion) {
+        final SimpleField<?> field = this.findPrimitiveField(id, storageId, updateVersion, DoubleType.class);
+        if (field == null)
+            return (Double)this.readSimpleField(id, storageId, updateVersion);
+        final byte[] value = this.readSimpleFieldValue(id, field);
+        return value != null ? ((DoubleType)field.fieldType).readDouble(new ByteReader(value)) : 0.0;
+    }
+
+    /**
+     * Change the value of a {@code double} {@link SimpleField} in an object without boxing, optionally updating
+     * the object's schema version. See {@link #writeIntField writeIntField()} for details.
+     *
+     * @param id object ID of the object
+     * @param storageId storage ID of the {@link SimpleField}
+     * @param value new value for the field
+     * @param updateVersion true to first automatically update the object's schema version, false to not change it
+     * @see #readDoubleField readDoubleField()
+     */
+    public void writeDoubleField(final ObjId id, final int storageId, final double value, final boolean updateVersion) {
+        this.writePrimitiveField(id, storageId, updateVersion, DoubleType.class, (type, writer) -> type.writeDouble(writer, value),
+          () -> value);
+    }
+
+    // Find the specified simple field for reading, or return null if it is not encoded by the given codec (use the boxed path)
+    private SimpleField<?> findPrimitiveField(ObjId id, int storageId, boolean updateVersion, Class<? extends FieldType<?>> codec) {
+        assert Thread.holdsLock(this);
+
+        // Sanity check
+        Preconditions.checkArgument(id != null, "null id");
+        this.checkStaleFieldAccess(id, storageId);
+
+        // Find field and check its encoding
+        final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+        return codec.isInstance(field.fieldType) ? field : null;
+    }
+
+    // Write a primitive simple field using the given codec; falls back to the boxed path if the field has some other encoding
+    private <T extends FieldType<?>> void writePrimitiveField(ObjId id, int storageId, boolean updateVersion,
+      Class<T> codec, BiConsumer<? super T, ByteWriter> encoder, Supplier<?> boxer) {
+        this.mutateAndNotify(id, () -> {
+
+            // Find field; if the field has some other encoding, fall back to the generic method
+            final SimpleField<?> field = this.findSimpleField(id, storageId, updateVersion);
+            if (!codec.isInstance(field.fieldType)) {
+                this.doWriteSimpleField(id, field, boxer.get());
+                return null;
+            }
+
+            // Encode and write value; only box the value if a monitor needs it
+            final ByteWriter writer = new ByteWriter(LongEncoder.MAX_ENCODED_LENGTH);
+            encoder.accept(codec.cast(field.fieldType), writer);
+            final Object newObj = this.isMonitored(id, field) ? boxer.get() : null;
+            this.doWriteSimpleField(id, field, field.nullIfDefault(writer.getBytes()), newObj);
+            return null;
+        });
+    }
+
+    // Determine whether changes to the given field in the given object need to be reported to some monitor
+    private boolean isMonitored(ObjId id, SimpleField<?> field) {
+        return !this.disableListenerNotifications && this.hasFieldMonitor(id, field.storageId);
+    }
+
     /**
      * Check for an invalid assignment to the given reference field of a deleted object.
      *
@@ -2346,27 +2778,23 @@ public class Transaction {
             }
         });
 
-        // Load (updated) object info into cache
-        return this.loadIntoCache(id);
+        // Get (updated) object info, loading it into the cache if necessary
+        info = this.objInfoCache.peek(id);
+        return info != null ? info : this.loadIntoCache(id);
     }
 
     /**
-     * Get the specified object's info from the object info cache, loading it if necessary.
+     * Load the specified object's info into the object info cache.
      *
      * @throws DeletedObjectException if object does not exist
      */
     private ObjInfo loadIntoCache(ObjId id) {
-        ObjInfo info = this.objInfoCache.get(id);
-        if (info == null) {
 
-            // Create info; we'll get an exception here if object does not exist
-            info = new ObjInfo(this, id);
+        // Create info; we'll get an exception here if object does not exist
+        final ObjInfo info = new ObjInfo(this, id);
 
-            // Add object info to the cache
-            if (this.objInfoCache.size() >= MAX_OBJ_INFO_CACHE_ENTRIES)
-                this.objInfoCache.removeOne();
-            this.objInfoCache.put(id, info);
-        }
+        // Add object info to the cache
+        this.objInfoCache.put(id, info);
         return info;
     }
 
@@ -3305,7 +3733,7 @@ public class Transaction {
         final ByteWriter writer = new ByteWriter();
         UnsignedIntEncoder.write(writer, index.storageId);
         for (SimpleField<?> field : index.fields) {
-            final byte[] value = tx != null ? tx.kvt.get(field.buildKey(id)) : null;
+            final byte[] value = tx != null ? field.fromStoredValue(tx.kvt.get(field.buildKey(id))) : null;
             writer.write(value != null ? value : field.fieldType.getDefaultValue());
         }
         id.writeTo(writer);
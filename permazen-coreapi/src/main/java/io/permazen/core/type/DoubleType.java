@@ -30,18 +30,13 @@ public class DoubleType extends NumberType<Double> {
 
     @Override
     public Double read(ByteReader reader) {
-        Preconditions.checkArgument(reader != null);
-        long bits = ByteUtil.readLong(reader);
-        bits ^= (bits & SIGN_BIT) == 0 ? NEG_XOR : POS_XOR;
-        return Double.longBitsToDouble(bits);
+        return this.readDouble(reader);
     }
 
     @Override
     public void write(ByteWriter writer, Double value) {
-        Preconditions.checkArgument(writer != null);
-        long bits = Double.doubleToLongBits(value);
-        bits ^= (bits & SIGN_BIT) != 0 ? NEG_XOR : POS_XOR;
-        ByteUtil.writeLong(writer, bits);
+        Preconditions.checkArgument(value != null, "null value");
+        this.writeDouble(writer, value);
     }
 
     @Override
@@ -60,6 +55,39 @@ public class DoubleType extends NumberType<Double> {
         return super.validate(obj);
     }
 
+// Primitive access
+
+    /**
+     * Read a {@code double} value from the given input, without boxing.
+     *
+     * @param reader byte input
+     * @return decoded value
+     * @throws IndexOutOfBoundsException if input is truncated
+     * @throws IllegalArgumentException if {@code reader} is null
+     * @see #read read()
+     */
+    public double readDouble(ByteReader reader) {
+        Preconditions.checkArgument(reader != null);
+        long bits = ByteUtil.readLong(reader);
+        bits ^= (bits & SIGN_BIT) == 0 ? NEG_XOR : POS_XOR;
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Write a {@code double} value to the given output, without boxing.
+     *
+     * @param writer byte output
+     * @param value value to write
+     * @throws IllegalArgumentException if {@code writer} is null
+     * @see #write write()
+     */
+    public void writeDouble(ByteWriter writer, double value) {
+        Preconditions.checkArgument(writer != null);
+        long bits = Double.doubleToLongBits(value);
+        bits ^= (bits & SIGN_BIT) != 0 ? NEG_XOR : POS_XOR;
+        ByteUtil.writeLong(writer, bits);
+    }
+
 // Conversion
 
     @Override
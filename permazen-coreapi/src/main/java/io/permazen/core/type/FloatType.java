@@ -34,18 +34,13 @@ public class FloatType extends NumberType<Float> {
 
     @Override
     public Float read(ByteReader reader) {
-        Preconditions.checkArgument(reader != null);
-        int bits = ByteUtil.readInt(reader);
-        bits ^= (bits & SIGN_BIT) == 0 ? NEG_XOR : POS_XOR;
-        return Float.intBitsToFloat(bits);
+        return this.readFloat(reader);
     }
 
     @Override
     public void write(ByteWriter writer, Float value) {
-        Preconditions.checkArgument(writer != null);
-        int bits = Float.floatToIntBits(value);
-        bits ^= (bits & SIGN_BIT) != 0 ? NEG_XOR : POS_XOR;
-        ByteUtil.writeInt(writer, bits);
+        Preconditions.checkArgument(value != null, "null value");
+        this.writeFloat(writer, value);
     }
 
     @Override
@@ -63,6 +58,39 @@ public class FloatType extends NumberType<Float> {
         return super.validate(obj);
     }
 
+// Primitive access
+
+    /**
+     * Read a {@code float} value from the given input, without boxing.
+     *
+     * @param reader byte input
+     * @return decoded value
+     * @throws IndexOutOfBoundsException if input is truncated
+     * @throws IllegalArgumentException if {@code reader} is null
+     * @see #read read()
+     */
+    public float readFloat(ByteReader reader) {
+        Preconditions.checkArgument(reader != null);
+        int bits = ByteUtil.readInt(reader);
+        bits ^= (bits & SIGN_BIT) == 0 ? NEG_XOR : POS_XOR;
+        return Float.intBitsToFloat(bits);
+    }
+
+    /**
+     * Write a {@code float} value to the given output, without boxing.
+     *
+     * @param writer byte output
+     * @param value value to write
+     * @throws IllegalArgumentException if {@code writer} is null
+     * @see #write write()
+     */
+    public void writeFloat(ByteWriter writer, float value) {
+        Preconditions.checkArgument(writer != null);
+        int bits = Float.floatToIntBits(value);
+        bits ^= (bits & SIGN_BIT) != 0 ? NEG_XOR : POS_XOR;
+        ByteUtil.writeInt(writer, bits);
+    }
+
 // Conversion
 
     @Override
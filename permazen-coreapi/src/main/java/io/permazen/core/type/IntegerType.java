@@ -5,6 +5,12 @@
 
 package io.permazen.core.type;
 
+import com.google.common.base.Preconditions;
+
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteWriter;
+import io.permazen.util.LongEncoder;
+
 import org.dellroad.stuff.java.Primitive;
 
 /**
@@ -36,5 +42,35 @@ public class IntegerType extends IntegralType<Integer> {
             return ((Number)obj).intValue();
         return super.validate(obj);
     }
+
+// Primitive access
+
+    /**
+     * Read an {@code int} value from the given input, without boxing.
+     *
+     * @param reader byte input
+     * @return decoded value
+     * @throws IllegalArgumentException if invalid input is encountered
+     * @throws IndexOutOfBoundsException if input is truncated
+     * @throws IllegalArgumentException if {@code reader} is null
+     * @see #read read()
+     */
+    public int readInt(ByteReader reader) {
+        Preconditions.checkArgument(reader != null);
+        return (int)LongEncoder.read(reader);
+    }
+
+    /**
+     * Write an {@code int} value to the given output, without boxing.
+     *
+     * @param writer byte output
+     * @param value value to write
+     * @throws IllegalArgumentException if {@code writer} is null
+     * @see #write write()
+     */
+    public void writeInt(ByteWriter writer, int value) {
+        Preconditions.checkArgument(writer != null);
+        LongEncoder.write(writer, value);
+    }
 }
 
@@ -5,6 +5,12 @@
 
 package io.permazen.core.type;
 
+import com.google.common.base.Preconditions;
+
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteWriter;
+import io.permazen.util.LongEncoder;
+
 import org.dellroad.stuff.java.Primitive;
 
 /**
@@ -36,5 +42,35 @@ public class LongType extends IntegralType<Long> {
             return ((Number)obj).longValue();
         return super.validate(obj);
     }
+
+// Primitive access
+
+    /**
+     * Read a {@code long} value from the given input, without boxing.
+     *
+     * @param reader byte input
+     * @return decoded value
+     * @throws IllegalArgumentException if invalid input is encountered
+     * @throws IndexOutOfBoundsException if input is truncated
+     * @throws IllegalArgumentException if {@code reader} is null
+     * @see #read read()
+     */
+    public long readLong(ByteReader reader) {
+        Preconditions.checkArgument(reader != null);
+        return LongEncoder.read(reader);
+    }
+
+    /**
+     * Write a {@code long} value to the given output, without boxing.
+     *
+     * @param writer byte output
+     * @param value value to write
+     * @throws IllegalArgumentException if {@code writer} is null
+     * @see #write write()
+     */
+    public void writeLong(ByteWriter writer, long value) {
+        Preconditions.checkArgument(writer != null);
+        LongEncoder.write(writer, value);
+    }
 }
 
@@ -11,6 +11,7 @@ import io.permazen.core.FieldType;
 import io.permazen.util.ByteReader;
 import io.permazen.util.ByteWriter;
 import io.permazen.util.ParseContext;
+import io.permazen.util.StringEncoding;
 import io.permazen.util.UnsignedIntEncoder;
 
 import org.dellroad.stuff.string.StringEncoder;
@@ -23,14 +24,14 @@ import org.dellroad.stuff.string.StringEncoder;
  * {@link UnsignedIntEncoder}, with the special exception that the characters {@code 0x0000} and {@code 0x0001}
  * are prefixed with a {@code 0x01} byte to avoid writing a {@code 0x00}. We rely on the fact that {@link UnsignedIntEncoder}
  * encodes {@code 0} and {@code 1} as {@code 0x00} and {@code 0x01}, respectively.
+ *
+ * <p>
+ * Encoding and decoding is performed by {@link StringEncoding}.
  */
 public class StringType extends NonNullFieldType<String> {
 
     private static final long serialVersionUID = -7808183397158645337L;
 
-    private static final int END = 0x00;
-    private static final int ESCAPE = 0x01;
-
     public StringType() {
        super(String.class, 0);
     }
@@ -38,64 +39,19 @@ public class StringType extends NonNullFieldType<String> {
     @Override
     public String read(ByteReader reader) {
         Preconditions.checkArgument(reader != null);
-        final StringBuilder buf = new StringBuilder();
-        while (true) {
-            int ch = UnsignedIntEncoder.read(reader);
-            switch (ch) {
-            case END:
-                return buf.toString();
-            case ESCAPE:
-                final int ch2 = reader.readByte();
-                if ((ch2 & ~1) != 0)
-                    throw new IllegalArgumentException(String.format("invalid string escape sequence 0x%02x 0x%02x", ch, ch2));
-                ch = ch2;
-                break;
-            default:
-                if ((ch & ~0xffff) != 0)
-                    throw new IllegalArgumentException(String.format("read out of range string character value 0x%08x", ch));
-                break;
-            }
-            buf.append((char)ch);
-        }
+        return StringEncoding.read(reader);
     }
 
     @Override
     public void write(ByteWriter writer, String value) {
         Preconditions.checkArgument(writer != null);
-        final int max = value.length();
-        for (int i = 0; i < max; i++) {
-            final int ch = value.charAt(i);
-            switch (ch) {
-            case END:
-            case ESCAPE:
-                writer.writeByte(ESCAPE);
-                writer.writeByte(ch);
-                break;
-            default:
-                UnsignedIntEncoder.write(writer, ch);
-                break;
-            }
-        }
-        writer.writeByte(END);
+        StringEncoding.write(writer, value);
     }
 
     @Override
     public void skip(ByteReader reader) {
         Preconditions.checkArgument(reader != null);
-        int value = reader.readByte();
-        while (true) {
-            switch (value) {
-            case END:
-                return;
-            case ESCAPE:
-                reader.skip(1);
-                break;
-            default:
-                reader.skip(UnsignedIntEncoder.decodeLength(value) - 1);
-                break;
-            }
-            value = reader.readByte();
-        }
+        StringEncoding.skip(reader);
     }
 
     @Override
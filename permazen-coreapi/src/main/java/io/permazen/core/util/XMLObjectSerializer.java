@@ -6,6 +6,7 @@
 package io.permazen.core.util;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 
 import io.permazen.core.CollectionField;
@@ -30,17 +31,28 @@ import io.permazen.schema.SchemaModel;
 import io.permazen.schema.SchemaObjectType;
 import io.permazen.util.AbstractXMLStreaming;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -143,6 +155,9 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
     public static final QName NULL_ATTR = new QName("null");
 
     private static final Pattern GENERATED_ID_PATTERN = Pattern.compile("generated:([^:]+):(.*)");
+    private static final int PARALLEL_BATCH_SIZE = 250;
+    private static final int MAX_PENDING_BATCHES_PER_THREAD = 2;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
 
     private final Transaction tx;
     private final HashMap<Integer, NameIndex> nameIndexMap = new HashMap<>();
@@ -151,6 +166,7 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
     private final ObjIdMap<ReferenceField> unresolvedReferences = new ObjIdMap<>();
     private boolean omitDefaultValueFields = true;
     private int fieldTruncationLength = -1;
+    private int parallelism = 1;
 
     /**
      * Constructor.
@@ -224,6 +240,42 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
         this.omitDefaultValueFields = omitDefaultValueFields;
     }
 
+    /**
+     * Get the number of threads used to encode objects when exporting all objects.
+     *
+     * <p>
+     * Default is 1, i.e., all work is performed in the calling thread.
+     *
+     * @return number of encoding threads
+     * @see #setParallelism setParallelism()
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Set the number of threads used to encode objects when exporting all objects.
+     *
+     * <p>
+     * When greater than one, {@link #write(OutputStream, boolean, boolean)} and {@link #write(Writer, boolean, boolean)}
+     * divide the objects into batches, which are read and encoded into XML by a pool of producer threads. The encoded batches
+     * are then streamed to the output, in order, by the calling thread. The output is equivalent, but because the
+     * {@code <objects>} element is not written via an {@link XMLStreamWriter}, whitespace may differ slightly when indenting.
+     *
+     * <p>
+     * Note that all threads read object data through the same {@link Transaction}, whose methods are {@code synchronized};
+     * therefore, only the XML encoding work actually happens in parallel, while reads from the underlying key/value store
+     * are performed one at a time. Parallelism helps most when encoding dominates, e.g., when the transaction's data
+     * is already in memory, as with a {@link io.permazen.core.SnapshotTransaction}.
+     *
+     * @param parallelism number of encoding threads
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public void setParallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism <= 0");
+        this.parallelism = parallelism;
+    }
+
     /**
      * Get all unresolved forward object references.
      *
@@ -542,6 +594,8 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
      */
     public int write(OutputStream output, boolean nameFormat, boolean indent) throws XMLStreamException {
         Preconditions.checkArgument(output != null, "null output");
+        if (this.parallelism > 1)
+            return this.writeParallel(new OutputStreamWriter(output, StandardCharsets.UTF_8), "UTF-8", nameFormat, indent);
         XMLStreamWriter xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
         if (indent)
             xmlWriter = new IndentXMLStreamWriter(xmlWriter);
@@ -561,6 +615,8 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
      */
     public int write(Writer writer, boolean nameFormat, boolean indent) throws XMLStreamException {
         Preconditions.checkArgument(writer != null, "null writer");
+        if (this.parallelism > 1)
+            return this.writeParallel(writer, null, nameFormat, indent);
         XMLStreamWriter xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
         if (indent)
             xmlWriter = new IndentXMLStreamWriter(xmlWriter);
@@ -569,6 +625,10 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
     }
 
     private int write(XMLStreamWriter writer, boolean nameFormat) throws XMLStreamException {
+        return this.write(writer, nameFormat, this.getAllObjIds());
+    }
+
+    private Iterable<ObjId> getAllObjIds() {
 
         // Gather all known object storage IDs
         final TreeSet<Integer> storageIds = new TreeSet<>();
@@ -580,8 +640,94 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
           .map(this.tx::getAll)
           .collect(Collectors.toCollection(() -> new ArrayList<>(storageIds.size())));
 
-        // Output all objects
-        return this.write(writer, nameFormat, Iterables.concat(sets));
+        // Concatenate them
+        return Iterables.concat(sets);
+    }
+
+    /**
+     * Export all objects using multiple producer threads, each of which encodes a batch of objects into an XML fragment,
+     * while this thread writes the completed fragments to the output in order. The number of outstanding batches is
+     * bounded, so memory usage does not grow with the size of the database. Object reads still serialize on the
+     * transaction's lock; see {@link #setParallelism setParallelism()}.
+     */
+    private int writeParallel(Writer output, String encoding, boolean nameFormat, boolean indent) throws XMLStreamException {
+        final String newline = indent ? "\n" : "";
+        final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, r -> {
+            final Thread thread = new Thread(r);
+            thread.setName(this.getClass().getSimpleName() + "-" + THREAD_COUNTER.incrementAndGet());
+            return thread;
+        });
+        try {
+
+            // Output document start and opening <objects> tag
+            output.write("<?xml version=\"1.0\"" + (encoding != null ? " encoding=\"" + encoding + "\"" : "") + "?>" + newline);
+            output.write("<" + OBJECTS_TAG.getLocalPart() + ">");
+
+            // Encode objects in batches
+            final int maxPending = this.parallelism * MAX_PENDING_BATCHES_PER_THREAD;
+            final ArrayDeque<Future<String>> pending = new ArrayDeque<>(maxPending);
+            ArrayList<ObjId> batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+            int count = 0;
+            for (ObjId id : this.getAllObjIds()) {
+                batch.add(id);
+                count++;
+                if (batch.size() >= PARALLEL_BATCH_SIZE) {
+                    this.writeFragments(output, pending, maxPending - 1);
+                    final ArrayList<ObjId> batch2 = batch;
+                    pending.add(executor.submit(() -> this.encodeFragment(batch2, nameFormat, indent)));
+                    batch = new ArrayList<>(PARALLEL_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                final ArrayList<ObjId> batch2 = batch;
+                pending.add(executor.submit(() -> this.encodeFragment(batch2, nameFormat, indent)));
+            }
+            this.writeFragments(output, pending, 0);
+
+            // Output closing </objects> tag
+            output.write(newline + "</" + OBJECTS_TAG.getLocalPart() + ">");
+            output.flush();
+            return count;
+        } catch (IOException e) {
+            throw new XMLStreamException("error writing output", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Write completed fragments until no more than maxPending remain
+    private void writeFragments(Writer output, ArrayDeque<Future<String>> pending, int maxPending)
+      throws XMLStreamException, IOException {
+        while (pending.size() > maxPending) {
+            try {
+                output.write(pending.removeFirst().get());
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause() != null ? e.getCause() : e;
+                Throwables.throwIfInstanceOf(cause, XMLStreamException.class);
+                Throwables.throwIfUnchecked(cause);
+                throw new XMLStreamException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new XMLStreamException("interrupted while writing objects", e);
+            }
+        }
+    }
+
+    // Encode the given objects as they would appear within an <objects> element at the same indentation level
+    private String encodeFragment(List<ObjId> ids, boolean nameFormat, boolean indent) throws XMLStreamException {
+        final StringWriter buf = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(buf);
+        if (indent)
+            writer = new IndentXMLStreamWriter(writer);
+        this.write(writer, nameFormat, ids);
+        writer.close();
+
+        // Strip the enclosing <objects> tags and any whitespace preceding the closing tag
+        final String text = buf.toString();
+        int end = text.lastIndexOf('<');
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1)))
+            end--;
+        return text.substring(text.indexOf('>') + 1, end);
     }
 
     /**
@@ -606,101 +752,105 @@ public class XMLObjectSerializer extends AbstractXMLStreaming {
         writer.writeStartElement(OBJECTS_TAG.getNamespaceURI(), OBJECTS_TAG.getLocalPart());
         int count = 0;
         for (ObjId id : objIds) {
+            this.writeObject(writer, nameFormat, id);
+            count++;
+        }
 
-            // Get object info
-            final int typeStorageId = id.getStorageId();
-            final int version = this.tx.getSchemaVersion(id);
-            final Schema schema = this.tx.getSchemas().getVersion(version);
-            final ObjType objType = schema.getObjType(typeStorageId);
-
-            // Get format info
-            final QName objectElement = nameFormat ? new QName(objType.getName()) : OBJECT_TAG;
-            final int storageIdAttr = nameFormat ? -1 : typeStorageId;
-
-            // Output fields; if all are default, output empty tag
-            boolean tagOutput = false;
-            ArrayList<Field<?>> fieldList = new ArrayList<>(objType.getFields().values());
-            if (nameFormat)
-                Collections.sort(fieldList, Comparator.comparing(Field::getName));
-            for (Field<?> field : fieldList) {
-
-                // Determine if field equals its default value; if so, skip it
-                if (this.omitDefaultValueFields && field.hasDefaultValue(this.tx, id))
-                    continue;
-
-                // Output <object> opening tag if not output yet
-                if (!tagOutput) {
-                    this.writeOpenTag(writer, false, objectElement, storageIdAttr, id, version);
-                    tagOutput = true;
-                }
+        // Done
+        writer.writeEndElement();
+        writer.flush();
+        return count;
+    }
 
-                // Get tag name
-                final QName fieldTag = nameFormat ? new QName(field.getName()) : FIELD_TAG;
+// Internal methods
 
-                // Special case for simple fields, which use empty tags when null
-                if (field instanceof SimpleField) {
-                    final Object value = this.tx.readSimpleField(id, field.getStorageId(), false);
-                    if (value == null || this.fieldTruncationLength == 0)
-                        writer.writeEmptyElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
-                    else
-                        writer.writeStartElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
-                    if (!nameFormat)
-                        this.writeAttribute(writer, STORAGE_ID_ATTR, field.getStorageId());
-                    if (value != null && this.fieldTruncationLength != 0) {
-                        this.writeSimpleFieldText(writer, (SimpleField<?>)field, value);
-                        writer.writeEndElement();
-                    } else if (value == null)
-                        this.writeAttribute(writer, NULL_ATTR, "true");
-                    continue;
-                }
+    private void writeObject(XMLStreamWriter writer, boolean nameFormat, ObjId id) throws XMLStreamException {
 
-                // Output field opening tag
-                writer.writeStartElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
-                if (!nameFormat)
-                    this.writeAttribute(writer, STORAGE_ID_ATTR, field.getStorageId());
+        // Get object info
+        final int typeStorageId = id.getStorageId();
+        final int version = this.tx.getSchemaVersion(id);
+        final Schema schema = this.tx.getSchemas().getVersion(version);
+        final ObjType objType = schema.getObjType(typeStorageId);
 
-                // Output field value
-                if (field instanceof CounterField)
-                    writer.writeCharacters("" + this.tx.readCounterField(id, field.getStorageId(), false));
-                else if (field instanceof CollectionField) {
-                    final SimpleField<?> elementField = ((CollectionField<?, ?>)field).getElementField();
-                    final Iterable<?> collection = field instanceof SetField ?
-                      this.tx.readSetField(id, field.getStorageId(), false) :
-                      this.tx.readListField(id, field.getStorageId(), false);
-                    for (Object element : collection)
-                        this.writeSimpleTag(writer, ELEMENT_TAG, elementField, element);
-                } else if (field instanceof MapField) {
-                    final SimpleField<?> keyField = ((MapField<?, ?>)field).getKeyField();
-                    final SimpleField<?> valueField = ((MapField<?, ?>)field).getValueField();
-                    for (Map.Entry<?, ?> entry : this.tx.readMapField(id, field.getStorageId(), false).entrySet()) {
-                        writer.writeStartElement(ENTRY_TAG.getNamespaceURI(), ENTRY_TAG.getLocalPart());
-                        this.writeSimpleTag(writer, KEY_TAG, keyField, entry.getKey());
-                        this.writeSimpleTag(writer, VALUE_TAG, valueField, entry.getValue());
-                        writer.writeEndElement();
-                    }
-                } else
-                    throw new RuntimeException("internal error: " + field);
+        // Get format info
+        final QName objectElement = nameFormat ? new QName(objType.getName()) : OBJECT_TAG;
+        final int storageIdAttr = nameFormat ? -1 : typeStorageId;
+
+        // Output fields; if all are default, output empty tag
+        boolean tagOutput = false;
+        ArrayList<Field<?>> fieldList = new ArrayList<>(objType.getFields().values());
+        if (nameFormat)
+            Collections.sort(fieldList, Comparator.comparing(Field::getName));
+        for (Field<?> field : fieldList) {
+
+            // Determine if field equals its default value; if so, skip it
+            if (this.omitDefaultValueFields && field.hasDefaultValue(this.tx, id))
+                continue;
 
-                // Output field closing tag
-                writer.writeEndElement();
+            // Output <object> opening tag if not output yet
+            if (!tagOutput) {
+                this.writeOpenTag(writer, false, objectElement, storageIdAttr, id, version);
+                tagOutput = true;
             }
 
-            // Output empty opening tag if not output yet, otherwise closing tag
-            if (!tagOutput)
-                this.writeOpenTag(writer, true, objectElement, storageIdAttr, id, version);
-            else
-                writer.writeEndElement();
-            count++;
+            // Get tag name
+            final QName fieldTag = nameFormat ? new QName(field.getName()) : FIELD_TAG;
+
+            // Special case for simple fields, which use empty tags when null
+            if (field instanceof SimpleField) {
+                final Object value = this.tx.readSimpleField(id, field.getStorageId(), false);
+                if (value == null || this.fieldTruncationLength == 0)
+                    writer.writeEmptyElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
+                else
+                    writer.writeStartElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
+                if (!nameFormat)
+                    this.writeAttribute(writer, STORAGE_ID_ATTR, field.getStorageId());
+                if (value != null && this.fieldTruncationLength != 0) {
+                    this.writeSimpleFieldText(writer, (SimpleField<?>)field, value);
+                    writer.writeEndElement();
+                } else if (value == null)
+                    this.writeAttribute(writer, NULL_ATTR, "true");
+                continue;
+            }
+
+            // Output field opening tag
+            writer.writeStartElement(fieldTag.getNamespaceURI(), fieldTag.getLocalPart());
+            if (!nameFormat)
+                this.writeAttribute(writer, STORAGE_ID_ATTR, field.getStorageId());
+
+            // Output field value
+            if (field instanceof CounterField)
+                writer.writeCharacters("" + this.tx.readCounterField(id, field.getStorageId(), false));
+            else if (field instanceof CollectionField) {
+                final SimpleField<?> elementField = ((CollectionField<?, ?>)field).getElementField();
+                final Iterable<?> collection = field instanceof SetField ?
+                  this.tx.readSetField(id, field.getStorageId(), false) :
+                  this.tx.readListField(id, field.getStorageId(), false);
+                for (Object element : collection)
+                    this.writeSimpleTag(writer, ELEMENT_TAG, elementField, element);
+            } else if (field instanceof MapField) {
+                final SimpleField<?> keyField = ((MapField<?, ?>)field).getKeyField();
+                final SimpleField<?> valueField = ((MapField<?, ?>)field).getValueField();
+                for (Map.Entry<?, ?> entry : this.tx.readMapField(id, field.getStorageId(), false).entrySet()) {
+                    writer.writeStartElement(ENTRY_TAG.getNamespaceURI(), ENTRY_TAG.getLocalPart());
+                    this.writeSimpleTag(writer, KEY_TAG, keyField, entry.getKey());
+                    this.writeSimpleTag(writer, VALUE_TAG, valueField, entry.getValue());
+                    writer.writeEndElement();
+                }
+            } else
+                throw new RuntimeException("internal error: " + field);
+
+            // Output field closing tag
+            writer.writeEndElement();
         }
 
-        // Done
-        writer.writeEndElement();
-        writer.flush();
-        return count;
+        // Output empty opening tag if not output yet, otherwise closing tag
+        if (!tagOutput)
+            this.writeOpenTag(writer, true, objectElement, storageIdAttr, id, version);
+        else
+            writer.writeEndElement();
     }
 
-// Internal methods
-
     private void writeSimpleTag(XMLStreamWriter writer, QName tag, SimpleField<?> field, Object value)
       throws XMLStreamException {
         if (value != null && this.fieldTruncationLength != 0) {
@@ -34,6 +34,8 @@ public abstract class ComplexSchemaField extends SchemaField {
             if (subField == null)
                 throw new InvalidSchemaException("invalid " + this + ": missing sub-field `" + subFieldName + "'");
             subField.validate();
+            if (subField.isCompressed())
+                throw new InvalidSchemaException("invalid " + this + ": sub-" + subField + " cannot be compressed");
             if (!subFieldName.equals(subField.getName())) {
                 throw new InvalidSchemaException("sub-" + subField + " of " + this + " has the wrong name `"
                   + subField.getName() + "' != `" + subFieldName + "'");
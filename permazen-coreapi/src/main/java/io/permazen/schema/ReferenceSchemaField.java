@@ -125,6 +125,8 @@ public class ReferenceSchemaField extends SimpleSchemaField {
             throw new IllegalArgumentException("invalid " + this + ": reference fields must always be indexed");
         if (this.getEncodingSignature() != 0)
             throw new IllegalArgumentException("invalid " + this + ": encoding signature must be zero");
+        if (this.isCompressed())
+            throw new InvalidSchemaException("invalid " + this + ": reference fields cannot be compressed");
         if (this.onDelete == null)
             throw new InvalidSchemaException("invalid " + this + ": no delete action specified");
         if (this.onDelete == DeleteAction.NOTHING && (!this.allowDeleted || !this.allowDeletedSnapshot)) {
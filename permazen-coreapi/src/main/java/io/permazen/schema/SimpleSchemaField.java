@@ -27,6 +27,8 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
     private String type;
     private long encodingSignature;
     private boolean indexed;
+    private boolean compressed;
+    private String compressionDictionary;
 
     /**
      * Get the name of this field's type. For example {@code "int"} for primitive integer type,
@@ -55,6 +57,45 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         this.indexed = indexed;
     }
 
+    /**
+     * Get whether this field's values are compressed when stored.
+     *
+     * <p>
+     * Compression only affects how field values are stored in the key/value store; index entries
+     * always contain the uncompressed encoding. Compression is only supported for non-reference
+     * simple fields that are not sub-fields of a complex field.
+     *
+     * @return true if this field's values are compressed
+     */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+    public void setCompressed(boolean compressed) {
+        this.verifyNotLockedDown();
+        this.compressed = compressed;
+    }
+
+    /**
+     * Get the preset compression dictionary for this field, if any.
+     *
+     * <p>
+     * The dictionary should contain byte sequences that occur commonly in this field's encoded values;
+     * its UTF-8 encoding is used as the preset dictionary when compressing values. Because the dictionary
+     * is part of the schema, it is recorded in the database meta-data along with each schema version.
+     *
+     * <p>
+     * Ignored unless this field is {@linkplain #isCompressed compressed}.
+     *
+     * @return compression dictionary, or null for none
+     */
+    public String getCompressionDictionary() {
+        return this.compressionDictionary;
+    }
+    public void setCompressionDictionary(String compressionDictionary) {
+        this.verifyNotLockedDown();
+        this.compressionDictionary = compressionDictionary;
+    }
+
     /**
      * Get the encoding signature associated with this field's type.
      *
@@ -75,6 +116,8 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
     void validate() {
         super.validate();
         this.validateType();
+        if (this.compressionDictionary != null && !this.compressed)
+            throw new InvalidSchemaException("invalid " + this + ": compression dictionary given but compression is not enabled");
     }
 
     void validateType() {
@@ -102,7 +145,9 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         final SimpleSchemaField that = (SimpleSchemaField)field;
         return this.isCompatibleType(that)
           && this.encodingSignature == that.encodingSignature
-          && this.indexed == that.indexed;
+          && this.indexed == that.indexed
+          && this.compressed == that.compressed
+          && Objects.equals(this.compressionDictionary, that.compressionDictionary);
     }
 
     boolean isCompatibleType(SimpleSchemaField that) {
@@ -115,6 +160,10 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         this.writeFieldTypeCompatibilityHashData(output);
         output.writeLong(this.encodingSignature);
         output.writeBoolean(this.indexed);
+        if (this.compressed) {                                          // preserve hash of schemas without compression
+            output.writeBoolean(true);
+            output.writeUTF(this.compressionDictionary != null ? this.compressionDictionary : "");
+        }
     }
 
     void writeFieldTypeCompatibilityHashData(DataOutputStream output) throws IOException {
@@ -131,6 +180,10 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
             diffs.add("changed field type encoding signature from " + that.encodingSignature + " to " + this.encodingSignature);
         if (this.indexed != that.indexed)
             diffs.add((this.indexed ? "added" : "removed") + " index on field");
+        if (this.compressed != that.compressed)
+            diffs.add((this.compressed ? "enabled" : "disabled") + " compression");
+        else if (!Objects.equals(this.compressionDictionary, that.compressionDictionary))
+            diffs.add("changed compression dictionary");
         return diffs;
     }
 
@@ -150,6 +203,12 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         final Boolean indexedAttr = this.getBooleanAttr(reader, XMLConstants.INDEXED_ATTRIBUTE, false);
         if (indexedAttr != null)
             this.setIndexed(indexedAttr);
+        final Boolean compressedAttr = this.getBooleanAttr(reader, XMLConstants.COMPRESSED_ATTRIBUTE, false);
+        if (compressedAttr != null)
+            this.setCompressed(compressedAttr);
+        final String compressionDictionaryAttr = this.getAttr(reader, XMLConstants.COMPRESSION_DICTIONARY_ATTRIBUTE, false);
+        if (compressionDictionaryAttr != null)
+            this.setCompressionDictionary(compressionDictionaryAttr);
         final Long encodingSignatureAttr = this.getLongAttr(reader, XMLConstants.ENCODING_SIGNATURE_ATTRIBUTE, false);
         if (encodingSignatureAttr != null)
             this.setEncodingSignature(encodingSignatureAttr);
@@ -183,6 +242,14 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
             writer.writeAttribute(XMLConstants.INDEXED_ATTRIBUTE.getNamespaceURI(),
               XMLConstants.INDEXED_ATTRIBUTE.getLocalPart(), "" + this.indexed);
         }
+        if (this.compressed) {
+            writer.writeAttribute(XMLConstants.COMPRESSED_ATTRIBUTE.getNamespaceURI(),
+              XMLConstants.COMPRESSED_ATTRIBUTE.getLocalPart(), "" + this.compressed);
+        }
+        if (this.compressionDictionary != null) {
+            writer.writeAttribute(XMLConstants.COMPRESSION_DICTIONARY_ATTRIBUTE.getNamespaceURI(),
+              XMLConstants.COMPRESSION_DICTIONARY_ATTRIBUTE.getLocalPart(), this.compressionDictionary);
+        }
     }
 
     void writeTypeAttribute(XMLStreamWriter writer) throws XMLStreamException {
@@ -210,7 +277,9 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         final SimpleSchemaField that = (SimpleSchemaField)obj;
         return Objects.equals(this.type, that.type)
           && this.encodingSignature == that.encodingSignature
-          && this.indexed == that.indexed;
+          && this.indexed == that.indexed
+          && this.compressed == that.compressed
+          && Objects.equals(this.compressionDictionary, that.compressionDictionary);
     }
 
     @Override
@@ -218,7 +287,9 @@ public class SimpleSchemaField extends SchemaField implements DiffGenerating<Sim
         return super.hashCode()
           ^ Objects.hashCode(this.type)
           ^ ((Long)this.encodingSignature).hashCode()
-          ^ (this.indexed ? 1 : 0);
+          ^ (this.indexed ? 1 : 0)
+          ^ (this.compressed ? 2 : 0)
+          ^ Objects.hashCode(this.compressionDictionary);
     }
 
 // Cloneable
@@ -32,6 +32,8 @@ public final class XMLConstants {
     public static final QName ALLOW_DELETED_ATTRIBUTE = new QName("allowDeleted");
     public static final QName ALLOW_DELETED_SNAPSHOT_ATTRIBUTE = new QName("allowDeletedSnapshot");
     public static final QName CASCADE_DELETE_ATTRIBUTE = new QName("cascadeDelete");
+    public static final QName COMPRESSED_ATTRIBUTE = new QName("compressed");
+    public static final QName COMPRESSION_DICTIONARY_ATTRIBUTE = new QName("compressionDictionary");
     public static final QName DIMENSIONS_ATTRIBUTE = new QName("dimensions");
     public static final QName ENCODING_SIGNATURE_ATTRIBUTE = new QName("encodingSignature");
     public static final QName FORMAT_VERSION_ATTRIBUTE = new QName("formatVersion");
@@ -0,0 +1,163 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+import io.permazen.tuple.Tuple2;
+import io.permazen.util.ByteWriter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompressedFieldTest extends CoreAPITestSupport {
+
+    @Test
+    public void testCompressedField() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+
+        final SchemaModel schema1 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"text\" type=\"java.lang.String\" storageId=\"2\" indexed=\"true\"\n"
+          + "      compressed=\"true\" compressionDictionary=\"the quick brown fox\"/>\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"3\"/>\n"
+          + "    <CompositeIndex name=\"ix\" storageId=\"4\">\n"
+          + "      <IndexedField storageId=\"2\"/>\n"
+          + "      <IndexedField storageId=\"3\"/>\n"
+          + "    </CompositeIndex>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final SchemaModel schema2 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"text\" type=\"java.lang.String\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"3\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        Assert.assertFalse(schema1.isCompatibleWith(schema2));
+        Assert.assertNotEquals(schema1.autogenerateVersion(), schema2.autogenerateVersion());
+
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            buf.append("the quick brown fox ");
+        final String longText = buf.toString();
+        final String shortText = "fox";
+
+        final Database db = new Database(kvstore);
+
+        // Write values in version 1
+        Transaction tx = db.createTransaction(schema1, 1, true);
+        final ObjId id1 = tx.create(1);
+        final ObjId id2 = tx.create(1);
+        tx.writeSimpleField(id1, 2, longText, false);
+        tx.writeSimpleField(id1, 3, 123, false);
+        tx.writeSimpleField(id2, 2, shortText, false);
+
+        // Verify values are stored compressed (or not, if too short)
+        final byte[] longEncoded = this.encode(longText);
+        final byte[] longStored = tx.getKVTransaction().get(Field.buildKey(id1, 2));
+        Assert.assertTrue(longStored.length < longEncoded.length / 10, "stored length " + longStored.length);
+        final byte[] shortEncoded = this.encode(shortText);
+        final byte[] shortStored = tx.getKVTransaction().get(Field.buildKey(id2, 2));
+        Assert.assertEquals(shortStored.length, shortEncoded.length + 1);
+
+        // Verify reads and indexes are not affected
+        Assert.assertEquals(tx.readSimpleField(id1, 2, false), longText);
+        Assert.assertEquals(tx.readSimpleField(id2, 2, false), shortText);
+        Assert.assertEquals(tx.queryIndex(2).asMap().get(longText), buildSet(id1));
+        Assert.assertEquals(tx.queryIndex(2).asMap().get(shortText), buildSet(id2));
+        Assert.assertEquals(tx.queryCompositeIndex2(4).asMap().get(new Tuple2<>(longText, 123)), buildSet(id1));
+
+        // Change value
+        tx.writeSimpleField(id1, 2, longText + "jumps", false);
+        Assert.assertEquals(tx.readSimpleField(id1, 2, false), longText + "jumps");
+        Assert.assertEquals(tx.queryIndex(2).asMap().get(longText), null);
+        Assert.assertEquals(tx.queryIndex(2).asMap().get(longText + "jumps"), buildSet(id1));
+        Assert.assertEquals(tx.queryCompositeIndex2(4).asMap().get(new Tuple2<>(longText + "jumps", 123)), buildSet(id1));
+        tx.commit();
+
+        // Upgrade to version 2, in which compression is disabled
+        tx = db.createTransaction(schema2, 2, true);
+        Assert.assertTrue(tx.updateSchemaVersion(id1));
+        Assert.assertEquals(tx.getKVTransaction().get(Field.buildKey(id1, 2)), this.encode(longText + "jumps"));
+        Assert.assertEquals(tx.readSimpleField(id1, 2, false), longText + "jumps");
+        Assert.assertEquals(tx.readSimpleField(id2, 2, true), shortText);
+        Assert.assertEquals(tx.getKVTransaction().get(Field.buildKey(id2, 2)), shortEncoded);
+        Assert.assertEquals(tx.queryIndex(2).asMap().get(shortText), buildSet(id2));
+        tx.commit();
+    }
+
+    @Test
+    public void testLayoutCompression() throws Exception {
+        final byte[] dictionary = "abcdefghij".getBytes(StandardCharsets.UTF_8);
+        for (int length : new int[] { 0, 1, 31, 32, 100, 5000 }) {
+            final byte[] value = new byte[length];
+            for (int i = 0; i < length; i++)
+                value[i] = (byte)('a' + (i % 10));
+            for (byte[] dict : Arrays.asList(null, dictionary)) {
+                final byte[] compressed = Layout.compressFieldValue(value, dict);
+                Assert.assertTrue(compressed.length <= value.length + 1);
+                Assert.assertEquals(Layout.decompressFieldValue(compressed, dict), value);
+            }
+        }
+
+        // Random data is not compressible
+        final byte[] random = new byte[500];
+        this.random.nextBytes(random);
+        Assert.assertEquals(Layout.compressFieldValue(random, null).length, random.length + 1);
+
+        // Invalid data
+        for (byte[] value : Arrays.asList(new byte[0], new byte[] { (byte)0x02 }, new byte[] { (byte)0x01, (byte)0xff })) {
+            try {
+                Layout.decompressFieldValue(value, null);
+                assert false;
+            } catch (IllegalArgumentException e) {
+                this.log.info("got expected " + e);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidCompressedFields() throws Exception {
+        for (String field : new String[] {
+            "<ReferenceField name=\"ref\" storageId=\"2\" compressed=\"true\"/>",
+            "<SimpleField name=\"val\" type=\"int\" storageId=\"2\" compressionDictionary=\"foo\"/>",
+            "<SetField name=\"set\" storageId=\"2\"><SimpleField type=\"int\" storageId=\"3\" compressed=\"true\"/></SetField>",
+          }) {
+            try {
+                SchemaModel.fromXML(new ByteArrayInputStream((
+                    "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                  + "<Schema formatVersion=\"1\">\n"
+                  + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+                  + "    " + field + "\n"
+                  + "  </ObjectType>\n"
+                  + "</Schema>\n"
+                  ).getBytes("UTF-8"))).validate();
+                assert false;
+            } catch (InvalidSchemaException e) {
+                this.log.info("got expected " + e);
+            }
+        }
+    }
+
+    private byte[] encode(String value) {
+        final ByteWriter writer = new ByteWriter();
+        FieldTypeRegistry.STRING.write(writer, value);
+        return writer.getBytes();
+    }
+}
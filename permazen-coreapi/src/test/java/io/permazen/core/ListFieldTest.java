@@ -0,0 +1,116 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+import io.permazen.tuple.Tuple3;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class ListFieldTest extends CoreAPITestSupport {
+
+    @Test(dataProvider = "indexed")
+    @SuppressWarnings("unchecked")
+    public void testRandomListOperations(boolean indexed) throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final Database db = new Database(kvstore);
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <ListField name=\"list\" storageId=\"20\">\n"
+          + "        <SimpleField type=\"int\" storageId=\"21\" indexed=\"" + indexed + "\"/>\n"
+          + "    </ListField>"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id1 = tx.create(1);
+        final ObjId id2 = tx.create(1);
+        final List<Integer> list1 = (List<Integer>)tx.readListField(id1, 20, false);
+        final List<Integer> list2 = (List<Integer>)tx.readListField(id2, 20, false);
+        final ArrayList<Integer> expected1 = new ArrayList<>();
+        final ArrayList<Integer> expected2 = new ArrayList<>();
+
+        // Mutate both lists so their entries (and index entries) are interleaved
+        for (int count = 0; count < 1000; count++) {
+            final boolean first = this.random.nextBoolean();
+            final List<Integer> list = first ? list1 : list2;
+            final ArrayList<Integer> expected = first ? expected1 : expected2;
+            final int size = expected.size();
+            final int index = this.random.nextInt(size + 1);
+            final int max = index + this.random.nextInt(size - index + 1);
+            final int op = this.random.nextInt(100);
+            if (op < 25) {
+                final int value = this.randomValue();
+                list.add(index, value);
+                expected.add(index, value);
+            } else if (op < 45) {
+                final ArrayList<Integer> values = new ArrayList<>();
+                for (int i = this.random.nextInt(6); i > 0; i--)
+                    values.add(this.randomValue());
+                Assert.assertEquals(list.addAll(index, values), expected.addAll(index, values));
+            } else if (op < 65) {
+                if (size == 0)
+                    continue;
+                final int i = this.random.nextInt(size);
+                Assert.assertEquals(list.remove(i), expected.remove(i));
+            } else if (op < 80) {
+                list.subList(index, max).clear();
+                expected.subList(index, max).clear();
+            } else if (op < 97) {
+                if (size == 0)
+                    continue;
+                final int i = this.random.nextInt(size);
+                final int value = this.randomValue();
+                Assert.assertEquals(list.set(i, value), expected.set(i, value));
+            } else {
+                list.clear();
+                expected.clear();
+            }
+
+            // Verify contents and index
+            Assert.assertEquals(list1, expected1, "mismatch after operation #" + count);
+            Assert.assertEquals(list2, expected2, "mismatch after operation #" + count);
+            if (indexed) {
+                final Set<Tuple3<Integer, ObjId, Integer>> expectedIndex = new HashSet<>();
+                for (int i = 0; i < expected1.size(); i++)
+                    expectedIndex.add(new Tuple3<>(expected1.get(i), id1, i));
+                for (int i = 0; i < expected2.size(); i++)
+                    expectedIndex.add(new Tuple3<>(expected2.get(i), id2, i));
+                final Set<Tuple3<Integer, ObjId, Integer>> actualIndex
+                  = new HashSet<>((Set<Tuple3<Integer, ObjId, Integer>>)(Object)tx.queryListElementIndex(21).asSet());
+                Assert.assertEquals(actualIndex, expectedIndex, "index mismatch after operation #" + count);
+            }
+        }
+        tx.commit();
+    }
+
+    // Use a small value range so lists contain runs of equal values
+    private int randomValue() {
+        return this.random.nextInt(4);
+    }
+
+    @DataProvider(name = "indexed")
+    public Object[][] genIndexed() {
+        return new Object[][] {
+            { false },
+            { true },
+        };
+    }
+}
@@ -0,0 +1,122 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.kv.util.LatencyKVDatabase;
+import io.permazen.schema.SchemaModel;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LoadObjectsTest extends CoreAPITestSupport {
+
+    @Test
+    public void testLoadObjects() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+        final Database db = new Database(kvstore);
+
+        // Create objects
+        final ArrayList<ObjId> ids = new ArrayList<>();
+        Transaction tx = db.createTransaction(schema, 1, true);
+        for (int i = 0; i < 20; i++)
+            ids.add(tx.create(1));
+        tx.commit();
+
+        // Add some bogus IDs
+        final ArrayList<ObjId> loadIds = new ArrayList<>(ids);
+        loadIds.add(new ObjId(1));
+        loadIds.add(new ObjId(99));
+        loadIds.add(ids.get(0));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (boolean concurrent : new boolean[] { false, true }) {
+                tx = db.createTransaction(schema, 1, true);
+                Assert.assertEquals(tx.loadObjects(loadIds, concurrent ? executor : null), ids.size());
+
+                // Objects should now be cached
+                final long misses = tx.getObjInfoCacheMisses();
+                for (ObjId id : ids)
+                    Assert.assertTrue(tx.exists(id));
+                Assert.assertEquals(tx.getObjInfoCacheMisses(), misses);
+
+                // Loading again finds them in the cache
+                Assert.assertEquals(tx.loadObjects(ids, null), ids.size());
+                tx.commit();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRoundTrips() throws Exception {
+
+        final LatencyKVDatabase kvdb = new LatencyKVDatabase(new SimpleKVDatabase());
+        kvdb.setReadLatency(100);
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+        final Database db = new Database(kvdb);
+
+        // Create objects
+        final ArrayList<ObjId> ids = new ArrayList<>();
+        Transaction tx = db.createTransaction(schema, 1, true);
+        for (int i = 0; i < 50; i++) {
+            final ObjId id = tx.create(1);
+            tx.writeSimpleField(id, 2, i, false);
+            ids.add(id);
+        }
+        tx.commit();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+
+            // Without preloading, each field read requires two round trips (meta-data + field)
+            tx = db.createTransaction(schema, 1, true);
+            kvdb.resetStatistics();
+            for (ObjId id : ids)
+                tx.readSimpleField(id, 2, false);
+            final double unloaded = (double)kvdb.getRoundTrips() / ids.size();
+            tx.rollback();
+
+            // With preloading, each field read requires one round trip
+            tx = db.createTransaction(schema, 1, true);
+            Assert.assertEquals(tx.loadObjects(ids, executor), ids.size());
+            kvdb.resetStatistics();
+            for (ObjId id : ids)
+                tx.readSimpleField(id, 2, false);
+            final double preloaded = (double)kvdb.getRoundTrips() / ids.size();
+            tx.rollback();
+
+            this.log.info("round trips per field read: unloaded={} preloaded={}", unloaded, preloaded);
+            Assert.assertEquals(unloaded, 2.0);
+            Assert.assertEquals(preloaded, 1.0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
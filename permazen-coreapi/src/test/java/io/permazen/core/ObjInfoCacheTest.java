@@ -0,0 +1,138 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ObjInfoCacheTest extends CoreAPITestSupport {
+
+    @Test
+    public void testScanResistance() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"2\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+        final Database db = new Database(kvstore);
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        tx.setObjInfoCacheCapacity(100);
+        Assert.assertEquals(tx.getObjInfoCacheCapacity(), 100);
+
+        // Create objects
+        final ArrayList<ObjId> hot = new ArrayList<>();
+        final ArrayList<ObjId> cold = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            hot.add(tx.create(1));
+        for (int i = 0; i < 2000; i++)
+            cold.add(tx.create(1));
+
+        // Access hot objects repeatedly
+        for (int i = 0; i < 3; i++) {
+            for (ObjId id : hot)
+                tx.readSimpleField(id, 2, false);
+        }
+
+        // Scan cold objects once
+        final long misses1 = tx.getObjInfoCacheMisses();
+        for (ObjId id : cold)
+            tx.readSimpleField(id, 2, false);
+        Assert.assertTrue(tx.getObjInfoCacheMisses() - misses1 >= cold.size() - 100);
+
+        // Hot objects should all still be cached
+        final long hits = tx.getObjInfoCacheHits();
+        final long misses2 = tx.getObjInfoCacheMisses();
+        for (ObjId id : hot)
+            tx.readSimpleField(id, 2, false);
+        Assert.assertEquals(tx.getObjInfoCacheHits() - hits, hot.size());
+        Assert.assertEquals(tx.getObjInfoCacheMisses(), misses2);
+
+        // Shrink cache
+        tx.setObjInfoCacheCapacity(10);
+        for (ObjId id : hot)
+            tx.readSimpleField(id, 2, false);
+        Assert.assertTrue(tx.getObjInfoCacheMisses() > misses2);
+
+        // Deleted objects are not found
+        Assert.assertTrue(tx.delete(hot.get(0)));
+        Assert.assertFalse(tx.exists(hot.get(0)));
+        try {
+            tx.readSimpleField(hot.get(0), 2, false);
+            assert false;
+        } catch (DeletedObjectException e) {
+            // expected
+        }
+        tx.commit();
+    }
+
+    @Test
+    public void testScanResistanceMultipleFields() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"a\" type=\"int\" storageId=\"2\"/>\n"
+          + "    <SimpleField name=\"b\" type=\"int\" storageId=\"3\"/>\n"
+          + "    <SimpleField name=\"c\" type=\"java.lang.String\" storageId=\"4\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+        final Database db = new Database(kvstore);
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        tx.setObjInfoCacheCapacity(100);
+
+        // Create objects
+        final ArrayList<ObjId> hot = new ArrayList<>();
+        final ArrayList<ObjId> cold = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            hot.add(tx.create(1));
+        for (int i = 0; i < 2000; i++)
+            cold.add(tx.create(1));
+
+        // Touch hot objects beforehand
+        for (int i = 0; i < 2; i++) {
+            for (ObjId id : hot)
+                tx.readSimpleField(id, 2, false);
+        }
+
+        // Scan cold objects, reading several fields of each; repeated reads of an object don't count as re-references
+        final long hits1 = tx.getObjInfoCacheHits();
+        final long misses1 = tx.getObjInfoCacheMisses();
+        for (ObjId id : cold) {
+            tx.readSimpleField(id, 2, false);
+            tx.readSimpleField(id, 3, false);
+            tx.readSimpleField(id, 4, false);
+        }
+        Assert.assertEquals(tx.getObjInfoCacheMisses() - misses1, cold.size());
+        Assert.assertEquals(tx.getObjInfoCacheHits(), hits1);
+
+        // Hot objects should all still be cached
+        final long hits2 = tx.getObjInfoCacheHits();
+        final long misses2 = tx.getObjInfoCacheMisses();
+        for (ObjId id : hot) {
+            tx.readSimpleField(id, 2, false);
+            tx.readSimpleField(id, 4, false);
+        }
+        Assert.assertEquals(tx.getObjInfoCacheHits() - hits2, hot.size());
+        Assert.assertEquals(tx.getObjInfoCacheMisses(), misses2);
+        tx.commit();
+    }
+}
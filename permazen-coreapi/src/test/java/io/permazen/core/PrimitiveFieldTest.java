@@ -0,0 +1,128 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+import io.permazen.tuple.Tuple2;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PrimitiveFieldTest extends CoreAPITestSupport {
+
+    @Test
+    public void testPrimitiveFields() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final Database db = new Database(kvstore);
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"2\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"j\" type=\"long\" storageId=\"3\"/>\n"
+          + "    <SimpleField name=\"f\" type=\"float\" storageId=\"4\"/>\n"
+          + "    <SimpleField name=\"d\" type=\"double\" storageId=\"5\" indexed=\"true\"/>\n"
+          + "    <SimpleField name=\"s\" type=\"short\" storageId=\"6\"/>\n"
+          + "    <CompositeIndex name=\"ix\" storageId=\"7\">\n"
+          + "      <IndexedField storageId=\"3\"/>\n"
+          + "      <IndexedField storageId=\"4\"/>\n"
+          + "    </CompositeIndex>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        final ObjId id = tx.create(1);
+
+        // Check default values
+        Assert.assertEquals(tx.readIntField(id, 2, true), 0);
+        Assert.assertEquals(tx.readLongField(id, 3, true), 0L);
+        Assert.assertEquals(tx.readFloatField(id, 4, true), 0.0f);
+        Assert.assertEquals(tx.readDoubleField(id, 5, true), 0.0);
+
+        // Monitor field "i"
+        final List<String> changes = new ArrayList<>();
+        tx.addSimpleFieldChangeListener(2, new int[0], null, new SimpleFieldChangeListener() {
+            @Override
+            public <T> void onSimpleFieldChange(Transaction tx, ObjId id,
+              SimpleField<T> field, int[] path, NavigableSet<ObjId> referrers, T oldValue, T newValue) {
+                changes.add(oldValue + "->" + newValue);
+            }
+        });
+
+        // Write random values and verify primitive and boxed reads agree
+        int expectedChanges = 0;
+        int prev = 0;
+        for (int count = 0; count < 200; count++) {
+            final int i = this.random.nextInt(4) == 0 ? 0 : this.random.nextInt();
+            final long j = this.random.nextLong();
+            final float f = this.random.nextFloat() - 0.5f;
+            final double d = this.random.nextInt(4) == 0 ? 0.0 : this.random.nextGaussian();
+
+            tx.writeIntField(id, 2, i, true);
+            tx.writeLongField(id, 3, j, true);
+            tx.writeFloatField(id, 4, f, true);
+            tx.writeDoubleField(id, 5, d, true);
+            if (i != prev)
+                expectedChanges++;
+            prev = i;
+
+            Assert.assertEquals(tx.readIntField(id, 2, true), i);
+            Assert.assertEquals(tx.readLongField(id, 3, true), j);
+            Assert.assertEquals(tx.readFloatField(id, 4, true), f);
+            Assert.assertEquals(tx.readDoubleField(id, 5, true), d);
+            Assert.assertEquals(tx.readSimpleField(id, 2, true), i);
+            Assert.assertEquals(tx.readSimpleField(id, 3, true), j);
+            Assert.assertEquals(tx.readSimpleField(id, 4, true), f);
+            Assert.assertEquals(tx.readSimpleField(id, 5, true), d);
+
+            // Default values are not stored
+            Assert.assertEquals(tx.getKVTransaction().get(Field.buildKey(id, 2)) == null, i == 0);
+
+            // Verify indexes
+            Assert.assertEquals(tx.queryIndex(2).asMap().keySet(), buildSet(i));
+            Assert.assertEquals(tx.queryIndex(5).asMap().keySet(), buildSet(d));
+            Assert.assertEquals(tx.queryCompositeIndex2(7).asMap().keySet(), buildSet(new Tuple2<>(j, f)));
+        }
+        Assert.assertEquals(changes.size(), expectedChanges);
+
+        // Boxed writes are visible to primitive reads
+        tx.writeSimpleField(id, 2, 1234567, true);
+        Assert.assertEquals(tx.readIntField(id, 2, true), 1234567);
+        tx.writeSimpleField(id, 5, -1.5, true);
+        Assert.assertEquals(tx.readDoubleField(id, 5, true), -1.5);
+
+        // Mismatched field types
+        try {
+            tx.readIntField(id, 6, true);
+            assert false;
+        } catch (ClassCastException e) {
+            this.log.info("got expected " + e);
+        }
+        try {
+            tx.writeIntField(id, 6, 123456789, true);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            this.log.info("got expected " + e);
+        }
+        try {
+            tx.readIntField(id, 99, true);
+            assert false;
+        } catch (UnknownFieldException e) {
+            this.log.info("got expected " + e);
+        }
+
+        tx.commit();
+    }
+}
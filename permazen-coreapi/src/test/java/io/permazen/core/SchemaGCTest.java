@@ -0,0 +1,84 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.core;
+
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.schema.SchemaModel;
+
+import java.io.ByteArrayInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SchemaGCTest extends CoreAPITestSupport {
+
+    @Test
+    public void testSchemaGC() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+
+        final SchemaModel schema1 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"3\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final SchemaModel schema2 = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"1\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"val\" type=\"int\" storageId=\"3\"/>\n"
+          + "    <SimpleField name=\"val2\" type=\"int\" storageId=\"4\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        final Database db = new Database(kvstore);
+        db.setGarbageCollectSchemas(true);
+
+        // Create objects in version 1
+        Transaction tx = db.createTransaction(schema1, 1, true);
+        final ObjId id1 = tx.create(1);
+        final ObjId id2 = tx.create(1);
+        final ObjId id3 = tx.create(1);
+        tx.commit();
+
+        // Upgrade one and delete one in version 2; version 1 should remain
+        tx = db.createTransaction(schema2, 2, true);
+        final Schemas schemas = tx.getSchemas();
+        Assert.assertTrue(tx.updateSchemaVersion(id1));
+        Assert.assertTrue(tx.delete(id2));
+        tx.commit();
+        Assert.assertEquals(schemas.getVersions().keySet(), buildSet(1, 2));
+
+        tx = db.createTransaction(schema2, 2, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(1, 2));
+
+        // Upgrade the last one; version 1 should be garbage collected
+        Assert.assertTrue(tx.updateSchemaVersion(id3));
+        tx.commit();
+
+        tx = db.createTransaction(schema2, 2, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(2));
+        Assert.assertEquals(tx.queryVersion().asMap().keySet(), buildSet(2));
+        tx.commit();
+
+        // Verify nothing happens when disabled
+        db.setGarbageCollectSchemas(false);
+        tx = db.createTransaction(schema1, 1, true);
+        final ObjId id4 = tx.create(1);
+        tx.commit();
+        tx = db.createTransaction(schema2, 2, false);
+        Assert.assertTrue(tx.delete(id4));
+        tx.commit();
+        tx = db.createTransaction(schema2, 2, false);
+        Assert.assertEquals(tx.getSchemas().getVersions().keySet(), buildSet(1, 2));
+        tx.commit();
+    }
+}
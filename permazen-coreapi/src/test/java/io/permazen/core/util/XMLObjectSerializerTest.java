@@ -194,6 +194,61 @@ public class XMLObjectSerializerTest extends CoreAPITestSupport {
         tx.commit();
     }
 
+    @Test
+    public void testParallelWrite() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase(30000, 30000);       // allow for slow test environments
+        final Database db = new Database(kvstore);
+
+        final SchemaModel schema = SchemaModel.fromXML(new ByteArrayInputStream((
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<Schema formatVersion=\"3\">\n"
+          + "  <ObjectType name=\"Foo\" storageId=\"1\">\n"
+          + "    <SimpleField name=\"i\" type=\"int\" storageId=\"2\"/>\n"
+          + "    <SimpleField name=\"str\" type=\"java.lang.String\" storageId=\"3\"/>\n"
+          + "    <ReferenceField name=\"r\" storageId=\"4\"/>\n"
+          + "  </ObjectType>\n"
+          + "  <ObjectType name=\"Bar\" storageId=\"10\">\n"
+          + "    <SimpleField name=\"z\" type=\"boolean\" storageId=\"11\"/>\n"
+          + "  </ObjectType>\n"
+          + "</Schema>\n"
+          ).getBytes("UTF-8")));
+
+        // Create enough objects for several batches
+        final Transaction tx = db.createTransaction(schema, 1, true);
+        ObjId prev = null;
+        for (int i = 0; i < 400; i++) {
+            final ObjId id = tx.create(1);
+            tx.writeSimpleField(id, 2, i, false);
+            if (i % 3 != 0)
+                tx.writeSimpleField(id, 3, "string <" + i + ">", false);
+            tx.writeSimpleField(id, 4, prev, false);
+            prev = id;
+        }
+        for (int i = 0; i < 60; i++)
+            tx.writeSimpleField(tx.create(10), 11, i % 2 == 0, false);
+
+        // Write serially
+        final XMLObjectSerializer serializer = new XMLObjectSerializer(tx);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Assert.assertEquals(serializer.write(buf, true, false), 460);
+        final String expected = new String(buf.toByteArray(), "UTF-8");
+
+        // Write in parallel and compare
+        serializer.setParallelism(4);
+        buf.reset();
+        Assert.assertEquals(serializer.write(buf, true, false), 460);
+        Assert.assertEquals(new String(buf.toByteArray(), "UTF-8"), expected);
+        this.compareParse(tx, expected);
+
+        // Check indented output parses back to the same thing
+        buf.reset();
+        Assert.assertEquals(serializer.write(buf, false, true), 460);
+        this.compareParse(tx, new String(buf.toByteArray(), "UTF-8"));
+
+        tx.commit();
+    }
+
     private void compareResult(Transaction tx, byte[] buf, String resource) throws Exception {
         this.compareResult(tx, buf, resource, true);
     }
@@ -0,0 +1,61 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.jsck;
+
+import io.permazen.util.ByteUtil;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Verifies the existence of the index entries implied by object content.
+ *
+ * <p>
+ * Expected index entries are accumulated and then verified in sorted batches using an {@link OrderedLookup},
+ * i.e., by merge-joining them against the index key ranges, rather than by individual point lookups.
+ *
+ * <p>
+ * Instances are not thread safe; each shard uses its own instance.
+ */
+class IndexEntryVerifier {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final TreeMap<byte[], String> pending = new TreeMap<>(ByteUtil.COMPARATOR);     // key -> description
+
+    /**
+     * Add an index entry to be verified.
+     *
+     * @param info runtime info
+     * @param key expected index entry key
+     * @param description description of the index
+     */
+    public void add(JsckInfo info, byte[] key, String description) {
+        this.pending.put(key, description);
+        if (this.pending.size() >= BATCH_SIZE)
+            this.flush(info);
+    }
+
+    /**
+     * Verify all pending index entries.
+     *
+     * @param info runtime info
+     */
+    public void flush(JsckInfo info) {
+        try (OrderedLookup lookup = new OrderedLookup(info.getKVStore())) {
+            while (!this.pending.isEmpty()) {
+                final Map.Entry<byte[], String> entry = this.pending.pollFirstEntry();
+                final byte[] key = entry.getKey();
+                final String description = entry.getValue();
+                final byte[] value = lookup.get(key);
+                if (value == null)
+                    info.handle(new MissingKey("missing index entry for " + description, key, ByteUtil.EMPTY));
+                else if (value.length != 0)
+                    info.handle(new InvalidValue("invalid non-empty value for " + description, key, value, ByteUtil.EMPTY));
+            }
+        }
+    }
+}
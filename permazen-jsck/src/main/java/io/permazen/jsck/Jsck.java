@@ -6,6 +6,7 @@
 package io.permazen.jsck;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.PeekingIterator;
 
@@ -16,6 +17,9 @@ import io.permazen.core.ObjId;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SplittableKVStore;
+import io.permazen.kv.util.SplitKeyUtil;
 import io.permazen.schema.SchemaModel;
 import io.permazen.schema.SchemaObjectType;
 import io.permazen.util.ByteReader;
@@ -25,18 +29,35 @@ import io.permazen.util.CloseableIterator;
 import io.permazen.util.ParseContext;
 import io.permazen.util.UnsignedIntEncoder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
  * Applies consistency checks to, and optionally repairs corruption of, a Permazen key/value database.
+ *
+ * <p>
+ * For large databases, the key ranges of object types, indexes, and the object version index may be divided into
+ * {@linkplain JsckConfig#getShardsPerKeyRange shards}, which may be checked {@linkplain JsckConfig#getParallelism
+ * concurrently}; completed shards can be {@linkplain JsckConfig#getCheckpointHandler checkpointed} so that an interrupted
+ * inspection can be {@linkplain JsckConfig#getCompletedRanges resumed}. The rate at which keys are read may also be
+ * {@linkplain JsckConfig#getMaxKeysPerSecond limited}.
  */
 public class Jsck {
 
     private static final int HEX_STRING_LIMIT = 100;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
 
     private final JsckConfig config;
 
@@ -303,130 +324,13 @@ public class Jsck {
           .toArray();
 
         // Check object types
+        final ArrayList<Shard> objectTypeShards = new ArrayList<>();
         for (int storageId : objectTypeStorageIds) {
             final String rangeDescription = "the key range of object type storage ID " + storageId;
-            info.info("checking " + rangeDescription);
-            try (CloseableIterator<KVPair> ci = kv.getRange(this.getKeyRange(storageId))) {
-                for (final PeekingIterator<KVPair> i = Iterators.peekingIterator(ci); i.hasNext(); ) {
-                    final KVPair pair = i.next();
-                    final byte[] idKey = pair.getKey();
-
-                    // The next key should be an object ID
-                    if (idKey.length < ObjId.NUM_BYTES) {
-                        info.handle(new InvalidKey(pair).setDetail("invalid key " + Jsck.ds(idKey) + " in " + rangeDescription
-                          + ": key is truncated (length " + idKey.length + " < " + ObjId.NUM_BYTES + ")"));
-                        continue;
-                    }
-                    final ByteReader idKeyReader = new ByteReader(idKey);
-                    final ObjId id = new ObjId(idKeyReader);                            // this should never throw an exception
-
-                    // Check object meta-data
-                    if (info.isDetailEnabled())
-                        info.detail("checking object meta-data for " + id);
-                    SchemaObjectType objectType = null;
-                    int version = 0;
-                    do {
-
-                        // Check for extra garbage after object ID
-                        if (idKeyReader.remain() > 0) {
-                            String detail = "invalid key " + Jsck.ds(idKey) + " in " + rangeDescription
-                              + ": no such object " + id + " exists";
-                            int fieldStorageId = -1;
-                            try {
-                                fieldStorageId = UnsignedIntEncoder.read(idKeyReader);
-                            } catch (IllegalArgumentException e) {
-                                // ignore
-                            }
-                            if (fieldStorageId > 0 && idKeyReader.remain() == 0)
-                                detail += " (possibly orphaned content for field #" + fieldStorageId + ")";
-                            info.handle(new InvalidKey(pair).setDetail(detail));
-                            break;
-                        }
-
-                        // Read meta-data format version
-                        final ByteReader metaData = new ByteReader(pair.getValue());
-                        try {
-                            final int metaDataVersion = UnsignedIntEncoder.read(metaData);
-                            switch (metaDataVersion) {
-                            case 1:
-                                break;
-                            case 0:
-                                throw new IllegalArgumentException("invalid zero object meta-data format version");
-                            default:
-                                throw new IllegalArgumentException("unknown object meta-data format version " + metaDataVersion);
-                            }
-                        } catch (IllegalArgumentException e) {
-                            info.handle(new InvalidValue(pair).setDetail("invalid meta-data " + Jsck.ds(metaData)
-                              + " for object " + id + ": can't decode object meta-data format version: " + e.getMessage()));
-                            break;
-                        }
-
-                        // Read object schema version
-                        try {
-                            if ((version = UnsignedIntEncoder.read(metaData)) == 0)
-                                throw new IllegalArgumentException("invalid zero version number");
-                        } catch (IllegalArgumentException e) {
-                            info.handle(new InvalidValue(pair).setDetail("invalid meta-data " + Jsck.ds(metaData)
-                              + " for object " + id + ": can't decode object schema version: " + e.getMessage()));
-                            break;
-                        }
-
-                        // Retrieve schema
-                        final SchemaModel schema = info.getSchemas().get(version);
-                        if (schema == null) {
-                            info.handle(new InvalidValue(pair).setDetail("invalid meta-data "
-                              + Jsck.ds(metaData) + " for object " + id + ": invalid schema version " + version
-                              + ": no such schema version exists"));
-                            break;
-                        }
-
-                        // Retrieve schema object type
-                        if ((objectType = schema.getSchemaObjectTypes().get(id.getStorageId())) == null) {
-                            info.handle(new InvalidValue(pair).setDetail("invalid object ID " + id
-                              + " with storage ID " + id.getStorageId() + ": no such object type exists in schema version "
-                              + version));
-                            break;
-                        }
-
-                        // Read delete notified flag - since it should always be zero, we can always fix it
-                        final int mark = metaData.mark();
-                        try {
-                            if (metaData.remain() == 0)
-                                throw new IllegalArgumentException("missing delete notified byte");
-                            final int deleteNotified = metaData.readByte();
-                            if (deleteNotified != 0) {
-                                throw new IllegalArgumentException(String.format(
-                                  "invalid notified byte 0x%02x != 0x00", deleteNotified));
-                            }
-                            if (metaData.remain() > 0)
-                                throw new IllegalArgumentException("meta-data contains extra garbage");
-                        } catch (IllegalArgumentException e) {
-                            final ByteWriter fixup = new ByteWriter(mark + 1);
-                            fixup.write(metaData.getBytes(0, mark));
-                            fixup.writeByte(0);
-                            info.handle(new InvalidValue(pair, fixup.getBytes()).setDetail("invalid meta-data "
-                              + Jsck.ds(metaData) + " for object " + id + ": " + e.getMessage()));
-                        }
-                    } while (false);
-
-                    // If object meta-data was not repairable, discard all other data in object's range
-                    if (objectType == null) {
-                        Jsck.deleteRange(info, idKey, i, "object " + id);
-                        continue;
-                    }
-
-                    // Find corresponding object type storage
-                    final ObjectType objType = (ObjectType)info.getStorages().get(version).get(id.getStorageId());
-                    assert objType != null;
-
-                    // Validate object's fields content
-                    assert version > 0;
-                    if (info.isDetailEnabled())
-                        info.detail("checking object content for " + id);
-                    objType.validateObjectData(info, id, version, i);
-                }
-            }
+            this.addShards(info, objectTypeShards, this.getKeyRange(storageId), true, rangeDescription,
+              range -> this.checkObjects(info, range, rangeDescription));
         }
+        this.checkShards(info, objectTypeShards);
 
         // Get all index storage ID's
         final int[] indexStorageIds = info.getStorages().values().stream()
@@ -444,35 +348,207 @@ public class Jsck {
         // are repairing the database, the checking of indexes must come after the checking of objects.
 
         // Check indexes
+        final ArrayList<Shard> indexShards = new ArrayList<>();
         for (int storageId : indexStorageIds) {
             final Index index = info.getIndexes().get(storageId);
-            final String rangeDescription = "the key range of " + index;
-            info.info("checking " + rangeDescription);
-            try (CloseableIterator<KVPair> i = kv.getRange(index.getKeyRange())) {
-                while (i.hasNext()) {
-                    final KVPair pair = i.next();
+            this.addShards(info, indexShards, index.getKeyRange(), false, "the key range of " + index,
+              range -> this.checkIndex(info, index, range));
+        }
+        this.checkShards(info, indexShards);
 
-                    // Validate index entry
-                    final ByteReader reader = new ByteReader(pair.getKey());
+        // Check the object version index
+        info.info("recorded schema versions are " + info.getSchemas().keySet());
+        final Set<Integer> unusedSchemaVersions = ConcurrentHashMap.newKeySet();
+        unusedSchemaVersions.addAll(info.getSchemas().keySet());
+        final KeyRange versionIndexRange = KeyRange.forPrefix(objectVersionIndexKeyPrefix);
+        final boolean versionIndexPartial = !info.getRemainingRanges(versionIndexRange).equals(new KeyRanges(versionIndexRange));
+        final ArrayList<Shard> versionIndexShards = new ArrayList<>();
+        this.addShards(info, versionIndexShards, versionIndexRange, false, "the object version index",
+          range -> this.checkVersionIndex(info, range, unusedSchemaVersions));
+        this.checkShards(info, versionIndexShards);
+
+        // Garbage collect schema versions
+        info.info("found " + unusedSchemaVersions.size() + " unused schema version(s)"
+          + (!unusedSchemaVersions.isEmpty() ? ": " + unusedSchemaVersions : ""));
+        if (this.config.isGarbageCollectSchemas()) {
+            for (int version : unusedSchemaVersions) {
+
+                // If we skipped part of the object version index, the schema version could still be in use
+                if (versionIndexPartial) {
+                    final ByteWriter writer = new ByteWriter();
+                    writer.write(objectVersionIndexKeyPrefix);
+                    UnsignedIntEncoder.write(writer, version);
+                    final KeyRange versionRange = KeyRange.forPrefix(writer.getBytes());
+                    if (kv.getAtLeast(versionRange.getMin(), versionRange.getMax()) != null) {
+                        info.info("not garbage collecting schema version " + version
+                          + " because it has object version index entries in previously checked key ranges");
+                        continue;
+                    }
+                }
+                final byte[] key = Layout.getSchemaKey(version);
+                final byte[] value = kv.get(key);
+                if (value != null)
+                    info.handle(new InvalidKey("unused schema version", key, null).setDetail("schema version " + version), true);
+            }
+        }
+    }
+
+    private void checkObjects(JsckInfo info, KeyRange range, String rangeDescription) {
+        try (CloseableIterator<KVPair> ci = info.getKVStore().getRange(range)) {
+            for (final PeekingIterator<KVPair> i = Iterators.peekingIterator(ci); i.hasNext(); ) {
+                info.checkStopped();
+                final KVPair pair = i.next();
+                final byte[] idKey = pair.getKey();
+
+                // The next key should be an object ID
+                if (idKey.length < ObjId.NUM_BYTES) {
+                    info.handle(new InvalidKey(pair).setDetail("invalid key " + Jsck.ds(idKey) + " in " + rangeDescription
+                      + ": key is truncated (length " + idKey.length + " < " + ObjId.NUM_BYTES + ")"));
+                    continue;
+                }
+                final ByteReader idKeyReader = new ByteReader(idKey);
+                final ObjId id = new ObjId(idKeyReader);                            // this should never throw an exception
+
+                // Check object meta-data
+                if (info.isDetailEnabled())
+                    info.detail("checking object meta-data for " + id);
+                SchemaObjectType objectType = null;
+                int version = 0;
+                do {
+
+                    // Check for extra garbage after object ID
+                    if (idKeyReader.remain() > 0) {
+                        String detail = "invalid key " + Jsck.ds(idKey) + " in " + rangeDescription
+                          + ": no such object " + id + " exists";
+                        int fieldStorageId = -1;
+                        try {
+                            fieldStorageId = UnsignedIntEncoder.read(idKeyReader);
+                        } catch (IllegalArgumentException e) {
+                            // ignore
+                        }
+                        if (fieldStorageId > 0 && idKeyReader.remain() == 0)
+                            detail += " (possibly orphaned content for field #" + fieldStorageId + ")";
+                        info.handle(new InvalidKey(pair).setDetail(detail));
+                        break;
+                    }
+
+                    // Read meta-data format version
+                    final ByteReader metaData = new ByteReader(pair.getValue());
                     try {
-                        index.validateIndexEntry(info, reader);
+                        final int metaDataVersion = UnsignedIntEncoder.read(metaData);
+                        switch (metaDataVersion) {
+                        case 1:
+                            break;
+                        case 0:
+                            throw new IllegalArgumentException("invalid zero object meta-data format version");
+                        default:
+                            throw new IllegalArgumentException("unknown object meta-data format version " + metaDataVersion);
+                        }
                     } catch (IllegalArgumentException e) {
-                        info.handle(new InvalidKey(pair).setDetail(index, e.getMessage()));
-                        continue;
+                        info.handle(new InvalidValue(pair).setDetail("invalid meta-data " + Jsck.ds(metaData)
+                          + " for object " + id + ": can't decode object meta-data format version: " + e.getMessage()));
+                        break;
+                    }
+
+                    // Read object schema version
+                    try {
+                        if ((version = UnsignedIntEncoder.read(metaData)) == 0)
+                            throw new IllegalArgumentException("invalid zero version number");
+                    } catch (IllegalArgumentException e) {
+                        info.handle(new InvalidValue(pair).setDetail("invalid meta-data " + Jsck.ds(metaData)
+                          + " for object " + id + ": can't decode object schema version: " + e.getMessage()));
+                        break;
+                    }
+
+                    // Retrieve schema
+                    final SchemaModel schema = info.getSchemas().get(version);
+                    if (schema == null) {
+                        info.handle(new InvalidValue(pair).setDetail("invalid meta-data "
+                          + Jsck.ds(metaData) + " for object " + id + ": invalid schema version " + version
+                          + ": no such schema version exists"));
+                        break;
+                    }
+
+                    // Retrieve schema object type
+                    if ((objectType = schema.getSchemaObjectTypes().get(id.getStorageId())) == null) {
+                        info.handle(new InvalidValue(pair).setDetail("invalid object ID " + id
+                          + " with storage ID " + id.getStorageId() + ": no such object type exists in schema version "
+                          + version));
+                        break;
                     }
 
-                    // Validate value, which should be empty
-                    if (pair.getValue().length > 0)
-                        info.handle(new InvalidValue(pair, ByteUtil.EMPTY).setDetail(index, "value should be empty"));
+                    // Read delete notified flag - since it should always be zero, we can always fix it
+                    final int mark = metaData.mark();
+                    try {
+                        if (metaData.remain() == 0)
+                            throw new IllegalArgumentException("missing delete notified byte");
+                        final int deleteNotified = metaData.readByte();
+                        if (deleteNotified != 0) {
+                            throw new IllegalArgumentException(String.format(
+                              "invalid notified byte 0x%02x != 0x00", deleteNotified));
+                        }
+                        if (metaData.remain() > 0)
+                            throw new IllegalArgumentException("meta-data contains extra garbage");
+                    } catch (IllegalArgumentException e) {
+                        final ByteWriter fixup = new ByteWriter(mark + 1);
+                        fixup.write(metaData.getBytes(0, mark));
+                        fixup.writeByte(0);
+                        info.handle(new InvalidValue(pair, fixup.getBytes()).setDetail("invalid meta-data "
+                          + Jsck.ds(metaData) + " for object " + id + ": " + e.getMessage()));
+                    }
+                } while (false);
+
+                // If object meta-data was not repairable, discard all other data in object's range
+                if (objectType == null) {
+                    Jsck.deleteRange(info, idKey, i, "object " + id);
+                    continue;
                 }
+
+                // Find corresponding object type storage
+                final ObjectType objType = (ObjectType)info.getStorages().get(version).get(id.getStorageId());
+                assert objType != null;
+
+                // Validate object's fields content
+                assert version > 0;
+                if (info.isDetailEnabled())
+                    info.detail("checking object content for " + id);
+                objType.validateObjectData(info, id, version, i);
             }
         }
 
-        // Check the object version index
-        info.info("checking object version index; recorded schema versions are " + info.getSchemas().keySet());
-        final HashSet<Integer> unusedSchemaVersions = new HashSet<>(info.getSchemas().keySet());
-        try (CloseableIterator<KVPair> i = kv.getRange(KeyRange.forPrefix(objectVersionIndexKeyPrefix))) {
+        // Verify any remaining index entries
+        info.getIndexEntryVerifier().flush(info);
+    }
+
+    private void checkIndex(JsckInfo info, Index index, KeyRange range) {
+        try (CloseableIterator<KVPair> i = info.getKVStore().getRange(range)) {
             while (i.hasNext()) {
+                info.checkStopped();
+                final KVPair pair = i.next();
+
+                // Validate index entry
+                final ByteReader reader = new ByteReader(pair.getKey());
+                try {
+                    index.validateIndexEntry(info, reader);
+                } catch (IllegalArgumentException e) {
+                    info.handle(new InvalidKey(pair).setDetail(index, e.getMessage()));
+                    continue;
+                }
+
+                // Validate value, which should be empty
+                if (pair.getValue().length > 0)
+                    info.handle(new InvalidValue(pair, ByteUtil.EMPTY).setDetail(index, "value should be empty"));
+            }
+        }
+    }
+
+    private void checkVersionIndex(JsckInfo info, KeyRange range, Set<Integer> unusedSchemaVersions) {
+        final byte[] objectVersionIndexKeyPrefix = Layout.getObjectVersionIndexKeyPrefix();
+        final KVStore kv = info.getKVStore();
+        try (CloseableIterator<KVPair> i = kv.getRange(range);
+          OrderedLookup objectLookup = new OrderedLookup(kv)) {
+            while (i.hasNext()) {
+                info.checkStopped();
                 final KVPair pair = i.next();
 
                 // Read version
@@ -500,8 +576,8 @@ public class Jsck {
                     continue;
                 }
 
-                // Verify object still exists
-                if (kv.get(id.getBytes()) == null) {
+                // Verify object still exists; entries for the same version are sorted by object ID, so merge-join
+                if (objectLookup.get(id.getBytes()) == null) {
                     info.handle(new InvalidKey(pair).setDetail("invalid object version index entry "
                       + Jsck.ds(reader.getBytes()) + " for version " + version + ": object " + id + " does not exist"));
                     continue;
@@ -519,18 +595,6 @@ public class Jsck {
                 }
             }
         }
-
-        // Garbage collect schema versions
-        info.info("found " + unusedSchemaVersions.size() + " unused schema version(s)"
-          + (!unusedSchemaVersions.isEmpty() ? ": " + unusedSchemaVersions : ""));
-        if (this.config.isGarbageCollectSchemas()) {
-            for (int version : unusedSchemaVersions) {
-                final byte[] key = Layout.getSchemaKey(version);
-                final byte[] value = kv.get(key);
-                if (value != null)
-                    info.handle(new InvalidKey("unused schema version", key, null).setDetail("schema version " + version), true);
-            }
-        }
     }
 
     static void deleteRange(JsckInfo info, byte[] prefix, PeekingIterator<KVPair> i, String description) {
@@ -554,6 +618,132 @@ public class Jsck {
         return Jsck.ds(reader.getBytes(off));
     }
 
+    /**
+     * Divide the unchecked portion of the given key range into shards and add them to the list.
+     *
+     * @param info runtime info
+     * @param shards list of shards
+     * @param range key range
+     * @param objectAligned true if shards must not split any object
+     * @param description description of the key range
+     * @param checker performs the check of one shard
+     */
+    private void addShards(JsckInfo info, List<Shard> shards,
+      KeyRange range, boolean objectAligned, String description, Consumer<KeyRange> checker) {
+
+        // Skip already checked ranges
+        final KeyRanges remaining = info.getRemainingRanges(range);
+        if (remaining.isEmpty()) {
+            info.info("skipping " + description + " (already checked)");
+            return;
+        }
+
+        // Split remaining ranges
+        final ArrayList<KeyRange> ranges = new ArrayList<>();
+        for (KeyRange piece : remaining)
+            ranges.addAll(this.split(info, piece, objectAligned));
+
+        // Create shards
+        if (ranges.size() == 1 && ranges.get(0).equals(range)) {
+            shards.add(new Shard(description, range, checker));
+            return;
+        }
+        for (int i = 0; i < ranges.size(); i++) {
+            shards.add(new Shard(description + " (shard " + (i + 1) + " of " + ranges.size() + ": "
+              + ranges.get(i) + ")", ranges.get(i), checker));
+        }
+    }
+
+    /**
+     * Split a key range into at most {@link JsckConfig#getShardsPerKeyRange} pieces.
+     */
+    private List<KeyRange> split(JsckInfo info, KeyRange range, boolean objectAligned) {
+
+        // Sharding enabled?
+        final int numShards = this.config.getShardsPerKeyRange();
+        if (numShards <= 1)
+            return Collections.singletonList(range);
+
+        // Get split keys, preferring hints from the key/value store
+        final KVStore kv = info.getKVStore();
+        List<byte[]> splitKeys = kv instanceof SplittableKVStore ?
+          ((SplittableKVStore)kv).getSplitKeys(range, numShards - 1) : Collections.emptyList();
+        if (splitKeys.isEmpty()) {
+            final KVPair first = kv.getAtLeast(range.getMin(), range.getMax());
+            final KVPair last = first != null ? kv.getAtMost(range.getMax(), range.getMin()) : null;
+            if (last == null || ByteUtil.compare(first.getKey(), last.getKey()) >= 0)
+                return Collections.singletonList(range);
+            splitKeys = new ArrayList<>(numShards - 1);
+            for (int i = 1; i < numShards; i++)
+                splitKeys.add(SplitKeyUtil.interpolate(first.getKey(), last.getKey(), (double)i / numShards));
+        }
+
+        // Build shards; when splitting objects, truncating a split key to object ID length puts it on an object boundary
+        final ArrayList<KeyRange> ranges = new ArrayList<>(splitKeys.size() + 1);
+        byte[] prevKey = range.getMin();
+        for (byte[] splitKey : splitKeys) {
+            if (objectAligned && splitKey.length > ObjId.NUM_BYTES)
+                splitKey = Arrays.copyOf(splitKey, ObjId.NUM_BYTES);
+            if (ByteUtil.compare(splitKey, prevKey) <= 0
+              || (range.getMax() != null && ByteUtil.compare(splitKey, range.getMax()) >= 0))
+                continue;
+            ranges.add(new KeyRange(prevKey, splitKey));
+            prevKey = splitKey;
+        }
+        ranges.add(new KeyRange(prevKey, range.getMax()));
+        return ranges;
+    }
+
+    /**
+     * Check the given shards, in parallel if so configured.
+     */
+    private void checkShards(JsckInfo info, List<Shard> shards) {
+
+        // Check shards in this thread?
+        final int parallelism = Math.min(this.config.getParallelism(), shards.size());
+        if (parallelism <= 1) {
+            for (Shard shard : shards)
+                shard.check(info);
+            return;
+        }
+
+        // Check shards in a thread pool
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            final Thread thread = new Thread(r);
+            thread.setName(this.getClass().getSimpleName() + "-" + THREAD_COUNTER.incrementAndGet());
+            return thread;
+        });
+        try {
+            final ArrayList<Future<?>> futures = new ArrayList<>(shards.size());
+            for (Shard shard : shards)
+                futures.add(executor.submit(() -> shard.check(info)));
+
+            // Wait for completion; if any shard fails, stop the others
+            Throwable failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    info.stop();
+                    final Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (failure == null
+                      || (failure instanceof MaxIssuesReachedException && !(cause instanceof MaxIssuesReachedException)))
+                        failure = cause;
+                } catch (InterruptedException e) {
+                    info.stop();
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while checking shards", e);
+                }
+            }
+            if (failure != null) {
+                Throwables.throwIfUnchecked(failure);
+                throw new RuntimeException(failure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private long checkEmpty(JsckInfo info, KeyRange range, String description) {
         info.info("checking that " + description + " is empty");
         long count = 0;
@@ -569,5 +759,29 @@ public class Jsck {
     private KeyRange getKeyRange(int storageId) {
         return KeyRange.forPrefix(UnsignedIntEncoder.encode(storageId));
     }
-}
 
+// Shard
+
+    /**
+     * A portion of a key range that is checked as a unit.
+     */
+    private static final class Shard {
+
+        private final String description;
+        private final KeyRange range;
+        private final Consumer<KeyRange> checker;
+
+        Shard(String description, KeyRange range, Consumer<KeyRange> checker) {
+            this.description = description;
+            this.range = range;
+            this.checker = checker;
+        }
+
+        void check(JsckInfo info) {
+            info.checkStopped();
+            info.info("checking " + this.description);
+            this.checker.accept(this.range);
+            info.recordCompleted(this.range);
+        }
+    }
+}
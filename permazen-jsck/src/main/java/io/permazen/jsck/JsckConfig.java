@@ -13,6 +13,7 @@ import io.permazen.kv.KeyRanges;
 import io.permazen.schema.SchemaModel;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,11 @@ public class JsckConfig {
     private int forceFormatVersion;
     private long maxIssues = Long.MAX_VALUE;
     private boolean repair;
+    private int parallelism = 1;
+    private int shardsPerKeyRange = 1;
+    private long maxKeysPerSecond;
+    private KeyRanges completedRanges;
+    private Consumer<? super KeyRanges> checkpointHandler;
 
     /**
      * Get the restricted ranges of keys that should be inspected, if any.
@@ -206,4 +212,123 @@ public class JsckConfig {
         Preconditions.checkArgument(maxIssues >= 0, "maxIssues < 0");
         this.maxIssues = maxIssues;
     }
+
+    /**
+     * Configure the number of threads that check shards concurrently.
+     *
+     * <p>
+     * When greater than one, the shards of each object type, index, and the object version index are checked concurrently
+     * using a private thread pool. All threads share the {@link io.permazen.kv.KVStore} given to {@link Jsck#check Jsck.check()},
+     * which is required to be thread safe; each shard is scanned by its own iterator.
+     *
+     * <p>
+     * All object types are checked before any indexes, so repairs to objects are always visible when indexes are checked.
+     * However, when repairing, the order in which repairs to different objects occur is no longer deterministic.
+     *
+     * <p>
+     * Default is one, i.e., all checks are performed by the calling thread.
+     *
+     * @return number of threads
+     * @see #getShardsPerKeyRange
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+    public void setParallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism <= 0");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Configure the maximum number of shards into which the key range of each object type, index, and the
+     * object version index is divided.
+     *
+     * <p>
+     * Shards are the units of work that are {@linkplain #getParallelism checked concurrently} and
+     * {@linkplain #getCheckpointHandler checkpointed}. Split points are chosen using
+     * {@link io.permazen.kv.SplittableKVStore#getSplitKeys SplittableKVStore.getSplitKeys()} if supported,
+     * otherwise by interpolating between the first and last keys in the range. Object type shards never split an object.
+     *
+     * <p>
+     * Default is one, i.e., no sharding.
+     *
+     * @return maximum number of shards per key range
+     */
+    public int getShardsPerKeyRange() {
+        return this.shardsPerKeyRange;
+    }
+    public void setShardsPerKeyRange(int shardsPerKeyRange) {
+        Preconditions.checkArgument(shardsPerKeyRange > 0, "shardsPerKeyRange <= 0");
+        this.shardsPerKeyRange = shardsPerKeyRange;
+    }
+
+    /**
+     * Configure a limit on the rate at which keys are read, in order to reduce the impact on a production database.
+     *
+     * <p>
+     * Each key/value pair read, whether by iteration or by direct lookup, counts as one key. The limit applies to
+     * all threads combined.
+     *
+     * <p>
+     * Default is zero, i.e., unlimited.
+     *
+     * @return maximum keys read per second, or zero for unlimited
+     */
+    public long getMaxKeysPerSecond() {
+        return this.maxKeysPerSecond;
+    }
+    public void setMaxKeysPerSecond(long maxKeysPerSecond) {
+        Preconditions.checkArgument(maxKeysPerSecond >= 0, "maxKeysPerSecond < 0");
+        this.maxKeysPerSecond = maxKeysPerSecond;
+    }
+
+    /**
+     * Configure key ranges that have already been checked, e.g., by a previous, interrupted inspection.
+     *
+     * <p>
+     * Keys in these ranges are skipped when checking object types, indexes, and the object version index.
+     * Typically this is the most recent value given to the {@linkplain #getCheckpointHandler checkpoint handler}
+     * in a previous run. Note: recorded schema information and unused key ranges are always fully checked.
+     *
+     * <p>
+     * When resuming a {@linkplain #isRepair repairing} inspection, the repairs made by the previous run must have
+     * been committed, otherwise they will be lost. If any part of the object version index is skipped,
+     * {@linkplain #isGarbageCollectSchemas schema garbage collection} determines whether a schema version is
+     * in use by checking for the existence of any object version index entry.
+     *
+     * <p>
+     * Default is null, i.e., nothing has been checked.
+     *
+     * @return key ranges already checked, or null for none
+     */
+    public KeyRanges getCompletedRanges() {
+        return this.completedRanges;
+    }
+    public void setCompletedRanges(KeyRanges completedRanges) {
+        this.completedRanges = completedRanges;
+    }
+
+    /**
+     * Configure a callback for recording progress.
+     *
+     * <p>
+     * Each time a shard is completely checked, the handler is given an immutable snapshot of all of the key ranges checked
+     * so far, including any configured {@linkplain #getCompletedRanges completed ranges}. The handler may persist this value
+     * (e.g., using {@link KeyRanges#serialize KeyRanges.serialize()}) and later resume the inspection by configuring
+     * it as the {@linkplain #getCompletedRanges completed ranges}.
+     *
+     * <p>
+     * The handler is never invoked by more than one thread at a time.
+     *
+     * <p>
+     * Default is null, i.e., no checkpointing.
+     *
+     * @return checkpoint handler, or null for none
+     */
+    public Consumer<? super KeyRanges> getCheckpointHandler() {
+        return this.checkpointHandler;
+    }
+    public void setCheckpointHandler(Consumer<? super KeyRanges> checkpointHandler) {
+        this.checkpointHandler = checkpointHandler;
+    }
 }
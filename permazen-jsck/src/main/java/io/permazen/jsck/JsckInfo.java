@@ -9,6 +9,8 @@ import io.permazen.core.FieldType;
 import io.permazen.core.type.EnumFieldType;
 import io.permazen.core.type.ReferenceFieldType;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
 import io.permazen.schema.CounterSchemaField;
 import io.permazen.schema.EnumSchemaField;
 import io.permazen.schema.ListSchemaField;
@@ -39,13 +41,18 @@ class JsckInfo implements JsckLogger {
     private final Map<Integer, Map<Integer, Storage>> storages = new HashMap<>();   // version -> (storage ID -> Storage)
     private final Map<Integer, Index> indexes = new HashMap<>();                    // storage ID -> Index
     private final Consumer<? super Issue> handler;
+    private final ThreadLocal<IndexEntryVerifier> indexEntryVerifier = ThreadLocal.withInitial(IndexEntryVerifier::new);
+    private final KeyRanges completedRanges;
 
     private int formatVersion;
+    private volatile boolean stopped;
 
     JsckInfo(JsckConfig config, KVStore kv, Consumer<? super Issue> handler) {
         this.config = config;
-        this.kv = kv;
+        this.kv = config.getMaxKeysPerSecond() > 0 ? new ThrottledKVStore(kv, config.getMaxKeysPerSecond()) : kv;
         this.handler = handler;
+        this.completedRanges = config.getCompletedRanges() != null ?
+          new KeyRanges(config.getCompletedRanges()) : KeyRanges.empty();
         if (this.config.getMaxIssues() <= 0)
             throw new MaxIssuesReachedException();
     }
@@ -70,6 +77,13 @@ class JsckInfo implements JsckLogger {
         return this.indexes;
     }
 
+    /**
+     * Get the {@link IndexEntryVerifier} for the current thread.
+     */
+    public IndexEntryVerifier getIndexEntryVerifier() {
+        return this.indexEntryVerifier.get();
+    }
+
     public int getFormatVersion() {
         return this.formatVersion;
     }
@@ -84,16 +98,59 @@ class JsckInfo implements JsckLogger {
 
     // Handle an issue, with optional forced repair
     public void handle(Issue issue, boolean force) {
+        this.checkStopped();
+        final long count = this.counter.incrementAndGet();
+        if (count > this.config.getMaxIssues()) {                   // another thread got there first
+            this.stop();
+            throw new MaxIssuesReachedException();
+        }
         if (this.config.isRepair() || force)
             issue.apply(this.kv);
-        if (this.handler != null)
-            this.handler.accept(issue);
-        if (this.counter.incrementAndGet() >= this.config.getMaxIssues())
+        if (this.handler != null) {
+            synchronized (this.handler) {
+                this.handler.accept(issue);
+            }
+        }
+        if (count == this.config.getMaxIssues()) {
+            this.stop();
             throw new MaxIssuesReachedException();
+        }
     }
 
     public long getNumberOfIssuesHandled() {
-        return this.counter.get();
+        return Math.min(this.counter.get(), this.config.getMaxIssues());
+    }
+
+    // Stop all threads
+    public void stop() {
+        this.stopped = true;
+    }
+
+    // Bail out if stopped, e.g., because some other thread reached the maximum number of issues
+    public void checkStopped() {
+        if (this.stopped)
+            throw new MaxIssuesReachedException();
+    }
+
+// Checkpoints
+
+    // Get the key ranges that remain to be checked within the given range
+    public KeyRanges getRemainingRanges(KeyRange range) {
+        final KeyRanges remaining = new KeyRanges(range);
+        synchronized (this.completedRanges) {
+            remaining.remove(this.completedRanges);
+        }
+        return remaining;
+    }
+
+    // Record that the given range has been completely checked
+    public void recordCompleted(KeyRange range) {
+        final Consumer<? super KeyRanges> checkpointHandler = this.config.getCheckpointHandler();
+        synchronized (this.completedRanges) {
+            this.completedRanges.add(range);
+            if (checkpointHandler != null)
+                checkpointHandler.accept(this.completedRanges.immutableSnapshot());
+        }
     }
 
 // JsckLogger
@@ -31,6 +31,7 @@ import io.permazen.util.ByteUtil;
 import io.permazen.util.ByteWriter;
 import io.permazen.util.UnsignedIntEncoder;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -226,10 +227,20 @@ class ObjectType extends Storage {
             return null;
         }
 
-        // Decode value
+        // Decompress value if needed
         byte[] value = pair.getValue();
-        final ByteReader reader = new ByteReader(pair.getValue());
-        if (!this.validateSimpleFieldValue(info, id, field, pair, reader))
+        if (field.isCompressed()) {
+            final String dictionary = field.getCompressionDictionary();
+            try {
+                value = Layout.decompressFieldValue(value, dictionary != null ? dictionary.getBytes(StandardCharsets.UTF_8) : null);
+            } catch (IllegalArgumentException e) {
+                info.handle(new InvalidValue(pair).setDetail(id, field, e.getMessage()));
+                value = null;
+            }
+        }
+
+        // Decode value
+        if (value != null && !this.validateSimpleFieldValue(info, id, field, pair, new ByteReader(value)))
             value = null;
 
         // We should not see default values in simple fields that are not sub-fields of complex fields
@@ -468,11 +479,7 @@ class ObjectType extends Storage {
     private void verifyIndexEntry(JsckInfo info, ObjId id, byte[] key, String description) {
         if (info.isDetailEnabled())
             info.detail("checking object " + id + " " + description + " entry");
-        final byte[] value = info.getKVStore().get(key);
-        if (value == null)
-            info.handle(new MissingKey("missing index entry for " + description, key, ByteUtil.EMPTY));
-        else if (value.length != 0)
-            info.handle(new InvalidValue("invalid non-empty value for " + description, key, value, ByteUtil.EMPTY));
+        info.getIndexEntryVerifier().add(info, key, description);
     }
 
 // Object
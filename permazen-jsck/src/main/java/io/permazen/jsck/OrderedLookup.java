@@ -0,0 +1,109 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.jsck;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Looks up keys in a {@link KVStore} by merge-joining a sequence of keys against a forward iteration.
+ *
+ * <p>
+ * When keys are looked up in ascending order and are close together, this replaces individual point lookups with
+ * a single sequential scan. If the next key is far ahead of the iteration, or is lower than the previous key,
+ * a new iteration is started at that key.
+ *
+ * <p>
+ * Each iteration is bounded by the range of keys sharing the key's storage ID prefix, i.e., the enclosing object
+ * type or index, so a seek never opens a range extending to the end of the key space. Keys that don't start with
+ * a valid storage ID are looked up individually.
+ */
+class OrderedLookup implements AutoCloseable {
+
+    private static final int MAX_SKIP = 16;                     // how far we iterate before seeking instead
+
+    private final KVStore kv;
+
+    private CloseableIterator<KVPair> iterator;
+    private PeekingIterator<KVPair> peekingIterator;
+    private byte[] prevKey;
+    private byte[] limit;                                       // upper bound (exclusive) of the current iteration
+
+    OrderedLookup(KVStore kv) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        this.kv = kv;
+    }
+
+    /**
+     * Get the value associated with the given key, if any.
+     *
+     * @param key key to find
+     * @return associated value, or null if none
+     */
+    public byte[] get(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+
+        // Advance the current iteration, unless we are going backwards or beyond its range
+        if (this.iterator != null && ByteUtil.compare(key, this.prevKey) >= 0 && ByteUtil.compare(key, this.limit) < 0) {
+            for (int skip = 0; skip < MAX_SKIP; skip++) {
+
+                // If iteration is exhausted, there are no more keys >= the previous key in the range
+                if (!this.peekingIterator.hasNext())
+                    return this.found(key, null);
+
+                // Compare next key
+                final KVPair pair = this.peekingIterator.peek();
+                final int diff = ByteUtil.compare(pair.getKey(), key);
+                if (diff > 0)
+                    return this.found(key, null);
+                if (diff == 0)
+                    return this.found(key, pair.getValue());
+                this.peekingIterator.next();
+            }
+        }
+
+        // Start a new iteration at the key, bounded by its storage ID range; if there is none, just do a point lookup
+        this.close();
+        final int prefixLength;
+        try {
+            prefixLength = key.length > 0 ? UnsignedIntEncoder.decodeLength(key[0]) : 0;
+        } catch (IllegalArgumentException e) {
+            return this.found(key, this.kv.get(key));
+        }
+        if (prefixLength == 0 || prefixLength > key.length)
+            return this.found(key, this.kv.get(key));
+        this.limit = ByteUtil.getKeyAfterPrefix(Arrays.copyOf(key, prefixLength));
+        this.iterator = this.kv.getRange(key, this.limit, false);
+        this.peekingIterator = Iterators.peekingIterator(this.iterator);
+        if (!this.peekingIterator.hasNext())
+            return this.found(key, null);
+        final KVPair pair = this.peekingIterator.peek();
+        return this.found(key, ByteUtil.compare(pair.getKey(), key) == 0 ? pair.getValue() : null);
+    }
+
+    private byte[] found(byte[] key, byte[] value) {
+        this.prevKey = key;
+        return value;
+    }
+
+    @Override
+    public void close() {
+        if (this.iterator != null) {
+            this.iterator.close();
+            this.iterator = null;
+            this.peekingIterator = null;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.jsck;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.util.ForwardingKVStore;
+import io.permazen.util.CloseableIterator;
+
+/**
+ * {@link KVStore} wrapper that limits the rate at which keys are read.
+ *
+ * @see JsckConfig#getMaxKeysPerSecond
+ */
+class ThrottledKVStore extends ForwardingKVStore {
+
+    private final KVStore kv;
+    private final RateLimiter rateLimiter;
+
+    ThrottledKVStore(KVStore kv, long maxKeysPerSecond) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(maxKeysPerSecond > 0, "maxKeysPerSecond <= 0");
+        this.kv = kv;
+        this.rateLimiter = RateLimiter.create(maxKeysPerSecond);
+    }
+
+    @Override
+    protected KVStore delegate() {
+        return this.kv;
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        this.rateLimiter.acquire();
+        return super.get(key);
+    }
+
+    @Override
+    public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        this.rateLimiter.acquire();
+        return super.getAtLeast(minKey, maxKey);
+    }
+
+    @Override
+    public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        this.rateLimiter.acquire();
+        return super.getAtMost(maxKey, minKey);
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        final CloseableIterator<KVPair> i = super.getRange(minKey, maxKey, reverse);
+        return new CloseableIterator<KVPair>() {
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public KVPair next() {
+                ThrottledKVStore.this.rateLimiter.acquire();
+                return i.next();
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+            }
+
+            @Override
+            public void close() {
+                i.close();
+            }
+        };
+    }
+}
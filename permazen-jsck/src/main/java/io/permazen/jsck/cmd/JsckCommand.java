@@ -33,6 +33,9 @@ public class JsckCommand extends AbstractCommand {
          + " -verbose:verbose"
          + " -weak:weak"
          + " -limit:limit:int"
+         + " -threads:threads:int"
+         + " -shards:shards:int"
+         + " -max-rate:max-rate:int"
          + " -gc:gc"
          + " -kv:kv:expr"
          + " -force-schemas:schema-map:expr"
@@ -53,6 +56,12 @@ public class JsckCommand extends AbstractCommand {
           + "       inconsistencies are only reported and no changes are made.\n"
           + "   -limit\n"
           + "       Stop after encountering `limit' issues.\n"
+          + "   -threads\n"
+          + "       Check object types and indexes using `threads' concurrent threads (default 1).\n"
+          + "   -shards\n"
+          + "       Divide each object type and index key range into at most `shards' pieces (default 1).\n"
+          + "   -max-rate\n"
+          + "       Limit the rate at which keys are read to `max-rate' keys per second.\n"
           + "   -gc\n"
           + "       Garbage collect any unused schema versions at the end of inspection.\n"
           + "       Note: this garbage collection will occur even without `-repair'.\n"
@@ -96,6 +105,15 @@ public class JsckCommand extends AbstractCommand {
         final Integer limit = (Integer)params.get("limit");
         if (limit != null)
             config.setMaxIssues(limit);
+        final Integer threads = (Integer)params.get("threads");
+        if (threads != null)
+            config.setParallelism(threads);
+        final Integer shards = (Integer)params.get("shards");
+        if (shards != null)
+            config.setShardsPerKeyRange(shards);
+        final Integer maxRate = (Integer)params.get("max-rate");
+        if (maxRate != null)
+            config.setMaxKeysPerSecond(maxRate);
 
         // Sanity check
         if (weak && (config.isGarbageCollectSchemas() || config.isRepair()))
@@ -19,6 +19,7 @@ import io.permazen.core.Layout;
 import io.permazen.core.ObjId;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
 import io.permazen.kv.test.KVTestSupport;
 import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.ByteUtil;
@@ -32,9 +33,11 @@ import java.util.Date;
 import java.util.List;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import org.slf4j.event.Level;
+import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -76,6 +79,63 @@ public class JsckTest extends KVTestSupport {
         this.mutateAndCompare(this.getConfig(true), true, actual, expected, Collections.emptySet());
     }
 
+    @Test
+    public void testParallelRepairIndexes() throws Exception {
+
+        // Setup db
+        final NavigableMapKVStore actual = this.populate();
+        final NavigableMapKVStore expected = actual.clone();
+
+        // Remove all index information
+        for (int indexStorageId : new int[] { 0x99, 0xaa, 0xbb, 0xcc, 0xdd, 0xee, 0xff, 0xfe, 0xef })
+            actual.removeRange(KeyRange.forPrefix(UnsignedIntEncoder.encode(indexStorageId)));
+        actual.removeRange(KeyRange.forPrefix(Layout.getObjectVersionIndexKeyPrefix()));
+
+        // Test repairing using multiple threads and shards
+        final JsckConfig config = this.getConfig(true);
+        config.setParallelism(4);
+        config.setShardsPerKeyRange(3);
+        config.setMaxKeysPerSecond(100000);
+        this.mutateAndCompare(config, true, actual, expected, Collections.emptySet());
+    }
+
+    @Test
+    public void testResumeRepair() throws Exception {
+
+        // Setup db
+        final NavigableMapKVStore actual = this.populate();
+        final NavigableMapKVStore expected = actual.clone();
+
+        // Remove all index information
+        for (int indexStorageId : new int[] { 0x99, 0xaa, 0xbb, 0xcc, 0xdd, 0xee, 0xff, 0xfe, 0xef })
+            actual.removeRange(KeyRange.forPrefix(UnsignedIntEncoder.encode(indexStorageId)));
+        actual.removeRange(KeyRange.forPrefix(Layout.getObjectVersionIndexKeyPrefix()));
+
+        // Repeatedly interrupt the repair after a few issues, resuming from the last checkpoint each time
+        final int maxIssues = 3;
+        final AtomicReference<KeyRanges> checkpoint = new AtomicReference<>();
+        int runs = 0;
+        while (true) {
+            Assert.assertTrue(runs++ < 100, "no progress");
+            final JsckConfig config = this.getConfig(true);
+            config.setShardsPerKeyRange(4);
+            config.setMaxIssues(maxIssues);
+            config.setCompletedRanges(checkpoint.get());
+            config.setCheckpointHandler(checkpoint::set);
+            final long count = new Jsck(config).check(actual, issue -> log.info(String.format("JSCK: %s", issue)));
+            if (count < maxIssues)
+                break;
+        }
+        Assert.assertTrue(runs > 1);
+
+        // Compare result
+        final String diff = this.diff(this.toXmlString(expected), this.toXmlString(actual));
+        assert diff == null : "Difference in resulting XML:\n" + diff;
+
+        // A full check should now find nothing
+        Assert.assertEquals(new Jsck(this.getConfig(false)).check(actual, null), 0);
+    }
+
     @Test
     public void testDeletedReference() throws Exception {
 
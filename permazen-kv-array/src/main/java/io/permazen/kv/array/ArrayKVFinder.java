@@ -139,6 +139,30 @@ class ArrayKVFinder {
         return new KVPair(this.readKey(index), this.readValue(index));
     }
 
+    /**
+     * Get the offset in the key data at which the (possibly prefix-compressed) key at the specified index starts.
+     * An index equal to the array size returns the total length of the key data.
+     */
+    public int keyOffset(int index) {
+        Preconditions.checkArgument(index >= 0, "index < 0");
+        Preconditions.checkArgument(index <= this.size, "index > size");
+        if (index == this.size)
+            return this.keys.capacity();
+        final int baseIndex = index & ~0x1f;
+        final int baseKeyOffset = this.indx.getInt(baseIndex * 8);
+        return index == baseIndex ? baseKeyOffset : baseKeyOffset + (this.indx.getInt(index * 8) & 0x00ffffff);
+    }
+
+    /**
+     * Get the offset in the value data at which the value at the specified index starts.
+     * An index equal to the array size returns the total length of the value data.
+     */
+    public int valueOffset(int index) {
+        Preconditions.checkArgument(index >= 0, "index < 0");
+        Preconditions.checkArgument(index <= this.size, "index > size");
+        return index < this.size ? this.indx.getInt(index * 8 + 4) : this.vals.capacity();
+    }
+
     // Perform a bulk get() that doesn't modify the buffer
     protected byte[] get(ByteBuffer buf, int position, byte[] dest, int off, int len) {
         if (buf.hasArray())
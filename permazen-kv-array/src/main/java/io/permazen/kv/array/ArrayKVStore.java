@@ -10,10 +10,15 @@ import com.google.common.collect.UnmodifiableIterator;
 
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
@@ -29,8 +34,12 @@ import java.util.NoSuchElementException;
  *
  * <p>
  * Key and value data must not exceed 2GB (each separately).
+ *
+ * <p>
+ * Because the array index gives the position of every key, instances can compute key counts and
+ * {@linkplain #getSplitKeys split keys} for any range exactly, in time independent of the size of the range.
  */
-public class ArrayKVStore extends AbstractKVStore {
+public class ArrayKVStore extends AbstractKVStore implements SplittableKVStore {
 
     private final int size;
     private final ArrayKVFinder finder;
@@ -91,24 +100,7 @@ public class ArrayKVStore extends AbstractKVStore {
 
     @Override
     public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, final boolean reverse) {
-
-        // Find min index
-        int index;
-        if (minKey == null || minKey.length == 0)
-            index = 0;
-        else if ((index = this.finder.find(minKey)) < 0)
-            index = ~index;
-        final int minIndex = index;
-
-        // Find max index
-        if (maxKey == null)
-            index = this.size;
-        else if ((index = this.finder.find(maxKey)) < 0)
-            index = ~index;
-        final int maxIndex = index;
-
-        // Return iterator over array indexes
-        return new RangeIter(minIndex, maxIndex, reverse);
+        return new RangeIter(this.minIndex(minKey), this.maxIndex(maxKey), reverse);
     }
 
     @Override
@@ -126,6 +118,68 @@ public class ArrayKVStore extends AbstractKVStore {
         throw new UnsupportedOperationException();
     }
 
+// SplittableKVStore
+
+    /**
+     * Estimate the size of the given range.
+     *
+     * <p>
+     * The implementation in {@link ArrayKVStore} returns the exact number of keys in the range, and the number
+     * of bytes of key data (after prefix compression) and value data they occupy.
+     */
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        final int minIndex = this.minIndex(range.getMin());
+        final int maxIndex = Math.max(minIndex, this.maxIndex(range.getMax()));
+        final long keyBytes = this.finder.keyOffset(maxIndex) - this.finder.keyOffset(minIndex);
+        final long valueBytes = this.finder.valueOffset(maxIndex) - this.finder.valueOffset(minIndex);
+        return new KeyRangeEstimate(maxIndex - minIndex, keyBytes + valueBytes);
+    }
+
+    /**
+     * Get split keys for the given range.
+     *
+     * <p>
+     * The implementation in {@link ArrayKVStore} returns keys that divide the range into pieces containing the same
+     * number of keys (plus or minus one).
+     */
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count >= 0, "count < 0");
+        final int minIndex = this.minIndex(range.getMin());
+        final int maxIndex = this.maxIndex(range.getMax());
+        final ArrayList<byte[]> splitKeys = new ArrayList<>(Math.min(count, Math.max(maxIndex - minIndex - 1, 0)));
+        int prevIndex = minIndex;
+        for (int i = 1; i <= count; i++) {
+            final int index = minIndex + (int)((long)(maxIndex - minIndex) * i / (count + 1));
+            if (index <= prevIndex)
+                continue;
+            splitKeys.add(this.finder.readKey(index));
+            prevIndex = index;
+        }
+        return splitKeys;
+    }
+
+// Internal methods
+
+    // Get index of the first key >= minKey
+    private int minIndex(byte[] minKey) {
+        if (minKey == null || minKey.length == 0)
+            return 0;
+        final int index = this.finder.find(minKey);
+        return index < 0 ? ~index : index;
+    }
+
+    // Get index of the first key >= maxKey, or size if maxKey is null
+    private int maxIndex(byte[] maxKey) {
+        if (maxKey == null)
+            return this.size;
+        final int index = this.finder.find(maxKey);
+        return index < 0 ? ~index : index;
+    }
+
 // RangeIter
 
     private class RangeIter extends UnmodifiableIterator<KVPair> implements CloseableIterator<KVPair> {
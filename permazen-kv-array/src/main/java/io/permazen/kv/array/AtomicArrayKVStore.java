@@ -13,7 +13,9 @@ import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SplittableKVStore;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
@@ -112,12 +114,16 @@ import org.slf4j.LoggerFactory;
  * Key and value data must not exceed 2GB (each separately).
  *
  * <p>
+ * Size estimates and split keys (see {@link SplittableKVStore}) are derived from the array data as of the most recent
+ * compaction, and so do not reflect mutations since then.
+ *
+ * <p>
  * Instances may be stopped and (re)started multiple times.
  *
  * @see <a href="https://en.wikipedia.org/wiki/Write-ahead_logging">Write-ahead logging</a>
  */
 @ThreadSafe
-public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore {
+public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore, SplittableKVStore {
 
     /**
      * Default compaction maximum delay in seconds ({@value #DEFAULT_COMPACTION_MAX_DELAY} seconds).
@@ -755,6 +761,30 @@ public class AtomicArrayKVStore extends AbstractKVStore implements AtomicKVStore
         this.mutate(mutations, false);
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        this.readLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore != null, "closed");
+            return this.mods.estimateSize(range);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        this.readLock.lock();
+        try {
+            Preconditions.checkState(this.kvstore != null, "closed");
+            return this.mods.getSplitKeys(range, count);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
 // AtomicKVStore
 
     @Override
@@ -6,7 +6,10 @@
 package io.permazen.kv.array;
 
 import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
+import io.permazen.kv.KVTransaction;
 import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.TransactionTimeoutException;
 import io.permazen.kv.test.KVDatabaseTest;
 
 import java.io.File;
@@ -74,6 +77,60 @@ public class ArrayKVDatabaseTest extends KVDatabaseTest {
             thread.join();
     }
 
+    @Test
+    public void testMetrics() throws Exception {
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+        kvstore.setDirectory(this.createTempDirectory());
+        final ArrayKVDatabase kvdb = new ArrayKVDatabase();
+        kvdb.setKVStore(kvstore);
+        final KVDatabaseMetrics metrics = kvdb.getMetrics();
+        kvdb.start();
+        try {
+
+            // A conflict counts as a retry only, even though the loser is then rolled back
+            final KVTransaction tx1 = kvdb.createTransaction();
+            final KVTransaction tx2 = kvdb.createTransaction();
+            Assert.assertNull(tx1.get(b("01")));
+            tx1.put(b("02"), b("22"));
+            tx2.put(b("01"), b("11"));
+            tx2.commit();
+            try {
+                tx1.commit();
+                assert false;
+            } catch (RetryTransactionException e) {
+                // expected
+            }
+            tx1.rollback();
+            Assert.assertEquals(metrics.getCommits(), 1);
+            Assert.assertEquals(metrics.getRetries(), 1);
+            Assert.assertEquals(metrics.getConflicts(), 1);
+            Assert.assertEquals(metrics.getRollbacks(), 0);
+
+            // A timeout counts as a failure only
+            final KVTransaction tx3 = kvdb.createTransaction();
+            tx3.setTimeout(1);
+            Thread.sleep(10);
+            try {
+                tx3.get(b("01"));
+                assert false;
+            } catch (TransactionTimeoutException e) {
+                // expected
+            }
+            tx3.rollback();
+            Assert.assertEquals(metrics.getFailures(), 1);
+            Assert.assertEquals(metrics.getRollbacks(), 0);
+
+            // An application rollback counts as a rollback
+            final KVTransaction tx4 = kvdb.createTransaction();
+            tx4.get(b("01"));
+            tx4.rollback();
+            Assert.assertEquals(metrics.getRollbacks(), 1);
+            Assert.assertEquals(metrics.getTransactionsOpened(), 4);
+        } finally {
+            kvdb.stop();
+        }
+    }
+
     private static class BigWriter extends Thread {
 
         private static final int MAX_VALUE_LENGTH = 1024 * 1024;
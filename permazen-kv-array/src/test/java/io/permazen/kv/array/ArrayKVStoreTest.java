@@ -8,6 +8,7 @@ package io.permazen.kv.array;
 import com.google.common.collect.Lists;
 
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.mvcc.AtomicKVStore;
 import io.permazen.kv.test.AtomicKVStoreTest;
 import io.permazen.kv.util.NavigableMapKVStore;
@@ -18,6 +19,7 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -88,14 +90,14 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
             for (int j = 0; j < 100; j++) {
                 key = this.randomKey(maxKeyLen);
                 final byte[] key2 = this.random.nextInt(100) < 75 ? null : this.randomKey(maxKeyLen);
-                int option = this.random.nextInt(40);
+                int option = this.random.nextInt(50);
                 if (option < 10)
                     this.verify(kvstore.get(key), reference.get(key));
                 else if (option < 20)
                     this.verify(kvstore.getAtLeast(key, key2), reference.getAtLeast(key, key2));
                 else if (option < 30)
                     this.verify(kvstore.getAtMost(key, key2), reference.getAtMost(key, key2));
-                else {
+                else if (option < 40) {
                     byte[] minKey = this.random.nextInt(5) == 3 ? null : key;
                     byte[] maxKey = this.random.nextInt(5) == 3 ? null : this.randomKey(maxKeyLen * 2);
                     if (minKey != null && maxKey != null && ByteUtil.compare(minKey, maxKey) > 0) {
@@ -106,6 +108,21 @@ public class ArrayKVStoreTest extends AtomicKVStoreTest {
                     final boolean reverse = this.random.nextBoolean();
                     this.verify(kvstore.getRange(minKey, maxKey, reverse),
                       reference.getRange(minKey, maxKey, reverse));
+                } else {
+                    final byte[] maxKey = key2 != null && ByteUtil.compare(key2, key) >= 0 ? key2 : null;
+                    final KeyRange range = new KeyRange(key, maxKey);
+                    final List<KVPair> pairs = Lists.newArrayList(reference.getRange(key, maxKey, false));
+                    Assert.assertEquals(kvstore.estimateSize(range).getNumKeys(), pairs.size());
+                    final int count = this.random.nextInt(5);
+                    final List<byte[]> splitKeys = kvstore.getSplitKeys(range, count);
+                    Assert.assertTrue(splitKeys.size() <= Math.min(count, Math.max(pairs.size() - 1, 0)));
+                    byte[] prev = key;
+                    for (byte[] splitKey : splitKeys) {
+                        Assert.assertTrue(ByteUtil.compare(splitKey, prev) > 0);
+                        Assert.assertTrue(range.contains(splitKey));
+                        Assert.assertNotNull(reference.get(splitKey));
+                        prev = splitKey;
+                    }
                 }
             }
         }
@@ -0,0 +1,270 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KVTransactionException;
+import io.permazen.kv.mvcc.ChangeLog;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ChangeLogTest extends TestSupport {
+
+    private static final byte[] PREFIX = new byte[] { (byte)0xee };
+
+    @Test
+    private void testChangeLog() throws Exception {
+        final File dir = this.createTempDirectory();
+        ArrayKVDatabase kvdb = this.createDatabase(dir);
+        try {
+            ChangeLog changeLog = kvdb.getChangeLog();
+            Assert.assertEquals(changeLog.getLastSequence(), 0);
+
+            // Commit some transactions
+            this.write(kvdb, tx -> tx.put(b("01"), b("1111")));
+            this.write(kvdb, tx -> {
+                tx.remove(b("01"));
+                tx.put(b("02"), b("2222"));
+            });
+            this.write(kvdb, tx -> tx.get(b("02")));                             // read-only: not logged
+            Assert.assertEquals(changeLog.getLastSequence(), 2);
+
+            // Read them back
+            List<ChangeLog.Entry> entries = this.read(kvdb, changeLog, 1);
+            Assert.assertEquals(entries.size(), 2);
+            Assert.assertEquals(entries.get(0).getSequence(), 1);
+            Assert.assertEquals(entries.get(1).getSequence(), 2);
+            Assert.assertTrue(entries.get(0).getTimestamp() <= entries.get(1).getTimestamp());
+            final Writes writes1 = entries.get(0).getWrites();
+            Assert.assertEquals(writes1.getPuts().size(), 1);
+            Assert.assertEquals(writes1.getPuts().get(b("01")), b("1111"));
+            final Writes writes2 = entries.get(1).getWrites();
+            Assert.assertTrue(writes2.getRemoves().contains(b("01")));
+            Assert.assertEquals(writes2.getPuts().get(b("02")), b("2222"));
+
+            // Tail the log
+            final ChangeLog.Tailer tailer = changeLog.tail(kvdb, 2);
+            entries = tailer.poll(10, 0);
+            Assert.assertEquals(entries.size(), 1);
+            Assert.assertEquals(entries.get(0).getSequence(), 2);
+            Assert.assertEquals(tailer.getPosition(), 3);
+            Assert.assertTrue(tailer.poll(10, 0).isEmpty());
+
+            // Wait for a new entry to be committed by another thread
+            final ArrayKVDatabase kvdb2 = kvdb;
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                final Future<?> future = executor.submit(() -> {
+                    Thread.sleep(100);
+                    this.write(kvdb2, tx -> tx.put(b("03"), b("3333")));
+                    return null;
+                });
+                entries = tailer.poll(10, 5000);
+                future.get();
+            } finally {
+                executor.shutdown();
+            }
+            Assert.assertEquals(entries.size(), 1);
+            Assert.assertEquals(entries.get(0).getSequence(), 3);
+            Assert.assertEquals(entries.get(0).getWrites().getPuts().get(b("03")), b("3333"));
+
+            // Trimming is not itself logged
+            this.write(kvdb, tx -> changeLog.trim(tx, 3));
+            Assert.assertEquals(changeLog.getLastSequence(), 3);
+            entries = this.read(kvdb, changeLog, 1);
+            Assert.assertEquals(entries.size(), 1);
+            Assert.assertEquals(entries.get(0).getSequence(), 3);
+        } finally {
+            kvdb.stop();
+        }
+
+        // Restart and verify sequence numbers continue
+        kvdb = this.createDatabase(dir);
+        try {
+            final ChangeLog changeLog = kvdb.getChangeLog();
+            Assert.assertEquals(changeLog.getLastSequence(), 3);
+            this.write(kvdb, tx -> tx.put(b("04"), b("4444")));
+            final List<ChangeLog.Entry> entries = changeLog.tail(kvdb, 4).poll(10, 0);
+            Assert.assertEquals(entries.size(), 1);
+            Assert.assertEquals(entries.get(0).getSequence(), 4);
+            Assert.assertEquals(entries.get(0).getWrites().getPuts().get(b("04")), b("4444"));
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    private void testTrimAllThenRestart() throws Exception {
+        final File dir = this.createTempDirectory();
+        ArrayKVDatabase kvdb = this.createDatabase(dir);
+        try {
+            final ChangeLog changeLog = kvdb.getChangeLog();
+            for (int i = 1; i <= 3; i++) {
+                final byte[] key = new byte[] { (byte)i };
+                this.write(kvdb, tx -> tx.put(key, ByteUtil.EMPTY));
+            }
+            Assert.assertEquals(changeLog.getLastSequence(), 3);
+
+            // Consumer has read everything, so trims everything; a later, lower trim changes nothing
+            this.write(kvdb, tx -> changeLog.trim(tx, 4));
+            this.write(kvdb, tx -> changeLog.trim(tx, 2));
+            Assert.assertTrue(this.read(kvdb, changeLog, 0).isEmpty());
+        } finally {
+            kvdb.stop();
+        }
+
+        // Restart; sequence numbers must not be reused
+        kvdb = this.createDatabase(dir);
+        try {
+            final ChangeLog changeLog = kvdb.getChangeLog();
+            Assert.assertEquals(changeLog.getLastSequence(), 3);
+            this.write(kvdb, tx -> tx.put(b("04"), b("4444")));
+            Assert.assertEquals(changeLog.getLastSequence(), 4);
+            final List<ChangeLog.Entry> entries = changeLog.tail(kvdb, 4).poll(10, 0);
+            Assert.assertEquals(entries.size(), 1);
+            Assert.assertEquals(entries.get(0).getSequence(), 4);
+            Assert.assertEquals(entries.get(0).getWrites().getPuts().get(b("04")), b("4444"));
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    private void testReadDoesNotConflict() throws Exception {
+        final ArrayKVDatabase kvdb = this.createDatabase(this.createTempDirectory());
+        try {
+            final ChangeLog changeLog = kvdb.getChangeLog();
+            final KVTransaction reader = kvdb.createTransaction();
+            Assert.assertTrue(changeLog.read(reader, 1, 10).isEmpty());
+            reader.put(b("10"), ByteUtil.EMPTY);
+            this.write(kvdb, tx -> tx.put(b("11"), ByteUtil.EMPTY));
+            reader.commit();                                                    // would throw RetryTransactionException
+            Assert.assertEquals(changeLog.getLastSequence(), 2);
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    private void testGroupCommit() throws Exception {
+
+        // Create database whose underlying store blocks, or fails, while applying mutations
+        final CountDownLatch mutating = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final AtomicBoolean fail = new AtomicBoolean();
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore() {
+            @Override
+            public void mutate(Mutations mutations, boolean sync) {
+                if (fail.get())
+                    throw new RuntimeException("simulated failure");
+                mutating.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.mutate(mutations, sync);
+            }
+        };
+        kvstore.setDirectory(this.createTempDirectory());
+        final ArrayKVDatabase kvdb = new ArrayKVDatabase();
+        kvdb.setKVStore(kvstore);
+        kvdb.setGroupCommit(true);
+        kvdb.setChangeLog(new ChangeLog(PREFIX));
+        kvdb.start();
+        final ChangeLog changeLog = kvdb.getChangeLog();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+
+            // Commit a transaction in another thread; it blocks while its batch is being applied
+            final Future<?> future = executor.submit(() -> {
+                this.write(kvdb, tx -> tx.put(b("01"), b("1111")));
+                return null;
+            });
+            Assert.assertTrue(mutating.await(5, TimeUnit.SECONDS));
+
+            // The log entry is not committed until the batch has been applied
+            Assert.assertEquals(changeLog.getLastSequence(), 0);
+            Assert.assertFalse(changeLog.awaitSequence(1, 0));
+            proceed.countDown();
+            future.get();
+            Assert.assertEquals(changeLog.getLastSequence(), 1);
+
+            // A failed batch's log entry is never committed; its sequence number is skipped
+            fail.set(true);
+            try {
+                this.write(kvdb, tx -> tx.put(b("02"), b("2222")));
+                assert false;
+            } catch (KVTransactionException e) {
+                // expected
+            }
+            Assert.assertEquals(changeLog.getLastSequence(), 1);
+            fail.set(false);
+            this.write(kvdb, tx -> tx.put(b("03"), b("3333")));
+            Assert.assertEquals(changeLog.getLastSequence(), 3);
+
+            // Tailing the log skips over the gap
+            final ChangeLog.Tailer tailer = changeLog.tail(kvdb, 1);
+            final List<ChangeLog.Entry> entries = tailer.poll(10, 0);
+            Assert.assertEquals(entries.size(), 2);
+            Assert.assertEquals(entries.get(0).getSequence(), 1);
+            Assert.assertEquals(entries.get(1).getSequence(), 3);
+            Assert.assertEquals(entries.get(1).getWrites().getPuts().get(b("03")), b("3333"));
+            Assert.assertEquals(tailer.getPosition(), 4);
+        } finally {
+            proceed.countDown();
+            executor.shutdown();
+            kvdb.stop();
+        }
+    }
+
+    private ArrayKVDatabase createDatabase(File dir) {
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore();
+        kvstore.setDirectory(dir);
+        final ArrayKVDatabase kvdb = new ArrayKVDatabase();
+        kvdb.setKVStore(kvstore);
+        kvdb.setChangeLog(new ChangeLog(PREFIX));
+        kvdb.start();
+        return kvdb;
+    }
+
+    private void write(ArrayKVDatabase kvdb, Consumer<KVTransaction> action) {
+        final KVTransaction tx = kvdb.createTransaction();
+        boolean success = false;
+        try {
+            action.accept(tx);
+            tx.commit();
+            success = true;
+        } finally {
+            if (!success)
+                tx.rollback();
+        }
+    }
+
+    private List<ChangeLog.Entry> read(ArrayKVDatabase kvdb, ChangeLog changeLog, long minSequence) {
+        final KVTransaction tx = kvdb.createTransaction();
+        try {
+            return changeLog.read(tx, minSequence, Integer.MAX_VALUE);
+        } finally {
+            tx.rollback();
+        }
+    }
+}
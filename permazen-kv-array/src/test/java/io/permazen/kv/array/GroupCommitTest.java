@@ -0,0 +1,110 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.array;
+
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.test.TestSupport;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class GroupCommitTest extends TestSupport {
+
+    @Test
+    public void testVisibleOnlyAfterApply() throws Exception {
+
+        // Create database whose underlying store blocks while applying mutations
+        final CountDownLatch mutating = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final AtomicArrayKVStore kvstore = new AtomicArrayKVStore() {
+            @Override
+            public void mutate(Mutations mutations, boolean sync) {
+                mutating.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.mutate(mutations, sync);
+            }
+        };
+        kvstore.setDirectory(this.createTempDirectory());
+        final ArrayKVDatabase kvdb = new ArrayKVDatabase();
+        kvdb.setKVStore(kvstore);
+        kvdb.setGroupCommit(true);
+        kvdb.start();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final long version = kvdb.getCurrentVersion();
+            final KVTransaction watcher = kvdb.createTransaction();
+            final Future<Void> watch = watcher.watchKey(b("01"));
+            watcher.rollback();
+
+            // Commit a transaction in another thread; it blocks while its batch is being applied
+            final Future<?> commit = executor.submit(() -> {
+                final KVTransaction tx = kvdb.createTransaction();
+                tx.put(b("01"), b("1111"));
+                tx.commit();
+                return null;
+            });
+            Assert.assertTrue(mutating.await(5, TimeUnit.SECONDS));
+
+            // The committed mutations are not yet visible
+            Assert.assertEquals(kvdb.getCurrentVersion(), version);
+            Assert.assertFalse(watch.isDone());
+            final KVTransaction reader = kvdb.createTransaction();
+            reader.setReadOnly(true);
+            Assert.assertNull(reader.get(b("01")));
+            reader.commit();
+
+            // A transaction that read the old value cannot commit writes
+            final KVTransaction writer = kvdb.createTransaction();
+            Assert.assertNull(writer.get(b("01")));
+            writer.put(b("02"), b("2222"));
+            try {
+                writer.commit();
+                assert false;
+            } catch (RetryTransactionException e) {
+                // expected
+            }
+
+            // A transaction that is open when the batch is applied and read the old value is invalidated
+            final KVTransaction open = kvdb.createTransaction();
+            Assert.assertNull(open.get(b("01")));
+            final KVTransaction other = kvdb.createTransaction();
+            Assert.assertNull(other.get(b("03")));
+
+            // Let the batch be applied
+            proceed.countDown();
+            commit.get();
+            Assert.assertTrue(kvdb.getCurrentVersion() > version);
+            watch.get(5, TimeUnit.SECONDS);
+            try {
+                open.get(b("01"));
+                assert false;
+            } catch (RetryTransactionException e) {
+                // expected
+            }
+            open.rollback();
+
+            // Non-conflicting transactions are rebased and see the new data
+            Assert.assertEquals(other.get(b("01")), b("1111"));
+            other.commit();
+        } finally {
+            proceed.countDown();
+            executor.shutdown();
+            kvdb.stop();
+        }
+    }
+}
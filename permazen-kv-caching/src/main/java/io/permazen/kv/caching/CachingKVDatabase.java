@@ -36,6 +36,26 @@ import javax.annotation.PreDestroy;
  * within any given transaction. A corollary is that transactions must be fully isolated from each other.
  * Enabling assertions on this package may detect some violations of this assumption.
  *
+ * <p><b>Shared Cache</b></p>
+ *
+ * <p>
+ * Normally, each transaction starts with an empty cache. Optionally, instances may also maintain a cache of individual
+ * key/value pairs that is shared across transactions (see {@link #setSharedCacheSize setSharedCacheSize()}), so that
+ * frequently read keys are served from memory. The shared cache is kept up to date by applying the mutations of each
+ * transaction as it commits: new values are written through, while removed and adjusted keys are discarded.
+ * Only {@link KVTransaction#get get()} reads are served from the shared cache.
+ *
+ * <p>
+ * Because reads served from the shared cache are invisible to the underlying {@link KVDatabase}, transactions
+ * that read from it are validated at commit time against all transactions that have committed since they started,
+ * and fail with a {@link io.permazen.kv.mvcc.TransactionConflictException} if any of those transactions modified
+ * a key they read from the shared cache. To make this validation possible, commits through this instance
+ * are serialized.
+ *
+ * <p>
+ * <b>Warning:</b> the shared cache assumes that every transaction that modifies the underlying {@link KVDatabase}
+ * is performed through this instance; changes made in any other way will not be seen by the shared cache.
+ *
  * @see CachingKVStore
  */
 public class CachingKVDatabase extends AbstractCachingConfig implements KVDatabase {
@@ -62,10 +82,12 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
     private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
     private long initialRttEstimate = TimeUnit.MILLISECONDS.toNanos(DEFAULT_INITIAL_RTT_ESTIMATE_MILLIS);
     private ExecutorService executor;
+    private int sharedCacheSize;
 
     private boolean started;
     private boolean privateExecutor;
     private MovingAverage rtt;
+    private SharedCache sharedCache;
 
     /**
      * Default constructor.
@@ -200,6 +222,36 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
         this.threadPoolSize = threadPoolSize;
     }
 
+    /**
+     * Get the maximum number of key/value pairs in the cache shared across transactions.
+     *
+     * @return shared cache size, or zero if the shared cache is disabled
+     * @see #setSharedCacheSize
+     */
+    public synchronized int getSharedCacheSize() {
+        return this.sharedCacheSize;
+    }
+
+    /**
+     * Set the maximum number of key/value pairs in the cache shared across transactions.
+     *
+     * <p>
+     * When the shared cache is full, the least recently used pairs are discarded.
+     * See the {@linkplain CachingKVDatabase class description} for details and caveats.
+     *
+     * <p>
+     * Default value is zero, i.e., no shared cache.
+     *
+     * @param sharedCacheSize shared cache size, or zero to disable the shared cache
+     * @throws IllegalStateException if this instance is already started
+     * @throws IllegalArgumentException if {@code sharedCacheSize < 0}
+     */
+    public synchronized void setSharedCacheSize(int sharedCacheSize) {
+        Preconditions.checkArgument(sharedCacheSize >= 0, "sharedCacheSize < 0");
+        Preconditions.checkState(!this.started, "already started");
+        this.sharedCacheSize = sharedCacheSize;
+    }
+
 // Lifecycle
 
     @Override
@@ -217,6 +269,7 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
             });
         }
         this.rtt = new MovingAverage(RTT_ESTIMATE_DECAY_FACTOR, this.initialRttEstimate);
+        this.sharedCache = this.sharedCacheSize > 0 ? new SharedCache(this.sharedCacheSize) : null;
         try {
             this.inner.start();
             this.started = true;
@@ -241,6 +294,7 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
                 this.executor.shutdown();
             this.executor = null;
         }
+        this.sharedCache = null;
         this.inner.stop();
     }
 
@@ -258,7 +312,7 @@ public class CachingKVDatabase extends AbstractCachingConfig implements KVDataba
 
     protected synchronized CachingKVTransaction createTransaction(Supplier<? extends KVTransaction> innerTxCreator) {
         Preconditions.checkState(this.started, "not started");
-        return new CachingKVTransaction(this, innerTxCreator.get(), this.executor, (long)this.rtt.get());
+        return new CachingKVTransaction(this, innerTxCreator, this.executor, (long)this.rtt.get(), this.sharedCache);
     }
 
 // RTT estimate
@@ -7,14 +7,22 @@ package io.permazen.kv.caching;
 
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
 import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.StaleTransactionException;
+import io.permazen.kv.mvcc.Conflict;
 import io.permazen.kv.mvcc.MutableView;
 import io.permazen.kv.mvcc.Mutations;
+import io.permazen.kv.mvcc.Reads;
+import io.permazen.kv.mvcc.TransactionConflictException;
 import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.util.ForwardingKVStore;
 import io.permazen.util.CloseableIterator;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * A transaction associated with a {@link CachingKVDatabase}.
@@ -23,6 +31,7 @@ import java.util.concurrent.Future;
  * Instances create the following "stack":
  * <ul>
  *  <li>A {@link MutableView} to collect any mutations</li>
+ *  <li>If the database has a shared cache, a layer that serves {@link #get get()} from it</li>
  *  <li>A {@link CachingKVStore} to cache transaction data</li>
  *  <li>The underlying {@link KVTransaction}</li>
  * </ul>
@@ -49,12 +58,31 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
      */
     protected final KVTransaction inner;
 
-    CachingKVTransaction(CachingKVDatabase kvdb, KVTransaction inner, ExecutorService executor, long rttEstimate) {
+    private final SharedCache sharedCache;
+    private final long sharedCacheVersion;
+    private final Reads sharedCacheReads;
+
+    private boolean closed;
+
+    CachingKVTransaction(CachingKVDatabase kvdb, Supplier<? extends KVTransaction> innerTxCreator,
+      ExecutorService executor, long rttEstimate, SharedCache sharedCache) {
         this.kvdb = kvdb;
-        this.inner = inner;
-        this.cachingKV = new CachingKVStore(inner, executor, rttEstimate);
+        this.sharedCache = sharedCache;
+
+        // Note starting version before creating the inner transaction, so the latter can't miss any commits
+        this.sharedCacheVersion = sharedCache != null ? sharedCache.begin() : 0;
+        this.sharedCacheReads = sharedCache != null ? new Reads() : null;
+        boolean success = false;
+        try {
+            this.inner = innerTxCreator.get();
+            success = true;
+        } finally {
+            if (!success && sharedCache != null)
+                sharedCache.end(this.sharedCacheVersion);
+        }
+        this.cachingKV = new CachingKVStore(this.inner, executor, rttEstimate);
         this.kvdb.copyCachingConfigTo(this.cachingKV);
-        this.view = new MutableView(this.cachingKV);
+        this.view = new MutableView(sharedCache != null ? new SharedCacheKVStore() : this.cachingKV);
         this.view.disableReadTracking();
     }
 
@@ -83,6 +111,13 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         this.kvdb.updateRttEstimate(this.cachingKV.getRttEstimate());
         this.cachingKV.close();
         this.inner.rollback();
+        synchronized (this) {
+            if (this.closed)
+                return;
+            this.closed = true;
+        }
+        if (this.sharedCache != null)
+            this.sharedCache.end(this.sharedCacheVersion);
     }
 
 // KVStore
@@ -182,10 +217,55 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
 
         // Apply writes and commit tx
         try {
+            if (this.sharedCache != null)
+                this.commitWithSharedCache(writes);
+            else {
+                this.applyWritesBeforeCommitIfNotReadOnly(writes);
+                this.inner.commit();
+            }
+        } finally {
+            this.close();
+        }
+    }
+
+    private void commitWithSharedCache(Writes writes) {
+
+        // If we neither read from nor modify the shared cache, there's nothing to coordinate
+        final boolean recordWrites = !this.inner.isReadOnly() && !writes.isEmpty();
+        final boolean sharedReads;
+        synchronized (this.sharedCacheReads) {
+            sharedReads = !this.sharedCacheReads.isEmpty();
+        }
+        if (!recordWrites && !sharedReads) {
             this.applyWritesBeforeCommitIfNotReadOnly(writes);
             this.inner.commit();
+            return;
+        }
+
+        // Validate and reserve our commit while holding the commit lock
+        final SharedCache.Commit commit;
+        synchronized (this.sharedCache.commitLock) {
+
+            // Verify nothing we read from the shared cache has since been modified, and vice-versa for commits in progress
+            final Writes recordedWrites = recordWrites ? writes : new Writes();
+            final Reads reads;
+            synchronized (this.sharedCacheReads) {
+                reads = this.sharedCacheReads.immutableSnapshot();
+            }
+            final Conflict conflict = this.sharedCache.validate(reads, recordedWrites, this.sharedCacheVersion);
+            if (conflict != null)
+                throw new TransactionConflictException(this, conflict, "conflict with shared cache: " + conflict);
+            commit = this.sharedCache.reserve(reads, recordedWrites);
+        }
+
+        // Commit without holding the commit lock, then record the outcome
+        boolean success = false;
+        try {
+            this.applyWritesBeforeCommitIfNotReadOnly(writes);
+            this.inner.commit();
+            success = true;
         } finally {
-            this.close();
+            this.sharedCache.completed(commit, success);
         }
     }
 
@@ -218,4 +298,38 @@ public class CachingKVTransaction extends AbstractCachingConfig implements KVTra
         if (!this.inner.isReadOnly())
             writes.applyTo(this.inner);
     }
+
+// SharedCacheKVStore
+
+    /**
+     * Serves {@link #get get()} from the shared cache, when possible, and loads the shared cache otherwise.
+     */
+    private class SharedCacheKVStore extends ForwardingKVStore {
+
+        @Override
+        protected KVStore delegate() {
+            return CachingKVTransaction.this.cachingKV;
+        }
+
+        @Override
+        public byte[] get(byte[] key) {
+            synchronized (CachingKVTransaction.this) {
+                if (CachingKVTransaction.this.closed)
+                    throw new StaleTransactionException(CachingKVTransaction.this);
+            }
+            final SharedCache sharedCache = CachingKVTransaction.this.sharedCache;
+            final long version = CachingKVTransaction.this.sharedCacheVersion;
+            final byte[] value = sharedCache.get(key, version);
+            if (value != SharedCache.MISS) {
+                final Reads reads = CachingKVTransaction.this.sharedCacheReads;
+                synchronized (reads) {
+                    reads.add(new KeyRange(key));
+                }
+                return value != null ? value.clone() : null;
+            }
+            final byte[] innerValue = super.get(key);
+            sharedCache.load(key.clone(), innerValue != null ? innerValue.clone() : null, version);
+            return innerValue;
+        }
+    }
 }
@@ -0,0 +1,338 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Conflict;
+import io.permazen.kv.mvcc.Reads;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * A cache of individual key/value pairs shared by all of the transactions of a {@link CachingKVDatabase}.
+ *
+ * <p>
+ * Each cached pair records the version as of which it's been known to be valid; a transaction may only use pairs
+ * valid as of its starting version. Because a transaction reading from this cache bypasses the underlying database's
+ * conflict detection, instances also keep the {@link Writes} of every commit that some open transaction may not have seen,
+ * so those reads can be {@linkplain #validate validated} at commit time.
+ *
+ * <p>
+ * A commit happens in two steps. First, while holding {@link #commitLock}, the transaction is {@linkplain #validate validated}
+ * and then {@linkplain #reserve reserved}, which increments this instance's version number and discards any cached pairs
+ * the commit may modify. Then, after the underlying commit, the outcome is {@linkplain #completed recorded}: on success,
+ * the new values are written through to the cache; on failure, the commit may or may not have taken effect, so the
+ * affected pairs simply stay discarded. While a commit is in progress, the pairs it may modify cannot be loaded.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+final class SharedCache {
+
+    /**
+     * Sentinel value returned by {@link #get get()} when the key is not found in the cache.
+     */
+    static final byte[] MISS = new byte[0];
+
+    /**
+     * Lock held by committing transactions while they {@link #validate validate} and {@link #reserve reserve} their commit.
+     */
+    final Object commitLock = new Object();
+
+    private final int maxEntries;
+    private final TreeMap<byte[], Entry> entries = new TreeMap<>(ByteUtil.COMPARATOR);
+    private final RingEntry<Entry> lru = new RingEntry<>(null);             // entries ordered by recency (MRU first, LRU last)
+    private final ArrayDeque<Commit> commits = new ArrayDeque<>();          // commits not yet seen by some open tx, oldest first
+    private final ArrayList<Commit> pending = new ArrayList<>();            // reserved commits not yet completed
+    private final TreeMap<Long, Integer> openVersions = new TreeMap<>();    // starting version -> # open transactions
+
+    private long version;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries maximum number of cached key/value pairs
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    SharedCache(int maxEntries) {
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries <= 0");
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the current version.
+     *
+     * @return number of commits recorded so far
+     */
+    synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Get the number of cached key/value pairs.
+     *
+     * @return current cache size
+     */
+    synchronized int size() {
+        return this.entries.size();
+    }
+
+// Transactions
+
+    /**
+     * Register the start of a new transaction.
+     *
+     * @return the transaction's starting version
+     */
+    synchronized long begin() {
+        this.openVersions.merge(this.version, 1, Integer::sum);
+        return this.version;
+    }
+
+    /**
+     * Register the end of a transaction previously registered via {@link #begin}.
+     *
+     * @param startVersion the transaction's starting version
+     */
+    synchronized void end(long startVersion) {
+        final Integer count = this.openVersions.get(startVersion);
+        assert count != null;
+        if (count > 1)
+            this.openVersions.put(startVersion, count - 1);
+        else
+            this.openVersions.remove(startVersion);
+        this.trimCommits();
+    }
+
+    /**
+     * Validate a transaction that is about to commit.
+     *
+     * <p>
+     * Reads made from this cache conflict with any commit reserved after {@code startVersion}. In addition,
+     * because the underlying database may order concurrent commits differently, {@code writes} conflict with
+     * reads made from this cache by any other transaction whose commit is still in progress.
+     *
+     * <p>
+     * The caller should be holding {@link #commitLock}.
+     *
+     * @param reads keys read from this cache
+     * @param writes mutations to be committed
+     * @param startVersion the transaction's starting version
+     * @return the first conflict found, or null if there is none
+     */
+    synchronized Conflict validate(Reads reads, Writes writes, long startVersion) {
+        assert Thread.holdsLock(this.commitLock);
+        if (!reads.isEmpty()) {
+            for (Commit commit : this.commits) {
+                if (commit.version <= startVersion)
+                    continue;
+                final Conflict conflict = reads.findConflict(commit.writes);
+                if (conflict != null)
+                    return conflict;
+            }
+        }
+        if (!writes.isEmpty()) {
+            for (Commit commit : this.pending) {
+                final Conflict conflict = commit.reads.findConflict(writes);
+                if (conflict != null)
+                    return conflict;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserve a commit that has been {@linkplain #validate validated}.
+     *
+     * <p>
+     * If {@code writes} is not empty, this increments the version number and discards any cached pairs that
+     * {@code writes} may modify. The caller must invoke {@link #completed completed()} after the underlying commit.
+     *
+     * <p>
+     * The caller should be holding {@link #commitLock}.
+     *
+     * @param reads keys read from this cache
+     * @param writes mutations to be committed
+     * @return the pending commit
+     */
+    synchronized Commit reserve(Reads reads, Writes writes) {
+        assert Thread.holdsLock(this.commitLock);
+        final Commit commit = new Commit(reads, writes);
+        if (!writes.isEmpty()) {
+            commit.version = ++this.version;
+            if (!this.openVersions.isEmpty())
+                this.commits.add(commit);
+
+            // If another commit in progress modifies the same keys, we don't know which will take effect last
+            for (Commit other : this.pending) {
+                if (other.footprint != null && other.footprint.isConflict(writes))
+                    commit.contended = other.contended = true;
+            }
+
+            // Discard affected pairs
+            for (KeyRange range : commit.footprint) {
+                final byte[] max = range.getMax();
+                final NavigableMap<byte[], Entry> subMap = max != null ?
+                  this.entries.subMap(range.getMin(), true, max, false) : this.entries.tailMap(range.getMin(), true);
+                for (Entry entry : subMap.values())
+                    entry.lruEntry.detach();
+                subMap.clear();
+            }
+        }
+        this.pending.add(commit);
+        return commit;
+    }
+
+    /**
+     * Record the outcome of a commit previously {@linkplain #reserve reserved}.
+     *
+     * <p>
+     * If the commit modified anything, this increments the version number again, so that transactions that started while
+     * the commit was in progress, whose underlying transactions may or may not reflect it, can't use pairs loaded afterward.
+     * If the commit succeeded, its new values are then written through, unless another commit modifying the same keys was
+     * in progress at the same time. If the commit failed, it may or may not have taken effect, so nothing is written through.
+     *
+     * @param commit pending commit returned from {@link #reserve reserve()}
+     * @param success true if the underlying commit succeeded
+     */
+    synchronized void completed(Commit commit, boolean success) {
+        final boolean removed = this.pending.remove(commit);
+        assert removed;
+        if (commit.footprint == null)
+            return;
+        final long completedVersion = ++this.version;
+        if (!success || commit.contended)
+            return;
+        for (Map.Entry<byte[], byte[]> put : commit.writes.getPuts().entrySet()) {
+            if (!this.isPending(put.getKey()))
+                this.store(put.getKey(), put.getValue(), completedVersion);
+        }
+    }
+
+// Cache access
+
+    /**
+     * Get the cached value for the given key, if it's valid as of the given version.
+     *
+     * @param key key
+     * @param startVersion the reading transaction's starting version
+     * @return value for {@code key} (possibly null), or {@link #MISS} if not known
+     */
+    synchronized byte[] get(byte[] key, long startVersion) {
+        final Entry entry = this.entries.get(key);
+        if (entry == null || entry.validFrom > startVersion)
+            return MISS;
+        entry.lruEntry.attachAfter(this.lru);
+        return entry.value;
+    }
+
+    /**
+     * Cache the value for the given key read by a transaction from the underlying database.
+     *
+     * <p>
+     * The value is only cached if there have been no commits since {@code startVersion}, and no commit in progress
+     * may modify it; otherwise, the value may have already been superseded.
+     *
+     * @param key key
+     * @param value value for {@code key}, or null if not found
+     * @param startVersion the reading transaction's starting version
+     */
+    synchronized void load(byte[] key, byte[] value, long startVersion) {
+        if (startVersion != this.version || this.entries.containsKey(key) || this.isPending(key))
+            return;
+        this.store(key, value, startVersion);
+    }
+
+    private void store(byte[] key, byte[] value, long validFrom) {
+        assert Thread.holdsLock(this);
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            this.entries.put(key, entry);
+        }
+        entry.value = value;
+        entry.validFrom = validFrom;
+        entry.lruEntry.attachAfter(this.lru);
+        while (this.entries.size() > this.maxEntries) {
+            final Entry eldest = this.lru.prev().getOwner();
+            assert eldest != null;
+            eldest.lruEntry.detach();
+            this.entries.remove(eldest.key);
+        }
+    }
+
+    private boolean isPending(byte[] key) {
+        assert Thread.holdsLock(this);
+        for (Commit commit : this.pending) {
+            if (commit.footprint != null && commit.footprint.contains(key))
+                return true;
+        }
+        return false;
+    }
+
+    private void trimCommits() {
+        assert Thread.holdsLock(this);
+        if (this.openVersions.isEmpty()) {
+            this.commits.clear();
+            return;
+        }
+        final long oldestVersion = this.openVersions.firstKey();
+        while (!this.commits.isEmpty() && this.commits.peekFirst().version <= oldestVersion)
+            this.commits.removeFirst();
+    }
+
+// Entry
+
+    private static final class Entry {
+
+        final byte[] key;
+        final RingEntry<Entry> lruEntry = new RingEntry<>(this);
+
+        byte[] value;
+        long validFrom;
+
+        Entry(byte[] key) {
+            this.key = key;
+        }
+    }
+
+// Commit
+
+    /**
+     * A reserved commit.
+     */
+    static final class Commit {
+
+        final Reads reads;                                              // keys read from the shared cache
+        final Writes writes;
+        final Reads footprint;                                          // keys possibly modified, or null if none
+
+        long version;
+        boolean contended;
+
+        Commit(Reads reads, Writes writes) {
+            this.reads = reads;
+            this.writes = writes;
+            if (writes.isEmpty()) {
+                this.footprint = null;
+                return;
+            }
+            this.footprint = new Reads(writes.getRemoves());
+            for (byte[] key : writes.getPuts().keySet())
+                this.footprint.add(new KeyRange(key));
+            for (byte[] key : writes.getAdjusts().keySet())
+                this.footprint.add(new KeyRange(key));
+        }
+    }
+}
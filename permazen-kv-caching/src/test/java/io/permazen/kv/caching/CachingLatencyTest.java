@@ -0,0 +1,79 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.kv.util.LatencyKVDatabase;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the number of round trips per logical operation with and without {@link CachingKVDatabase}.
+ */
+public class CachingLatencyTest extends TestSupport {
+
+    private static final int NUM_KEYS = 500;
+
+    @Test
+    public void testCachingRoundTrips() throws Exception {
+
+        // Setup database with simulated latency
+        final LatencyKVDatabase latencyKV = new LatencyKVDatabase(new SimpleKVDatabase());
+        latencyKV.setReadLatency(200);
+        latencyKV.setJitter(0.25);
+        final KVTransaction tx = latencyKV.createTransaction();
+        for (int i = 0; i < NUM_KEYS; i++)
+            tx.put(this.key(i), new byte[20]);
+        tx.commit();
+
+        // Measure round trips for sequential scan without caching
+        final double directRoundTrips = this.measureScan(latencyKV, latencyKV);
+
+        // Measure round trips for sequential scan with caching and read-ahead
+        final CachingKVDatabase cachingKV = new CachingKVDatabase(latencyKV);
+        cachingKV.setInitialRttEstimate(200000L);
+        cachingKV.start();
+        final double cachingRoundTrips;
+        try {
+            cachingRoundTrips = this.measureScan(cachingKV, latencyKV);
+        } finally {
+            cachingKV.stop();
+        }
+
+        this.log.info("round trips per key: direct={} caching={}",
+          String.format("%.3f", directRoundTrips), String.format("%.3f", cachingRoundTrips));
+        Assert.assertTrue(directRoundTrips >= 1.0);
+        Assert.assertTrue(cachingRoundTrips < directRoundTrips / 2);
+    }
+
+    // Read every key, one at a time, in order; return average round trips per key
+    private double measureScan(KVDatabase kvdb, LatencyKVDatabase latencyKV) {
+        final KVTransaction tx = kvdb.createTransaction();
+        latencyKV.resetStatistics();
+        byte[] key = ByteUtil.EMPTY;
+        int count = 0;
+        KVPair pair;
+        while ((pair = tx.getAtLeast(key, null)) != null) {
+            Assert.assertEquals(pair.getKey(), this.key(count));
+            key = ByteUtil.getNextKey(pair.getKey());
+            count++;
+        }
+        Assert.assertEquals(count, NUM_KEYS);
+        final double roundTrips = (double)latencyKV.getRoundTrips() / NUM_KEYS;
+        tx.rollback();
+        return roundTrips;
+    }
+
+    private byte[] key(int i) {
+        return new byte[] { (byte)(i >> 8), (byte)i };
+    }
+}
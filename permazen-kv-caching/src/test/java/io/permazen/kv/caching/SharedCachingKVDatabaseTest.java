@@ -0,0 +1,296 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.caching;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+import io.permazen.util.ByteUtil;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class SharedCachingKVDatabaseTest extends KVDatabaseTest {
+
+    private CachingKVDatabase kvdb;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("testCachingKV")
+    public void setTestCachingKV(@Optional String testCachingKV) {
+        if (testCachingKV != null && Boolean.valueOf(testCachingKV)) {
+            this.kvdb = new CachingKVDatabase(new SimpleKVDatabase(250, 5000));
+            this.kvdb.setSharedCacheSize(100);
+        }
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.kvdb;
+    }
+
+    @Test
+    public void testSharedCacheConflict() throws Exception {
+        final CachingKVDatabase db = new CachingKVDatabase(new SimpleKVDatabase());
+        db.setSharedCacheSize(10);
+        db.start();
+        try {
+            final byte[] key1 = ByteUtil.parse("01");
+            final byte[] key2 = ByteUtil.parse("02");
+
+            // Populate shared cache
+            KVTransaction tx = db.createTransaction();
+            tx.put(key1, ByteUtil.parse("10"));
+            tx.commit();
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("10"));
+            tx.commit();
+
+            // Read key1 from shared cache, then have another transaction modify it
+            final KVTransaction tx1 = db.createTransaction();
+            Assert.assertEquals(tx1.get(key1), ByteUtil.parse("10"));
+            final KVTransaction tx2 = db.createTransaction();
+            tx2.put(key1, ByteUtil.parse("11"));
+            tx2.commit();
+
+            // New transactions see the written-through value
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("11"));
+            tx.commit();
+
+            // The first transaction must not be allowed to commit
+            tx1.put(key2, ByteUtil.parse("20"));
+            try {
+                tx1.commit();
+                assert false : "expected conflict";
+            } catch (RetryTransactionException e) {
+                this.log.debug("got expected {}", e.toString());
+            }
+
+            // Removes are reflected in the shared cache
+            tx = db.createTransaction();
+            tx.removeRange(null, null);
+            tx.commit();
+            tx = db.createTransaction();
+            Assert.assertNull(tx.get(key1));
+            Assert.assertNull(tx.get(key2));
+            tx.commit();
+        } finally {
+            db.stop();
+        }
+    }
+
+    @Test
+    public void testSharedCacheFailedCommit() throws Exception {
+        final InterceptingKVDatabase inner = new InterceptingKVDatabase();
+        final CachingKVDatabase db = new CachingKVDatabase(inner);
+        db.setSharedCacheSize(10);
+        db.start();
+        try {
+            final byte[] key1 = ByteUtil.parse("01");
+
+            // Populate shared cache
+            KVTransaction tx = db.createTransaction();
+            tx.put(key1, ByteUtil.parse("10"));
+            tx.commit();
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("10"));
+            tx.commit();
+
+            // Commit fails without taking effect; the new value must not be cached
+            inner.commitHook = innerTx -> {
+                innerTx.rollback();
+                throw new RetryTransactionException(innerTx, "simulated failure");
+            };
+            tx = db.createTransaction();
+            tx.put(key1, ByteUtil.parse("11"));
+            try {
+                tx.commit();
+                assert false : "expected failure";
+            } catch (RetryTransactionException e) {
+                this.log.debug("got expected {}", e.toString());
+            }
+            inner.commitHook = null;
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("10"));
+            tx.commit();
+
+            // Commit fails after taking effect; the old value must not remain cached
+            inner.commitHook = innerTx -> {
+                innerTx.commit();
+                throw new RetryTransactionException(innerTx, "simulated failure");
+            };
+            tx = db.createTransaction();
+            tx.put(key1, ByteUtil.parse("12"));
+            try {
+                tx.commit();
+                assert false : "expected failure";
+            } catch (RetryTransactionException e) {
+                this.log.debug("got expected {}", e.toString());
+            }
+            inner.commitHook = null;
+            for (int i = 0; i < 2; i++) {
+                tx = db.createTransaction();
+                Assert.assertEquals(tx.get(key1), ByteUtil.parse("12"));
+                tx.commit();
+            }
+        } finally {
+            db.stop();
+        }
+    }
+
+    @Test
+    public void testSharedCacheConcurrentCommits() throws Exception {
+        final InterceptingKVDatabase inner = new InterceptingKVDatabase();
+        final CachingKVDatabase db = new CachingKVDatabase(inner);
+        db.setSharedCacheSize(10);
+        db.start();
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final byte[] key1 = ByteUtil.parse("01");
+            final byte[] key2 = ByteUtil.parse("02");
+            final byte[] key3 = ByteUtil.parse("03");
+
+            // Populate shared cache
+            KVTransaction tx = db.createTransaction();
+            tx.put(key1, ByteUtil.parse("10"));
+            tx.put(key2, ByteUtil.parse("20"));
+            tx.commit();
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("10"));
+            Assert.assertEquals(tx.get(key2), ByteUtil.parse("20"));
+            tx.commit();
+
+            // Start a transaction that reads key1 from the shared cache
+            final KVTransaction reader = db.createTransaction();
+            Assert.assertEquals(reader.get(key1), ByteUtil.parse("10"));
+
+            // Start a commit that reads key2 from the shared cache and stalls after the underlying commit succeeds
+            final CountDownLatch committing = new CountDownLatch(1);
+            final CountDownLatch proceed = new CountDownLatch(1);
+            inner.commitHook = innerTx -> {
+                innerTx.commit();
+                committing.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+            final KVTransaction tx1 = db.createTransaction();
+            Assert.assertEquals(tx1.get(key2), ByteUtil.parse("20"));
+            tx1.put(key1, ByteUtil.parse("11"));
+            final Future<?> commit1 = executor.submit(tx1::commit);
+            Assert.assertTrue(committing.await(5, TimeUnit.SECONDS));
+            inner.commitHook = null;
+
+            // Other transactions can commit meanwhile
+            executor.submit(() -> {
+                final KVTransaction tx2 = db.createTransaction();
+                tx2.put(key3, ByteUtil.parse("30"));
+                tx2.commit();
+            }).get(5, TimeUnit.SECONDS);
+
+            // A transaction that read from the shared cache a key modified by the commit in progress cannot commit
+            reader.put(key3, ByteUtil.parse("31"));
+            try {
+                reader.commit();
+                assert false : "expected conflict";
+            } catch (RetryTransactionException e) {
+                this.log.debug("got expected {}", e.toString());
+            }
+
+            // A transaction that modifies a key read from the shared cache by the commit in progress cannot commit
+            tx = db.createTransaction();
+            tx.put(key2, ByteUtil.parse("21"));
+            try {
+                tx.commit();
+                assert false : "expected conflict";
+            } catch (RetryTransactionException e) {
+                this.log.debug("got expected {}", e.toString());
+            }
+
+            // Read key1 while the commit is still in progress
+            tx = db.createTransaction();
+            Assert.assertEquals(tx.get(key1), ByteUtil.parse("11"));
+            tx.commit();
+
+            // Let the first commit finish; everyone should see all the new values
+            proceed.countDown();
+            commit1.get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 2; i++) {
+                tx = db.createTransaction();
+                Assert.assertEquals(tx.get(key1), ByteUtil.parse("11"));
+                Assert.assertEquals(tx.get(key2), ByteUtil.parse("20"));
+                Assert.assertEquals(tx.get(key3), ByteUtil.parse("30"));
+                tx.commit();
+            }
+        } finally {
+            executor.shutdownNow();
+            db.stop();
+        }
+    }
+
+// InterceptingKVDatabase
+
+    // Allows tests to intercept commits of the underlying transactions
+    private static class InterceptingKVDatabase implements KVDatabase {
+
+        final SimpleKVDatabase inner = new SimpleKVDatabase();
+
+        volatile Consumer<KVTransaction> commitHook;
+
+        @Override
+        public void start() {
+            this.inner.start();
+        }
+
+        @Override
+        public void stop() {
+            this.inner.stop();
+        }
+
+        @Override
+        public KVTransaction createTransaction() {
+            return this.wrap(this.inner.createTransaction());
+        }
+
+        @Override
+        public KVTransaction createTransaction(Map<String, ?> options) {
+            return this.wrap(this.inner.createTransaction(options));
+        }
+
+        private KVTransaction wrap(KVTransaction tx) {
+            return (KVTransaction)Proxy.newProxyInstance(KVTransaction.class.getClassLoader(),
+              new Class<?>[] { KVTransaction.class }, (proxy, method, args) -> {
+                final Consumer<KVTransaction> hook = this.commitHook;
+                if (method.getName().equals("commit") && hook != null) {
+                    hook.accept(tx);
+                    return null;
+                }
+                try {
+                    return method.invoke(tx, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+    }
+}
@@ -15,20 +15,27 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.primitives.Bytes;
 
+import io.permazen.kv.AsyncKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * A {@link KVStore} view of a FoundationDB {@link Transaction}.
+ *
+ * <p>
+ * Asynchronous reads via {@link AsyncKVStore} are supported natively.
  */
 @ThreadSafe
-public class FoundationKVStore implements KVStore {
+public class FoundationKVStore implements AsyncKVStore {
 
     private static final byte[] MIN_KEY = ByteUtil.EMPTY;                   // minimum possible key (inclusive)
     private static final byte[] MAX_KEY = new byte[] { (byte)0xff };        // maximum possible key (exclusive)
@@ -158,6 +165,31 @@ public class FoundationKVStore implements KVStore {
         this.tx.mutate(MutationType.ADD, this.addPrefix(key), this.encodeCounter(amount));
     }
 
+// AsyncKVStore
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        Preconditions.checkArgument(key.length == 0 || key[0] != (byte)0xff, "key starts with 0xff");
+        return this.tx.get(this.addPrefix(key));
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit < 0");
+        if (minKey != null && minKey.length > 0 && minKey[0] == (byte)0xff)
+            minKey = MAX_KEY;
+        if (maxKey != null && maxKey.length > 0 && maxKey[0] == (byte)0xff)
+            maxKey = null;
+        Preconditions.checkArgument(minKey == null || maxKey == null || ByteUtil.compare(minKey, maxKey) <= 0, "minKey > maxKey");
+        final int rowLimit = limit != 0 ? limit : ReadTransaction.ROW_LIMIT_UNLIMITED;
+        return this.tx.getRange(this.addPrefix(minKey, maxKey), rowLimit, reverse).asList().thenApply(kvs -> {
+            final ArrayList<KVPair> list = new ArrayList<>(kvs.size());
+            for (KeyValue kv : kvs)
+                list.add(new KVPair(this.removePrefix(kv.getKey()), kv.getValue()));
+            return list;
+        });
+    }
+
 // Key prefixing
 
     byte[] addPrefix(byte[] key) {
@@ -9,6 +9,7 @@ import com.apple.foundationdb.FDBException;
 import com.apple.foundationdb.Transaction;
 import com.google.common.base.Preconditions;
 
+import io.permazen.kv.AsyncKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
@@ -22,17 +23,25 @@ import io.permazen.kv.mvcc.Writes;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * FoundationDB transaction.
+ *
+ * <p>
+ * Asynchronous reads via {@link AsyncKVStore} are supported natively, except in read-only transactions.
  */
 @ThreadSafe
-public class FoundationKVTransaction implements KVTransaction {
+public class FoundationKVTransaction implements KVTransaction, AsyncKVStore {
 
     private static final byte[] MIN_KEY = ByteUtil.EMPTY;                   // minimum possible key (inclusive)
     private static final byte[] MAX_KEY = new byte[] { (byte)0xff };        // maximum possible key (exclusive)
@@ -229,6 +238,59 @@ public class FoundationKVTransaction implements KVTransaction {
         }
     }
 
+// AsyncKVStore
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        return this.doAsync(kv -> kv.getAsync(key), () -> this.get(key));
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit < 0");
+        return this.doAsync(kv -> kv.getRangeAsync(minKey, maxKey, reverse, limit), () -> {
+            final ArrayList<KVPair> list = new ArrayList<>();
+            try (CloseableIterator<KVPair> i = this.getRange(minKey, maxKey, reverse)) {
+                while (i.hasNext() && (limit == 0 || list.size() < limit))
+                    list.add(i.next());
+            }
+            return list;
+        });
+    }
+
+    // Read-only transactions read through a MutableView, which is synchronous only
+    private <T> CompletableFuture<T> doAsync(Function<AsyncKVStore, CompletableFuture<T>> asyncRead, Supplier<T> syncRead) {
+        final KVStore kv = this.getKVStore();
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (!(kv instanceof AsyncKVStore)) {
+            try {
+                result.complete(syncRead.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        final CompletableFuture<T> future;
+        try {
+            future = asyncRead.apply((AsyncKVStore)kv);
+        } catch (FDBException e) {
+            this.close();
+            throw this.wrapException(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+            if (error instanceof FDBException) {
+                this.close();
+                result.completeExceptionally(this.wrapException((FDBException)error));
+            } else if (error != null)
+                result.completeExceptionally(error);
+            else
+                result.complete(value);
+        });
+        return result;
+    }
+
 // Internal methods
 
     private synchronized void close() {
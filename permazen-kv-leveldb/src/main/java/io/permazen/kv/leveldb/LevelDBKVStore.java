@@ -10,14 +10,21 @@ import com.google.common.base.Preconditions;
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
+import io.permazen.kv.util.SplitKeyUtil;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 import io.permazen.util.CloseableTracker;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Range;
 import org.iq80.leveldb.ReadOptions;
 import org.iq80.leveldb.WriteBatch;
 import org.slf4j.Logger;
@@ -28,8 +35,19 @@ import org.slf4j.LoggerFactory;
  *
  * <p>
  * Instances must be {@link #close}'d when no longer needed to avoid leaking resources associated with iterators.
+ *
+ * <p>
+ * Size estimates and split keys (see {@link SplittableKVStore}) are based on the approximate on-disk sizes of key ranges
+ * reported by LevelDB, which reflect the entire database rather than any snapshot, and (for key counts) on sampling.
  */
-public class LevelDBKVStore extends AbstractKVStore implements CloseableKVStore {
+public class LevelDBKVStore extends AbstractKVStore implements CloseableKVStore, SplittableKVStore {
+
+    private static final int ESTIMATE_SAMPLE_SIZE = 64;                  // # pairs sampled to estimate average pair size
+    private static final byte[] MAX_KEY = new byte[32];                  // stands in for the "no upper bound" key
+
+    static {
+        Arrays.fill(MAX_KEY, (byte)0xff);
+    }
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final CloseableTracker cursorTracker = new CloseableTracker();
@@ -118,6 +136,27 @@ public class LevelDBKVStore extends AbstractKVStore implements CloseableKVStore
             this.db.delete(key);
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkState(!this.closed, "closed");
+        return SplitKeyUtil.sample(this, range, this.approximateSize(range), ESTIMATE_SAMPLE_SIZE);
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkState(!this.closed, "closed");
+        return SplitKeyUtil.bisect(this, range, count, this::approximateSize);
+    }
+
+    private long approximateSize(KeyRange range) {
+        final byte[] maxKey = range.getMax() != null ? range.getMax() : MAX_KEY;
+        return this.db.getApproximateSizes(new Range(range.getMin(), maxKey))[0];
+    }
+
 // Object
 
     /**
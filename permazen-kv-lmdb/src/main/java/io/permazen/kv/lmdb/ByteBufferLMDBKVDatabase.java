@@ -0,0 +1,35 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.lmdbjava.ByteBufferProxy;
+import org.lmdbjava.Dbi;
+import org.lmdbjava.Env;
+
+/**
+ * {@link LMDBKVDatabase} using direct {@link ByteBuffer}s.
+ *
+ * <p>
+ * Compared to {@link ByteArrayLMDBKVDatabase}, this class avoids intermediate copies when reading and writing keys and values:
+ * data read from the memory-mapped LMDB file is copied exactly once, directly into the {@code byte[]} array returned
+ * to the caller, and key comparisons during iteration are performed in place on the memory-mapped data.
+ * In addition, {@link ByteBufferLMDBKVStore#getView ByteBufferLMDBKVStore.getView()} provides zero-copy read-only
+ * access to values.
+ */
+public class ByteBufferLMDBKVDatabase extends LMDBKVDatabase<ByteBuffer> {
+
+    public ByteBufferLMDBKVDatabase() {
+        super(Env.create(ByteBufferProxy.PROXY_OPTIMAL));
+    }
+
+    @Override
+    protected ByteBufferLMDBKVTransaction doCreateTransaction(Env<ByteBuffer> env, Dbi<ByteBuffer> db, Map<String, ?> options) {
+        return new ByteBufferLMDBKVTransaction(this, env, db);
+    }
+}
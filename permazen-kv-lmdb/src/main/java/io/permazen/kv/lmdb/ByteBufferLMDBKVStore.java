@@ -0,0 +1,135 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+
+import org.lmdbjava.Dbi;
+import org.lmdbjava.Txn;
+
+/**
+ * {@link io.permazen.kv.KVStore} view of a LMDB transaction using direct {@link ByteBuffer}s.
+ *
+ * <p>
+ * Keys and values for single-shot operations such as {@link #get get()} and {@link #put put()} are written into
+ * reusable per-thread direct buffers, and data read from LMDB is copied exactly once, directly from the memory-mapped file.
+ * Use {@link #getView getView()} to access a value without copying it at all.
+ *
+ * <p>
+ * Instances must be {@link #close}'d when no longer needed to avoid leaking resources.
+ */
+public class ByteBufferLMDBKVStore extends LMDBKVStore<ByteBuffer> {
+
+    private static final int MIN_SCRATCH_BUFFER_SIZE = 1024;
+    private static final int MAX_SCRATCH_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> KEY_BUFFER = new ThreadLocal<>();
+    private static final ThreadLocal<ByteBuffer> VALUE_BUFFER = new ThreadLocal<>();
+
+// Constructors
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Closing this instance does <i>not</i> close the underlying transaction.
+     *
+     * @param db LMDB database
+     * @param tx LMDB transaction
+     * @throws IllegalArgumentException if {@code db} or {@code tx} is null
+     */
+    public ByteBufferLMDBKVStore(Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
+        super(db, tx);
+    }
+
+    /**
+     * Get a read-only view of the value associated with the given key, if any, without copying it.
+     *
+     * <p>
+     * The returned buffer directly accesses the memory-mapped LMDB file. It remains valid until the underlying
+     * transaction ends or, for read/write transactions, until the next modification in the transaction.
+     * Accessing it after that point results in undefined behavior, which may include a JVM crash.
+     *
+     * @param key key
+     * @return read-only view of the value associated with key, or null if not found
+     * @throws IllegalStateException if this instance is closed
+     * @throws NullPointerException if {@code key} is null
+     */
+    public ByteBuffer getView(byte[] key) {
+        key.getClass();
+        Preconditions.checkState(!this.isClosed(), "transaction closed");
+        final ByteBuffer value = this.getDatabase().get(this.getTransaction(), this.wrapKey(key, true));
+        return value != null ? value.asReadOnlyBuffer() : null;
+    }
+
+// LMDBKVStore
+
+    @Override
+    protected ByteBuffer wrap(byte[] data, boolean copy) {
+        if (data == null)
+            return null;
+        final ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+        buf.put(data);
+        buf.flip();
+        return buf;
+    }
+
+    @Override
+    protected byte[] unwrap(ByteBuffer buf, boolean copy) {
+        if (buf == null)
+            return null;
+        final byte[] data = new byte[buf.remaining()];
+        buf.duplicate().get(data);
+        return data;
+    }
+
+    @Override
+    protected ByteBuffer wrapKey(byte[] key, boolean temporary) {
+        final int length = key.length + 1;
+        final ByteBuffer buf = temporary ? ByteBufferLMDBKVStore.scratch(KEY_BUFFER, length) : ByteBuffer.allocateDirect(length);
+        buf.put((byte)0);
+        buf.put(key);
+        buf.flip();
+        return buf;
+    }
+
+    @Override
+    protected byte[] unwrapKey(ByteBuffer buf) {
+        final int length = buf.remaining();
+        this.checkKeyPrefix(length, length > 0 ? buf.get(buf.position()) : 0);
+        final byte[] key = new byte[length - 1];
+        final ByteBuffer dup = buf.duplicate();
+        dup.position(dup.position() + 1);
+        dup.get(key);
+        return key;
+    }
+
+    @Override
+    protected ByteBuffer wrapValue(byte[] value) {
+        final ByteBuffer buf = ByteBufferLMDBKVStore.scratch(VALUE_BUFFER, value.length);
+        buf.put(value);
+        buf.flip();
+        return buf;
+    }
+
+// Internal methods
+
+    // Get a cleared per-thread direct buffer with at least the given capacity
+    private static ByteBuffer scratch(ThreadLocal<ByteBuffer> threadLocal, int size) {
+        if (size > MAX_SCRATCH_BUFFER_SIZE)
+            return ByteBuffer.allocateDirect(size);
+        ByteBuffer buf = threadLocal.get();
+        if (buf == null || buf.capacity() < size) {
+            final int capacity = Math.max(MIN_SCRATCH_BUFFER_SIZE, buf != null ? buf.capacity() * 2 : 0);
+            buf = ByteBuffer.allocateDirect(Math.max(size, capacity));
+            threadLocal.set(buf);
+        }
+        buf.clear();
+        return buf;
+    }
+}
@@ -0,0 +1,34 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import java.nio.ByteBuffer;
+
+import org.lmdbjava.Dbi;
+import org.lmdbjava.Env;
+import org.lmdbjava.Txn;
+
+/**
+ * {@link LMDBKVTransaction} using direct {@link ByteBuffer}s.
+ */
+public class ByteBufferLMDBKVTransaction extends LMDBKVTransaction<ByteBuffer> {
+
+    /**
+     * Constructor.
+     *
+     * @param kvdb associated database
+     * @param env environment
+     * @param db database handle
+     */
+    protected ByteBufferLMDBKVTransaction(LMDBKVDatabase<ByteBuffer> kvdb, Env<ByteBuffer> env, Dbi<ByteBuffer> db) {
+        super(kvdb, env, db);
+    }
+
+    @Override
+    protected ByteBufferLMDBKVStore createKVStore(Dbi<ByteBuffer> db, Txn<ByteBuffer> tx) {
+        return new ByteBufferLMDBKVStore(db, tx);
+    }
+}
@@ -0,0 +1,241 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.mvcc.AtomicKVDatabase;
+import io.permazen.kv.mvcc.AtomicKVStore;
+import io.permazen.kv.util.ForwardingKVStore;
+import io.permazen.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.lmdbjava.EnvFlags;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AtomicKVStore} view of an {@link LMDBKVDatabase}.
+ *
+ * <p>
+ * {@linkplain #snapshot Snapshots} are backed by LMDB read transactions, which never block (or are blocked by) the
+ * single LMDB writer, and each {@link #mutate mutate()} is performed in a single LMDB write transaction. This class
+ * allows an {@link LMDBKVDatabase} to serve as the underlying store for a {@link LMDBSnapshotKVDatabase}.
+ *
+ * <p>
+ * Snapshots may be accessed by multiple threads, so {@link #start} adds {@link EnvFlags#MDB_NOTLS} to the underlying
+ * database's {@linkplain LMDBKVDatabase#getEnvFlags environment flags}, and access to each snapshot is serialized.
+ *
+ * <p>
+ * Each snapshot holds open an LMDB read transaction, which prevents LMDB from reusing pages freed by later writes,
+ * so snapshots should be {@linkplain CloseableKVStore#close closed} promptly. Any snapshots still open when this
+ * instance is {@linkplain #stop stopped} are closed before the underlying database is stopped.
+ *
+ * @param <T> buffer type
+ */
+public class LMDBAtomicKVStore<T> extends AtomicKVDatabase {
+
+    @GuardedBy("this")
+    private final HashSet<SnapshotKVStore> snapshots = new HashSet<>();
+
+    /**
+     * Constructor.
+     *
+     * @param kvdb underlying database
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     */
+    public LMDBAtomicKVStore(LMDBKVDatabase<T> kvdb) {
+        super(kvdb);
+    }
+
+    /**
+     * Get the underlying {@link LMDBKVDatabase}.
+     *
+     * @return underlying database
+     */
+    @SuppressWarnings("unchecked")
+    public LMDBKVDatabase<T> getKVDatabase() {
+        return (LMDBKVDatabase<T>)this.kvdb;
+    }
+
+// AtomicKVStore
+
+    /**
+     * Start this instance.
+     *
+     * <p>
+     * If the underlying {@link LMDBKVDatabase} is not already started, {@link EnvFlags#MDB_NOTLS} is added to its
+     * environment flags and it is started.
+     *
+     * @throws IllegalStateException if the underlying database is already started without {@link EnvFlags#MDB_NOTLS}
+     */
+    @Override
+    @PostConstruct
+    public void start() {
+        final LMDBKVDatabase<T> lmdb = this.getKVDatabase();
+        synchronized (lmdb) {
+            final EnumSet<EnvFlags> flags = lmdb.getEnvFlags();
+            if (!flags.contains(EnvFlags.MDB_NOTLS)) {
+                flags.add(EnvFlags.MDB_NOTLS);
+                lmdb.setEnvBuilder(flags);
+            }
+            super.start();
+        }
+    }
+
+    /**
+     * Stop this instance.
+     *
+     * <p>
+     * Any snapshots that are still open are closed, and then the underlying database is stopped.
+     */
+    @Override
+    @PreDestroy
+    public void stop() {
+        final ArrayList<SnapshotKVStore> leaked;
+        synchronized (this) {
+            leaked = new ArrayList<>(this.snapshots);
+        }
+        if (!leaked.isEmpty())
+            LoggerFactory.getLogger(this.getClass()).warn("closing " + leaked.size() + " unclosed snapshot(s) of " + this);
+        for (SnapshotKVStore snapshot : leaked)
+            snapshot.close();
+        super.stop();
+    }
+
+    @Override
+    public CloseableKVStore snapshot() {
+        final LMDBKVTransaction<T> kvtx = this.getKVDatabase().createTransaction();
+        boolean success = false;
+        try {
+            kvtx.setReadOnly(true);
+            final SnapshotKVStore kvstore = new SnapshotKVStore(kvtx);
+            synchronized (this) {
+                this.snapshots.add(kvstore);
+            }
+            success = true;
+            return kvstore;
+        } finally {
+            if (!success)
+                kvtx.rollback();
+        }
+    }
+
+// Snapshot
+
+    // LMDB transactions must not be accessed concurrently, so we serialize all access, including via iterators
+    private class SnapshotKVStore extends ForwardingKVStore implements CloseableKVStore {
+
+        private final LMDBKVTransaction<?> kvtx;
+
+        private volatile boolean closed;
+
+        SnapshotKVStore(LMDBKVTransaction<?> kvtx) {
+            this.kvtx = kvtx;
+        }
+
+        @Override
+        protected LMDBKVTransaction<?> delegate() {
+            Preconditions.checkState(!this.closed, "snapshot closed");
+            return this.kvtx;
+        }
+
+    // KVStore
+
+        @Override
+        public synchronized byte[] get(byte[] key) {
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+            return super.getAtLeast(minKey, maxKey);
+        }
+
+        @Override
+        public synchronized KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+            return super.getAtMost(maxKey, minKey);
+        }
+
+        @Override
+        public synchronized CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+            final CloseableIterator<KVPair> i = super.getRange(minKey, maxKey, reverse);
+            return new CloseableIterator<KVPair>() {
+
+                @Override
+                public boolean hasNext() {
+                    synchronized (SnapshotKVStore.this) {
+                        return i.hasNext();
+                    }
+                }
+
+                @Override
+                public KVPair next() {
+                    synchronized (SnapshotKVStore.this) {
+                        return i.next();
+                    }
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("snapshot is read-only");
+                }
+
+                @Override
+                public void close() {
+                    synchronized (SnapshotKVStore.this) {
+                        if (!SnapshotKVStore.this.closed)
+                            i.close();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            throw new UnsupportedOperationException("snapshot is read-only");
+        }
+
+        @Override
+        public void remove(byte[] key) {
+            throw new UnsupportedOperationException("snapshot is read-only");
+        }
+
+        @Override
+        public void removeRange(byte[] minKey, byte[] maxKey) {
+            throw new UnsupportedOperationException("snapshot is read-only");
+        }
+
+        @Override
+        public void adjustCounter(byte[] key, long amount) {
+            throw new UnsupportedOperationException("snapshot is read-only");
+        }
+
+    // Closeable
+
+        // Closing the LMDB transaction also closes any open cursors
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (this.closed)
+                    return;
+                this.closed = true;
+                this.kvtx.rollback();
+            }
+            synchronized (LMDBAtomicKVStore.this) {
+                LMDBAtomicKVStore.this.snapshots.remove(this);
+            }
+        }
+    }
+}
@@ -184,6 +184,17 @@ public abstract class LMDBKVDatabase<T> implements KVDatabase {
         return this.env;
     }
 
+    /**
+     * Get the {@link Dbi} associated with this instance.
+     *
+     * @return the associated {@link Dbi}
+     * @throws IllegalStateException if this instance is not {@link #start}ed
+     */
+    public synchronized Dbi<T> getDatabase() {
+        Preconditions.checkState(this.env != null, "not started");
+        return this.db;
+    }
+
 // Lifecycle
 
     @Override
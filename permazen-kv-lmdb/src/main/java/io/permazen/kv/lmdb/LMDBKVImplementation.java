@@ -25,6 +25,8 @@ public class LMDBKVImplementation extends KVImplementation<LMDBKVImplementation.
         return new String[][] {
             { "--lmdb directory",  "Use LMDB key/value database in the specified directory" },
             { "--lmdb-dbname name", "Specify LMDB database name (default \"" + LMDBKVDatabase.DEFAULT_DATABASE_NAME + "\")" },
+            { "--lmdb-direct", "Use direct ByteBuffers instead of byte[] arrays to access LMDB" },
+            { "--lmdb-group-commit", "Allow concurrent LMDB writers and batch their commits (see LMDBSnapshotKVDatabase)" },
         };
     }
 
@@ -37,14 +39,16 @@ public class LMDBKVImplementation extends KVImplementation<LMDBKVImplementation.
         config.setDirectory(new File(arg));
         if ((arg = this.parseCommandLineOption(options, "--lmdb-dbname")) != null)
             config.setDatabaseName(arg);
+        config.setDirectBuffers(this.parseCommandLineFlag(options, "--lmdb-direct"));
+        config.setGroupCommit(this.parseCommandLineFlag(options, "--lmdb-group-commit"));
         return config;
     }
 
     @Override
-    public LMDBKVDatabase<?> createKVDatabase(Config config, KVDatabase ignored, AtomicKVStore kvstore) {
-        final ByteArrayLMDBKVDatabase kvdb = new ByteArrayLMDBKVDatabase();
+    public KVDatabase createKVDatabase(Config config, KVDatabase ignored, AtomicKVStore kvstore) {
+        final LMDBKVDatabase<?> kvdb = config.isDirectBuffers() ? new ByteBufferLMDBKVDatabase() : new ByteArrayLMDBKVDatabase();
         config.configure(kvdb);
-        return kvdb;
+        return config.isGroupCommit() ? new LMDBSnapshotKVDatabase<>(kvdb) : kvdb;
     }
 
     @Override
@@ -58,6 +62,8 @@ public class LMDBKVImplementation extends KVImplementation<LMDBKVImplementation.
 
         private File directory;
         private String databaseName;
+        private boolean directBuffers;
+        private boolean groupCommit;
 
         public File getDirectory() {
             return this.directory;
@@ -73,6 +79,20 @@ public class LMDBKVImplementation extends KVImplementation<LMDBKVImplementation.
             this.databaseName = databaseName;
         }
 
+        public boolean isDirectBuffers() {
+            return this.directBuffers;
+        }
+        public void setDirectBuffers(boolean directBuffers) {
+            this.directBuffers = directBuffers;
+        }
+
+        public boolean isGroupCommit() {
+            return this.groupCommit;
+        }
+        public void setGroupCommit(boolean groupCommit) {
+            this.groupCommit = groupCommit;
+        }
+
         public void configure(LMDBKVDatabase<?> kvdb) {
             Preconditions.checkArgument(this.directory != null, "LMDB directory must be specified via the `--lmdb' flag");
             kvdb.setDirectory(this.directory);
@@ -96,10 +96,10 @@ public abstract class LMDBKVStore<T> extends AbstractKVStore implements Closeabl
 
     @Override
     public byte[] get(byte[] key) {
-        key = this.addPrefix(key);
+        key.getClass();
         Preconditions.checkState(!this.closed.get(), "transaction closed");
         this.cursorTracker.poll();
-        return this.unwrap(this.db.get(this.tx, this.wrap(key, false)), true);
+        return this.unwrap(this.db.get(this.tx, this.wrapKey(key, true)), true);
     }
 
     @Override
@@ -109,7 +109,7 @@ public abstract class LMDBKVStore<T> extends AbstractKVStore implements Closeabl
         this.cursorTracker.poll();
         final CursorIterator<T> cusorIterator = this.db.iterate(this.tx, this.getKeyRange(minKey, maxKey, reverse));
         final Iterator<KVPair> i = Iterators.transform(cusorIterator,
-          kv -> new KVPair(this.delPrefix(this.unwrap(kv.key(), false)), this.unwrap(kv.val(), true)));
+          kv -> new KVPair(this.unwrapKey(kv.key()), this.unwrap(kv.val(), true)));
         final CloseableIterator<KVPair> ci = CloseableIterator.wrap(i, cusorIterator);
         this.cursorTracker.add(ci, new CloseableAutoCloseable(cusorIterator));
         return ci;
@@ -117,20 +117,20 @@ public abstract class LMDBKVStore<T> extends AbstractKVStore implements Closeabl
 
     @Override
     public void put(byte[] key, byte[] value) {
-        key = this.addPrefix(key);
+        key.getClass();
         value.getClass();
         Preconditions.checkState(!this.closed.get(), "transaction closed");
         this.cursorTracker.poll();
-        final boolean success = this.db.put(this.tx, this.wrap(key, false), this.wrap(value, true));
+        final boolean success = this.db.put(this.tx, this.wrapKey(key, true), this.wrapValue(value));
         assert success : "put failed";
     }
 
     @Override
     public void remove(byte[] key) {
-        key = this.addPrefix(key);
+        key.getClass();
         Preconditions.checkState(!this.closed.get(), "transaction closed");
         this.cursorTracker.poll();
-        this.db.delete(this.tx, this.wrap(key, true));
+        this.db.delete(this.tx, this.wrapKey(key, true));
     }
 
     @Override
@@ -165,8 +165,8 @@ public abstract class LMDBKVStore<T> extends AbstractKVStore implements Closeabl
      * @return {@link KeyRange} instance
      */
     public KeyRange<T> getKeyRange(byte[] minKey, byte[] maxKey, boolean reverse) {
-        final T min = this.wrap(this.addPrefix(minKey != null && minKey.length > 0 ? minKey : ByteUtil.EMPTY), false);
-        final T max = maxKey != null ? this.wrap(this.addPrefix(maxKey), false) : null;
+        final T min = this.wrapKey(minKey != null ? minKey : ByteUtil.EMPTY, false);
+        final T max = maxKey != null ? this.wrapKey(maxKey, false) : null;
         if (reverse) {
             if (max == null)
                 return min != null ? KeyRange.atMostBackward(min) : KeyRange.allBackward();
@@ -198,24 +198,69 @@ public abstract class LMDBKVStore<T> extends AbstractKVStore implements Closeabl
      */
     protected abstract byte[] unwrap(T buf, boolean copy);
 
-    private byte[] addPrefix(byte[] data) {
-        if (data == null)
-            return data;
-        final byte[] data2 = new byte[data.length + 1];
-        System.arraycopy(data, 0, data2, 1, data.length);
-        return data2;
+    /**
+     * Wrap the given key in a buffer appropriate for this instance, adding the internal key prefix.
+     *
+     * <p>
+     * LMDB does not support empty keys, so all keys are stored with an extra {@code 0x00} prefix byte.
+     *
+     * <p>
+     * The implementation in {@link LMDBKVStore} invokes {@link #wrap wrap()} on a prefixed copy of {@code key}.
+     *
+     * @param key key
+     * @param temporary true if the returned buffer will only be used for a single LMDB operation,
+     *  false if it must remain valid for the life of an iteration
+     * @return buffer containing the prefixed key
+     */
+    protected T wrapKey(byte[] key, boolean temporary) {
+        final byte[] data = new byte[key.length + 1];
+        System.arraycopy(key, 0, data, 1, key.length);
+        return this.wrap(data, false);
+    }
+
+    /**
+     * Unwrap the given key buffer, removing the internal key prefix.
+     *
+     * <p>
+     * The implementation in {@link LMDBKVStore} invokes {@link #unwrap unwrap()} and then removes the prefix.
+     *
+     * @param buf buffer containing a prefixed key
+     * @return key without prefix
+     */
+    protected byte[] unwrapKey(T buf) {
+        final byte[] data = this.unwrap(buf, false);
+        this.checkKeyPrefix(data.length, data.length > 0 ? data[0] : 0);
+        final byte[] key = new byte[data.length - 1];
+        System.arraycopy(data, 1, key, 0, key.length);
+        return key;
+    }
+
+    /**
+     * Wrap the given value in a buffer appropriate for this instance for storing via {@code put()}.
+     *
+     * <p>
+     * The returned buffer will only be used for a single LMDB operation.
+     * The implementation in {@link LMDBKVStore} invokes {@link #wrap wrap()} with {@code copy} set to true.
+     *
+     * @param value value
+     * @return buffer containing the value
+     */
+    protected T wrapValue(byte[] value) {
+        return this.wrap(value, true);
     }
 
-    private byte[] delPrefix(byte[] data) {
-        if (data == null)
-            return data;
-        if (data.length == 0)
+    /**
+     * Verify the internal key prefix of a key read from LMDB.
+     *
+     * @param length length of the prefixed key
+     * @param firstByte first byte of the prefixed key
+     * @throws RuntimeException if the key is invalid
+     */
+    protected void checkKeyPrefix(int length, byte firstByte) {
+        if (length == 0)
             throw new RuntimeException("internal error: zero length key");
-        if (data[0] != 0)
+        if (firstByte != 0)
             throw new RuntimeException("internal error: non-zero first byte");
-        final byte[] data2 = new byte[data.length - 1];
-        System.arraycopy(data, 1, data2, 0, data2.length);
-        return data2;
     }
 
 // Closeable
@@ -0,0 +1,52 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import io.permazen.kv.mvcc.SnapshotKVDatabase;
+
+/**
+ * {@link io.permazen.kv.KVDatabase} front end to an {@link LMDBKVDatabase} that supports multiple concurrent
+ * writers and group commit.
+ *
+ * <p>
+ * LMDB only allows one write transaction at a time, so with {@link LMDBKVDatabase} concurrent writers are serialized for
+ * their entire duration. Instead, transactions created by this class run optimistically against an LMDB read transaction
+ * snapshot, recording their reads and buffering their writes in memory; conflicts are detected at commit time, and the
+ * mutations of all concurrently committing transactions are applied together in a single, short LMDB write transaction.
+ * See {@link SnapshotKVDatabase} for details.
+ *
+ * <p>
+ * {@linkplain #setGroupCommit Group commit} is enabled by default.
+ *
+ * <p>
+ * {@linkplain io.permazen.kv.mvcc.SnapshotKVTransaction#watchKey Key watches} are supported.
+ *
+ * @param <T> buffer type
+ * @see LMDBAtomicKVStore
+ */
+public class LMDBSnapshotKVDatabase<T> extends SnapshotKVDatabase {
+
+    /**
+     * Constructor.
+     *
+     * @param kvdb underlying LMDB database
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     */
+    public LMDBSnapshotKVDatabase(LMDBKVDatabase<T> kvdb) {
+        super(new LMDBAtomicKVStore<>(kvdb));
+        this.setGroupCommit(true);
+    }
+
+    /**
+     * Get the underlying {@link LMDBKVDatabase}.
+     *
+     * @return underlying database
+     */
+    @SuppressWarnings("unchecked")
+    public LMDBKVDatabase<T> getLMDBKVDatabase() {
+        return ((LMDBAtomicKVStore<T>)this.getKVStore()).getKVDatabase();
+    }
+}
@@ -0,0 +1,81 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.lmdbjava.Txn;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class ByteBufferLMDBKVDatabaseTest extends KVDatabaseTest {
+
+    private ByteBufferLMDBKVDatabase lmdbKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("lmdbDirPrefix")
+    public void setLMDBDirPrefix(@Optional String lmdbDirPrefix) throws IOException {
+        if (lmdbDirPrefix != null) {
+            final File dir = File.createTempFile(lmdbDirPrefix, null);
+            Assert.assertTrue(dir.delete());
+            Assert.assertTrue(dir.mkdirs());
+            dir.deleteOnExit();
+            this.lmdbKV = new ByteBufferLMDBKVDatabase();
+            this.lmdbKV.setDirectory(dir);
+        }
+    }
+
+    @Override
+    protected boolean supportsReadOnlyAfterDataAccess() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsMultipleWriteTransactions() {
+        return false;
+    }
+
+    @Override
+    protected boolean transactionsAreThreadSafe() {
+        return false;
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.lmdbKV;
+    }
+
+    @Test
+    public void testGetView() throws Exception {
+        if (this.lmdbKV == null)
+            return;
+        final byte[] key = b("0102");
+        final byte[] value = new byte[5000];
+        this.random.nextBytes(value);
+        try (Txn<ByteBuffer> tx = this.lmdbKV.getEnv().txnWrite()) {
+            try (ByteBufferLMDBKVStore kv = new ByteBufferLMDBKVStore(this.lmdbKV.getDatabase(), tx)) {
+                kv.put(key, value);
+                Assert.assertEquals(kv.get(key), value);
+                final ByteBuffer view = kv.getView(key);
+                Assert.assertTrue(view.isReadOnly());
+                final byte[] data = new byte[view.remaining()];
+                view.get(data);
+                Assert.assertEquals(data, value);
+                Assert.assertNull(kv.getView(b("0103")));
+                kv.remove(key);
+            }
+            tx.abort();
+        }
+    }
+}
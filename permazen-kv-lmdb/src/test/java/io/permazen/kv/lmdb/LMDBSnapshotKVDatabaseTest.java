@@ -0,0 +1,41 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.lmdb;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+
+public class LMDBSnapshotKVDatabaseTest extends KVDatabaseTest {
+
+    private LMDBSnapshotKVDatabase<byte[]> lmdbKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("lmdbDirPrefix")
+    public void setLMDBDirPrefix(@Optional String lmdbDirPrefix) throws IOException {
+        if (lmdbDirPrefix != null) {
+            final File dir = File.createTempFile(lmdbDirPrefix, null);
+            Assert.assertTrue(dir.delete());
+            Assert.assertTrue(dir.mkdirs());
+            dir.deleteOnExit();
+            final ByteArrayLMDBKVDatabase kvdb = new ByteArrayLMDBKVDatabase();
+            kvdb.setDirectory(dir);
+            this.lmdbKV = new LMDBSnapshotKVDatabase<>(kvdb);
+        }
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.lmdbKV;
+    }
+}
@@ -18,6 +18,8 @@ import java.sql.Statement;
  */
 class MSSQLKVTransaction extends SQLKVTransaction {
 
+    private boolean timeoutChanged;
+
     MSSQLKVTransaction(SQLKVDatabase database, Connection connection) throws SQLException {
         super(database, connection);
     }
@@ -25,6 +27,7 @@ class MSSQLKVTransaction extends SQLKVTransaction {
     @Override
     public void setTimeout(long timeout) {
         super.setTimeout(timeout);
+        this.timeoutChanged = true;
         try (Statement statement = this.connection.createStatement()) {
             statement.execute("SET LOCK_TIMEOUT " + timeout);
         } catch (SQLException e) {
@@ -32,6 +35,17 @@ class MSSQLKVTransaction extends SQLKVTransaction {
         }
     }
 
+    // Restore the connection's default lock timeout, which we may have changed, before it gets reused
+    @Override
+    protected void resetConnection() throws SQLException {
+        if (!this.timeoutChanged)
+            return;
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("SET LOCK_TIMEOUT " + ((MSSQLKVDatabase)this.database).getLockTimeout());
+        }
+        this.timeoutChanged = false;
+    }
+
     // See SQLKVDatabase.createPutStatement()
     @Override
     protected void update(StmtType stmtType, byte[]... params) {
@@ -9,17 +9,29 @@ import com.google.common.base.Preconditions;
 
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.h2.mvstore.MVMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Straightforward {@link io.permazen.kv.KVStore} view of an {@link MVMap}.
+ *
+ * <p>
+ * Because {@link MVMap}s keep track of key positions, instances can count the keys in any range and find
+ * {@linkplain #getSplitKeys split keys} in logarithmic time; byte counts are estimated by sampling.
  */
-public class MVMapKVStore extends AbstractKVStore {
+public class MVMapKVStore extends AbstractKVStore implements SplittableKVStore {
+
+    private static final int ESTIMATE_SAMPLE_SIZE = 16;                  // # pairs sampled to estimate average pair size
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
@@ -116,6 +128,74 @@ public class MVMapKVStore extends AbstractKVStore {
         this.getMVMap().remove(key);
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        final MVMap<byte[], byte[]> mvmap = this.getMVMap();
+        final long minIndex = this.minIndex(mvmap, range.getMin());
+        final long numKeys = Math.max(this.maxIndex(mvmap, range.getMax()) - minIndex, 0);
+        if (numKeys == 0)
+            return new KeyRangeEstimate(0, 0);
+
+        // Sample evenly spaced key/value pairs to estimate the average size
+        final int numSamples = (int)Math.min(numKeys, ESTIMATE_SAMPLE_SIZE);
+        long sampledBytes = 0;
+        int sampledKeys = 0;
+        for (int i = 0; i < numSamples; i++) {
+            final byte[] key = mvmap.getKey(minIndex + numKeys * i / numSamples);
+            final byte[] value = key != null ? mvmap.get(key) : null;
+            if (value == null)                                          // map changed out from under us
+                continue;
+            sampledBytes += key.length + value.length;
+            sampledKeys++;
+        }
+        final long numBytes = sampledKeys > 0 ? (long)((double)sampledBytes * numKeys / sampledKeys) : 0;
+        return new KeyRangeEstimate(numKeys, numBytes);
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count >= 0, "count < 0");
+        final MVMap<byte[], byte[]> mvmap = this.getMVMap();
+        final long minIndex = this.minIndex(mvmap, range.getMin());
+        final long maxIndex = this.maxIndex(mvmap, range.getMax());
+        final ArrayList<byte[]> splitKeys = new ArrayList<>();
+        long prevIndex = minIndex;
+        for (int i = 1; i <= count && maxIndex - minIndex > 1; i++) {
+            final long index = minIndex + (long)((double)(maxIndex - minIndex) * i / (count + 1));
+            if (index <= prevIndex || index >= maxIndex)
+                continue;
+            final byte[] key = mvmap.getKey(index);
+            if (key == null
+              || ByteUtil.compare(key, range.getMin()) <= 0
+              || (range.getMax() != null && ByteUtil.compare(key, range.getMax()) >= 0)
+              || (!splitKeys.isEmpty() && ByteUtil.compare(key, splitKeys.get(splitKeys.size() - 1)) <= 0))
+                continue;                                               // map changed out from under us
+            splitKeys.add(key);
+            prevIndex = index;
+        }
+        return splitKeys;
+    }
+
+    // Get index of the first key >= minKey
+    private long minIndex(MVMap<byte[], byte[]> mvmap, byte[] minKey) {
+        if (minKey == null || minKey.length == 0)
+            return 0;
+        final long index = mvmap.getKeyIndex(minKey);
+        return index < 0 ? -(index + 1) : index;
+    }
+
+    // Get index of the first key >= maxKey, or size if maxKey is null
+    private long maxIndex(MVMap<byte[], byte[]> mvmap, byte[] maxKey) {
+        if (maxKey == null)
+            return mvmap.sizeAsLong();
+        final long index = mvmap.getKeyIndex(maxKey);
+        return index < 0 ? -(index + 1) : index;
+    }
+
 //    See https://github.com/h2database/h2database/issues/2002
 //    @Override
 //    public void removeRange(byte[] minKey, byte[] maxKey) {
@@ -0,0 +1,117 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvstore;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.test.KVDatabaseTest;
+import io.permazen.util.ByteUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class GroupCommitMVStoreKVDatabaseTest extends KVDatabaseTest {
+
+    private static final int NUM_WRITER_THREADS = 8;
+    private static final int NUM_WRITES_PER_THREAD = 200;
+
+    private MVStoreKVDatabase kvdb;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("mvstoreFilePrefix")
+    public void configureMVStore(@Optional String filePrefix) throws IOException {
+
+        // Enabled?
+        if (filePrefix == null)
+            return;
+
+        // Create config
+        final MVStoreKVImplementation.Config config = new MVStoreKVImplementation.Config();
+        if (!filePrefix.equals("MEMORY")) {
+            final File file = File.createTempFile(filePrefix, ".mvstore");
+            file.delete();
+            file.deleteOnExit();
+            config.setFile(file);
+        } else
+            config.setMemory(true);
+        final MVStoreAtomicKVStore kvstore = config.configure(new MVStoreAtomicKVStore());
+
+        // Configure DB
+        this.kvdb = new MVStoreKVDatabase();
+        this.kvdb.setKVStore(kvstore);
+        this.kvdb.setGroupCommit(true);
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.kvdb;
+    }
+
+    @Test
+    public void testConcurrentCommits() throws Exception {
+        if (this.kvdb == null)
+            return;
+
+        // Clear database
+        this.tryNtimes(this.kvdb, tx -> tx.removeRange(null, null));
+
+        // Write disjoint keys and a shared counter from multiple threads concurrently
+        final byte[] counterKey = b("ff");
+        this.tryNtimes(this.kvdb, tx -> tx.put(counterKey, tx.encodeCounter(0)));
+        final ExecutorService executor = Executors.newFixedThreadPool(NUM_WRITER_THREADS);
+        try {
+            final ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < NUM_WRITER_THREADS; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < NUM_WRITES_PER_THREAD; j++) {
+                        final byte[] key = new byte[] { (byte)thread, (byte)(j >> 8), (byte)j };
+                        while (true) {
+                            final KVTransaction tx = this.kvdb.createTransaction();
+                            try {
+                                tx.put(key, ByteUtil.EMPTY);
+                                tx.adjustCounter(counterKey, 1);
+                                tx.commit();
+                                break;
+                            } catch (RetryTransactionException e) {
+                                continue;
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify all writes are visible
+        this.tryNtimes(this.kvdb, tx -> {
+            for (int i = 0; i < NUM_WRITER_THREADS; i++) {
+                for (int j = 0; j < NUM_WRITES_PER_THREAD; j++)
+                    Assert.assertNotNull(tx.get(new byte[] { (byte)i, (byte)(j >> 8), (byte)j }));
+            }
+            Assert.assertEquals(tx.decodeCounter(tx.get(counterKey)), NUM_WRITER_THREADS * NUM_WRITES_PER_THREAD);
+        });
+
+        // Verify all writes were applied to the underlying store
+        Assert.assertEquals(this.kvdb.getKVStore().decodeCounter(this.kvdb.getKVStore().get(counterKey)),
+          NUM_WRITER_THREADS * NUM_WRITES_PER_THREAD);
+    }
+}
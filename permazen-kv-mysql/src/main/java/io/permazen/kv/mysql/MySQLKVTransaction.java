@@ -17,6 +17,8 @@ import java.sql.Statement;
  */
 class MySQLKVTransaction extends SQLKVTransaction {
 
+    private boolean timeoutChanged;
+
     MySQLKVTransaction(SQLKVDatabase database, Connection connection) throws SQLException {
         super(database, connection);
     }
@@ -24,11 +26,23 @@ class MySQLKVTransaction extends SQLKVTransaction {
     @Override
     public void setTimeout(long timeout) {
         super.setTimeout(timeout);
+        this.timeoutChanged = true;
         try (Statement statement = this.connection.createStatement()) {
             statement.execute("SET innodb_lock_wait_timeout = " + (timeout + 999) / 1000);
         } catch (SQLException e) {
             throw this.handleException(e);
         }
     }
+
+    // Restore the connection's default lock timeout, which we may have changed, before it gets reused
+    @Override
+    protected void resetConnection() throws SQLException {
+        if (!this.timeoutChanged)
+            return;
+        try (Statement statement = this.connection.createStatement()) {
+            statement.execute("SET innodb_lock_wait_timeout = " + ((MySQLKVDatabase)this.database).getLockTimeout());
+        }
+        this.timeoutChanged = false;
+    }
 }
 
@@ -10,17 +10,27 @@ import com.google.common.base.Preconditions;
 import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
+import io.permazen.kv.util.SplitKeyUtil;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 import io.permazen.util.CloseableTracker;
 
 import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.rocksdb.Range;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.SizeApproximationFlag;
+import org.rocksdb.Slice;
 import org.rocksdb.WriteBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,8 +40,19 @@ import org.slf4j.LoggerFactory;
  *
  * <p>
  * Instances must be {@link #close}'d when no longer needed to avoid leaking resources associated with iterators.
+ *
+ * <p>
+ * Size estimates and split keys (see {@link SplittableKVStore}) are based on the approximate on-disk sizes of key ranges
+ * reported by RocksDB, which reflect the entire database rather than any snapshot, and (for key counts) on sampling.
  */
-public class RocksDBKVStore extends AbstractKVStore implements CloseableKVStore {
+public class RocksDBKVStore extends AbstractKVStore implements CloseableKVStore, SplittableKVStore {
+
+    private static final int ESTIMATE_SAMPLE_SIZE = 64;                  // # pairs sampled to estimate average pair size
+    private static final byte[] MAX_KEY = new byte[32];                  // stands in for the "no upper bound" key
+
+    static {
+        Arrays.fill(MAX_KEY, (byte)0xff);
+    }
 
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final CloseableTracker cursorTracker = new CloseableTracker();
@@ -219,6 +240,30 @@ public class RocksDBKVStore extends AbstractKVStore implements CloseableKVStore
         }
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkState(!this.closed, "closed");
+        return SplitKeyUtil.sample(this, range, this.approximateSize(range), ESTIMATE_SAMPLE_SIZE);
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkState(!this.closed, "closed");
+        return SplitKeyUtil.bisect(this, range, count, this::approximateSize);
+    }
+
+    private long approximateSize(KeyRange range) {
+        final byte[] maxKey = range.getMax() != null ? range.getMax() : MAX_KEY;
+        try (Slice min = new Slice(range.getMin()); Slice max = new Slice(maxKey)) {
+            return this.db.getApproximateSizes(Collections.singletonList(new Range(min, max)),
+              SizeApproximationFlag.INCLUDE_FILES, SizeApproximationFlag.INCLUDE_MEMTABLES)[0];
+        }
+    }
+
 // Object
 
     /**
@@ -0,0 +1,415 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.InstrumentedKVDatabase;
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.TransactionTimeoutException;
+import io.permazen.kv.mvcc.LockManager;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * {@link KVDatabase} implementation that divides the key space into contiguous partitions, each of which is
+ * managed by its own {@link SimpleKVDatabase}.
+ *
+ * <p>
+ * A {@link SimpleKVDatabase} serializes all lock bookkeeping and all commits on a single lock. This class instead splits
+ * the key space at configured split keys into partitions, each having its own lock, {@link LockManager}, and underlying
+ * {@link KVStore} (by default, a {@link NavigableMapKVStore}). Transactions that access disjoint partitions therefore do not
+ * contend with each other at all. Because Permazen keys are prefixed by storage ID, most transactions that operate on a
+ * single object type touch only a few partitions; see {@link #storageIdSplitKeys storageIdSplitKeys()}.
+ *
+ * <p>
+ * Each {@link PartitionedKVTransaction} lazily opens a {@link SimpleKVTransaction} in each partition it accesses.
+ * Commit is a lightweight two-phase commit: the locks of all participating partitions are acquired in partition order
+ * (so commits cannot deadlock), every participant is checked to still be committable (e.g., that its hold timeout has
+ * not expired), and only then are the mutations applied to each partition. Because all participating partition locks
+ * are held until every partition has been updated, no other transaction can observe a partially committed transaction.
+ * If any participant fails the first phase, nothing is applied and all participants are rolled back.
+ *
+ * <p>
+ * Lock {@linkplain #getWaitTimeout wait timeouts} and {@linkplain #getHoldTimeout hold timeouts} apply to each partition
+ * individually. A deadlock between two transactions across partitions is resolved by the wait timeout, exactly as within
+ * a single {@link SimpleKVDatabase}.
+ *
+ * <p>
+ * {@linkplain PartitionedKVTransaction#watchKey Key watches} are supported.
+ *
+ * <p>
+ * Instances gather {@linkplain #getMetrics metrics} for whole transactions, including commit latency, the number of
+ * mutations in each transaction's write set, and the number of bytes written. Each partition also gathers its own
+ * {@linkplain #getPartitionMetrics metrics} for the transactions that access it; lock wait timeouts are recorded as
+ * conflicts only there, because only the partition knows the contested key range.
+ *
+ * @see SimpleKVDatabase
+ */
+public class PartitionedKVDatabase implements InstrumentedKVDatabase {
+
+    private final byte[][] splitKeys;
+    private final KeyRange[] ranges;
+    private final SimpleKVDatabase[] partitions;
+    private final KVDatabaseMetrics metrics = new KVDatabaseMetrics();
+
+    private long waitTimeout;
+
+    /**
+     * Constructor. Uses {@link #storageIdSplitKeys storageIdSplitKeys()}, in-memory partitions, and the default timeouts.
+     *
+     * @param numPartitions number of partitions
+     * @throws IllegalArgumentException if {@code numPartitions} is not between 1 and 256
+     */
+    public PartitionedKVDatabase(int numPartitions) {
+        this(PartitionedKVDatabase.storageIdSplitKeys(numPartitions));
+    }
+
+    /**
+     * Constructor. Uses in-memory partitions and the default timeouts.
+     *
+     * @param splitKeys keys at which to split the key space into partitions
+     * @throws IllegalArgumentException if {@code splitKeys} is null, contains null or empty keys, or is not strictly ascending
+     */
+    public PartitionedKVDatabase(List<byte[]> splitKeys) {
+        this(splitKeys, SimpleKVDatabase.DEFAULT_WAIT_TIMEOUT, SimpleKVDatabase.DEFAULT_HOLD_TIMEOUT);
+    }
+
+    /**
+     * Constructor. Uses in-memory partitions.
+     *
+     * @param splitKeys keys at which to split the key space into partitions
+     * @param waitTimeout how long a thread will wait for a lock before throwing {@link RetryTransactionException}
+     *  in milliseconds, or zero for unlimited
+     * @param holdTimeout how long a thread may hold a contestested lock before throwing {@link RetryTransactionException}
+     *  in milliseconds, or zero for unlimited
+     * @throws IllegalArgumentException if {@code splitKeys} is null, contains null or empty keys, or is not strictly ascending
+     * @throws IllegalArgumentException if {@code waitTimeout} or {@code holdTimeout} is negative
+     */
+    public PartitionedKVDatabase(List<byte[]> splitKeys, long waitTimeout, long holdTimeout) {
+        this(splitKeys, null, waitTimeout, holdTimeout);
+    }
+
+    /**
+     * Primary constructor.
+     *
+     * @param splitKeys keys at which to split the key space into partitions
+     * @param kvstores {@link KVStore}s for the committed data in each partition, or null for in-memory partitions;
+     *  each {@link KVStore} will only contain keys within its partition
+     * @param waitTimeout how long a thread will wait for a lock before throwing {@link RetryTransactionException}
+     *  in milliseconds, or zero for unlimited
+     * @param holdTimeout how long a thread may hold a contestested lock before throwing {@link RetryTransactionException}
+     *  in milliseconds, or zero for unlimited
+     * @throws IllegalArgumentException if {@code splitKeys} is null, contains null or empty keys, or is not strictly ascending
+     * @throws IllegalArgumentException if {@code kvstores} does not contain exactly one more element than {@code splitKeys}
+     * @throws IllegalArgumentException if {@code waitTimeout} or {@code holdTimeout} is negative
+     */
+    public PartitionedKVDatabase(List<byte[]> splitKeys, List<? extends KVStore> kvstores, long waitTimeout, long holdTimeout) {
+
+        // Sanity check
+        Preconditions.checkArgument(splitKeys != null, "null splitKeys");
+        Preconditions.checkArgument(kvstores == null || kvstores.size() == splitKeys.size() + 1, "wrong number of kvstores");
+        Preconditions.checkArgument(waitTimeout >= 0, "waitTimeout < 0");
+
+        // Initialize split keys and partition ranges
+        this.splitKeys = new byte[splitKeys.size()][];
+        this.ranges = new KeyRange[this.splitKeys.length + 1];
+        for (int i = 0; i < this.splitKeys.length; i++) {
+            final byte[] splitKey = splitKeys.get(i);
+            Preconditions.checkArgument(splitKey != null && splitKey.length > 0, "null/empty split key");
+            Preconditions.checkArgument(i == 0 || ByteUtil.compare(splitKey, this.splitKeys[i - 1]) > 0,
+              "split keys are not strictly ascending");
+            this.splitKeys[i] = splitKey.clone();
+        }
+        for (int i = 0; i < this.ranges.length; i++) {
+            this.ranges[i] = new KeyRange(i > 0 ? this.splitKeys[i - 1] : ByteUtil.EMPTY,
+              i < this.splitKeys.length ? this.splitKeys[i] : null);
+        }
+
+        // Create partitions
+        this.partitions = new SimpleKVDatabase[this.ranges.length];
+        for (int i = 0; i < this.partitions.length; i++)
+            this.partitions[i] = new SimpleKVDatabase(kvstores != null ? kvstores.get(i) : null, waitTimeout, holdTimeout);
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Build split keys that evenly divide the storage ID's assigned by Permazen's default storage ID generator.
+     *
+     * <p>
+     * The default storage ID generator assigns storage ID's that hash uniformly across the range of values encoded in
+     * three bytes, all of which begin with {@code 0xfc} followed by a second byte from {@code 0x01} to {@code 0xff}.
+     * The returned split keys divide that range evenly by its second byte.
+     * All other keys, including Permazen's meta-data and any small, explicitly assigned storage ID's, fall into the first
+     * partition.
+     *
+     * @param numPartitions number of partitions
+     * @return split keys for {@code numPartitions} partitions
+     * @throws IllegalArgumentException if {@code numPartitions} is not between 1 and 256
+     */
+    public static List<byte[]> storageIdSplitKeys(int numPartitions) {
+        Preconditions.checkArgument(numPartitions >= 1 && numPartitions <= 256, "invalid numPartitions");
+        final ArrayList<byte[]> splitKeys = new ArrayList<>(numPartitions - 1);
+        for (int i = 1; i < numPartitions; i++)
+            splitKeys.add(new byte[] { (byte)0xfc, (byte)(1 + i * 255 / numPartitions) });
+        return splitKeys;
+    }
+
+    /**
+     * Get the number of partitions.
+     *
+     * @return number of partitions
+     */
+    public int getNumPartitions() {
+        return this.partitions.length;
+    }
+
+    /**
+     * Get the keys at which the key space is split into partitions.
+     *
+     * @return split keys, in ascending order
+     */
+    public List<byte[]> getSplitKeys() {
+        final ArrayList<byte[]> list = new ArrayList<>(this.splitKeys.length);
+        for (byte[] splitKey : this.splitKeys)
+            list.add(splitKey.clone());
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Get the wait timeout for newly created transactions.
+     *
+     * @return wait timeout in milliseconds
+     * @see SimpleKVDatabase#getWaitTimeout
+     */
+    public synchronized long getWaitTimeout() {
+        return this.waitTimeout;
+    }
+
+    /**
+     * Set the wait timeout for newly created transactions. Default is {@link SimpleKVDatabase#DEFAULT_WAIT_TIMEOUT}.
+     *
+     * @param waitTimeout how long a thread will wait for a lock before throwing {@link RetryTransactionException}
+     *  in milliseconds (default), or zero for unlimited
+     * @throws IllegalArgumentException if {@code waitTimeout} is negative
+     * @see SimpleKVDatabase#setWaitTimeout
+     */
+    public synchronized void setWaitTimeout(long waitTimeout) {
+        Preconditions.checkArgument(waitTimeout >= 0, "waitTimeout < 0");
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Get the hold timeout configured for this instance.
+     *
+     * @return hold timeout in milliseconds
+     * @see SimpleKVDatabase#getHoldTimeout
+     */
+    public long getHoldTimeout() {
+        return this.partitions[0].getHoldTimeout();
+    }
+
+    /**
+     * Set the hold timeout for this instance. Default is {@link SimpleKVDatabase#DEFAULT_HOLD_TIMEOUT}.
+     *
+     * <p>
+     * The hold timeout applies to each partition separately.
+     *
+     * @param holdTimeout how long a thread may hold a contested lock before throwing {@link RetryTransactionException}
+     *  in milliseconds, or zero for unlimited
+     * @throws IllegalArgumentException if {@code holdTimeout} is negative
+     * @see SimpleKVDatabase#setHoldTimeout
+     */
+    public void setHoldTimeout(long holdTimeout) {
+        for (SimpleKVDatabase partition : this.partitions)
+            partition.setHoldTimeout(holdTimeout);
+    }
+
+    /**
+     * Get the metrics gathered by the given partition.
+     *
+     * @param index partition index
+     * @return partition metrics
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    public KVDatabaseMetrics getPartitionMetrics(int index) {
+        return this.partitions[index].getMetrics();
+    }
+
+// InstrumentedKVDatabase
+
+    @Override
+    public KVDatabaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
+// KVDatabase
+
+    @Override
+    @PostConstruct
+    public void start() {
+        for (SimpleKVDatabase partition : this.partitions)
+            partition.start();
+    }
+
+    @Override
+    @PreDestroy
+    public void stop() {
+        for (SimpleKVDatabase partition : this.partitions)
+            partition.stop();
+    }
+
+    @Override
+    public PartitionedKVTransaction createTransaction(Map<String, ?> options) {
+        return this.createTransaction();                                            // no options supported yet
+    }
+
+    @Override
+    public synchronized PartitionedKVTransaction createTransaction() {
+        final PartitionedKVTransaction tx = new PartitionedKVTransaction(this, this.waitTimeout);
+        this.metrics.recordTransactionOpened();
+        return tx;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buf = new StringBuilder();
+        for (byte[] splitKey : this.splitKeys)
+            buf.append(buf.length() > 0 ? "," : "").append(ByteUtil.toString(splitKey));
+        return this.getClass().getSimpleName()
+          + "[partitions=" + this.partitions.length
+          + ",splitKeys={" + buf + "}"
+          + "]";
+    }
+
+// PartitionedKVTransaction hooks
+
+    SimpleKVDatabase getPartition(int index) {
+        return this.partitions[index];
+    }
+
+    KeyRange getPartitionRange(int index) {
+        return this.ranges[index];
+    }
+
+    /**
+     * Find the partition containing the given key.
+     */
+    int getPartitionIndex(byte[] key) {
+        int lo = 0;
+        int hi = this.splitKeys.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (ByteUtil.compare(this.splitKeys[mid], key) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Commit a transaction's participants atomically using two-phase commit.
+     *
+     * @param tx transaction
+     * @param participants participating partition transactions, indexed by partition, or null where not participating
+     * @param readOnly true if the transaction is read-only
+     */
+    void commit(PartitionedKVTransaction tx, SimpleKVTransaction[] participants, boolean readOnly) {
+        final long startTime = System.nanoTime();
+        try {
+            this.commit(tx, participants, readOnly, 0);
+        } catch (RuntimeException e) {
+            this.metrics.recordException(e);
+            throw e;
+        }
+        final long nanos = System.nanoTime() - startTime;
+        this.metrics.recordCommit(nanos);
+        for (int i = 0; i < participants.length; i++) {
+            if (participants[i] != null)
+                this.partitions[i].getMetrics().recordCommit(nanos);
+        }
+    }
+
+    /**
+     * Abort a failed transaction's participants.
+     *
+     * <p>
+     * The failure is recorded in each participating partition that has not already recorded it.
+     *
+     * @param participants participating partition transactions, indexed by partition, or null where not participating
+     * @param e the failure
+     */
+    void abort(SimpleKVTransaction[] participants, RuntimeException e) {
+        for (int i = 0; i < participants.length; i++) {
+            if (participants[i] != null && this.partitions[i].abort(participants[i]))
+                this.partitions[i].getMetrics().recordException(e);
+        }
+    }
+
+// Internal methods
+
+    // Acquire the lock of each participating partition in order, then perform both phases while holding all of them
+    private void commit(PartitionedKVTransaction tx, SimpleKVTransaction[] participants, boolean readOnly, int index) {
+
+        // Skip non-participants
+        while (index < participants.length && participants[index] == null)
+            index++;
+
+        // Lock next participant
+        if (index < participants.length) {
+            synchronized (this.partitions[index]) {
+                this.commit(tx, participants, readOnly, index + 1);
+            }
+            return;
+        }
+
+        // All participants are locked; phase one: verify every participant can commit
+        for (int i = 0; i < participants.length; i++) {
+            if (participants[i] == null)
+                continue;
+            try {
+                this.partitions[i].prepareCommit(participants[i]);
+            } catch (RetryTransactionException e) {
+                this.partitions[i].getMetrics().recordException(e);
+                this.abort(participants, e);
+                throw new RetryTransactionException(tx, e.getMessage(), e);
+            } catch (TransactionTimeoutException e) {
+                this.partitions[i].getMetrics().recordException(e);
+                this.abort(participants, e);
+                throw new TransactionTimeoutException(tx, e.getMessage(), e);
+            } catch (RuntimeException e) {
+                this.partitions[i].getMetrics().recordException(e);
+                this.abort(participants, e);
+                throw e;
+            }
+        }
+
+        // Phase two: apply mutations
+        long writeSetSize = 0;
+        long bytesWritten = 0;
+        for (int i = 0; i < participants.length; i++) {
+            if (participants[i] == null)
+                continue;
+            writeSetSize += readOnly ? 0 : participants[i].mutations.size();
+            bytesWritten += this.partitions[i].applyCommit(participants[i], readOnly);
+        }
+        this.metrics.recordWriteSetSize(writeSetSize);
+        this.metrics.recordBytesWritten(bytesWritten);
+    }
+}
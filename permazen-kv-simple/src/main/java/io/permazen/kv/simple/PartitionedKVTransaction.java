@@ -0,0 +1,280 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import io.permazen.kv.AbstractKVStore;
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVPairIterator;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.StaleTransactionException;
+import io.permazen.kv.TransactionTimeoutException;
+import io.permazen.kv.util.CloseableForwardingKVStore;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.util.function.Function;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link KVTransaction} implementation for {@link PartitionedKVDatabase}.
+ *
+ * <p>
+ * Each instance delegates to a {@link SimpleKVTransaction} in each partition it accesses; these are created on demand.
+ * If any of those transactions fails, all of them are rolled back.
+ *
+ * <p>
+ * Locking note: all fields in this class are protected by the Java monitor of this instance. When also locking partitions,
+ * this instance must be locked first, and partitions must be locked in ascending order.
+ */
+public class PartitionedKVTransaction extends AbstractKVStore implements KVTransaction {
+
+    final PartitionedKVDatabase kvdb;
+
+    private final SimpleKVTransaction[] participants;
+    private long waitTimeout;
+    private boolean stale;
+
+    private volatile boolean readOnly;
+
+    /**
+     * Constructor.
+     *
+     * @param kvdb associated database
+     * @param waitTimeout wait timeout for this transaction
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     * @throws IllegalArgumentException if {@code waitTimeout} is negative
+     */
+    protected PartitionedKVTransaction(PartitionedKVDatabase kvdb, long waitTimeout) {
+        Preconditions.checkArgument(kvdb != null, "null kvdb");
+        this.kvdb = kvdb;
+        this.participants = new SimpleKVTransaction[kvdb.getNumPartitions()];
+        this.setTimeout(waitTimeout);
+    }
+
+    @Override
+    public PartitionedKVDatabase getKVDatabase() {
+        return this.kvdb;
+    }
+
+    @Override
+    public synchronized void setTimeout(long timeout) {
+        Preconditions.checkArgument(timeout >= 0, "timeout < 0");
+        this.waitTimeout = timeout;
+        for (SimpleKVTransaction participant : this.participants) {
+            if (participant != null)
+                participant.setTimeout(timeout);
+        }
+    }
+
+    @Override
+    public synchronized ListenableFuture<Void> watchKey(byte[] key) {
+        return this.invoke(this.kvdb.getPartitionIndex(key), tx -> tx.watchKey(key));
+    }
+
+    @Override
+    public synchronized byte[] get(byte[] key) {
+        return this.invoke(this.kvdb.getPartitionIndex(key), tx -> tx.get(key));
+    }
+
+    @Override
+    public synchronized KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        final int last = maxKey != null ? this.kvdb.getPartitionIndex(maxKey) : this.participants.length - 1;
+        for (int i = this.kvdb.getPartitionIndex(minKey); i <= last; i++) {
+            final KeyRange range = this.clamp(i, minKey, maxKey);
+            if (range == null)
+                continue;
+            final KVPair pair = this.invoke(i, tx -> tx.getAtLeast(range.getMin(), range.getMax()));
+            if (pair != null)
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        final int first = this.kvdb.getPartitionIndex(minKey);
+        for (int i = maxKey != null ? this.kvdb.getPartitionIndex(maxKey) : this.participants.length - 1; i >= first; i--) {
+            final KeyRange range = this.clamp(i, minKey, maxKey);
+            if (range == null)
+                continue;
+            final KVPair pair = this.invoke(i, tx -> tx.getAtMost(range.getMax(), range.getMin()));
+            if (pair != null)
+                return pair;
+        }
+        return null;
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        return new KVPairIterator(this, new KeyRange(minKey, maxKey), null, reverse);
+    }
+
+    @Override
+    public synchronized void put(byte[] key, byte[] value) {
+        this.invoke(this.kvdb.getPartitionIndex(key), tx -> {
+            tx.put(key, value);
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void remove(byte[] key) {
+        this.invoke(this.kvdb.getPartitionIndex(key), tx -> {
+            tx.remove(key);
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void removeRange(byte[] minKey, byte[] maxKey) {
+        if (minKey == null)
+            minKey = ByteUtil.EMPTY;
+        Preconditions.checkArgument(KeyRange.compare(minKey, maxKey) <= 0, "minKey > maxKey");
+        final int last = maxKey != null ? this.kvdb.getPartitionIndex(maxKey) : this.participants.length - 1;
+        for (int i = this.kvdb.getPartitionIndex(minKey); i <= last; i++) {
+            final KeyRange range = this.clamp(i, minKey, maxKey);
+            if (range == null)
+                continue;
+            this.invoke(i, tx -> {
+                tx.removeRange(range.getMin(), range.getMax());
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.readOnly;
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public synchronized void commit() {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        this.stale = true;
+        this.kvdb.commit(this, this.participants, this.readOnly);
+    }
+
+    @Override
+    public synchronized void rollback() {
+        if (this.stale)
+            return;
+        this.stale = true;
+        this.rollbackParticipants();
+        this.kvdb.getMetrics().recordRollback();
+    }
+
+    @Override
+    public synchronized CloseableKVStore mutableSnapshot() {
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        final NavigableMapKVStore kvstore = new NavigableMapKVStore();
+        this.snapshot(kvstore);
+        return new CloseableForwardingKVStore(kvstore);
+    }
+
+    /**
+     * Ensure transaction is eventually rolled back if leaked due to an application bug.
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            final boolean leaked;
+            synchronized (this) {
+                leaked = !this.stale;
+            }
+            if (leaked)
+               LoggerFactory.getLogger(this.getClass()).warn(this + " leaked without commit() or rollback()");
+            this.rollback();
+        } finally {
+            super.finalize();
+        }
+    }
+
+// Internal methods
+
+    // Copy each partition's view into the given store. We first acquire a read lock on every partition's entire range,
+    // one partition at a time; these locks are held until commit or rollback, so by two-phase locking no other transaction
+    // can modify any partition while we copy, and the result is consistent without holding any partition monitors.
+    private void snapshot(NavigableMapKVStore kvstore) {
+        for (int i = 0; i < this.participants.length; i++) {
+            final KeyRange range = this.kvdb.getPartitionRange(i);
+            this.invoke(i, tx -> tx.getAtLeast(range.getMin(), range.getMax()));
+        }
+        for (int i = 0; i < this.participants.length; i++) {
+            final KeyRange range = this.kvdb.getPartitionRange(i);
+            try (CloseableKVStore partitionSnapshot = this.invoke(i, SimpleKVTransaction::mutableSnapshot);
+              CloseableIterator<KVPair> iter = partitionSnapshot.getRange(range)) {
+                while (iter.hasNext()) {
+                    final KVPair pair = iter.next();
+                    kvstore.put(pair.getKey(), pair.getValue());
+                }
+            }
+        }
+    }
+
+    // Get the intersection of the given range with the given partition, or null if empty
+    private KeyRange clamp(int index, byte[] minKey, byte[] maxKey) {
+        final KeyRange range = this.kvdb.getPartitionRange(index);
+        final byte[] min = KeyRange.compare(minKey, range.getMin()) >= 0 ? minKey : range.getMin();
+        final byte[] max = KeyRange.compare(maxKey, range.getMax()) <= 0 ? maxKey : range.getMax();
+        return KeyRange.compare(min, max) < 0 ? new KeyRange(min, max) : null;
+    }
+
+    // Perform an operation in the given partition, rolling back everything if it fails
+    private <T> T invoke(int index, Function<? super SimpleKVTransaction, T> operation) {
+        assert Thread.holdsLock(this);
+        if (this.stale)
+            throw new StaleTransactionException(this);
+        SimpleKVTransaction participant = this.participants[index];
+        if (participant == null) {
+            participant = this.kvdb.getPartition(index).createTransaction();
+            participant.setTimeout(this.waitTimeout);
+            this.participants[index] = participant;
+        }
+        try {
+            return operation.apply(participant);
+        } catch (RetryTransactionException e) {
+            throw this.fail(e, new RetryTransactionException(this, e.getMessage(), e));
+        } catch (TransactionTimeoutException e) {
+            throw this.fail(e, new TransactionTimeoutException(this, e.getMessage(), e));
+        }
+    }
+
+    // Abort all participants after a participant fails, and record the failure
+    private RuntimeException fail(RuntimeException cause, RuntimeException e) {
+        this.stale = true;
+        this.kvdb.abort(this.participants, cause);
+        this.kvdb.getMetrics().recordException(e);
+        return e;
+    }
+
+    private void rollbackParticipants() {
+        for (SimpleKVTransaction participant : this.participants) {
+            if (participant != null)
+                participant.rollback();
+        }
+    }
+}
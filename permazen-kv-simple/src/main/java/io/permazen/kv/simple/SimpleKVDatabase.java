@@ -9,7 +9,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import io.permazen.kv.InstrumentedKVDatabase;
 import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
@@ -58,13 +60,18 @@ import org.slf4j.LoggerFactory;
  * {@linkplain SimpleKVTransaction#watchKey Key watches} are supported.
  *
  * <p>
+ * Instances gather {@linkplain #getMetrics metrics} including commit latency, lock wait timeouts (which are recorded as
+ * conflicts within the contested key range), the number of mutations in each transaction's write set, and the number
+ * of bytes written.
+ *
+ * <p>
  * Instances implement {@link Serializable} if the underlying {@link KVStore} is; this is the case when the default
  * constructor, which uses a {@link NavigableMapKVStore}, is used. However, key watches and open transactions are not
  * remembered across a (de)serialization cycle.
  *
  * @see LockManager
  */
-public class SimpleKVDatabase implements KVDatabase, Serializable {
+public class SimpleKVDatabase implements InstrumentedKVDatabase, Serializable {
 
     /**
      * Default {@linkplain #getWaitTimeout wait timeout} for newly created transactions in milliseconds
@@ -88,6 +95,7 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
     private /*final*/ transient LockManager lockManager = new LockManager(this);
     private /*final*/ transient KeyWatchTracker keyWatchTracker;
+    private /*final*/ transient KVDatabaseMetrics metrics = new KVDatabaseMetrics();
 
     private long waitTimeout;
 
@@ -185,6 +193,13 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         this.lockManager.setHoldTimeout(holdTimeout);
     }
 
+// InstrumentedKVDatabase
+
+    @Override
+    public KVDatabaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
 // KVDatabase
 
     @Override
@@ -208,6 +223,7 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
     @Override
     public synchronized SimpleKVTransaction createTransaction() {
+        this.metrics.recordTransactionOpened();
         return new SimpleKVTransaction(this, this.waitTimeout);
     }
 
@@ -308,7 +324,8 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         if (tx.stale)
             throw new StaleTransactionException(tx);
         if (this.lockManager.checkHoldTimeout(tx.lockOwner) == -1) {
-            this.rollback(tx);
+            this.abort(tx);
+            this.metrics.recordFailure();
             throw new TransactionTimeoutException(tx,
               "transaction taking too long: hold timeout of " + this.lockManager.getHoldTimeout() + "ms has expired");
         }
@@ -576,6 +593,26 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
     }
 
     synchronized void commit(SimpleKVTransaction tx, boolean readOnly) {
+        if (tx.stale)                                       // already counted as a commit, rollback, retry, or failure
+            throw new StaleTransactionException(tx);
+        final long startTime = System.nanoTime();
+        try {
+            this.prepareCommit(tx);
+            this.applyCommit(tx, readOnly);
+        } catch (RuntimeException e) {
+            this.metrics.recordException(e);
+            throw e;
+        }
+        this.metrics.recordCommit(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Perform the first phase of a commit: invalidate the transaction, release its locks, and verify it may still commit.
+     *
+     * <p>
+     * This instance's lock must be held continuously from this method through the matching {@link #applyCommit applyCommit()}.
+     */
+    synchronized void prepareCommit(SimpleKVTransaction tx) {
 
         // Prevent use after commit() or rollback() invoked
         if (tx.stale)
@@ -604,19 +641,37 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
 
         // Check subclass state
         this.checkState(tx);
+    }
+
+    /**
+     * Perform the second phase of a commit: apply the transaction's mutations, if any.
+     *
+     * @return number of key and value bytes written
+     */
+    synchronized long applyCommit(SimpleKVTransaction tx, boolean readOnly) {
 
         // If transaction is read-only, or there are no mutations, there's no need to write anything
+        this.metrics.recordWriteSetSize(readOnly ? 0 : tx.mutations.size());
         if (readOnly || tx.mutations.isEmpty())
-            return;
+            return 0;
 
         // Commit mutations
         this.preCommit(tx);
+        long bytesWritten = 0;
         boolean successful = false;
         try {
 
             // Apply mutations
             this.applyMutations(tx.mutations);
             successful = true;
+            for (Mutation mutation : tx.mutations) {
+                if (mutation instanceof Put) {
+                    final Put put = (Put)mutation;
+                    bytesWritten += put.getKey().length + put.getValue().length;
+                } else
+                    bytesWritten += mutation.getMin().length + (mutation.getMax() != null ? mutation.getMax().length : 0);
+            }
+            this.metrics.recordBytesWritten(bytesWritten);
 
             // Trigger key watches
             if (this.keyWatchTracker != null && this.keyWatchTracker.getNumKeysWatched() > 0) {
@@ -627,17 +682,32 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
             tx.mutations.clear();
             this.postCommit(tx, successful);
         }
+        return bytesWritten;
     }
 
     synchronized void rollback(SimpleKVTransaction tx) {
+        if (this.abort(tx))
+            this.metrics.recordRollback();
+    }
+
+    /**
+     * Invalidate a transaction and release its locks without recording a rollback.
+     *
+     * <p>
+     * Used when the transaction fails, in which case the failure is recorded instead.
+     *
+     * @return false if the transaction was already invalidated
+     */
+    synchronized boolean abort(SimpleKVTransaction tx) {
 
         // Prevent use after commit() or rollback() invoked
         if (tx.stale)
-            return;
+            return false;
         tx.stale = true;
 
         // Release all locks
         this.lockManager.release(tx.lockOwner);
+        return true;
     }
 
 // Internal methods
@@ -649,7 +719,8 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         try {
             lockResult = this.lockManager.lock(tx.lockOwner, minKey, maxKey, write, tx.waitTimeout);
         } catch (InterruptedException e) {
-            this.rollback(tx);
+            this.abort(tx);
+            this.metrics.recordRetry();
             Thread.currentThread().interrupt();
             throw new RetryTransactionException(tx, "transaction interrupted while waiting to acquire lock", e);
         }
@@ -659,10 +730,13 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         case SUCCESS:
             break;
         case WAIT_TIMEOUT_EXPIRED:
-            this.rollback(tx);
+            this.abort(tx);
+            this.metrics.recordRetry();
+            this.metrics.recordConflict(new KeyRange(minKey, maxKey));
             throw new RetryTransactionException(tx, "could not acquire lock after " + tx.waitTimeout + "ms");
         case HOLD_TIMEOUT_EXPIRED:
-            this.rollback(tx);
+            this.abort(tx);
+            this.metrics.recordFailure();
             throw new TransactionTimeoutException(tx,
               "transaction taking too long: hold timeout of " + this.lockManager.getHoldTimeout() + "ms has expired");
         default:
@@ -676,5 +750,6 @@ public class SimpleKVDatabase implements KVDatabase, Serializable {
         input.defaultReadObject();
         this.log = LoggerFactory.getLogger(this.getClass());
         this.lockManager = new LockManager(this);
+        this.metrics = new KVDatabaseMetrics();
     }
 }
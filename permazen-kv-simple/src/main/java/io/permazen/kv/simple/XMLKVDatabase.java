@@ -8,12 +8,15 @@ package io.permazen.kv.simple;
 import com.google.common.base.Preconditions;
 
 import io.permazen.kv.KVDatabaseException;
+import io.permazen.kv.KeyRange;
 import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.mvcc.Writes;
 import io.permazen.kv.util.XMLSerializer;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -21,7 +24,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -36,6 +48,15 @@ import org.dellroad.stuff.io.StreamRepository;
  * guarantees (via the use of {@link AtomicUpdateFileOutputStream}) that a partially written XML file can never exist.
  *
  * <p>
+ * For larger databases, rewriting the entire XML file on every commit can be expensive. When a {@link FileStreamRepository}
+ * is used, {@linkplain #setJournaling journaling} may be enabled instead. In that case, each commit appends the transaction's
+ * mutations (in {@link Writes#serialize Writes} format) to a {@linkplain #getJournalFile journal file} alongside the XML file,
+ * and the XML file is only rewritten during a {@linkplain #checkpoint checkpoint}, which happens periodically in the background,
+ * when the journal grows too large, and on {@link #stop}. When the database is loaded, any journal entries are re-applied on
+ * top of the XML file's content. The journal records the modification timestamp of the XML file it applies to, so a journal
+ * left over from before an out-of-band update of the XML file is discarded.
+ *
+ * <p>
  * If a {@link FileNotFoundException} is caught when trying to read the XML file, we assume that the underlying file has
  * not yet been created and the database will initially be empty. Alternately, you can configure a file containing
  * default initial content via {@link #setInitialContentFile setInitialContentFile()}, or override {@link #getInitialContent}
@@ -64,14 +85,40 @@ import org.dellroad.stuff.io.StreamRepository;
  */
 public class XMLKVDatabase extends SimpleKVDatabase {
 
+    /**
+     * Default {@linkplain #setCheckpointInterval checkpoint interval} ({@value #DEFAULT_CHECKPOINT_INTERVAL}ms).
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 60 * 1000;
+
+    /**
+     * Default {@linkplain #setCheckpointJournalSize checkpoint journal size} ({@value #DEFAULT_CHECKPOINT_JOURNAL_SIZE} bytes).
+     */
+    public static final long DEFAULT_CHECKPOINT_JOURNAL_SIZE = 16 * 1024 * 1024;
+
     private static final long serialVersionUID = 5699298282473179002L;
 
+    private static final int JOURNAL_MAGIC = 0x584d4c4a;                            // "XMLJ"
+    private static final int JOURNAL_HEADER_LENGTH = 12;                            // magic + XML file timestamp
+    private static final int JOURNAL_RECORD_OVERHEAD = 8;                           // length + CRC-32
+
     private /*final*/ StreamRepository repository;
     private final File file;
 
     private int generation;
     private long timestamp;
     private File initialContentFile;
+    private boolean journaling;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private long checkpointJournalSize = DEFAULT_CHECKPOINT_JOURNAL_SIZE;
+
+    // Locking note: all of the following are protected by this instance's monitor; in particular, SimpleKVDatabase
+    // holds it while invoking preCommit() and postCommit(), which are nevertheless synchronized to make this explicit
+    private transient boolean started;
+    private transient Writes commitWrites;                                          // mutations of committing transaction
+    private transient FileOutputStream journalOutput;
+    private transient long journalLength;
+    private transient ScheduledExecutorService checkpointExecutor;
+    private transient boolean checkpointPending;
 
 // Constructors
 
@@ -174,10 +221,125 @@ public class XMLKVDatabase extends SimpleKVDatabase {
         this.initialContentFile = initialContentFile;
     }
 
+    /**
+     * Determine whether journaling is enabled.
+     *
+     * @return true if journaling is enabled
+     */
+    public synchronized boolean isJournaling() {
+        return this.journaling;
+    }
+
+    /**
+     * Configure whether to append mutations to a journal file instead of rewriting the XML file on every commit.
+     *
+     * <p>
+     * Journaling requires the XML file to be stored in a {@link File}.
+     *
+     * <p>
+     * Default false.
+     *
+     * @param journaling true to enable journaling
+     * @throws IllegalArgumentException if {@code journaling} is true but this instance is not configured with a {@link File}
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setJournaling(boolean journaling) {
+        Preconditions.checkArgument(!journaling || this.file != null, "journaling requires a file");
+        Preconditions.checkState(!this.started, "already started");
+        this.journaling = journaling;
+    }
+
+    /**
+     * Get the journal file, which is the XML file with a {@code .journal} suffix appended.
+     *
+     * @return journal file, or null if this instance is not configured with a {@link File}
+     */
+    public File getJournalFile() {
+        return this.file != null ? new File(this.file.getPath() + ".journal") : null;
+    }
+
+    /**
+     * Get the interval between periodic background checkpoints when journaling is enabled.
+     *
+     * @return checkpoint interval in milliseconds, or zero for none
+     */
+    public synchronized long getCheckpointInterval() {
+        return this.checkpointInterval;
+    }
+
+    /**
+     * Configure the interval between periodic background checkpoints when journaling is enabled.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_CHECKPOINT_INTERVAL}.
+     *
+     * @param checkpointInterval checkpoint interval in milliseconds, or zero to disable periodic checkpoints
+     * @throws IllegalArgumentException if {@code checkpointInterval} is negative
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setCheckpointInterval(long checkpointInterval) {
+        Preconditions.checkArgument(checkpointInterval >= 0, "checkpointInterval < 0");
+        Preconditions.checkState(!this.started, "already started");
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Get the journal file size beyond which a background checkpoint is triggered.
+     *
+     * @return journal size threshold in bytes
+     */
+    public synchronized long getCheckpointJournalSize() {
+        return this.checkpointJournalSize;
+    }
+
+    /**
+     * Configure the journal file size beyond which a background checkpoint is triggered.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_CHECKPOINT_JOURNAL_SIZE}.
+     *
+     * @param checkpointJournalSize journal size threshold in bytes
+     * @throws IllegalArgumentException if {@code checkpointJournalSize} is not positive
+     */
+    public synchronized void setCheckpointJournalSize(long checkpointJournalSize) {
+        Preconditions.checkArgument(checkpointJournalSize > 0, "checkpointJournalSize <= 0");
+        this.checkpointJournalSize = checkpointJournalSize;
+    }
+
     @Override
     public synchronized void start() {
         super.start();
         this.reload();
+        if (this.journaling) {
+            this.checkpointExecutor = Executors.newSingleThreadScheduledExecutor(action -> {
+                final Thread thread = new Thread(action);
+                thread.setName("Checkpointer for " + this);
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (this.checkpointInterval > 0) {
+                this.checkpointExecutor.scheduleWithFixedDelay(this::backgroundCheckpoint,
+                  this.checkpointInterval, this.checkpointInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        this.started = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (this.started && this.journaling) {
+            try {
+                this.checkpoint();
+            } catch (KVDatabaseException e) {
+                this.log.error("error checkpointing " + this + " during shutdown", e);
+            }
+            this.checkpointExecutor.shutdownNow();
+            this.checkpointExecutor = null;
+            this.closeJournal();
+            this.journalLength = 0;
+        }
+        this.started = false;
+        super.stop();
     }
 
     @Override
@@ -239,8 +401,43 @@ public class XMLKVDatabase extends SimpleKVDatabase {
         }
     }
 
+    /**
+     * Write the XML file and reset the journal, if journaling is enabled and the journal is not empty.
+     *
+     * <p>
+     * This method is invoked automatically in the background, and by {@link #stop}.
+     *
+     * @throws KVDatabaseException if an error occurs
+     */
+    public synchronized void checkpoint() {
+        this.checkpointPending = false;
+        if (!this.journaling || this.journalLength <= JOURNAL_HEADER_LENGTH)
+            return;
+        if (this.log.isDebugEnabled())
+            this.log.debug("checkpointing " + this + " with " + this.journalLength + " byte journal");
+        this.writeXML();
+        this.resetJournal(this.timestamp);
+    }
+
     @Override
-    protected void postCommit(SimpleKVTransaction tx, boolean successful) {
+    protected synchronized void preCommit(SimpleKVTransaction tx) {
+        if (!this.journaling)
+            return;
+        final Writes writes = new Writes();
+        for (Mutation mutation : tx.mutations) {
+            if (mutation instanceof Put) {
+                final Put put = (Put)mutation;
+                writes.getPuts().put(put.getKey(), put.getValue());
+            } else
+                writes.getRemoves().add(new KeyRange(mutation.getMin(), mutation.getMax()));
+        }
+        this.commitWrites = writes;
+    }
+
+    @Override
+    protected synchronized void postCommit(SimpleKVTransaction tx, boolean successful) {
+        final Writes writes = this.commitWrites;
+        this.commitWrites = null;
 
         // If something weird happened, reload from storage
         if (!successful) {
@@ -248,8 +445,11 @@ public class XMLKVDatabase extends SimpleKVDatabase {
             return;
         }
 
-        // Persist data to file
-        this.writeXML();
+        // Persist data to journal or file
+        if (this.journaling)
+            this.appendJournal(writes);
+        else
+            this.writeXML();
     }
 
     protected synchronized void readXML() {
@@ -300,6 +500,10 @@ public class XMLKVDatabase extends SimpleKVDatabase {
             }
         }
 
+        // Apply journal, if any
+        if (this.journaling)
+            this.replayJournal(newTimestamp);
+
         // Update timestamp and generation number
         if (newTimestamp != 0)
             this.timestamp = newTimestamp;
@@ -327,6 +531,157 @@ public class XMLKVDatabase extends SimpleKVDatabase {
         }
     }
 
+// Journal
+
+    // Re-apply the journal on top of the XML content, or reset it if it does not correspond to the XML file
+    private void replayJournal(long xmlTimestamp) {
+        assert Thread.holdsLock(this);
+        this.closeJournal();
+        final File journalFile = this.getJournalFile();
+
+        // Read journal content
+        final ByteBuffer buf;
+        try {
+            buf = ByteBuffer.wrap(Files.readAllBytes(journalFile.toPath()));
+        } catch (NoSuchFileException e) {
+            this.resetJournal(xmlTimestamp);
+            return;
+        } catch (IOException e) {
+            throw new KVDatabaseException(this, "error reading journal file `" + journalFile + "'", e);
+        }
+
+        // Verify header
+        if (buf.remaining() < JOURNAL_HEADER_LENGTH || buf.getInt() != JOURNAL_MAGIC || buf.getLong() != xmlTimestamp) {
+            if (buf.capacity() > JOURNAL_HEADER_LENGTH)
+                this.log.info("discarding obsolete journal file `" + journalFile + "'");
+            this.resetJournal(xmlTimestamp);
+            return;
+        }
+
+        // Apply complete records; a partial or corrupt record at the end means a commit was interrupted
+        int count = 0;
+        int validLength = buf.position();
+        final CRC32 crc = new CRC32();
+        while (buf.remaining() >= JOURNAL_RECORD_OVERHEAD) {
+            final int length = buf.getInt();
+            if (length < 0 || length > buf.remaining() - 4)
+                break;
+            crc.reset();
+            crc.update(buf.array(), buf.position(), length);
+            if ((int)crc.getValue() != buf.getInt(buf.position() + length))
+                break;
+            final Writes writes;
+            try {
+                writes = Writes.deserialize(new ByteArrayInputStream(buf.array(), buf.position(), length), true);
+            } catch (IOException | IllegalArgumentException e) {
+                break;
+            }
+            writes.applyTo(this.kv);
+            buf.position(buf.position() + length + 4);
+            validLength = buf.position();
+            count++;
+        }
+        if (this.log.isDebugEnabled())
+            this.log.debug("applied " + count + " journal record(s) from `" + journalFile + "'");
+
+        // Discard any trailing garbage
+        if (validLength < buf.capacity()) {
+            this.log.warn("discarding " + (buf.capacity() - validLength)
+              + " byte(s) of incomplete data at the end of journal file `" + journalFile + "'");
+            try (FileChannel channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.force(true);
+            } catch (IOException e) {
+                throw new KVDatabaseException(this, "error truncating journal file `" + journalFile + "'", e);
+            }
+        }
+        this.journalLength = validLength;
+    }
+
+    // Start a new, empty journal corresponding to the XML file with the given modification timestamp
+    private void resetJournal(long xmlTimestamp) {
+        assert Thread.holdsLock(this);
+        this.closeJournal();
+        final File journalFile = this.getJournalFile();
+        boolean successful = false;
+        try {
+            this.journalOutput = new FileOutputStream(journalFile);
+            final DataOutputStream output = new DataOutputStream(this.journalOutput);
+            output.writeInt(JOURNAL_MAGIC);
+            output.writeLong(xmlTimestamp);
+            output.flush();
+            this.journalOutput.getFD().sync();
+            this.journalLength = JOURNAL_HEADER_LENGTH;
+            successful = true;
+        } catch (IOException e) {
+            throw new KVDatabaseException(this, "error initializing journal file `" + journalFile + "'", e);
+        } finally {
+            if (!successful)
+                this.closeJournal();
+        }
+    }
+
+    // Durably append a record to the journal
+    private void appendJournal(Writes writes) {
+        assert Thread.holdsLock(this);
+        final File journalFile = this.getJournalFile();
+        try {
+
+            // Build record
+            final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(buf);
+            output.writeInt(0);                                                     // placeholder for length
+            writes.serialize(output);
+            output.writeInt(0);                                                     // placeholder for CRC-32
+            output.flush();
+            final ByteBuffer record = ByteBuffer.wrap(buf.toByteArray());
+            final int length = record.capacity() - JOURNAL_RECORD_OVERHEAD;
+            final CRC32 crc = new CRC32();
+            crc.update(record.array(), 4, length);
+            record.putInt(0, length);
+            record.putInt(4 + length, (int)crc.getValue());
+
+            // Append record
+            if (this.journalOutput == null)
+                this.journalOutput = new FileOutputStream(journalFile, true);
+            this.journalOutput.write(record.array());
+            this.journalOutput.getFD().sync();
+            this.journalLength += record.capacity();
+        } catch (IOException e) {
+
+            // Our in-memory state may no longer match what's persisted, so reload it
+            this.closeJournal();
+            this.readXML();
+            throw new KVDatabaseException(this, "error writing journal file `" + journalFile + "'", e);
+        }
+
+        // Trigger a checkpoint if journal is getting too big
+        if (this.journalLength >= this.checkpointJournalSize && !this.checkpointPending && this.checkpointExecutor != null) {
+            this.checkpointPending = true;
+            this.checkpointExecutor.execute(this::backgroundCheckpoint);
+        }
+    }
+
+    private void closeJournal() {
+        assert Thread.holdsLock(this);
+        if (this.journalOutput == null)
+            return;
+        try {
+            this.journalOutput.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        this.journalOutput = null;
+    }
+
+    private void backgroundCheckpoint() {
+        try {
+            this.checkpoint();
+        } catch (KVDatabaseException e) {
+            this.log.error("error checkpointing " + this, e);
+        }
+    }
+
     private static boolean isWindows() {
         return System.getProperty("os.name", "generic").toLowerCase(Locale.ENGLISH).contains("win");
     }
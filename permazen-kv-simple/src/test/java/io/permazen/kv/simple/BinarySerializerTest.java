@@ -0,0 +1,159 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import com.google.common.base.Converter;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.util.BinarySerializer;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+import io.permazen.util.ConvertedNavigableMap;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BinarySerializerTest extends TestSupport {
+
+    @Test(dataProvider = "params")
+    public void testBinarySerializer(int parallelism, int chunkSize) throws Exception {
+
+        // Generate random data, including the empty key and keys sharing long prefixes
+        final ConcurrentSkipListMap<byte[], byte[]> data1 = new NavigableMapKVStore().getNavigableMap();
+        data1.put(ByteUtil.EMPTY, b("1234"));
+        for (int i = 0; i < 2000; i++) {
+            final byte[] key = new byte[1 + this.random.nextInt(12)];
+            this.random.nextBytes(key);
+            key[0] = (byte)this.random.nextInt(0xff);       // keys starting with 0xff are reserved
+            if (this.random.nextInt(3) == 0)
+                Arrays.fill(key, 0, key.length / 2, (byte)0x5a);
+            final byte[] value = new byte[this.random.nextInt(5) == 0 ? 0 : this.random.nextInt(40)];
+            this.random.nextBytes(value);
+            data1.put(key, value);
+        }
+
+        // Export
+        final BinarySerializer serializer1 = new BinarySerializer(new NavigableMapKVStore(data1));
+        serializer1.setParallelism(parallelism);
+        serializer1.setChunkSize(chunkSize);
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Assert.assertEquals(serializer1.write(buf), data1.size());
+        final byte[] bytes = buf.toByteArray();
+
+        // Import into a key/value store
+        final ConcurrentSkipListMap<byte[], byte[]> data2 = new NavigableMapKVStore().getNavigableMap();
+        final BinarySerializer serializer2 = new BinarySerializer(new NavigableMapKVStore(data2));
+        serializer2.setParallelism(parallelism);
+        Assert.assertEquals(serializer2.read(new ByteArrayInputStream(bytes)), data1.size());
+        Assert.assertEquals(s(data2), s(data1));
+
+        // Import into a key/value database using bounded transactions
+        final SimpleKVDatabase kvdb = new SimpleKVDatabase();
+        kvdb.start();
+        try {
+            final BinarySerializer serializer3 = new BinarySerializer(kvdb);
+            serializer3.setParallelism(parallelism);
+            Assert.assertEquals(serializer3.read(new ByteArrayInputStream(bytes)), data1.size());
+            final TreeMap<byte[], byte[]> data3 = new TreeMap<>(ByteUtil.COMPARATOR);
+            final KVTransaction kvt = kvdb.createTransaction();
+            try (CloseableIterator<KVPair> i = kvt.getRange(null, null)) {
+                i.forEachRemaining(pair -> data3.put(pair.getKey(), pair.getValue()));
+            } finally {
+                kvt.commit();
+            }
+            Assert.assertEquals(s(data3), s(data1));
+
+            // Export a sub-range from the key/value database
+            final byte[] minKey = b("40");
+            final byte[] maxKey = b("c0");
+            buf.reset();
+            serializer3.setChunkSize(chunkSize);
+            final long count = serializer3.write(buf, minKey, maxKey);
+            final NavigableMap<byte[], byte[]> expected = data1.subMap(minKey, maxKey);
+            Assert.assertEquals(count, expected.size());
+            data2.clear();
+            serializer2.read(new ByteArrayInputStream(buf.toByteArray()));
+            Assert.assertEquals(s(data2), s(expected));
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        Assert.assertEquals(new BinarySerializer(new NavigableMapKVStore()).write(buf), 0);
+        Assert.assertEquals(buf.toByteArray(), b("505a4b560100"));
+        Assert.assertEquals(new BinarySerializer(new NavigableMapKVStore()).read(new ByteArrayInputStream(buf.toByteArray())), 0);
+    }
+
+    @Test
+    public void testFormat() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        kv.put(b("0123"), b("aa"));
+        kv.put(b("0145"), b(""));
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        new BinarySerializer(kv).write(buf);
+        Assert.assertEquals(buf.toByteArray(), b(
+            "505a4b5601"                // header
+          + "0b"                        // chunk length
+          + "02"                        // chunk count
+          + "00" + "02" + "0123"        // key #1
+          + "01" + "aa"                 // value #1
+          + "01" + "01" + "45"          // key #2
+          + "00"                        // value #2
+          + "00"));                     // trailer
+    }
+
+    @Test
+    public void testInvalidInput() throws Exception {
+        this.checkInvalid(b(""));
+        this.checkInvalid(b("505a4b5602"));
+        this.checkInvalid(b("505a4b5701"));
+        this.checkInvalid(b("505a4b5601"));
+        this.checkInvalid(b("505a4b5601" + "05" + "02" + "00010201"));
+        this.checkInvalid(b("505a4b5601" + "05" + "01" + "0101aa00" + "00"));
+        this.checkInvalid(b("505a4b5601" + "09" + "02" + "000111" + "00" + "000110" + "00" + "00"));
+        this.checkInvalid(b("505a4b5601" + ByteUtil.toString(UnsignedIntEncoder.encode(Integer.MAX_VALUE)) + "01"));
+    }
+
+    private void checkInvalid(byte[] input) {
+        try {
+            new BinarySerializer(new NavigableMapKVStore()).read(new ByteArrayInputStream(input));
+            assert false : "read invalid input " + ByteUtil.toString(input);
+        } catch (IOException e) {
+            this.log.debug("got expected " + e);
+        }
+    }
+
+    @DataProvider(name = "params")
+    public Object[][] genParams() {
+        return new Object[][] {
+            { 1, BinarySerializer.DEFAULT_CHUNK_SIZE },
+            { 1, 7 },
+            { 4, 1 },
+            { 4, 50 },
+        };
+    }
+
+    private static NavigableMap<String, String> s(NavigableMap<byte[], byte[]> map) {
+        final Converter<String, byte[]> converter = ByteUtil.STRING_CONVERTER.reverse();
+        return new ConvertedNavigableMap<>(map, converter, converter);
+    }
+}
@@ -0,0 +1,157 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+public class JournaledXMLKVDatabaseTest extends KVDatabaseTest {
+
+    private XMLKVDatabase xmlKV;
+    private File xmlFile;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("xmlFilePrefix")
+    public void setTestXMLKV(@Optional String xmlFilePrefix) throws IOException {
+        if (xmlFilePrefix != null) {
+            this.xmlFile = File.createTempFile(xmlFilePrefix, ".xml");
+            this.xmlFile.delete();                           // we need the file to not exist at first
+            this.xmlFile.deleteOnExit();
+            this.xmlKV = new XMLKVDatabase(this.xmlFile, 250, 5000);
+            this.xmlKV.setJournaling(true);
+            this.xmlKV.setCheckpointJournalSize(64 * 1024);
+        }
+    }
+
+    @AfterClass
+    public void teardownRemoveXMLFile() throws Exception {
+        if (this.xmlFile != null) {
+            this.xmlFile.delete();
+            this.xmlKV.getJournalFile().delete();
+        }
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.xmlKV;
+    }
+
+    @Test
+    public void testJournalRecovery() throws Exception {
+        final File file = File.createTempFile("journal", ".xml");
+        file.delete();
+        file.deleteOnExit();
+        final XMLKVDatabase kvdb1 = this.createJournaled(file);
+        final File journalFile = kvdb1.getJournalFile();
+        journalFile.deleteOnExit();
+        try {
+
+            // Commit some transactions; only the journal should be written
+            kvdb1.start();
+            this.tryNtimes(kvdb1, tx -> {
+                tx.put(b("01"), b("0101"));
+                tx.put(b("02"), b("0202"));
+            });
+            this.tryNtimes(kvdb1, tx -> tx.remove(b("01")));
+            Assert.assertFalse(file.exists());
+            Assert.assertTrue(journalFile.length() > 12);
+
+            // Simulate a crash that interrupted a commit by appending a partial record
+            try (FileOutputStream output = new FileOutputStream(journalFile, true)) {
+                output.write(new byte[] { 0, 0, 0, 50, 1, 2, 3 });
+            }
+
+            // A second instance should recover from the journal and discard the partial record
+            final XMLKVDatabase kvdb2 = this.createJournaled(file);
+            kvdb2.start();
+            this.tryNtimes(kvdb2, tx -> {
+                Assert.assertNull(tx.get(b("01")));
+                Assert.assertEquals(tx.get(b("02")), b("0202"));
+            });
+            this.tryNtimes(kvdb2, tx -> tx.put(b("03"), b("0303")));
+
+            // Checkpoint should write the XML file and empty the journal
+            kvdb2.checkpoint();
+            Assert.assertTrue(file.exists());
+            Assert.assertEquals(journalFile.length(), 12);
+            this.tryNtimes(kvdb2, tx -> tx.put(b("04"), b("0404")));
+            kvdb2.stop();
+            Assert.assertEquals(journalFile.length(), 12);
+
+            // Verify everything is there after reloading
+            final XMLKVDatabase kvdb3 = this.createJournaled(file);
+            kvdb3.start();
+            this.tryNtimes(kvdb3, tx -> {
+                Assert.assertNull(tx.get(b("01")));
+                Assert.assertEquals(tx.get(b("02")), b("0202"));
+                Assert.assertEquals(tx.get(b("03")), b("0303"));
+                Assert.assertEquals(tx.get(b("04")), b("0404"));
+            });
+            kvdb3.stop();
+        } finally {
+            file.delete();
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    public void testOutOfBandUpdateDiscardsJournal() throws Exception {
+        final File file = File.createTempFile("journal", ".xml");
+        file.delete();
+        file.deleteOnExit();
+        final XMLKVDatabase kvdb1 = this.createJournaled(file);
+        final File journalFile = kvdb1.getJournalFile();
+        journalFile.deleteOnExit();
+        try {
+
+            // Create XML file, then add a journal entry
+            kvdb1.start();
+            this.tryNtimes(kvdb1, tx -> tx.put(b("01"), b("0101")));
+            kvdb1.stop();
+            final XMLKVDatabase kvdb2 = this.createJournaled(file);
+            kvdb2.start();
+            this.tryNtimes(kvdb2, tx -> tx.put(b("02"), b("0202")));
+
+            // Update XML file out-of-band using a non-journaled instance
+            Thread.sleep(1100);                                     // ensure modification timestamp changes
+            final XMLKVDatabase other = new XMLKVDatabase(file);
+            other.start();
+            this.tryNtimes(other, tx -> tx.put(b("03"), b("0303")));
+            other.stop();
+
+            // Journal should now be ignored
+            final XMLKVDatabase kvdb3 = this.createJournaled(file);
+            kvdb3.start();
+            this.tryNtimes(kvdb3, tx -> {
+                Assert.assertEquals(tx.get(b("01")), b("0101"));
+                Assert.assertNull(tx.get(b("02")));
+                Assert.assertEquals(tx.get(b("03")), b("0303"));
+            });
+            kvdb3.stop();
+        } finally {
+            file.delete();
+            journalFile.delete();
+        }
+    }
+
+    private XMLKVDatabase createJournaled(File file) {
+        final XMLKVDatabase kvdb = new XMLKVDatabase(file);
+        kvdb.setJournaling(true);
+        kvdb.setCheckpointInterval(0);
+        return kvdb;
+    }
+}
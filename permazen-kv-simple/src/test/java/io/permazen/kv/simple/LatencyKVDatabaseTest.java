@@ -0,0 +1,94 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.test.KVDatabaseTest;
+import io.permazen.kv.util.LatencyKVDatabase;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.util.CloseableIterator;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link KVDatabaseTest} suite over a {@link SimpleKVDatabase} wrapped in a {@link LatencyKVDatabase}.
+ */
+public class LatencyKVDatabaseTest extends KVDatabaseTest {
+
+    private LatencyKVDatabase latencyKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters({ "testLatencyKV", "latencyKVReadLatency" })
+    public void setTestLatencyKV(@Optional String testLatencyKV, @Optional("0") long readLatency) {
+        if (testLatencyKV != null && Boolean.valueOf(testLatencyKV)) {
+            this.latencyKV = new LatencyKVDatabase(new SimpleKVDatabase(new NavigableMapKVStore(), 250, 5000));
+            this.latencyKV.setReadLatency(readLatency);
+            this.latencyKV.setCommitLatency(readLatency);
+            this.latencyKV.setJitter(0.5);
+        }
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.latencyKV;
+    }
+
+    @Test
+    public void testRoundTrips() throws Exception {
+        final LatencyKVDatabase kvdb = new LatencyKVDatabase(new SimpleKVDatabase());
+        kvdb.setReadLatency(1000);
+        kvdb.setBandwidth(1000000);
+
+        // Writes are free by default
+        KVTransaction tx = kvdb.createTransaction();
+        for (int i = 0; i < 10; i++)
+            tx.put(new byte[] { (byte)i }, new byte[10]);
+        Assert.assertEquals(kvdb.getRoundTrips(), 0);
+        tx.commit();
+        Assert.assertEquals(kvdb.getRoundTrips(), 1);
+        kvdb.resetStatistics();
+
+        // Each read is a round trip
+        final long startTime = System.nanoTime();
+        tx = kvdb.createTransaction();
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(tx.get(new byte[] { (byte)i }), new byte[10]);
+        Assert.assertEquals(kvdb.getRoundTrips(), 10);
+        Assert.assertEquals(kvdb.getBytesRead(), 110);
+
+        // A range read is a single round trip
+        int count = 0;
+        try (CloseableIterator<?> i = tx.getRange(null, null)) {
+            while (i.hasNext()) {
+                i.next();
+                count++;
+            }
+        }
+        Assert.assertEquals(count, 10);
+        Assert.assertEquals(kvdb.getRoundTrips(), 11);
+        Assert.assertEquals(kvdb.getBytesRead(), 220);
+        tx.rollback();
+
+        // Check delays
+        Assert.assertTrue(kvdb.getTotalDelay() >= 11 * 1000 + 220);
+        Assert.assertTrue((System.nanoTime() - startTime) / 1000 >= kvdb.getTotalDelay());
+
+        // Synchronous writes
+        kvdb.resetStatistics();
+        kvdb.setWriteLatency(1000);
+        tx = kvdb.createTransaction();
+        tx.remove(new byte[] { (byte)3 });
+        tx.removeRange(new byte[] { (byte)5 }, null);
+        tx.commit();
+        Assert.assertEquals(kvdb.getRoundTrips(), 3);
+        Assert.assertEquals(kvdb.getBytesRead(), 0);
+    }
+}
@@ -0,0 +1,97 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.KVDatabaseMetrics;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.StaleTransactionException;
+import io.permazen.kv.mvcc.ReadWriteConflict;
+import io.permazen.kv.mvcc.TransactionConflictException;
+import io.permazen.kv.util.MetricsKVDatabase;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.test.TestSupport;
+import io.permazen.util.CloseableIterator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MetricsKVDatabaseTest extends TestSupport {
+
+    @Test
+    public void testMetricsKVDatabase() throws Exception {
+        final SimpleKVDatabase simpleKV = new SimpleKVDatabase(new NavigableMapKVStore(), 100, 5000);
+        final MetricsKVDatabase kvdb = new MetricsKVDatabase(simpleKV);
+        final KVDatabaseMetrics metrics = kvdb.getMetrics();
+
+        // Write some data
+        KVTransaction tx = kvdb.createTransaction();
+        tx.put(b("01"), b("aaaa"));
+        tx.put(b("02"), b("bb"));
+        tx.remove(b("03"));
+        tx.commit();
+        Assert.assertEquals(metrics.getTransactionsOpened(), 1);
+        Assert.assertEquals(metrics.getCommits(), 1);
+        Assert.assertEquals(metrics.getBytesWritten(), (1 + 2) + (1 + 1) + 1);
+        Assert.assertEquals(metrics.getWriteSetSize().getMax(), 3);
+        Assert.assertEquals(metrics.getCommitLatency().getCount(), 1);
+
+        // Read it back
+        tx = kvdb.createTransaction();
+        Assert.assertEquals(tx.get(b("01")), b("aaaa"));
+        int count = 0;
+        try (CloseableIterator<KVPair> i = tx.getRange(null, null)) {
+            while (i.hasNext()) {
+                i.next();
+                count++;
+            }
+        }
+        Assert.assertEquals(count, 2);
+        tx.rollback();
+        tx.rollback();
+        Assert.assertEquals(metrics.getRollbacks(), 1);
+        Assert.assertEquals(metrics.getBytesRead(), (1 + 2) + (1 + 2) + (1 + 1));
+        Assert.assertEquals(metrics.getReadSetSize().getMax(), 2);
+
+        // Lock contention
+        final KVTransaction tx1 = kvdb.createTransaction();
+        final KVTransaction tx2 = kvdb.createTransaction();
+        tx1.put(b("01"), b("cc"));
+        try {
+            tx2.get(b("01"));
+            assert false;
+        } catch (RetryTransactionException e) {
+            // expected
+        }
+        tx1.commit();
+        try {
+            tx2.commit();
+            assert false;
+        } catch (StaleTransactionException e) {
+            // expected
+        }
+        Assert.assertEquals(metrics.getRetries(), 1);
+        Assert.assertEquals(metrics.getCommits(), 2);
+
+        // Conflicts reported by the underlying database
+        final KVTransaction tx3 = kvdb.createTransaction();
+        metrics.recordException(new TransactionConflictException(tx3, new ReadWriteConflict(b("fc1234aa"))));
+        Assert.assertEquals(metrics.getConflictPrefixes().get("fc1234"), (Long)1L);
+        tx3.rollback();
+
+        // The underlying SimpleKVDatabase has its own metrics
+        final KVDatabaseMetrics simpleMetrics = simpleKV.getMetrics();
+        Assert.assertEquals(simpleMetrics.getTransactionsOpened(), 5);
+        Assert.assertEquals(simpleMetrics.getCommits(), 2);
+        Assert.assertEquals(simpleMetrics.getRetries(), 1);
+        Assert.assertEquals(simpleMetrics.getRollbacks(), 2);           // the transaction aborted by retry is not counted
+        Assert.assertEquals(simpleMetrics.getFailures(), 0);            // neither is its stale commit()
+        Assert.assertEquals(simpleMetrics.getConflicts(), 1);
+        Assert.assertEquals(simpleMetrics.getConflictPrefixes().get("01"), (Long)1L);
+        Assert.assertEquals(simpleMetrics.getBytesWritten(), (1 + 2) + (1 + 1) + (1 + 2) + (1 + 1));
+    }
+}
@@ -0,0 +1,256 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.simple;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.StaleTransactionException;
+import io.permazen.kv.test.KVDatabaseTest;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+/**
+ * Runs the {@link KVDatabaseTest} suite over a {@link PartitionedKVDatabase}.
+ */
+public class PartitionedKVDatabaseTest extends KVDatabaseTest {
+
+    private static final List<byte[]> SPLIT_KEYS = Arrays.asList(b("05"), b("10"), b("1020"), b("80"));
+
+    private PartitionedKVDatabase partitionedKV;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("testPartitionedKV")
+    public void setTestPartitionedKV(@Optional String testPartitionedKV) {
+        if (testPartitionedKV != null && Boolean.valueOf(testPartitionedKV))
+            this.partitionedKV = new PartitionedKVDatabase(SPLIT_KEYS, 250, 5000);
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.partitionedKV;
+    }
+
+    @Test
+    public void testPartitionIndex() throws Exception {
+        final PartitionedKVDatabase kvdb = new PartitionedKVDatabase(SPLIT_KEYS);
+        Assert.assertEquals(kvdb.getNumPartitions(), 5);
+        Assert.assertEquals(kvdb.getPartitionIndex(ByteUtil.EMPTY), 0);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("04ff")), 0);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("05")), 1);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("10")), 2);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("101f")), 2);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("1020")), 3);
+        Assert.assertEquals(kvdb.getPartitionIndex(b("fe")), 4);
+
+        // Default storage ID partitioning
+        final List<byte[]> splitKeys = PartitionedKVDatabase.storageIdSplitKeys(4);
+        Assert.assertEquals(splitKeys.size(), 3);
+        Assert.assertEquals(splitKeys.get(0), b("fc40"));
+        Assert.assertEquals(new PartitionedKVDatabase(1).getNumPartitions(), 1);
+        try {
+            new PartitionedKVDatabase(Arrays.asList(b("10"), b("05")));
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCrossPartition() throws Exception {
+        final PartitionedKVDatabase kvdb = new PartitionedKVDatabase(SPLIT_KEYS, 100, 5000);
+        kvdb.start();
+        try {
+
+            // Write keys in every partition
+            KVTransaction tx = kvdb.createTransaction();
+            for (String key : new String[] { "01", "05", "0a", "10", "1020", "30", "80", "90" })
+                tx.put(b(key), b(key));
+            tx.commit();
+
+            // Scan forward and reverse across partitions
+            tx = kvdb.createTransaction();
+            Assert.assertEquals(tx.getAtLeast(b("02"), null).getKey(), b("05"));
+            Assert.assertEquals(tx.getAtLeast(b("1001"), b("1030")).getKey(), b("1020"));
+            Assert.assertNull(tx.getAtLeast(b("31"), b("80")));
+            Assert.assertEquals(tx.getAtMost(b("80"), null).getKey(), b("30"));
+            Assert.assertEquals(tx.getAtMost(null, b("85")).getKey(), b("90"));
+            Assert.assertNull(tx.getAtMost(b("05"), b("02")));
+            Assert.assertEquals(this.count(tx, null, null), 8);
+
+            // Remove a range spanning partitions
+            tx.removeRange(b("09"), b("31"));
+            Assert.assertEquals(this.count(tx, null, null), 4);
+            Assert.assertNull(tx.get(b("1020")));
+            tx.commit();
+
+            // Verify commit
+            tx = kvdb.createTransaction();
+            Assert.assertEquals(this.count(tx, null, null), 4);
+            Assert.assertEquals(tx.get(b("0a")), null);
+            Assert.assertEquals(tx.get(b("80")), b("80"));
+            tx.commit();
+            try {
+                tx.get(b("80"));
+                assert false;
+            } catch (StaleTransactionException e) {
+                // expected
+            }
+
+            // Transactions in disjoint partitions don't contend
+            final KVTransaction tx1 = kvdb.createTransaction();
+            final KVTransaction tx2 = kvdb.createTransaction();
+            tx1.put(b("01"), b("11"));
+            tx2.put(b("90"), b("22"));
+            tx1.commit();
+            tx2.commit();
+
+            // A conflict in one partition fails the whole transaction, and nothing is applied
+            final KVTransaction tx3 = kvdb.createTransaction();
+            final KVTransaction tx4 = kvdb.createTransaction();
+            tx3.put(b("30"), b("33"));
+            tx4.put(b("01"), b("44"));
+            try {
+                tx4.put(b("30"), b("44"));
+                assert false;
+            } catch (RetryTransactionException e) {
+                Assert.assertSame(e.getTransaction(), tx4);
+            }
+            tx3.commit();
+            tx = kvdb.createTransaction();
+            Assert.assertEquals(tx.get(b("01")), b("11"));
+            Assert.assertEquals(tx.get(b("30")), b("33"));
+            Assert.assertEquals(tx.get(b("90")), b("22"));
+            tx.commit();
+
+            // Mutable snapshot spans all partitions
+            tx = kvdb.createTransaction();
+            tx.put(b("1020"), b("55"));
+            Assert.assertEquals(this.count(tx.mutableSnapshot(), null, null), 6);
+            tx.rollback();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final PartitionedKVDatabase kvdb = new PartitionedKVDatabase(SPLIT_KEYS, 100, 5000);
+        final KVDatabaseMetrics metrics = kvdb.getMetrics();
+        kvdb.start();
+        try {
+
+            // Commit spanning two partitions
+            KVTransaction tx = kvdb.createTransaction();
+            tx.put(b("01"), b("aaaa"));
+            tx.put(b("90"), b("bb"));
+            tx.commit();
+            Assert.assertEquals(metrics.getTransactionsOpened(), 1);
+            Assert.assertEquals(metrics.getCommits(), 1);
+            Assert.assertEquals(metrics.getCommitLatency().getCount(), 1);
+            Assert.assertEquals(metrics.getWriteSetSize().getMax(), 2);
+            Assert.assertEquals(metrics.getBytesWritten(), (1 + 2) + (1 + 1));
+            Assert.assertEquals(kvdb.getPartitionMetrics(0).getCommits(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(0).getCommitLatency().getCount(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(4).getCommits(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(2).getCommits(), 0);
+
+            // Rollback
+            tx = kvdb.createTransaction();
+            tx.get(b("01"));
+            tx.rollback();
+            tx.rollback();
+            Assert.assertEquals(metrics.getRollbacks(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(0).getRollbacks(), 1);
+
+            // Lock contention: the loser counts as a retry only, in every partition it accessed
+            final KVTransaction tx1 = kvdb.createTransaction();
+            final KVTransaction tx2 = kvdb.createTransaction();
+            tx1.put(b("90"), b("cc"));
+            tx2.put(b("01"), b("dd"));
+            try {
+                tx2.get(b("90"));
+                assert false;
+            } catch (RetryTransactionException e) {
+                Assert.assertSame(e.getTransaction(), tx2);
+            }
+            tx2.rollback();
+            tx1.commit();
+            Assert.assertEquals(metrics.getTransactionsOpened(), 4);
+            Assert.assertEquals(metrics.getCommits(), 2);
+            Assert.assertEquals(metrics.getRollbacks(), 1);
+            Assert.assertEquals(metrics.getRetries(), 1);
+            Assert.assertEquals(metrics.getFailures(), 0);
+            Assert.assertEquals(kvdb.getPartitionMetrics(0).getRetries(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(0).getRollbacks(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(4).getRetries(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(4).getConflicts(), 1);
+            Assert.assertEquals(kvdb.getPartitionMetrics(4).getRollbacks(), 0);
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test
+    public void testSnapshotWhileLocked() throws Exception {
+        final PartitionedKVDatabase kvdb = new PartitionedKVDatabase(SPLIT_KEYS, 5000, 10000);
+        kvdb.start();
+        try {
+
+            // Hold write locks in two partitions
+            final KVTransaction tx1 = kvdb.createTransaction();
+            tx1.put(b("30"), b("11"));
+            tx1.put(b("90"), b("11"));
+
+            // Take a snapshot in another thread; it must wait for tx1's locks
+            final KVTransaction tx2 = kvdb.createTransaction();
+            final CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> {
+                try (CloseableKVStore snapshot = tx2.mutableSnapshot()) {
+                    Assert.assertEquals(snapshot.get(b("30")), b("11"));
+                    return this.count(snapshot, null, null);
+                }
+            });
+            Thread.sleep(250);
+            Assert.assertFalse(future.isDone());
+
+            // The waiting snapshot must not block the lock holder from committing
+            final long startTime = System.nanoTime();
+            tx1.commit();
+            Assert.assertTrue(System.nanoTime() - startTime < 2000000000L, "commit blocked by waiting snapshot");
+
+            // Now the snapshot completes and sees the committed data
+            Assert.assertEquals((int)future.get(), 2);
+            tx2.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    private int count(KVStore kv, byte[] minKey, byte[] maxKey) {
+        int count = 0;
+        try (CloseableIterator<KVPair> i = kv.getRange(minKey, maxKey)) {
+            while (i.hasNext()) {
+                i.next();
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.sql;
+
+import io.permazen.kv.sql.SQLKVTransaction.StmtType;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.EnumMap;
+
+import org.slf4j.Logger;
+
+/**
+ * A {@link Connection} used by {@link SQLKVTransaction}s, along with its cache of idle {@link PreparedStatement}s.
+ *
+ * <p>
+ * Because the SQL for each {@link StmtType} is fixed for a given {@link SQLKVDatabase}, at most one idle
+ * statement per {@link StmtType} is retained. A statement is removed from the cache while in use, so that
+ * e.g. two open iterators of the same type never share a statement.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+final class CachedConnection {
+
+    final Connection connection;
+
+    long idleSince;
+
+    private final EnumMap<StmtType, PreparedStatement> statements = new EnumMap<>(StmtType.class);
+    private final EnumMap<StmtType, Integer> parameterCounts = new EnumMap<>(StmtType.class);
+
+    CachedConnection(Connection connection) {
+        assert connection != null;
+        this.connection = connection;
+    }
+
+    /**
+     * Get a {@link PreparedStatement} for the given type, either from the cache or by preparing a new one.
+     */
+    PreparedStatement acquire(SQLKVDatabase db, StmtType stmtType, Logger log) throws SQLException {
+        synchronized (this) {
+            final PreparedStatement statement = this.statements.remove(stmtType);
+            if (statement != null)
+                return statement;
+        }
+        return stmtType.create(db, this.connection, log);
+    }
+
+    /**
+     * Return a {@link PreparedStatement} previously obtained from {@link #acquire acquire()} to the cache.
+     * If another statement of the same type is already cached, or {@code cache} is false, the statement is closed.
+     */
+    void release(StmtType stmtType, PreparedStatement statement, boolean cache) {
+        if (cache) {
+            synchronized (this) {
+                if (!this.statements.containsKey(stmtType)) {
+                    this.statements.put(stmtType, statement);
+                    return;
+                }
+            }
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * Get the number of SQL parameters in the given statement, avoiding repeated meta-data queries.
+     */
+    int getParameterCount(StmtType stmtType, PreparedStatement statement) throws SQLException {
+        synchronized (this) {
+            final Integer count = this.parameterCounts.get(stmtType);
+            if (count != null)
+                return count;
+        }
+        final int count = statement.getParameterMetaData().getParameterCount();
+        synchronized (this) {
+            this.parameterCounts.put(stmtType, count);
+        }
+        return count;
+    }
+
+    /**
+     * Close the underlying {@link Connection}, which also closes all of its statements.
+     */
+    void close() {
+        synchronized (this) {
+            this.statements.clear();
+        }
+        try {
+            this.connection.close();
+        } catch (SQLException e) {
+            // ignore
+        }
+    }
+}
@@ -18,6 +18,9 @@ import java.sql.SQLException;
 import java.sql.SQLRecoverableException;
 import java.sql.SQLTimeoutException;
 import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import javax.annotation.PostConstruct;
@@ -31,6 +34,14 @@ import org.slf4j.LoggerFactory;
  * Support superclass for SQL {@link KVDatabase} implementations.
  *
  * <p>
+ * Each transaction caches the {@link java.sql.PreparedStatement}s it uses, so each kind of SQL statement is prepared
+ * at most once per {@link Connection} (see {@link #setCacheStatements setCacheStatements()}). In addition, instances
+ * may be configured with a {@linkplain #setConnectionPoolSize built-in connection pool} that retains idle connections,
+ * and their prepared statements, from one transaction to the next. This avoids connection setup and statement
+ * preparation costs, which otherwise can dominate small transactions. Leave the pool disabled if the configured
+ * {@link DataSource} already provides pooling.
+ *
+ * <p>
  * {@linkplain io.permazen.kv.KVTransaction#watchKey Key watches} are not supported.
  */
 public class SQLKVDatabase implements KVDatabase {
@@ -56,6 +67,16 @@ public class SQLKVDatabase implements KVDatabase {
      */
     public static final String OPTION_ISOLATION = "isolation";
 
+    /**
+     * Default {@linkplain #setMaxIdleTime maximum idle time} for pooled connections ({@value #DEFAULT_MAX_IDLE_TIME}ms).
+     */
+    public static final long DEFAULT_MAX_IDLE_TIME = 30 * 1000;
+
+    /**
+     * Default {@linkplain #setReadAhead maximum read-ahead} ({@value #DEFAULT_READ_AHEAD}, i.e., disabled).
+     */
+    public static final int DEFAULT_READ_AHEAD = 0;
+
     protected DataSource dataSource;
 
     /**
@@ -81,6 +102,15 @@ public class SQLKVDatabase implements KVDatabase {
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
     volatile boolean rollbackForReadOnly = true;
+    volatile boolean cacheStatements = true;
+    volatile int fetchSize;
+    volatile int readAhead = DEFAULT_READ_AHEAD;
+
+    private final ArrayDeque<CachedConnection> idleConnections = new ArrayDeque<>();           // most recently used first
+    private final IdentityHashMap<Connection, CachedConnection> activeConnections = new IdentityHashMap<>();
+    private int connectionPoolSize;
+    private long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+    private boolean poolOpen;
 
     /**
      * Get the {@link DataSource} used with this instance.
@@ -225,6 +255,170 @@ public class SQLKVDatabase implements KVDatabase {
         this.rollbackForReadOnly = rollbackForReadOnly;
     }
 
+    /**
+     * Get the maximum number of idle connections retained by the built-in connection pool.
+     *
+     * @return connection pool size, or zero if the built-in connection pool is disabled
+     */
+    public int getConnectionPoolSize() {
+        synchronized (this.idleConnections) {
+            return this.connectionPoolSize;
+        }
+    }
+
+    /**
+     * Configure the maximum number of idle connections retained by the built-in connection pool.
+     *
+     * <p>
+     * When a transaction completes normally, its {@link Connection} is returned to the pool, unless the pool is full,
+     * and is reused by the next transaction. Connections are reused in most-recently-used order, so under light load
+     * only a few connections stay active while the rest age out via {@link #setMaxIdleTime setMaxIdleTime()}.
+     * Connections involved in an {@link SQLException} are never reused. There is no limit on the number of
+     * connections in use at any one time.
+     *
+     * <p>
+     * Default is zero, i.e., the built-in connection pool is disabled and each transaction gets a new {@link Connection}
+     * from the {@link DataSource}.
+     *
+     * @param connectionPoolSize maximum number of idle connections, or zero to disable pooling
+     * @throws IllegalArgumentException if {@code connectionPoolSize} is negative
+     */
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        Preconditions.checkArgument(connectionPoolSize >= 0, "connectionPoolSize < 0");
+        final ArrayList<CachedConnection> closeList = new ArrayList<>();
+        synchronized (this.idleConnections) {
+            this.connectionPoolSize = connectionPoolSize;
+            while (this.idleConnections.size() > connectionPoolSize)
+                closeList.add(this.idleConnections.removeLast());
+        }
+        closeList.forEach(CachedConnection::close);
+    }
+
+    /**
+     * Get the maximum time a pooled connection may sit idle before being closed.
+     *
+     * @return maximum idle time in milliseconds
+     */
+    public long getMaxIdleTime() {
+        synchronized (this.idleConnections) {
+            return this.maxIdleTime;
+        }
+    }
+
+    /**
+     * Configure the maximum time a pooled connection may sit idle before being closed instead of reused.
+     *
+     * <p>
+     * This should be less than any server-side idle connection timeout. Idle connections are not otherwise validated.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_MAX_IDLE_TIME}.
+     *
+     * @param maxIdleTime maximum idle time in milliseconds
+     * @throws IllegalArgumentException if {@code maxIdleTime} is negative
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        Preconditions.checkArgument(maxIdleTime >= 0, "maxIdleTime < 0");
+        synchronized (this.idleConnections) {
+            this.maxIdleTime = maxIdleTime;
+        }
+    }
+
+    /**
+     * Get whether prepared statements are cached and reused.
+     *
+     * @return true if prepared statements are cached
+     * @see #setCacheStatements
+     */
+    public boolean isCacheStatements() {
+        return this.cacheStatements;
+    }
+
+    /**
+     * Configure whether to cache and reuse prepared statements.
+     *
+     * <p>
+     * If true, each {@link Connection} retains at most one idle {@link java.sql.PreparedStatement} for each kind
+     * of SQL statement issued by {@link SQLKVTransaction}, for the lifetime of the connection. If false,
+     * a new statement is prepared for every SQL operation.
+     *
+     * <p>
+     * Default is true.
+     *
+     * @param cacheStatements true to cache prepared statements
+     */
+    public void setCacheStatements(boolean cacheStatements) {
+        this.cacheStatements = cacheStatements;
+    }
+
+    /**
+     * Get the fetch size hint for range queries.
+     *
+     * @return fetch size, or zero for the driver default
+     * @see #setFetchSize
+     */
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    /**
+     * Configure the fetch size hint for queries that back key/value range iterators.
+     *
+     * <p>
+     * The value is passed to {@link java.sql.Statement#setFetchSize Statement.setFetchSize()}. Depending on the driver,
+     * setting this may be necessary to stream large ranges using a server-side cursor rather than reading the entire
+     * result into memory. For example, the MySQL driver requires either {@code useCursorFetch=true} with a positive value,
+     * or {@link Integer#MIN_VALUE}; the PostgreSQL driver (used for CockroachDB) requires a positive value.
+     *
+     * <p>
+     * Default is zero, which means use the driver default.
+     *
+     * @param fetchSize fetch size, or zero for the driver default
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Get the maximum number of rows read ahead during sequential {@code getAtLeast()} or {@code getAtMost()} access.
+     *
+     * @return maximum read-ahead in rows
+     * @see #setReadAhead
+     */
+    public int getReadAhead() {
+        return this.readAhead;
+    }
+
+    /**
+     * Configure the maximum number of rows read ahead during sequential {@code getAtLeast()} or {@code getAtMost()} access.
+     *
+     * <p>
+     * Some iterations, e.g., those that filter keys or skip over key prefixes, walk the key/value store via repeated
+     * {@link SQLKVTransaction#getAtLeast getAtLeast()} or {@link SQLKVTransaction#getAtMost getAtMost()} calls rather than
+     * a single {@link SQLKVTransaction#getRange getRange()} query. When a transaction detects such a walk, instead of
+     * querying for a single row each time it reads a window of rows ahead and answers subsequent calls from that window,
+     * as long as they fall within it. The window starts at one row and doubles with each sequential query, up to this limit.
+     * Any modification in the transaction discards the window.
+     *
+     * <p>
+     * Note that with {@link IsolationLevel#READ_COMMITTED} or weaker isolation, rows read ahead may not reflect changes
+     * committed by other transactions in the meantime.
+     *
+     * <p>
+     * Read-ahead is opt-in: it only pays off when sequential walks are common and round trips are expensive,
+     * while otherwise each query reads rows that may never be used. Values of 64 or so are reasonable starting points.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_READ_AHEAD} (disabled).
+     *
+     * @param readAhead maximum read-ahead in rows, or zero or one to disable read-ahead
+     * @throws IllegalArgumentException if {@code readAhead} is negative
+     */
+    public void setReadAhead(int readAhead) {
+        Preconditions.checkArgument(readAhead >= 0, "readAhead < 0");
+        this.readAhead = readAhead;
+    }
+
     @Override
     @PostConstruct
     public void start() {
@@ -233,11 +427,28 @@ public class SQLKVDatabase implements KVDatabase {
         } catch (SQLException e) {
             throw new KVDatabaseException(this, e);
         }
+        synchronized (this.idleConnections) {
+            this.poolOpen = true;
+        }
     }
 
+    /**
+     * Stop this instance.
+     *
+     * <p>
+     * The implementation in {@link SQLKVDatabase} closes any idle connections in the built-in connection pool.
+     * Connections still in use are closed when their transactions complete.
+     */
     @Override
     @PreDestroy
     public void stop() {
+        final ArrayList<CachedConnection> closeList;
+        synchronized (this.idleConnections) {
+            this.poolOpen = false;
+            closeList = new ArrayList<>(this.idleConnections);
+            this.idleConnections.clear();
+        }
+        closeList.forEach(CachedConnection::close);
     }
 
     /**
@@ -257,8 +468,9 @@ public class SQLKVDatabase implements KVDatabase {
      * Create a new transaction.
      *
      * <p>
-     * The implementation in {@link SQLKVDatabase} invokes {@link #createTransactionConnection createTransactionConnection()}
-     * to get a {@link Connection} for the new transaction, then invokes these methods in order:
+     * The implementation in {@link SQLKVDatabase} takes an idle {@link Connection} from the built-in connection pool, if any,
+     * otherwise it invokes {@link #createTransactionConnection createTransactionConnection()} to get a new {@link Connection}.
+     * Then it invokes these methods in order:
      *  <ol>
      *  <li>{@link Connection#setTransactionIsolation Connection.setTransactionIsolation()}</li>
      *  <li>{@link #preBeginTransaction preBeginTransaction()}</li>
@@ -282,14 +494,18 @@ public class SQLKVDatabase implements KVDatabase {
 
         // Get connection and transaction
         final SQLKVTransaction tx;
+        CachedConnection cachedConnection = null;
         try {
-            final Connection connection = this.createTransactionConnection();
+            cachedConnection = this.acquireTransactionConnection();
+            final Connection connection = cachedConnection.connection;
             connection.setTransactionIsolation(txIsolationLevel.getConnectionIsolation());
             this.preBeginTransaction(connection);
             this.beginTransaction(connection);
             this.postBeginTransaction(connection);
             tx = this.createSQLKVTransaction(connection);
         } catch (SQLException e) {
+            if (cachedConnection != null)
+                this.releaseTransactionConnection(cachedConnection, false);
             throw new KVDatabaseException(this, e);
         }
 
@@ -376,6 +592,68 @@ public class SQLKVDatabase implements KVDatabase {
         return connection;
     }
 
+    // Get a pooled connection, if possible, otherwise create a new one
+    private CachedConnection acquireTransactionConnection() throws SQLException {
+        CachedConnection cachedConnection;
+        final ArrayList<CachedConnection> closeList = new ArrayList<>();
+        synchronized (this.idleConnections) {
+            cachedConnection = this.idleConnections.pollFirst();
+            if (cachedConnection != null && (System.nanoTime() - cachedConnection.idleSince) / 1000000L > this.maxIdleTime) {
+
+                // Connection has been idle too long, and therefore so have all the others
+                closeList.add(cachedConnection);
+                closeList.addAll(this.idleConnections);
+                this.idleConnections.clear();
+                cachedConnection = null;
+            }
+        }
+        closeList.forEach(CachedConnection::close);
+        if (cachedConnection == null)
+            cachedConnection = new CachedConnection(this.createTransactionConnection());
+        synchronized (this.activeConnections) {
+            this.activeConnections.put(cachedConnection.connection, cachedConnection);
+        }
+        return cachedConnection;
+    }
+
+    /**
+     * Get the {@link CachedConnection} associated with a transaction's {@link Connection}.
+     *
+     * <p>
+     * If the {@link Connection} was not acquired by {@link #createTransaction(Map) createTransaction()},
+     * a new, unpooled {@link CachedConnection} is returned.
+     */
+    CachedConnection getCachedConnection(Connection connection) {
+        synchronized (this.activeConnections) {
+            final CachedConnection cachedConnection = this.activeConnections.get(connection);
+            if (cachedConnection != null)
+                return cachedConnection;
+        }
+        return new CachedConnection(connection);
+    }
+
+    /**
+     * Release a transaction's {@link Connection}, either returning it to the built-in connection pool or closing it.
+     *
+     * @param cachedConnection connection to release
+     * @param reusable true if the connection completed its transaction normally and may be reused
+     */
+    void releaseTransactionConnection(CachedConnection cachedConnection, boolean reusable) {
+        synchronized (this.activeConnections) {
+            this.activeConnections.remove(cachedConnection.connection);
+        }
+        if (reusable) {
+            synchronized (this.idleConnections) {
+                if (this.poolOpen && this.idleConnections.size() < this.connectionPoolSize) {
+                    cachedConnection.idleSince = System.nanoTime();
+                    this.idleConnections.addFirst(cachedConnection);
+                    return;
+                }
+            }
+        }
+        cachedConnection.close();
+    }
+
     /**
      * Configure a newly created {@link Connection}.
      *
@@ -456,6 +734,28 @@ public class SQLKVDatabase implements KVDatabase {
           + this.quote(this.tableName) + " WHERE " + this.quote(this.keyColumnName) + " = ?";
     }
 
+    /**
+     * Create an SQL statement that reads the key and value columns (in that order) associated with any of the
+     * keys <code>&#63;1</code>, <code>&#63;2</code>, ..., <code>&#63;</code><i>{@code count}</i>.
+     *
+     * <p>
+     * The same key may be given more than once.
+     *
+     * @param count number of keys
+     * @return SQL query statement
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    public String createGetMultipleStatement(int count) {
+        Preconditions.checkArgument(count > 0, "count <= 0");
+        final StringBuilder buf = new StringBuilder();
+        buf.append("SELECT ").append(this.quote(this.keyColumnName)).append(", ").append(this.quote(this.valueColumnName))
+          .append(" FROM ").append(this.quote(this.tableName)).append(" WHERE ").append(this.quote(this.keyColumnName))
+          .append(" IN (");
+        for (int i = 0; i < count; i++)
+            buf.append(i > 0 ? ", ?" : "?");
+        return buf.append(')').toString();
+    }
+
     /**
      * Create an SQL statement that reads the key and value columns (in that order) associated
      * with the smallest key greater than or equal to <code>&#63;1</code>, if any.
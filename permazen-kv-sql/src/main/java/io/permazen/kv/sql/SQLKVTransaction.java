@@ -8,6 +8,7 @@ package io.permazen.kv.sql;
 import com.google.common.base.Preconditions;
 
 import io.permazen.kv.AbstractKVStore;
+import io.permazen.kv.AsyncKVStore;
 import io.permazen.kv.CloseableKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
@@ -26,10 +27,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 import java.util.function.Function;
 
@@ -38,8 +45,15 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@link SQLKVDatabase} transaction.
+ *
+ * <p>
+ * To reduce round trips, instances combine point reads where possible: concurrent {@link #get get()} calls from
+ * multiple threads, and the keys passed to {@link #getAllAsync getAllAsync()}, are read using {@code IN (...)} queries.
+ * Sequential {@link #getAtLeast getAtLeast()} and {@link #getAtMost getAtMost()} calls read rows ahead
+ * (see {@link SQLKVDatabase#setReadAhead SQLKVDatabase.setReadAhead()}). Reads via {@link AsyncKVStore} are
+ * performed synchronously.
  */
-public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction {
+public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction, AsyncKVStore {
 
     private static final int MAX_DATA_PER_BATCH = 10 * 1024 * 1024;     // 10 MB
     private static final int MAX_STATEMENTS_PER_BATCH = 1000;
@@ -50,12 +64,22 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
     protected final SQLKVDatabase database;
     protected final Connection connection;
 
+    private final CachedConnection cachedConnection;
+
     private long timeout;
     private boolean readOnly;
     private KVStore view;
     private volatile boolean mutated;
     private boolean closed;
     private boolean stale;
+    private boolean reusable;
+
+    private final ArrayList<PendingGet> pendingGets = new ArrayList<>();
+    private ReadAheadBuffer readAheadBuffer;
+    private int forwardWindow = 1;
+    private int reverseWindow = 1;
+    private byte[] lastForwardKey;
+    private byte[] lastReverseKey;
 
     /**
      * Constructor.
@@ -69,6 +93,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         Preconditions.checkArgument(connection != null, "null connection");
         this.database = database;
         this.connection = connection;
+        this.cachedConnection = database.getCachedConnection(connection);
     }
 
     @Override
@@ -102,35 +127,185 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         throw new UnsupportedOperationException();
     }
 
-    private synchronized byte[] getSQL(byte[] key) {
+    // Concurrent invocations are combined: whichever thread gets the lock next reads all of the keys pending at that time
+    private byte[] getSQL(byte[] key) {
+        Preconditions.checkArgument(key != null, "null key");
+        final PendingGet pendingGet = new PendingGet(key);
+        synchronized (this.pendingGets) {
+            this.pendingGets.add(pendingGet);
+        }
+        synchronized (this) {
+            if (!pendingGet.done) {
+                final ArrayList<PendingGet> batch;
+                synchronized (this.pendingGets) {
+                    batch = new ArrayList<>(this.pendingGets);
+                    this.pendingGets.clear();
+                }
+                RuntimeException error = null;
+                try {
+                    final ArrayList<byte[]> keys = new ArrayList<>(batch.size());
+                    for (PendingGet get : batch)
+                        keys.add(get.key);
+                    final NavigableMap<byte[], byte[]> values = this.getMultipleSQL(keys);
+                    for (PendingGet get : batch)
+                        get.complete(values.get(get.key), null);
+                } catch (RuntimeException e) {
+                    error = e;
+                } finally {
+
+                    // Ensure every other waiting thread gets an answer, even if we threw an Error
+                    for (PendingGet get : batch) {
+                        if (!get.done) {
+                            get.complete(null, error != null ? error :
+                              new KVTransactionException(this, "batched read failed in another thread"));
+                        }
+                    }
+                }
+            }
+            return pendingGet.getValue();
+        }
+    }
+
+    private synchronized NavigableMap<byte[], byte[]> getMultipleSQL(Collection<byte[]> keys) {
         if (this.stale)
             throw new StaleTransactionException(this);
-        Preconditions.checkArgument(key != null, "null key");
-        return this.queryBytes(StmtType.GET, this.encodeKey(key));
+
+        // Check read-ahead buffer first
+        final TreeMap<byte[], byte[]> values = new TreeMap<>(ByteUtil.COMPARATOR);
+        final TreeSet<byte[]> queryKeys = new TreeSet<>(ByteUtil.COMPARATOR);
+        for (byte[] key : keys) {
+            Preconditions.checkArgument(key != null, "null key");
+            if (this.readAheadBuffer != null && this.readAheadBuffer.contains(key)) {
+                final byte[] value = this.readAheadBuffer.pairs.get(key);
+                if (value != null)
+                    values.put(key, value);
+            } else
+                queryKeys.add(key);
+        }
+
+        // Query for a single key
+        if (queryKeys.size() == 1) {
+            final byte[] key = queryKeys.first();
+            final byte[] value = this.queryBytes(StmtType.GET, this.encodeKey(key));
+            if (value != null)
+                values.put(key, value);
+            return values;
+        }
+
+        // Query for multiple keys in batches, padding each batch by repeating its last key
+        final int maxBatchSize = StmtType.GET_MULTIPLE_LARGE.getNumParams();
+        for (Iterator<byte[]> i = queryKeys.iterator(); i.hasNext(); ) {
+            final ArrayList<byte[]> batch = new ArrayList<>(Math.min(queryKeys.size(), maxBatchSize));
+            while (i.hasNext() && batch.size() < maxBatchSize)
+                batch.add(this.encodeKey(i.next()));
+            final StmtType stmtType = batch.size() <= StmtType.GET_MULTIPLE_SMALL.getNumParams() ?
+              StmtType.GET_MULTIPLE_SMALL : StmtType.GET_MULTIPLE_LARGE;
+            final byte[][] params = new byte[stmtType.getNumParams()][];
+            for (int j = 0; j < params.length; j++)
+                params[j] = batch.get(Math.min(j, batch.size() - 1));
+            this.query(stmtType, (stmt, rs) -> {
+                while (rs.next())
+                    values.put(this.decodeKey(rs.getBytes(1)), rs.getBytes(2));
+                return null;
+            }, true, params);
+        }
+        if (this.log.isTraceEnabled())
+            this.log.trace("SQL multiple query for " + queryKeys.size() + " keys returned " + values.size() + " values");
+        return values;
     }
 
     private synchronized KVPair getAtLeastSQL(byte[] minKey, byte[] maxKey) {
         if (this.stale)
             throw new StaleTransactionException(this);
-        return minKey != null && minKey.length > 0 ?
-          (maxKey != null ?
-           this.queryKVPair(StmtType.GET_RANGE_FORWARD_SINGLE, this.encodeKey(minKey), this.encodeKey(maxKey)) :
-           this.queryKVPair(StmtType.GET_AT_LEAST_FORWARD_SINGLE, this.encodeKey(minKey))) :
-          (maxKey != null ?
-           this.queryKVPair(StmtType.GET_AT_MOST_FORWARD_SINGLE, this.encodeKey(maxKey)) :
-           this.queryKVPair(StmtType.GET_FIRST));
+        if (minKey != null && minKey.length == 0)
+            minKey = null;
+
+        // Detect a sequential walk, i.e., starting beyond the previous result
+        final boolean sequential = this.lastForwardKey != null && minKey != null
+          && ByteUtil.compare(minKey, this.lastForwardKey) > 0;
+        this.forwardWindow = sequential ? Math.min(this.forwardWindow * 2, Math.max(this.database.readAhead, 1)) : 1;
+
+        // Check read-ahead buffer, otherwise query
+        KVPair pair = this.readAheadBuffer != null ? this.readAheadBuffer.getAtLeast(minKey, maxKey) : ReadAheadBuffer.MISS;
+        if (pair == ReadAheadBuffer.MISS) {
+            if (this.forwardWindow > 1) {
+                final ArrayList<KVPair> pairs = this.queryReadAhead(minKey, maxKey, false, this.forwardWindow);
+                final byte[] bufferMax = pairs.size() < this.forwardWindow ?
+                  maxKey : ByteUtil.getNextKey(pairs.get(pairs.size() - 1).getKey());
+                this.readAheadBuffer = new ReadAheadBuffer(pairs, minKey, bufferMax);
+                pair = !pairs.isEmpty() ? pairs.get(0) : null;
+            } else {
+                pair = minKey != null ?
+                  (maxKey != null ?
+                   this.queryKVPair(StmtType.GET_RANGE_FORWARD_SINGLE, this.encodeKey(minKey), this.encodeKey(maxKey)) :
+                   this.queryKVPair(StmtType.GET_AT_LEAST_FORWARD_SINGLE, this.encodeKey(minKey))) :
+                  (maxKey != null ?
+                   this.queryKVPair(StmtType.GET_AT_MOST_FORWARD_SINGLE, this.encodeKey(maxKey)) :
+                   this.queryKVPair(StmtType.GET_FIRST));
+            }
+        }
+        this.lastForwardKey = pair != null ? pair.getKey() : null;
+        return pair;
     }
 
     private synchronized KVPair getAtMostSQL(byte[] maxKey, byte[] minKey) {
         if (this.stale)
             throw new StaleTransactionException(this);
-        return maxKey != null ?
-          (minKey != null && minKey.length > 0 ?
-           this.queryKVPair(StmtType.GET_RANGE_REVERSE_SINGLE, this.encodeKey(minKey), this.encodeKey(maxKey)) :
-           this.queryKVPair(StmtType.GET_AT_MOST_REVERSE_SINGLE, this.encodeKey(maxKey))) :
-          (minKey != null && minKey.length > 0 ?
-           this.queryKVPair(StmtType.GET_AT_LEAST_REVERSE_SINGLE, this.encodeKey(minKey)) :
-           this.queryKVPair(StmtType.GET_LAST));
+        if (minKey != null && minKey.length == 0)
+            minKey = null;
+
+        // Detect a sequential walk, i.e., starting below the previous result
+        final boolean sequential = this.lastReverseKey != null && maxKey != null
+          && ByteUtil.compare(maxKey, this.lastReverseKey) <= 0;
+        this.reverseWindow = sequential ? Math.min(this.reverseWindow * 2, Math.max(this.database.readAhead, 1)) : 1;
+
+        // Check read-ahead buffer, otherwise query
+        KVPair pair = this.readAheadBuffer != null ? this.readAheadBuffer.getAtMost(maxKey, minKey) : ReadAheadBuffer.MISS;
+        if (pair == ReadAheadBuffer.MISS) {
+            if (this.reverseWindow > 1) {
+                final ArrayList<KVPair> pairs = this.queryReadAhead(minKey, maxKey, true, this.reverseWindow);
+                final byte[] bufferMin = pairs.size() < this.reverseWindow ? minKey : pairs.get(pairs.size() - 1).getKey();
+                this.readAheadBuffer = new ReadAheadBuffer(pairs, bufferMin, maxKey);
+                pair = !pairs.isEmpty() ? pairs.get(0) : null;
+            } else {
+                pair = maxKey != null ?
+                  (minKey != null ?
+                   this.queryKVPair(StmtType.GET_RANGE_REVERSE_SINGLE, this.encodeKey(minKey), this.encodeKey(maxKey)) :
+                   this.queryKVPair(StmtType.GET_AT_MOST_REVERSE_SINGLE, this.encodeKey(maxKey))) :
+                  (minKey != null ?
+                   this.queryKVPair(StmtType.GET_AT_LEAST_REVERSE_SINGLE, this.encodeKey(minKey)) :
+                   this.queryKVPair(StmtType.GET_LAST));
+            }
+        }
+        this.lastReverseKey = pair != null ? pair.getKey() : null;
+        return pair;
+    }
+
+    // Read up to the specified number of rows in the given range
+    private ArrayList<KVPair> queryReadAhead(byte[] minKey, byte[] maxKey, boolean reverse, int maxRows) {
+        assert Thread.holdsLock(this);
+        final ResultSetFunction<ArrayList<KVPair>> reader = (stmt, rs) -> {
+            final ArrayList<KVPair> pairs = new ArrayList<>();
+            while (pairs.size() < maxRows && rs.next())
+                pairs.add(new KVPair(this.decodeKey(rs.getBytes(1)), rs.getBytes(2)));
+            return pairs;
+        };
+        final ArrayList<KVPair> pairs;
+        if (minKey == null && maxKey == null)
+            pairs = this.query(reverse ? StmtType.GET_ALL_REVERSE : StmtType.GET_ALL_FORWARD, reader, true, maxRows);
+        else if (minKey == null) {
+            pairs = this.query(reverse ? StmtType.GET_AT_MOST_REVERSE : StmtType.GET_AT_MOST_FORWARD,
+              reader, true, maxRows, this.encodeKey(maxKey));
+        } else if (maxKey == null) {
+            pairs = this.query(reverse ? StmtType.GET_AT_LEAST_REVERSE : StmtType.GET_AT_LEAST_FORWARD,
+              reader, true, maxRows, this.encodeKey(minKey));
+        } else {
+            pairs = this.query(reverse ? StmtType.GET_RANGE_REVERSE : StmtType.GET_RANGE_FORWARD,
+              reader, true, maxRows, this.encodeKey(minKey), this.encodeKey(maxKey));
+        }
+        if (this.log.isTraceEnabled())
+            this.log.trace("SQL read-ahead query for " + maxRows + " rows returned " + pairs.size() + " rows");
+        return pairs;
     }
 
     private synchronized CloseableIterator<KVPair> getRangeSQL(byte[] minKey, byte[] maxKey, boolean reverse) {
@@ -158,6 +333,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         Preconditions.checkArgument(value != null, "null value");
         if (this.stale)
             throw new StaleTransactionException(this);
+        this.readAheadBuffer = null;
         this.update(StmtType.PUT, this.encodeKey(key), value, value);
     }
 
@@ -165,12 +341,14 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         Preconditions.checkArgument(key != null, "null key");
         if (this.stale)
             throw new StaleTransactionException(this);
+        this.readAheadBuffer = null;
         this.update(StmtType.REMOVE, this.encodeKey(key));
     }
 
     private synchronized void removeRangeSQL(byte[] minKey, byte[] maxKey) {
         if (this.stale)
             throw new StaleTransactionException(this);
+        this.readAheadBuffer = null;
         if (minKey != null && minKey.length == 0)
             minKey = null;
         if (minKey == null && maxKey == null)
@@ -187,6 +365,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         Preconditions.checkArgument(mutations != null, "null mutations");
         if (this.stale)
             throw new StaleTransactionException(this);
+        this.readAheadBuffer = null;
 
         // Do removes
         final EnumMap<StmtType, ArrayList<byte[]>> removeBatchMap = new EnumMap<>(StmtType.class);
@@ -248,6 +427,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
                 this.connection.rollback();
             else
                 this.connection.commit();
+            this.prepareForReuse();
         } catch (SQLException e) {
             throw this.handleException(e);
         } finally {
@@ -262,6 +442,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         this.stale = true;
         try {
             this.connection.rollback();
+            this.prepareForReuse();
         } catch (SQLException e) {
             throw this.handleException(e);
         } finally {
@@ -285,30 +466,61 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
      * @return key/value transaction exception
      */
     protected KVTransactionException handleException(SQLException e) {
-        this.stale = true;
-        try {
-            this.connection.rollback();
-        } catch (SQLException e2) {
-            // ignore
-        } finally {
-            this.closeConnection();
+        synchronized (this) {
+            this.stale = true;
+            this.reusable = false;
+            if (!this.closed) {                             // if closed, the connection may now belong to another transaction
+                try {
+                    this.connection.rollback();
+                } catch (SQLException e2) {
+                    // ignore
+                } finally {
+                    this.closeConnection();
+                }
+            }
         }
         return this.database.wrapException(this, e);
     }
 
+    // Allow our connection to be reused, if pooling is enabled
+    private void prepareForReuse() throws SQLException {
+        if (this.database.getConnectionPoolSize() == 0)
+            return;
+        this.resetConnection();
+        this.reusable = true;
+    }
+
+    /**
+     * Restore any per-connection state modified by this transaction, so that the {@link Connection}
+     * may be reused by a subsequent transaction.
+     *
+     * <p>
+     * This method is invoked after the SQL transaction has been successfully committed or rolled back, if the
+     * {@linkplain SQLKVDatabase#setConnectionPoolSize connection pool} is enabled. If it throws an exception,
+     * the {@link Connection} is not reused.
+     *
+     * <p>
+     * The implementation in {@link SQLKVTransaction} does nothing.
+     *
+     * @throws SQLException if an error occurs
+     * @see SQLKVDatabase#setConnectionPoolSize
+     */
+    protected void resetConnection() throws SQLException {
+    }
+
     /**
      * Close the {@link Connection} associated with this instance, if it's not already closed.
      * This method is idempotent.
+     *
+     * <p>
+     * If the transaction completed normally, the {@link Connection} may instead be returned to
+     * the {@linkplain SQLKVDatabase#setConnectionPoolSize connection pool}.
      */
     protected void closeConnection() {
         if (this.closed)
             return;
         this.closed = true;
-        try {
-            this.connection.close();
-        } catch (SQLException e) {
-            // ignore
-        }
+        this.database.releaseTransactionConnection(this.cachedConnection, this.reusable);
     }
 
     @Override
@@ -390,30 +602,38 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
 
     protected CloseableIterator<KVPair> queryIterator(StmtType stmtType, byte[]... params) {
         assert params.length == stmtType.getNumParams();
-        final CloseableIterator<KVPair> i = this.query(stmtType, ResultSetIterator::new, false, params);
+        final CloseableIterator<KVPair> i = this.query(stmtType,
+          (stmt, rs) -> new ResultSetIterator(stmtType, stmt, rs), false, params);
         if (this.log.isTraceEnabled())
             this.log.trace("SQL query returned " + (i.hasNext() ? "non-" : "") + "empty iterator");
         return i;
     }
 
     protected <T> T query(StmtType stmtType, ResultSetFunction<T> resultSetFunction, boolean close, byte[]... params) {
+        return this.query(stmtType, resultSetFunction, close, 0, params);
+    }
+
+    private <T> T query(StmtType stmtType, ResultSetFunction<T> resultSetFunction, boolean close, int maxRows, byte[]... params) {
         assert params.length == stmtType.getNumParams();
         try {
-            final PreparedStatement preparedStatement = stmtType.create(this.database, this.connection, this.log);
-            final int numParams = preparedStatement.getParameterMetaData().getParameterCount();
+            final PreparedStatement preparedStatement = this.acquireStatement(stmtType);
+            final int numParams = this.cachedConnection.getParameterCount(stmtType, preparedStatement);
             for (int i = 0; i < params.length && i < numParams; i++) {
                 if (this.log.isTraceEnabled())
                     this.log.trace("setting ?" + (i + 1) + " = " + ByteUtil.toString(params[i]));
                 preparedStatement.setBytes(i + 1, params[i]);
             }
             preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
+            preparedStatement.setMaxRows(maxRows);
+            if (!close && this.database.fetchSize != 0)
+                preparedStatement.setFetchSize(this.database.fetchSize);
             if (this.log.isTraceEnabled())
                 this.log.trace("executing SQL query");
             final ResultSet resultSet = preparedStatement.executeQuery();
             final T result = resultSetFunction.apply(preparedStatement, resultSet);
             if (close) {
                 resultSet.close();
-                preparedStatement.close();
+                this.releaseStatement(stmtType, preparedStatement);
             }
             return result;
         } catch (SQLException e) {
@@ -423,8 +643,9 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
 
     protected void update(StmtType stmtType, byte[]... params) {
         assert params.length == stmtType.getNumParams();
-        try (PreparedStatement preparedStatement = stmtType.create(this.database, this.connection, this.log)) {
-            final int numParams = preparedStatement.getParameterMetaData().getParameterCount();
+        try {
+            final PreparedStatement preparedStatement = this.acquireStatement(stmtType);
+            final int numParams = this.cachedConnection.getParameterCount(stmtType, preparedStatement);
             for (int i = 0; i < params.length && i < numParams; i++) {
                 if (this.log.isTraceEnabled())
                     this.log.trace("setting ?" + (i + 1) + " = " + ByteUtil.toString(params[i]));
@@ -436,6 +657,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
             preparedStatement.executeUpdate();
             if (this.log.isTraceEnabled())
                 this.log.trace("SQL update completed");
+            this.releaseStatement(stmtType, preparedStatement);
         } catch (SQLException e) {
             throw this.handleException(e);
         }
@@ -449,8 +671,9 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         assert paramList.size() % numStmtParams == 0;
 
         // Create statement and do batches
-        try (PreparedStatement preparedStatement = stmtType.create(this.database, this.connection, this.log)) {
-            final int numSqlParams = preparedStatement.getParameterMetaData().getParameterCount();
+        try {
+            final PreparedStatement preparedStatement = this.acquireStatement(stmtType);
+            final int numSqlParams = this.cachedConnection.getParameterCount(stmtType, preparedStatement);
 
             // Set query timeout
             preparedStatement.setQueryTimeout((int)((this.timeout + 999) / 1000));
@@ -485,11 +708,28 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
                     this.log.trace("SQL batch update completed");
             }
             assert paramIndex == paramList.size();
+            this.releaseStatement(stmtType, preparedStatement);
         } catch (SQLException e) {
             throw this.handleException(e);
         }
     }
 
+    // Get a prepared statement, from the cache if possible
+    private PreparedStatement acquireStatement(StmtType stmtType) throws SQLException {
+        return this.database.cacheStatements ?
+          this.cachedConnection.acquire(this.database, stmtType, this.log) :
+          stmtType.create(this.database, this.connection, this.log);
+    }
+
+    // Return a prepared statement to the cache if possible, otherwise close it
+    private void releaseStatement(StmtType stmtType, PreparedStatement preparedStatement) {
+        final boolean cache;
+        synchronized (this) {
+            cache = this.database.cacheStatements && !this.closed;
+        }
+        this.cachedConnection.release(stmtType, preparedStatement, cache);
+    }
+
     /**
      * Encode the given key for the underlying database key column.
      *
@@ -519,6 +759,76 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         return dbkey;
     }
 
+// AsyncKVStore
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        if (key == null)
+            throw new NullPointerException("null key");
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            future.complete(this.get(key));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Get the values associated with multiple keys.
+     *
+     * <p>
+     * The implementation in {@link SQLKVTransaction} reads the keys using {@code IN (...)} queries,
+     * unless this is a read-only transaction reading through an in-memory view of its mutations.
+     * The returned future is already completed.
+     *
+     * @param keys {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws IllegalArgumentException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<byte[]>> getAllAsync(Collection<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        for (byte[] key : keys) {
+            if (key == null)
+                throw new NullPointerException("null key");
+        }
+        final CompletableFuture<List<byte[]>> future = new CompletableFuture<>();
+        try {
+            final ArrayList<byte[]> values = new ArrayList<>(keys.size());
+            if (this.delegate() instanceof SQLView) {
+                final NavigableMap<byte[], byte[]> valueMap = this.getMultipleSQL(keys);
+                for (byte[] key : keys)
+                    values.add(valueMap.get(key));
+            } else {
+                for (byte[] key : keys)
+                    values.add(this.get(key));
+            }
+            future.complete(values);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit < 0");
+        final CompletableFuture<List<KVPair>> future = new CompletableFuture<>();
+        try {
+            final ArrayList<KVPair> list = new ArrayList<>();
+            try (CloseableIterator<KVPair> i = this.getRange(minKey, maxKey, reverse)) {
+                while (i.hasNext() && (limit == 0 || list.size() < limit))
+                    list.add(i.next());
+            }
+            future.complete(list);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
 // SQLView
 
     private class SQLView extends AbstractKVStore {
@@ -644,6 +954,7 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
 
     private class ResultSetIterator implements CloseableIterator<KVPair> {
 
+        private final StmtType stmtType;
         private final PreparedStatement preparedStatement;
         private final ResultSet resultSet;
 
@@ -651,9 +962,11 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         private boolean closed;
         private byte[] removeKey;
 
-        ResultSetIterator(PreparedStatement preparedStatement, ResultSet resultSet) {
+        ResultSetIterator(StmtType stmtType, PreparedStatement preparedStatement, ResultSet resultSet) {
+            assert stmtType != null;
             assert preparedStatement != null;
             assert resultSet != null;
+            this.stmtType = stmtType;
             this.resultSet = resultSet;
             this.preparedStatement = preparedStatement;
         }
@@ -711,13 +1024,14 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
             try {
                 this.resultSet.close();
             } catch (Exception e) {
-                // ignore
-            }
-            try {
-                this.preparedStatement.close();
-            } catch (Exception e) {
-                // ignore
+                try {
+                    this.preparedStatement.close();
+                } catch (Exception e2) {
+                    // ignore
+                }
+                return;
             }
+            SQLKVTransaction.this.releaseStatement(this.stmtType, this.preparedStatement);
         }
 
     // Object
@@ -732,6 +1046,82 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
         }
     }
 
+// PendingGet
+
+    private static final class PendingGet {
+
+        final byte[] key;
+
+        boolean done;
+        byte[] value;
+        RuntimeException error;
+
+        PendingGet(byte[] key) {
+            this.key = key;
+        }
+
+        void complete(byte[] value, RuntimeException error) {
+            this.value = value;
+            this.error = error;
+            this.done = true;
+        }
+
+        byte[] getValue() {
+            assert this.done;
+            if (this.error != null)
+                throw this.error;
+            return this.value;
+        }
+    }
+
+// ReadAheadBuffer
+
+    /**
+     * Rows read ahead, along with the key range they completely cover.
+     */
+    private static final class ReadAheadBuffer {
+
+        /**
+         * Sentinel return value indicating the answer is not determined by the buffer.
+         */
+        static final KVPair MISS = new KVPair(ByteUtil.EMPTY, ByteUtil.EMPTY);
+
+        final TreeMap<byte[], byte[]> pairs = new TreeMap<>(ByteUtil.COMPARATOR);
+        final byte[] min;                                               // inclusive lower bound, never null
+        final byte[] max;                                               // exclusive upper bound, or null for none
+
+        ReadAheadBuffer(List<KVPair> pairs, byte[] min, byte[] max) {
+            for (KVPair pair : pairs)
+                this.pairs.put(pair.getKey(), pair.getValue());
+            this.min = min != null ? min : ByteUtil.EMPTY;
+            this.max = max;
+        }
+
+        boolean contains(byte[] key) {
+            return ByteUtil.compare(key, this.min) >= 0 && (this.max == null || ByteUtil.compare(key, this.max) < 0);
+        }
+
+        KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+            if (!this.contains(minKey != null ? minKey : ByteUtil.EMPTY))
+                return MISS;
+            final Map.Entry<byte[], byte[]> entry = minKey != null ? this.pairs.ceilingEntry(minKey) : this.pairs.firstEntry();
+            if (entry != null)
+                return maxKey == null || ByteUtil.compare(entry.getKey(), maxKey) < 0 ? new KVPair(entry) : null;
+            return this.max == null || (maxKey != null && ByteUtil.compare(maxKey, this.max) <= 0) ? null : MISS;
+        }
+
+        KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+            if (maxKey == null ? this.max != null : this.max != null && ByteUtil.compare(maxKey, this.max) > 0)
+                return MISS;
+            if (maxKey != null && ByteUtil.compare(maxKey, this.min) <= 0)
+                return MISS;
+            final Map.Entry<byte[], byte[]> entry = maxKey != null ? this.pairs.lowerEntry(maxKey) : this.pairs.lastEntry();
+            if (entry != null)
+                return minKey == null || ByteUtil.compare(entry.getKey(), minKey) >= 0 ? new KVPair(entry) : null;
+            return minKey != null && ByteUtil.compare(minKey, this.min) >= 0 ? null : MISS;
+        }
+    }
+
 // StmtType
 
     /**
@@ -745,6 +1135,18 @@ public class SQLKVTransaction extends ForwardingKVStore implements KVTransaction
                 return this.prepare(c, db.createGetStatement(), log);
             };
         },
+        GET_MULTIPLE_SMALL(8) {
+            @Override
+            protected PreparedStatement create(SQLKVDatabase db, Connection c, Logger log) throws SQLException {
+                return this.prepare(c, db.createGetMultipleStatement(this.getNumParams()), log);
+            };
+        },
+        GET_MULTIPLE_LARGE(64) {
+            @Override
+            protected PreparedStatement create(SQLKVDatabase db, Connection c, Logger log) throws SQLException {
+                return this.prepare(c, db.createGetMultipleStatement(this.getNumParams()), log);
+            };
+        },
         GET_FIRST(0) {
             @Override
             protected PreparedStatement create(SQLKVDatabase db, Connection c, Logger log) throws SQLException {
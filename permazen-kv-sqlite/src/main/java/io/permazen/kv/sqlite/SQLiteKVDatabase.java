@@ -97,6 +97,10 @@ public class SQLiteKVDatabase extends SQLKVDatabase {
      * This provides a performance benefit, but requires that this Java process be the only one accessing the database.
      *
      * <p>
+     * Exclusive locking should not be combined with a {@linkplain #setConnectionPoolSize connection pool}, because
+     * an idle pooled connection continues to hold its lock, blocking transactions that use other connections.
+     *
+     * <p>
      * Default is normal (non-exclusive) locking.
      *
      * @param exclusiveLocking true for exclusive locking, false for normal locking
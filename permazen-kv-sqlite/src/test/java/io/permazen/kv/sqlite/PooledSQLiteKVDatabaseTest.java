@@ -0,0 +1,43 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.sqlite;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.test.KVDatabaseTest;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+
+public class PooledSQLiteKVDatabaseTest extends KVDatabaseTest {
+
+    private SQLiteKVDatabase kvdb;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("sqliteFilePrefix")
+    public void setFilePrefix(@Optional String filePrefix) throws IOException {
+        if (filePrefix != null) {
+            final File file = File.createTempFile(filePrefix, ".sqlite3");
+            this.kvdb = new SQLiteKVDatabase();
+            this.kvdb.setDatabaseFile(file);
+            this.kvdb.setExclusiveLocking(false);           // idle pooled connections would otherwise hold the lock
+            this.kvdb.setConnectionPoolSize(4);
+            this.kvdb.setFetchSize(100);
+        }
+    }
+
+    protected boolean allowBothTransactionsToFail() {
+        return true;
+    }
+
+    @Override
+    protected KVDatabase getKVDatabase() {
+        return this.kvdb;
+    }
+}
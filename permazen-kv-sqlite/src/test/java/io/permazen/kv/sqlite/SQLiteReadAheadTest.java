@@ -0,0 +1,444 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.sqlite;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.kv.sql.SQLKVTransaction;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Optional;
+import org.testng.annotations.Parameters;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link SQLKVTransaction} read-ahead and batched reads against a real SQLite database.
+ */
+public class SQLiteReadAheadTest extends TestSupport {
+
+    private static final int NUM_KEYS = 200;
+
+    private String filePrefix;
+
+    @BeforeClass(groups = "configure")
+    @Parameters("sqliteFilePrefix")
+    public void setFilePrefix(@Optional String filePrefix) {
+        this.filePrefix = filePrefix;
+    }
+
+    @DataProvider(name = "readAheads")
+    public Object[][] genReadAheads() {
+        if (this.filePrefix == null)
+            return new Object[0][];
+        return new Object[][] { { 0 }, { 2 }, { 5 }, { 16 } };
+    }
+
+    @DataProvider(name = "enabled")
+    public Object[][] genEnabled() {
+        return this.filePrefix != null ? new Object[][] { { } } : new Object[0][];
+    }
+
+// Sequential walks
+
+    @Test(dataProvider = "readAheads")
+    public void testForwardWalk(int readAhead) throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(readAhead);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            final SQLKVTransaction tx = kvdb.createTransaction();
+            kvdb.queries.clear();
+
+            // Walk forward one key at a time
+            final ArrayList<byte[]> keys = new ArrayList<>();
+            for (KVPair pair = tx.getAtLeast(null, null); pair != null;
+              pair = tx.getAtLeast(ByteUtil.getNextKey(pair.getKey()), null)) {
+                Assert.assertEquals(pair.getValue(), expected.get(pair.getKey()));
+                keys.add(pair.getKey());
+            }
+            Assert.assertEquals(this.toStrings(keys), this.toStrings(expected.keySet()));
+
+            // Verify read-ahead reduced the number of queries
+            this.checkQueryCount(kvdb, readAhead);
+            tx.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test(dataProvider = "readAheads")
+    public void testReverseWalk(int readAhead) throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(readAhead);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            final SQLKVTransaction tx = kvdb.createTransaction();
+            kvdb.queries.clear();
+
+            // Walk backward one key at a time
+            final ArrayList<byte[]> keys = new ArrayList<>();
+            for (KVPair pair = tx.getAtMost(null, null); pair != null; pair = tx.getAtMost(pair.getKey(), null)) {
+                Assert.assertEquals(pair.getValue(), expected.get(pair.getKey()));
+                keys.add(pair.getKey());
+            }
+            Collections.reverse(keys);
+            Assert.assertEquals(this.toStrings(keys), this.toStrings(expected.keySet()));
+
+            // Verify read-ahead reduced the number of queries
+            this.checkQueryCount(kvdb, readAhead);
+            tx.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test(dataProvider = "readAheads")
+    public void testWalksAcrossBufferEdges(int readAhead) throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(readAhead);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            final SQLKVTransaction tx = kvdb.createTransaction();
+            for (int trial = 0; trial < 100; trial++) {
+
+                // Forward walk with random gaps, bounds, and occasional restarts
+                final byte[] maxKey = this.random.nextInt(3) == 0 ? null : this.key(this.random.nextInt(NUM_KEYS * 3 + 10));
+                byte[] minKey = this.random.nextBoolean() ? null : this.key(this.random.nextInt(NUM_KEYS * 3));
+                for (int step = 0; step < 50; step++) {
+                    final KVPair actual = tx.getAtLeast(minKey, maxKey);
+                    final Map.Entry<byte[], byte[]> entry = minKey != null ? expected.ceilingEntry(minKey) : expected.firstEntry();
+                    final KVPair expect = entry != null && (maxKey == null || ByteUtil.compare(entry.getKey(), maxKey) < 0) ?
+                      new KVPair(entry) : null;
+                    Assert.assertEquals(this.toString(actual), this.toString(expect),
+                      "getAtLeast(" + ByteUtil.toString(minKey) + ", " + ByteUtil.toString(maxKey) + ")");
+                    if (actual == null || this.random.nextInt(20) == 0)
+                        break;
+                    minKey = this.random.nextInt(4) == 0 ?
+                      this.key(this.toInt(actual.getKey()) + 1 + this.random.nextInt(7)) : ByteUtil.getNextKey(actual.getKey());
+                }
+
+                // Reverse walk with random gaps, bounds, and occasional restarts
+                final byte[] minBound = this.random.nextInt(3) == 0 ? null : this.key(this.random.nextInt(NUM_KEYS * 3));
+                byte[] maxBound = this.random.nextBoolean() ? null : this.key(this.random.nextInt(NUM_KEYS * 3 + 10));
+                for (int step = 0; step < 50; step++) {
+                    final KVPair actual = tx.getAtMost(maxBound, minBound);
+                    final Map.Entry<byte[], byte[]> entry = maxBound != null ? expected.lowerEntry(maxBound) : expected.lastEntry();
+                    final KVPair expect = entry != null && (minBound == null || ByteUtil.compare(entry.getKey(), minBound) >= 0) ?
+                      new KVPair(entry) : null;
+                    Assert.assertEquals(this.toString(actual), this.toString(expect),
+                      "getAtMost(" + ByteUtil.toString(maxBound) + ", " + ByteUtil.toString(minBound) + ")");
+                    if (actual == null || this.random.nextInt(20) == 0)
+                        break;
+                    maxBound = this.random.nextInt(4) == 0 ?
+                      this.key(Math.max(this.toInt(actual.getKey()) - this.random.nextInt(7), 0)) : actual.getKey();
+                }
+
+                // Point reads, which may be answered from the read-ahead buffer
+                for (int i = 0; i < 10; i++) {
+                    final byte[] key = this.key(this.random.nextInt(NUM_KEYS * 3));
+                    Assert.assertEquals(tx.get(key), expected.get(key), "get(" + ByteUtil.toString(key) + ")");
+                }
+            }
+            tx.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+// Invalidation
+
+    @Test(dataProvider = "enabled")
+    public void testWritesInvalidateBuffer() throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(16);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            final SQLKVTransaction tx = kvdb.createTransaction();
+
+            // Walk forward far enough to fill the read-ahead buffer
+            KVPair pair = tx.getAtLeast(null, null);
+            for (int i = 0; i < 5; i++)
+                pair = this.checkNext(tx, expected, pair);
+            final int base = this.toInt(pair.getKey());
+            final int queries = kvdb.queries.size();
+            Assert.assertEquals(tx.get(this.key(base + 3)), expected.get(this.key(base + 3)));
+            Assert.assertEquals(kvdb.queries.size(), queries, "point read was not answered from read-ahead buffer");
+
+            // Insert a key just ahead of the walk
+            tx.put(this.key(base + 1), b("abcd"));
+            expected.put(this.key(base + 1), b("abcd"));
+            pair = this.checkNext(tx, expected, pair);
+
+            // Remove the next key ahead of the walk
+            tx.remove(this.key(base + 3));
+            expected.remove(this.key(base + 3));
+            Assert.assertNull(tx.get(this.key(base + 3)));
+            pair = this.checkNext(tx, expected, pair);
+
+            // Refill the buffer, then change the value of the next key ahead of the walk
+            for (int i = 0; i < 5; i++)
+                pair = this.checkNext(tx, expected, pair);
+            final byte[] nextKey = expected.higherKey(pair.getKey());
+            tx.put(nextKey, b("1234"));
+            expected.put(nextKey, b("1234"));
+            Assert.assertEquals(tx.get(nextKey), b("1234"));
+            pair = this.checkNext(tx, expected, pair);
+
+            // Refill the buffer, then remove a range ahead of the walk
+            for (int i = 0; i < 5; i++)
+                pair = this.checkNext(tx, expected, pair);
+            final int base2 = this.toInt(pair.getKey());
+            tx.removeRange(this.key(base2 + 1), this.key(base2 + 20));
+            expected.subMap(this.key(base2 + 1), this.key(base2 + 20)).clear();
+            pair = this.checkNext(tx, expected, pair);
+
+            // Walk in reverse far enough to fill the read-ahead buffer, then insert a key just ahead of the walk
+            pair = tx.getAtMost(null, null);
+            for (int i = 0; i < 10; i++)
+                pair = this.checkPrevious(tx, expected, pair);
+            final int base3 = this.toInt(pair.getKey());
+            tx.put(this.key(base3 - 1), b("5678"));
+            expected.put(this.key(base3 - 1), b("5678"));
+            pair = this.checkPrevious(tx, expected, pair);
+
+            // Refill the buffer, then apply mutations
+            for (int i = 0; i < 5; i++)
+                pair = this.checkPrevious(tx, expected, pair);
+            final Writes writes = new Writes();
+            final byte[] prevKey = expected.lowerKey(pair.getKey());
+            writes.getRemoves().add(new KeyRange(prevKey));
+            expected.remove(prevKey);
+            tx.apply(writes);
+            pair = this.checkPrevious(tx, expected, pair);
+
+            // Verify everything
+            final ArrayList<byte[]> keys = new ArrayList<>();
+            for (pair = tx.getAtLeast(null, null); pair != null; pair = tx.getAtLeast(ByteUtil.getNextKey(pair.getKey()), null)) {
+                Assert.assertEquals(pair.getValue(), expected.get(pair.getKey()));
+                keys.add(pair.getKey());
+            }
+            Assert.assertEquals(this.toStrings(keys), this.toStrings(expected.keySet()));
+            tx.commit();
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+// Batched reads
+
+    @Test(dataProvider = "enabled")
+    public void testBatchedGets() throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(0);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            for (int count : new int[] { 2, 3, 7, 8, 9, 20, 63, 64, 65, 100, 130 }) {
+
+                // Choose keys, including some that don't exist and one duplicate
+                final ArrayList<byte[]> keys = new ArrayList<>(count);
+                for (int i = 0; i < count - 1; i++)
+                    keys.add(this.key(i * 3 + 1 - (i % 3 == 0 ? 1 : 0)));
+                keys.add(keys.get(0));
+                Collections.shuffle(keys, this.random);
+                final int distinct = count - 1;
+
+                // Read them
+                final SQLKVTransaction tx = kvdb.createTransaction();
+                kvdb.queries.clear();
+                final List<byte[]> values = tx.getAllAsync(keys).get();
+                Assert.assertEquals(values.size(), keys.size());
+                for (int i = 0; i < keys.size(); i++)
+                    Assert.assertEquals(values.get(i), expected.get(keys.get(i)), "get(" + ByteUtil.toString(keys.get(i)) + ")");
+
+                // Verify the number and shape of the queries: full batches of 64, then a padded batch of 8 or 64
+                final ArrayList<Integer> expectedShapes = new ArrayList<>();
+                if (distinct == 1)
+                    expectedShapes.add(1);
+                else {
+                    for (int remain = distinct; remain > 0; remain -= 64)
+                        expectedShapes.add(remain <= 8 ? 8 : 64);
+                }
+                final ArrayList<Integer> actualShapes = new ArrayList<>();
+                for (String sql : kvdb.queries)
+                    actualShapes.add(sql.replaceAll("[^?]", "").length());
+                Assert.assertEquals(actualShapes, expectedShapes, "count=" + count);
+                tx.commit();
+            }
+        } finally {
+            kvdb.stop();
+        }
+    }
+
+    @Test(dataProvider = "enabled")
+    public void testConcurrentGetsCoalesce() throws Exception {
+        final CountingSQLiteKVDatabase kvdb = this.start(0);
+        final int numThreads = 10;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final TreeMap<byte[], byte[]> expected = this.populate(kvdb);
+            final SQLKVTransaction tx = kvdb.createTransaction();
+            kvdb.queries.clear();
+
+            // Issue concurrent point reads from several threads
+            final int numGets = 50;
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final ArrayList<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                final int thread = i;
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < numGets; j++) {
+                        final byte[] key = this.key((thread * numGets + j) % (NUM_KEYS * 3));
+                        Assert.assertEquals(tx.get(key), expected.get(key), "get(" + ByteUtil.toString(key) + ")");
+                    }
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (Future<?> future : futures)
+                future.get();
+
+            // Coalescing can only reduce the number of queries
+            Assert.assertTrue(kvdb.queries.size() <= numThreads * numGets, "too many queries: " + kvdb.queries.size());
+            tx.commit();
+        } finally {
+            executor.shutdown();
+            kvdb.stop();
+        }
+    }
+
+// Internal methods
+
+    private CountingSQLiteKVDatabase start(int readAhead) throws IOException {
+        final CountingSQLiteKVDatabase kvdb = new CountingSQLiteKVDatabase();
+        final File file = File.createTempFile(this.filePrefix, ".sqlite3");
+        file.deleteOnExit();
+        kvdb.setDatabaseFile(file);
+        kvdb.setReadAhead(readAhead);
+        kvdb.start();
+        return kvdb;
+    }
+
+    // Populate with every third key, with a gap in the middle
+    private TreeMap<byte[], byte[]> populate(SQLiteKVDatabase kvdb) {
+        final TreeMap<byte[], byte[]> expected = new TreeMap<>(ByteUtil.COMPARATOR);
+        final SQLKVTransaction tx = kvdb.createTransaction();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            if (i >= NUM_KEYS / 2 && i < NUM_KEYS / 2 + 10)
+                continue;
+            final byte[] key = this.key(i * 3);
+            final byte[] value = new byte[1 + this.random.nextInt(10)];
+            this.random.nextBytes(value);
+            tx.put(key, value);
+            expected.put(key, value);
+        }
+        tx.commit();
+        return expected;
+    }
+
+    // Take the next forward step in a walk and verify the result
+    private KVPair checkNext(SQLKVTransaction tx, TreeMap<byte[], byte[]> expected, KVPair pair) {
+        final Map.Entry<byte[], byte[]> entry = expected.higherEntry(pair.getKey());
+        final KVPair next = tx.getAtLeast(ByteUtil.getNextKey(pair.getKey()), null);
+        Assert.assertEquals(this.toString(next), this.toString(entry != null ? new KVPair(entry) : null));
+        return next;
+    }
+
+    // Take the next reverse step in a walk and verify the result
+    private KVPair checkPrevious(SQLKVTransaction tx, TreeMap<byte[], byte[]> expected, KVPair pair) {
+        final Map.Entry<byte[], byte[]> entry = expected.lowerEntry(pair.getKey());
+        final KVPair previous = tx.getAtMost(pair.getKey(), null);
+        Assert.assertEquals(this.toString(previous), this.toString(entry != null ? new KVPair(entry) : null));
+        return previous;
+    }
+
+    private void checkQueryCount(CountingSQLiteKVDatabase kvdb, int readAhead) {
+        final int numPairs = NUM_KEYS - 10;
+        if (readAhead <= 1)
+            Assert.assertEquals(kvdb.queries.size(), numPairs + 1);
+        else {
+            final int limit = numPairs / readAhead + 2 * (32 - Integer.numberOfLeadingZeros(readAhead)) + 2;
+            Assert.assertTrue(kvdb.queries.size() <= limit,
+              "readAhead " + readAhead + " required " + kvdb.queries.size() + " > " + limit + " queries");
+        }
+    }
+
+    private byte[] key(int value) {
+        return new byte[] { (byte)(value >> 8), (byte)value };
+    }
+
+    private int toInt(byte[] key) {
+        return ((key[0] & 0xff) << 8) | (key[1] & 0xff);
+    }
+
+    private String toString(KVPair pair) {
+        return pair != null ? ByteUtil.toString(pair.getKey()) + "=" + ByteUtil.toString(pair.getValue()) : "null";
+    }
+
+    private List<String> toStrings(Iterable<byte[]> keys) {
+        final ArrayList<String> list = new ArrayList<>();
+        for (byte[] key : keys)
+            list.add(ByteUtil.toString(key));
+        return list;
+    }
+
+// CountingSQLiteKVDatabase
+
+    // Records the SQL of every query executed by a transaction
+    private static class CountingSQLiteKVDatabase extends SQLiteKVDatabase {
+
+        final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        protected Connection createTransactionConnection() throws SQLException {
+            final Connection connection = super.createTransactionConnection();
+            return (Connection)Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+              (proxy, method, args) -> {
+                final Object result = CountingSQLiteKVDatabase.invoke(connection, method, args);
+                if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String)
+                    return this.wrap((PreparedStatement)result, (String)args[0]);
+                return result;
+            });
+        }
+
+        private PreparedStatement wrap(PreparedStatement statement, String sql) {
+            final InvocationHandler handler = (proxy, method, args) -> {
+                if (method.getName().equals("executeQuery") && (args == null || args.length == 0))
+                    this.queries.add(sql);
+                return CountingSQLiteKVDatabase.invoke(statement, method, args);
+            };
+            return (PreparedStatement)Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+              new Class<?>[] { PreparedStatement.class }, handler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link KVStore} that also supports asynchronous reads.
+ *
+ * <p>
+ * Asynchronous reads allow multiple independent reads to be outstanding at the same time, which can greatly reduce
+ * total latency when the underlying key/value store is remote. Implementations with a native asynchronous client
+ * should implement this interface directly; any other {@link KVStore} can be adapted using
+ * {@link io.permazen.kv.util.ExecutorAsyncKVStore}.
+ *
+ * <p>
+ * The returned futures complete exceptionally with the same exceptions that the corresponding synchronous
+ * {@link KVStore} methods would throw. Modifying this instance while an asynchronous read is outstanding
+ * results in undefined behavior with respect to whether that read observes the modification.
+ *
+ * @see io.permazen.kv.util.ExecutorAsyncKVStore
+ */
+public interface AsyncKVStore extends KVStore {
+
+    /**
+     * Asynchronously get the value associated with the given key, if any.
+     *
+     * @param key key
+     * @return future value associated with key, or future null if not found
+     * @throws NullPointerException if {@code key} is null
+     * @see #get get()
+     */
+    CompletableFuture<byte[]> getAsync(byte[] key);
+
+    /**
+     * Asynchronously get the values associated with multiple keys.
+     *
+     * <p>
+     * The returned list contains the values in the same order as {@code keys}, with null elements for keys not found.
+     *
+     * <p>
+     * The implementation in {@link AsyncKVStore} invokes {@link #getAsync getAsync()} for each key and
+     * combines the results; implementations that support a native batched read may do better.
+     *
+     * @param keys keys to read
+     * @return future list of values corresponding to {@code keys}
+     * @throws IllegalArgumentException if {@code keys} is null
+     * @throws NullPointerException if any key in {@code keys} is null
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    default CompletableFuture<List<byte[]>> getAllAsync(Collection<byte[]> keys) {
+        Preconditions.checkArgument(keys != null, "null keys");
+        final CompletableFuture<byte[]>[] futures = new CompletableFuture[keys.size()];
+        int index = 0;
+        for (byte[] key : keys)
+            futures[index++] = this.getAsync(key);
+        return CompletableFuture.allOf(futures).thenApply(v -> {
+            final ArrayList<byte[]> values = new ArrayList<>(futures.length);
+            for (CompletableFuture<byte[]> future : futures)
+                values.add(future.join());
+            return values;
+        });
+    }
+
+    /**
+     * Asynchronously read the key/value pairs in the given range.
+     *
+     * <p>
+     * The range is interpreted as in {@link #getRange(byte[], byte[], boolean) getRange()}; the pairs are
+     * returned in ascending order, or descending order if {@code reverse} is true.
+     *
+     * @param minKey minimum key (inclusive), or null for no minimum (get the smallest key)
+     * @param maxKey maximum key (exclusive), or null for no maximum (get the largest key)
+     * @param reverse true to return key/value pairs in reverse order (i.e., keys descending)
+     * @param limit maximum number of key/value pairs to return, or zero for no limit
+     * @return future list of key/value pairs
+     * @throws IllegalArgumentException if {@code minKey > maxKey}
+     * @throws IllegalArgumentException if {@code limit} is negative
+     */
+    CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit);
+}
@@ -0,0 +1,22 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+/**
+ * A {@link KVDatabase} that gathers operational {@link KVDatabaseMetrics}.
+ *
+ * <p>
+ * Any {@link KVDatabase} can be instrumented by wrapping it in a {@link io.permazen.kv.util.MetricsKVDatabase}.
+ */
+public interface InstrumentedKVDatabase extends KVDatabase {
+
+    /**
+     * Get the metrics gathered by this instance.
+     *
+     * @return database metrics
+     */
+    KVDatabaseMetrics getMetrics();
+}
@@ -0,0 +1,506 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.mvcc.Conflict;
+import io.permazen.kv.mvcc.TransactionConflictException;
+import io.permazen.util.ByteUtil;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Operational metrics for a {@link KVDatabase}.
+ *
+ * <p>
+ * Instances accumulate transaction counts, commit latencies, retry and conflict counts, read and write set sizes,
+ * and the number of bytes read and written. {@link KVDatabase} implementations (or wrappers) that gather these metrics
+ * implement {@link InstrumentedKVDatabase} and invoke the {@code record*()} methods; implementations that cannot measure
+ * some metric simply never record it.
+ *
+ * <p>
+ * All counters are monotonically increasing (until {@linkplain #reset reset}), so they are suitable for exporting as
+ * cumulative counters, e.g., Micrometer {@code FunctionCounter}s. Distributions are kept in {@link Histogram}s.
+ * Instances also implement {@link KVDatabaseMetricsMXBean}, so they may be registered directly with a JMX
+ * {@link javax.management.MBeanServer}.
+ *
+ * <p>
+ * Each finished transaction is counted exactly once, as a commit, a rollback, a retry, or a failure; in particular,
+ * a transaction that is rolled back after (or because) it failed is counted only as a retry or failure, not as a rollback.
+ *
+ * <p>
+ * Conflicts are summarized by key prefix: the common prefix of each conflicting key range, truncated to the
+ * {@linkplain #setConflictPrefixLength configured length}, is counted. With Permazen's key layout and the default
+ * prefix length of three bytes, this usually identifies the storage ID (i.e., object type or index) being fought over.
+ */
+@ThreadSafe
+public class KVDatabaseMetrics implements KVDatabaseMetricsMXBean {
+
+    /**
+     * Default conflict prefix length ({@value #DEFAULT_CONFLICT_PREFIX_LENGTH}).
+     */
+    public static final int DEFAULT_CONFLICT_PREFIX_LENGTH = 3;
+
+    /**
+     * Maximum number of distinct conflict prefixes tracked ({@value #MAX_CONFLICT_PREFIXES}).
+     */
+    public static final int MAX_CONFLICT_PREFIXES = 1000;
+
+    private final AtomicLong transactionsOpened = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong rollbacks = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final Histogram commitLatency = new Histogram();
+    private final Histogram readSetSize = new Histogram();
+    private final Histogram writeSetSize = new Histogram();
+    private final ConcurrentHashMap<String, AtomicLong> conflictPrefixes = new ConcurrentHashMap<>();
+
+    private volatile int conflictPrefixLength = DEFAULT_CONFLICT_PREFIX_LENGTH;
+
+// Configuration
+
+    /**
+     * Get the length of the key prefixes by which conflicts are summarized.
+     *
+     * @return conflict prefix length in bytes
+     */
+    public int getConflictPrefixLength() {
+        return this.conflictPrefixLength;
+    }
+
+    /**
+     * Set the length of the key prefixes by which conflicts are summarized.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_CONFLICT_PREFIX_LENGTH}.
+     *
+     * @param conflictPrefixLength conflict prefix length in bytes
+     * @throws IllegalArgumentException if {@code conflictPrefixLength} is negative
+     */
+    public void setConflictPrefixLength(int conflictPrefixLength) {
+        Preconditions.checkArgument(conflictPrefixLength >= 0, "conflictPrefixLength < 0");
+        this.conflictPrefixLength = conflictPrefixLength;
+    }
+
+// Recording
+
+    /**
+     * Record the creation of a new transaction.
+     */
+    public void recordTransactionOpened() {
+        this.transactionsOpened.incrementAndGet();
+    }
+
+    /**
+     * Record a successful commit.
+     *
+     * @param nanos time taken by the commit in nanoseconds
+     */
+    public void recordCommit(long nanos) {
+        this.commits.incrementAndGet();
+        this.commitLatency.record(nanos / 1000);
+    }
+
+    /**
+     * Record a rollback by the application of a transaction that had not already failed.
+     */
+    public void recordRollback() {
+        this.rollbacks.incrementAndGet();
+    }
+
+    /**
+     * Record a {@link RetryTransactionException} thrown to the application.
+     */
+    public void recordRetry() {
+        this.retries.incrementAndGet();
+    }
+
+    /**
+     * Record a transaction failure other than a {@link RetryTransactionException}.
+     */
+    public void recordFailure() {
+        this.failures.incrementAndGet();
+    }
+
+    /**
+     * Record an MVCC conflict.
+     *
+     * @param conflict the conflict
+     * @throws IllegalArgumentException if {@code conflict} is null
+     */
+    public void recordConflict(Conflict conflict) {
+        Preconditions.checkArgument(conflict != null, "null conflict");
+        this.recordConflict(conflict.getKeyRange());
+    }
+
+    /**
+     * Record a conflict (e.g., lock contention) within the given key range.
+     *
+     * @param range the conflicting key range
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    public void recordConflict(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        this.conflicts.incrementAndGet();
+        final String prefix = ByteUtil.toString(this.summarize(range));
+        AtomicLong counter = this.conflictPrefixes.get(prefix);
+        if (counter == null) {
+            if (this.conflictPrefixes.size() >= MAX_CONFLICT_PREFIXES)
+                return;
+            counter = this.conflictPrefixes.computeIfAbsent(prefix, p -> new AtomicLong());
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Record an exception thrown to the application by a transaction.
+     *
+     * <p>
+     * A {@link TransactionConflictException} is recorded as a retry and a conflict, any other {@link RetryTransactionException}
+     * as a retry, and anything else as a failure.
+     *
+     * @param e the exception
+     * @throws IllegalArgumentException if {@code e} is null
+     */
+    public void recordException(RuntimeException e) {
+        Preconditions.checkArgument(e != null, "null e");
+        if (e instanceof RetryTransactionException) {
+            this.recordRetry();
+            if (e instanceof TransactionConflictException)
+                this.recordConflict(((TransactionConflictException)e).getConflict());
+        } else
+            this.recordFailure();
+    }
+
+    /**
+     * Record the size of a transaction's read set.
+     *
+     * <p>
+     * The unit depends on the implementation, e.g., read operations or tracked key ranges.
+     *
+     * @param size read set size
+     */
+    public void recordReadSetSize(long size) {
+        this.readSetSize.record(size);
+    }
+
+    /**
+     * Record the size of a transaction's write set.
+     *
+     * <p>
+     * The unit depends on the implementation, e.g., write operations or distinct mutations.
+     *
+     * @param size write set size
+     */
+    public void recordWriteSetSize(long size) {
+        this.writeSetSize.record(size);
+    }
+
+    /**
+     * Record key and value bytes read.
+     *
+     * @param bytes number of bytes
+     */
+    public void recordBytesRead(long bytes) {
+        this.bytesRead.addAndGet(bytes);
+    }
+
+    /**
+     * Record key and value bytes written.
+     *
+     * @param bytes number of bytes
+     */
+    public void recordBytesWritten(long bytes) {
+        this.bytesWritten.addAndGet(bytes);
+    }
+
+    /**
+     * Reset all metrics.
+     */
+    @Override
+    public void reset() {
+        this.transactionsOpened.set(0);
+        this.commits.set(0);
+        this.rollbacks.set(0);
+        this.retries.set(0);
+        this.conflicts.set(0);
+        this.failures.set(0);
+        this.bytesRead.set(0);
+        this.bytesWritten.set(0);
+        this.commitLatency.reset();
+        this.readSetSize.reset();
+        this.writeSetSize.reset();
+        this.conflictPrefixes.clear();
+    }
+
+// Metrics
+
+    @Override
+    public long getTransactionsOpened() {
+        return this.transactionsOpened.get();
+    }
+
+    @Override
+    public long getCommits() {
+        return this.commits.get();
+    }
+
+    @Override
+    public long getRollbacks() {
+        return this.rollbacks.get();
+    }
+
+    @Override
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    @Override
+    public long getConflicts() {
+        return this.conflicts.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return this.bytesRead.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    /**
+     * Get the distribution of successful commit latencies.
+     *
+     * @return commit latencies in microseconds
+     */
+    public Histogram getCommitLatency() {
+        return this.commitLatency;
+    }
+
+    /**
+     * Get the distribution of transaction read set sizes.
+     *
+     * @return read set sizes
+     */
+    public Histogram getReadSetSize() {
+        return this.readSetSize;
+    }
+
+    /**
+     * Get the distribution of transaction write set sizes.
+     *
+     * @return write set sizes
+     */
+    public Histogram getWriteSetSize() {
+        return this.writeSetSize;
+    }
+
+    @Override
+    public double getCommitLatencyMean() {
+        return this.commitLatency.getMean();
+    }
+
+    @Override
+    public long getCommitLatency99() {
+        return this.commitLatency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getCommitLatencyMax() {
+        return this.commitLatency.getMax();
+    }
+
+    @Override
+    public Map<String, Long> getConflictPrefixes() {
+        final TreeMap<String, Long> map = new TreeMap<>();
+        this.conflictPrefixes.forEach((prefix, count) -> map.put(prefix, count.get()));
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+          + "[opened=" + this.getTransactionsOpened()
+          + ",commits=" + this.getCommits()
+          + ",rollbacks=" + this.getRollbacks()
+          + ",retries=" + this.getRetries()
+          + ",conflicts=" + this.getConflicts()
+          + ",failures=" + this.getFailures()
+          + ",bytesRead=" + this.getBytesRead()
+          + ",bytesWritten=" + this.getBytesWritten()
+          + ",commitLatency=" + this.commitLatency
+          + "]";
+    }
+
+// Internal methods
+
+    // Get the common prefix of the keys in the range, truncated to the configured length
+    private byte[] summarize(KeyRange range) {
+        final byte[] min = range.getMin();
+        final byte[] max = range.getMax();
+        int len = Math.min(min.length, this.conflictPrefixLength);
+        if (!range.isSingleKey() && max != null) {
+            int common = 0;
+            while (common < len && common < max.length && min[common] == max[common])
+                common++;
+            len = common;
+        } else if (max == null)
+            len = 0;
+        return Arrays.copyOf(min, len);
+    }
+
+// Histogram
+
+    /**
+     * A concurrent histogram of non-negative values using power-of-two buckets.
+     *
+     * <p>
+     * Bucket zero counts the value zero, and bucket {@code n > 0} counts values from 2<sup>n-1</sup> (inclusive) to
+     * 2<sup>n</sup> (exclusive). Percentiles are therefore approximate, reported as the upper bound of the
+     * containing bucket (but never more than the maximum recorded value).
+     */
+    @ThreadSafe
+    public static class Histogram {
+
+        private static final int NUM_BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * Record a value.
+         *
+         * @param value value to record; negative values are treated as zero
+         */
+        public void record(long value) {
+            value = Math.max(value, 0);
+            this.buckets.incrementAndGet(Histogram.bucketOf(value));
+            this.count.incrementAndGet();
+            this.sum.addAndGet(value);
+            this.max.accumulateAndGet(value, Math::max);
+        }
+
+        /**
+         * Get the number of values recorded.
+         *
+         * @return value count
+         */
+        public long getCount() {
+            return this.count.get();
+        }
+
+        /**
+         * Get the sum of all values recorded.
+         *
+         * @return value total
+         */
+        public long getSum() {
+            return this.sum.get();
+        }
+
+        /**
+         * Get the maximum value recorded.
+         *
+         * @return maximum value, or zero if none
+         */
+        public long getMax() {
+            return this.max.get();
+        }
+
+        /**
+         * Get the mean of all values recorded.
+         *
+         * @return mean value, or zero if none
+         */
+        public double getMean() {
+            final long num = this.count.get();
+            return num > 0 ? (double)this.sum.get() / num : 0.0;
+        }
+
+        /**
+         * Get an approximate percentile.
+         *
+         * @param fraction percentile as a fraction between zero and one (inclusive), e.g., {@code 0.99}
+         * @return approximate value at the given percentile, or zero if no values have been recorded
+         * @throws IllegalArgumentException if {@code fraction} is not between zero and one
+         */
+        public long getPercentile(double fraction) {
+            Preconditions.checkArgument(fraction >= 0.0 && fraction <= 1.0, "invalid fraction");
+            final long[] counts = this.getBucketCounts();
+            long total = 0;
+            for (long bucketCount : counts)
+                total += bucketCount;
+            if (total == 0)
+                return 0;
+            final long target = Math.max((long)Math.ceil(fraction * total), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if ((seen += counts[i]) >= target)
+                    return Math.min(i == 0 ? 0 : i == NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1, this.max.get());
+            }
+            return this.max.get();
+        }
+
+        /**
+         * Get the number of values in each bucket.
+         *
+         * @return bucket counts
+         */
+        public long[] getBucketCounts() {
+            final long[] counts = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; i++)
+                counts[i] = this.buckets.get(i);
+            return counts;
+        }
+
+        /**
+         * Reset this instance.
+         */
+        public void reset() {
+            for (int i = 0; i < NUM_BUCKETS; i++)
+                this.buckets.set(i, 0);
+            this.count.set(0);
+            this.sum.set(0);
+            this.max.set(0);
+        }
+
+        @Override
+        public String toString() {
+            return "[count=" + this.getCount()
+              + ",mean=" + String.format("%.1f", this.getMean())
+              + ",p50=" + this.getPercentile(0.5)
+              + ",p99=" + this.getPercentile(0.99)
+              + ",max=" + this.getMax()
+              + "]";
+        }
+
+        private static int bucketOf(long value) {
+            return Math.min(64 - Long.numberOfLeadingZeros(value), NUM_BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import java.util.Map;
+
+/**
+ * JMX management interface for {@link KVDatabaseMetrics}.
+ *
+ * <p>
+ * All counters are cumulative since creation or the last {@link #reset}.
+ */
+public interface KVDatabaseMetricsMXBean {
+
+    /**
+     * Get the number of transactions created.
+     *
+     * @return transaction count
+     */
+    long getTransactionsOpened();
+
+    /**
+     * Get the number of successful commits.
+     *
+     * @return commit count
+     */
+    long getCommits();
+
+    /**
+     * Get the number of rollbacks.
+     *
+     * <p>
+     * Transactions that were rolled back because they failed are counted as retries or failures instead.
+     *
+     * @return rollback count
+     */
+    long getRollbacks();
+
+    /**
+     * Get the number of {@link RetryTransactionException}s thrown.
+     *
+     * @return retry count
+     */
+    long getRetries();
+
+    /**
+     * Get the number of conflicts detected.
+     *
+     * @return conflict count
+     */
+    long getConflicts();
+
+    /**
+     * Get the number of transaction failures other than retries.
+     *
+     * @return failure count
+     */
+    long getFailures();
+
+    /**
+     * Get the number of key and value bytes read.
+     *
+     * @return bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Get the number of key and value bytes written.
+     *
+     * @return bytes written
+     */
+    long getBytesWritten();
+
+    /**
+     * Get the mean commit latency.
+     *
+     * @return mean commit latency in microseconds
+     */
+    double getCommitLatencyMean();
+
+    /**
+     * Get the approximate 99th percentile commit latency.
+     *
+     * @return 99th percentile commit latency in microseconds
+     */
+    long getCommitLatency99();
+
+    /**
+     * Get the maximum commit latency.
+     *
+     * @return maximum commit latency in microseconds
+     */
+    long getCommitLatencyMax();
+
+    /**
+     * Get the number of conflicts for each conflicting key prefix.
+     *
+     * @return mapping from key prefix (in hexadecimal) to conflict count
+     */
+    Map<String, Long> getConflictPrefixes();
+
+    /**
+     * Reset all metrics.
+     */
+    void reset();
+}
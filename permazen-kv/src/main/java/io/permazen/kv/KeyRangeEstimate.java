@@ -0,0 +1,79 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An approximation of the amount of data in a {@link KeyRange}, as returned by
+ * {@link SplittableKVStore#estimateSize SplittableKVStore.estimateSize()}.
+ *
+ * <p>
+ * Instances are immutable.
+ */
+public final class KeyRangeEstimate {
+
+    private final long numKeys;
+    private final long numBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param numKeys approximate number of keys
+     * @param numBytes approximate number of bytes of key and value data
+     * @throws IllegalArgumentException if either parameter is negative
+     */
+    public KeyRangeEstimate(long numKeys, long numBytes) {
+        Preconditions.checkArgument(numKeys >= 0, "numKeys < 0");
+        Preconditions.checkArgument(numBytes >= 0, "numBytes < 0");
+        this.numKeys = numKeys;
+        this.numBytes = numBytes;
+    }
+
+    /**
+     * Get the approximate number of key/value pairs in the range.
+     *
+     * @return approximate key count
+     */
+    public long getNumKeys() {
+        return this.numKeys;
+    }
+
+    /**
+     * Get the approximate total size of the keys and values in the range.
+     *
+     * <p>
+     * Depending on the implementation, this may reflect the size of the data as stored (e.g., after compression)
+     * rather than the sum of the {@code byte[]} array lengths.
+     *
+     * @return approximate size in bytes
+     */
+    public long getNumBytes() {
+        return this.numBytes;
+    }
+
+// Object
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != this.getClass())
+            return false;
+        final KeyRangeEstimate that = (KeyRangeEstimate)obj;
+        return this.numKeys == that.numKeys && this.numBytes == that.numBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.numKeys) ^ Long.hashCode(this.numBytes);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[numKeys=" + this.numKeys + ",numBytes=" + this.numBytes + "]";
+    }
+}
@@ -0,0 +1,54 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import java.util.List;
+
+/**
+ * A {@link KVStore} that can cheaply describe the distribution of its keys, i.e., estimate how much data a {@link KeyRange}
+ * contains and suggest keys at which to divide a {@link KeyRange} into pieces of roughly equal size.
+ *
+ * <p>
+ * This information is approximate, typically derived from the implementation's internal structure (e.g., index positions,
+ * file or block boundaries) without iterating the range. Callers must not rely on it for correctness, only for planning
+ * and dividing up work; for example, {@link io.permazen.kv.util.AbstractKVSpliterator} uses split keys to choose where
+ * to split when a parallel stream is processed.
+ *
+ * <p>
+ * Wrapper implementations that have no useful information (e.g., because the {@link KVStore} they wrap doesn't implement
+ * this interface) may return null from {@link #estimateSize estimateSize()} and an empty list from
+ * {@link #getSplitKeys getSplitKeys()}.
+ *
+ * @see io.permazen.kv.util.AbstractKVSpliterator
+ * @see io.permazen.kv.util.SplitKeyUtil
+ */
+public interface SplittableKVStore extends KVStore {
+
+    /**
+     * Estimate the number of key/value pairs and the amount of data in the given range.
+     *
+     * @param range key range
+     * @return approximate size of {@code range}, or null if no estimate is available
+     * @throws IllegalArgumentException if {@code range} is null
+     */
+    KeyRangeEstimate estimateSize(KeyRange range);
+
+    /**
+     * Get up to {@code count} keys that divide the given range into (approximately) equally sized pieces.
+     *
+     * <p>
+     * The returned keys must be sorted, distinct, and strictly contained within {@code range}, i.e., greater than the
+     * range's minimum and less than its maximum. Fewer than {@code count} keys (possibly zero) may be returned,
+     * for example if the range is small or the implementation has no useful information.
+     *
+     * @param range key range to divide
+     * @param count maximum number of split keys to return
+     * @return sorted list of split keys, possibly empty
+     * @throws IllegalArgumentException if {@code range} is null
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    List<byte[]> getSplitKeys(KeyRange range, int count);
+}
@@ -0,0 +1,433 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvcc;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+import io.permazen.util.CloseableIterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * An ordered, durable log of the mutations committed to a {@link SnapshotKVDatabase}, suitable for change data capture.
+ *
+ * <p>
+ * When {@linkplain SnapshotKVDatabase#setChangeLog configured}, each committed transaction that mutates the database appends
+ * an {@link Entry} to the log containing the transaction's {@link Writes} and commit time. Entries are stored in the database
+ * itself under a configured key prefix, and are written atomically along with the mutations they describe, so the log
+ * is exactly as durable as the data. Each entry has a sequence number; sequence numbers start at one and increase
+ * in commit order, but are not guaranteed to be contiguous. Sequence numbers persist across restarts,
+ * even if all entries have been {@linkplain #trim trimmed}.
+ *
+ * <p>
+ * Consumers read entries in order via {@link #read read()}, or more conveniently via a {@link Tailer}, which returns
+ * batches of entries and blocks when there are no new entries. Consumers pull entries at their own pace, so a slow consumer
+ * never slows down committing transactions; instead, unconsumed entries accumulate in the database. A consumer can resume
+ * from any position by remembering the sequence number of the last entry it processed. Old entries are discarded
+ * via {@link #trim trim()}.
+ *
+ * <p>
+ * Mutations to the log's own key range are not recorded, and transactions whose only mutations are to the log's key range,
+ * such as {@link #trim trim()}, do not create entries. Writes to the log's key range do not cause transaction conflicts,
+ * so reading the log does not cause transactions to retry.
+ *
+ * @see SnapshotKVDatabase#setChangeLog
+ */
+@ThreadSafe
+public class ChangeLog {
+
+    private static final int SEQUENCE_LENGTH = 8;
+
+    private final byte[] prefix;
+    private final KeyRange keyRange;
+
+    @GuardedBy("this")
+    private long lastSequence;                                  // last sequence number whose entry has been applied
+    @GuardedBy("this")
+    private long allocatedSequence;                             // last sequence number assigned by append()
+
+    /**
+     * Constructor.
+     *
+     * @param prefix key prefix under which log entries are stored; must not be used for any other purpose
+     * @throws IllegalArgumentException if {@code prefix} is null or empty
+     */
+    public ChangeLog(byte[] prefix) {
+        Preconditions.checkArgument(prefix != null && prefix.length > 0, "null/empty prefix");
+        this.prefix = prefix.clone();
+        this.keyRange = KeyRange.forPrefix(this.prefix);
+    }
+
+    /**
+     * Get the key prefix under which log entries are stored.
+     *
+     * @return log key prefix
+     */
+    public byte[] getPrefix() {
+        return this.prefix.clone();
+    }
+
+    /**
+     * Get the key range containing the log entries.
+     *
+     * @return log key range
+     */
+    public KeyRange getKeyRange() {
+        return this.keyRange;
+    }
+
+    /**
+     * Get the sequence number of the most recently committed log entry.
+     *
+     * <p>
+     * This reflects the state of the associated {@link SnapshotKVDatabase}; it is zero until that database is started.
+     *
+     * @return last sequence number, or zero if the log is empty
+     */
+    public synchronized long getLastSequence() {
+        return this.lastSequence;
+    }
+
+    /**
+     * Wait for an entry with the given sequence number (or higher) to be committed.
+     *
+     * @param sequence sequence number
+     * @param timeout maximum time to wait in milliseconds, or zero to not wait
+     * @return true if {@link #getLastSequence} is at least {@code sequence}, false if the timeout expired
+     * @throws InterruptedException if the current thread is interrupted
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     */
+    public synchronized boolean awaitSequence(long sequence, long timeout) throws InterruptedException {
+        Preconditions.checkArgument(timeout >= 0, "timeout < 0");
+        final long deadline = System.nanoTime() + timeout * 1000000L;
+        while (this.lastSequence < sequence) {
+            final long remaining = (deadline - System.nanoTime()) / 1000000L;
+            if (remaining <= 0)
+                return false;
+            this.wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Read log entries.
+     *
+     * @param kv key/value store containing the log, typically a transaction
+     * @param minSequence minimum sequence number (inclusive)
+     * @param maxEntries maximum number of entries to return
+     * @return log entries in order, possibly empty
+     * @throws IllegalArgumentException if {@code kv} is null
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     * @throws IllegalArgumentException if an invalid entry is encountered
+     */
+    public List<Entry> read(KVStore kv, long minSequence, int maxEntries) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(maxEntries > 0, "maxEntries <= 0");
+        final ArrayList<Entry> entries = new ArrayList<>();
+        try (CloseableIterator<KVPair> i = kv.getRange(this.getKey(Math.max(minSequence, 0)), this.keyRange.getMax())) {
+            while (entries.size() < maxEntries && i.hasNext())
+                entries.add(this.decode(i.next()));
+        }
+        return entries;
+    }
+
+    /**
+     * Discard all log entries having sequence numbers less than the given sequence number.
+     *
+     * <p>
+     * The highest discarded sequence number is remembered, so sequence numbers are never reused after a restart,
+     * even if every entry has been discarded.
+     *
+     * @param kv key/value store containing the log, typically a transaction
+     * @param minSequence minimum sequence number to keep
+     * @throws IllegalArgumentException if {@code kv} is null
+     */
+    public void trim(KVStore kv, long minSequence) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        final byte[] maxKey = this.getKey(Math.max(minSequence, 0));
+
+        // Update high-water mark with the last entry being discarded, if any
+        final KVPair last = kv.getAtMost(maxKey, this.getKey(0));
+        if (last != null) {
+            final long sequence = this.decodeSequence(last.getKey());
+            if (sequence > this.readHighWaterMark(kv)) {
+                final ByteWriter writer = new ByteWriter(SEQUENCE_LENGTH);
+                ByteUtil.writeLong(writer, sequence);
+                kv.put(this.prefix, writer.getBytes());
+            }
+        }
+
+        // Discard entries
+        kv.removeRange(this.getKey(0), maxKey);
+    }
+
+    /**
+     * Create a {@link Tailer} that reads this log from the given {@link KVDatabase}, starting at the given position.
+     *
+     * @param kvdb database containing the log
+     * @param position sequence number of the first entry to return; use {@code 1} to start at the beginning of the log,
+     *  or one more than the sequence number of the last processed entry to resume
+     * @return new tailer
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     */
+    public Tailer tail(KVDatabase kvdb, long position) {
+        return new Tailer(kvdb, position);
+    }
+
+// Package methods
+
+    /**
+     * Initialize the last sequence number from the log's current contents.
+     *
+     * @param kv key/value store containing the log
+     */
+    synchronized void initialize(KVStore kv) {
+        final KVPair last = kv.getAtMost(this.keyRange.getMax(), this.getKey(0));
+        this.lastSequence = Math.max(last != null ? this.decodeSequence(last.getKey()) : 0, this.readHighWaterMark(kv));
+        this.allocatedSequence = this.lastSequence;
+    }
+
+    /**
+     * Create the mutations to apply for a committing transaction, including a new log entry.
+     *
+     * <p>
+     * If this method returns non-null, the new entry's sequence number is {@link #getAllocatedSequence}, and
+     * {@link #appended appended()} must be invoked with it once the returned mutations have been applied.
+     * If the mutations are never applied, the sequence number is simply skipped.
+     *
+     * @param writes the transaction's mutations
+     * @return mutations including a new log entry, or null if the transaction should not be logged
+     */
+    synchronized Writes append(Writes writes) {
+
+        // Exclude mutations to our own key range
+        final Writes logged = writes.clone();
+        logged.getRemoves().remove(this.keyRange);
+        this.subMap(logged.getPuts()).clear();
+        this.subMap(logged.getAdjusts()).clear();
+        if (logged.isEmpty())
+            return null;
+
+        // Encode entry
+        final ByteWriter writer = new ByteWriter();
+        ByteUtil.writeLong(writer, System.currentTimeMillis());
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            logged.serialize(buf);
+        } catch (IOException e) {
+            throw new RuntimeException("unexpected exception", e);
+        }
+        writer.write(buf.toByteArray());
+
+        // Add entry to transaction's mutations
+        final Writes result = writes.clone();
+        result.getPuts().put(this.getKey(++this.allocatedSequence), writer.getBytes());
+        return result;
+    }
+
+    /**
+     * Get the sequence number assigned to the entry created by the most recent invocation of {@link #append append()}.
+     *
+     * @return last allocated sequence number
+     */
+    synchronized long getAllocatedSequence() {
+        return this.allocatedSequence;
+    }
+
+    /**
+     * Record that the mutations returned by {@link #append append()}, up through the entry with the given sequence number,
+     * have been applied.
+     *
+     * @param sequence sequence number of the last applied entry
+     */
+    synchronized void appended(long sequence) {
+        assert sequence <= this.allocatedSequence;
+        if (sequence > this.lastSequence) {
+            this.lastSequence = sequence;
+            this.notifyAll();
+        }
+    }
+
+// Internal methods
+
+    private <V> NavigableMap<byte[], V> subMap(NavigableMap<byte[], V> map) {
+        final byte[] maxKey = this.keyRange.getMax();
+        return maxKey != null ? map.subMap(this.prefix, true, maxKey, false) : map.tailMap(this.prefix, true);
+    }
+
+    // The high-water mark is stored under the bare prefix, which sorts before all entries
+    private long readHighWaterMark(KVStore kv) {
+        final byte[] value = kv.get(this.prefix);
+        if (value == null)
+            return 0;
+        Preconditions.checkArgument(value.length == SEQUENCE_LENGTH, "invalid change log high-water mark");
+        return ByteUtil.readLong(new ByteReader(value));
+    }
+
+    private byte[] getKey(long sequence) {
+        final ByteWriter writer = new ByteWriter(this.prefix.length + SEQUENCE_LENGTH);
+        writer.write(this.prefix);
+        ByteUtil.writeLong(writer, sequence);
+        return writer.getBytes();
+    }
+
+    private long decodeSequence(byte[] key) {
+        Preconditions.checkArgument(key.length == this.prefix.length + SEQUENCE_LENGTH,
+          "invalid change log key " + ByteUtil.toString(key));
+        return ByteUtil.readLong(new ByteReader(key, this.prefix.length));
+    }
+
+    private Entry decode(KVPair pair) {
+        final long sequence = this.decodeSequence(pair.getKey());
+        final byte[] value = pair.getValue();
+        Preconditions.checkArgument(value.length >= 8, "invalid change log entry #" + sequence);
+        final long timestamp = ByteUtil.readLong(new ByteReader(value));
+        final Writes writes;
+        try {
+            writes = Writes.deserialize(new ByteArrayInputStream(value, 8, value.length - 8), true);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("invalid change log entry #" + sequence + ": " + e.getMessage(), e);
+        }
+        return new Entry(sequence, timestamp, writes);
+    }
+
+// Entry
+
+    /**
+     * A {@link ChangeLog} entry, describing the mutations of one committed transaction.
+     */
+    public static final class Entry {
+
+        private final long sequence;
+        private final long timestamp;
+        private final Writes writes;
+
+        Entry(long sequence, long timestamp, Writes writes) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.writes = writes;
+        }
+
+        /**
+         * Get the sequence number of this entry.
+         *
+         * @return entry sequence number
+         */
+        public long getSequence() {
+            return this.sequence;
+        }
+
+        /**
+         * Get the time at which the transaction was committed.
+         *
+         * @return commit time in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        /**
+         * Get the mutations committed by the transaction.
+         *
+         * @return immutable transaction mutations
+         */
+        public Writes getWrites() {
+            return this.writes;
+        }
+
+        @Override
+        public String toString() {
+            return "ChangeLog.Entry[seq=" + this.sequence + ",timestamp=" + this.timestamp + ",writes=" + this.writes + "]";
+        }
+    }
+
+// Tailer
+
+    /**
+     * Reads a {@link ChangeLog} in order, in batches, blocking when there are no new entries.
+     *
+     * <p>
+     * Instances are not thread safe.
+     */
+    public class Tailer {
+
+        private final KVDatabase kvdb;
+
+        private long position;
+
+        Tailer(KVDatabase kvdb, long position) {
+            Preconditions.checkArgument(kvdb != null, "null kvdb");
+            this.kvdb = kvdb;
+            this.position = Math.max(position, 1);
+        }
+
+        /**
+         * Get the current position, i.e., the minimum sequence number of the next entry to be returned.
+         *
+         * @return current position
+         */
+        public long getPosition() {
+            return this.position;
+        }
+
+        /**
+         * Get the next batch of log entries, waiting if necessary for new entries to be committed.
+         *
+         * <p>
+         * Entries are read in a read-only transaction. The position advances past the returned entries.
+         *
+         * @param maxEntries maximum number of entries to return
+         * @param timeout maximum time to wait for new entries in milliseconds, or zero to not wait
+         * @return next entries in order, or an empty list if none became available before the timeout
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws IllegalArgumentException if {@code maxEntries} is not positive or {@code timeout} is negative
+         */
+        public List<Entry> poll(int maxEntries, long timeout) throws InterruptedException {
+            Preconditions.checkArgument(maxEntries > 0, "maxEntries <= 0");
+
+            // Wait for new entries
+            if (!ChangeLog.this.awaitSequence(this.position, timeout))
+                return Collections.emptyList();
+            final long available = ChangeLog.this.getLastSequence();
+
+            // Read them
+            final List<Entry> entries;
+            final KVTransaction kvt = this.kvdb.createTransaction();
+            boolean success = false;
+            try {
+                kvt.setReadOnly(true);
+                entries = ChangeLog.this.read(kvt, this.position, maxEntries);
+                kvt.commit();
+                success = true;
+            } finally {
+                if (!success)
+                    kvt.rollback();
+            }
+
+            // Advance position; if we found nothing, there is a gap in the sequence numbers we can skip over
+            this.position = !entries.isEmpty() ?
+              entries.get(entries.size() - 1).getSequence() + 1 : Math.max(this.position, available + 1);
+            return entries;
+        }
+    }
+}
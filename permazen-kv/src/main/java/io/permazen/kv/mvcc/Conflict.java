@@ -5,6 +5,8 @@
 
 package io.permazen.kv.mvcc;
 
+import io.permazen.kv.KeyRange;
+
 /**
  * Represents an MVCC conflict.
  *
@@ -21,4 +23,14 @@ public abstract class Conflict {
 
     Conflict() {
     }
+
+    /**
+     * Get the key range at which the conflict occurred.
+     *
+     * <p>
+     * For conflicts at a single key, this is the range containing just that key.
+     *
+     * @return the affected key range
+     */
+    public abstract KeyRange getKeyRange();
 }
@@ -12,7 +12,7 @@ import io.permazen.util.ByteUtil;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NavigableSet;
 import java.util.TreeSet;
@@ -45,6 +45,14 @@ import org.dellroad.stuff.java.TimedWait;
  * <p>
  * Note that if the hold timeout is set to zero (unlimited), then an application bug that leaks locks will result
  * in those locks never being released.
+ *
+ * <p>
+ * Threads waiting for a lock are only woken up when some released lock overlaps the range they are waiting for
+ * (or when their timeout expires), so releasing locks that no other thread is waiting on is cheap.
+ *
+ * <p>
+ * Instances keep simple statistics about lock acquisition, waits, and hold times; see {@link #getLockCount},
+ * {@link #getWaitCount}, {@link #getTotalWaitTime}, etc.
  */
 public class LockManager {
 
@@ -60,10 +68,19 @@ public class LockManager {
 
     private final TreeSet<Lock> locksByMin = new TreeSet<>(Lock.MIN_COMPARATOR);            // locks ordered by minimum
     private final TreeSet<Lock> locksByMax = new TreeSet<>(Lock.MAX_COMPARATOR);            // locks ordered by maximum
+    private final ArrayList<Lock> waiters = new ArrayList<>();                              // locks being waited for
     private final long nanoBasis = System.nanoTime();
 
     private long holdTimeout;
 
+    // Statistics
+    private long lockCount;
+    private long waitCount;
+    private long waitTimeoutCount;
+    private long holdTimeoutCount;
+    private long totalWaitNanos;
+    private long totalHoldNanos;
+
     /**
      * Convenience constructor. Equivalent to <code>LockManager(null)</code>.
      */
@@ -110,6 +127,98 @@ public class LockManager {
         }
     }
 
+    /**
+     * Get the total number of locks successfully acquired.
+     *
+     * @return number of successful {@link #lock lock()} calls
+     */
+    public long getLockCount() {
+        synchronized (this.lockObject) {
+            return this.lockCount;
+        }
+    }
+
+    /**
+     * Get the total number of times a {@link #lock lock()} call had to wait for a conflicting lock to be released.
+     *
+     * @return number of lock waits
+     */
+    public long getWaitCount() {
+        synchronized (this.lockObject) {
+            return this.waitCount;
+        }
+    }
+
+    /**
+     * Get the total number of times {@link #lock lock()} returned {@link LockResult#WAIT_TIMEOUT_EXPIRED}.
+     *
+     * @return number of wait timeouts
+     */
+    public long getWaitTimeoutCount() {
+        synchronized (this.lockObject) {
+            return this.waitTimeoutCount;
+        }
+    }
+
+    /**
+     * Get the total number of times a lock owner's {@linkplain #getHoldTimeout hold timeout} expired.
+     *
+     * @return number of hold timeouts
+     */
+    public long getHoldTimeoutCount() {
+        synchronized (this.lockObject) {
+            return this.holdTimeoutCount;
+        }
+    }
+
+    /**
+     * Get the total time threads have spent waiting for conflicting locks to be released.
+     *
+     * @return total wait time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        synchronized (this.lockObject) {
+            return this.totalWaitNanos / 1000000L;
+        }
+    }
+
+    /**
+     * Get the total time lock owners have held their locks, measured from the first lock acquired
+     * until all locks were released.
+     *
+     * @return total hold time in milliseconds
+     */
+    public long getTotalHoldTime() {
+        synchronized (this.lockObject) {
+            return this.totalHoldNanos / 1000000L;
+        }
+    }
+
+    /**
+     * Get the number of locks currently held.
+     *
+     * <p>
+     * Adjacent or overlapping locks held by the same owner may be merged into a single lock.
+     *
+     * @return number of locks currently held
+     */
+    public int getNumLocksHeld() {
+        synchronized (this.lockObject) {
+            return this.locksByMin.size();
+        }
+    }
+
+    /**
+     * Get the number of threads currently waiting for a lock.
+     *
+     * @return number of waiting threads
+     */
+    public int getNumWaiters() {
+        synchronized (this.lockObject) {
+            return this.waiters.size();
+        }
+    }
+
     /**
      * Acquire a lock on behalf of the specified owner.
      *
@@ -164,8 +273,20 @@ public class LockManager {
                 long timeToWait = Math.min(waitTimeout, lockChecker.getTimeRemaining());
                 if (lockerRemaining != 0)
                     timeToWait = Math.min(timeToWait, lockerRemaining);
-                if (!TimedWait.wait(this.lockObject, timeToWait, lockChecker))
+                final long waitStartTime = System.nanoTime();
+                final boolean acquired;
+                this.waiters.add(lock);
+                this.waitCount++;
+                try {
+                    acquired = TimedWait.wait(this.lockObject, timeToWait, lockChecker);
+                } finally {
+                    this.waiters.remove(lock);
+                    this.totalWaitNanos += System.nanoTime() - waitStartTime;
+                }
+                if (!acquired) {
+                    this.waitTimeoutCount++;
                     return LockResult.WAIT_TIMEOUT_EXPIRED;
+                }
             }
 
             // Check hold timeout again
@@ -196,6 +317,7 @@ public class LockManager {
                 assert this.lockTimes.get(owner) != null;
 
             // Done
+            this.lockCount++;
             return LockResult.SUCCESS;
         }
     }
@@ -245,6 +367,7 @@ public class LockManager {
                 final Long lockTime = this.lockTimes.remove(owner);
                 if (lockTime == null)
                     return false;
+                this.totalHoldNanos += System.nanoTime() - this.nanoBasis - lockTime;
             }
 
             // Release all locks
@@ -282,6 +405,8 @@ public class LockManager {
             final long remaining = holdDeadline - currentTime;
             if (remaining <= 0) {
                 this.lockTimes.put(owner, null);
+                this.holdTimeoutCount++;
+                this.totalHoldNanos += currentTime - lockTime;
                 this.doRelease(owner);
                 return -1;
             }
@@ -289,14 +414,25 @@ public class LockManager {
         }
     }
 
-    // Release all locks held by owner. Assumes synchronized already on this.lockObject.
+    // Release all locks held by owner and wake up any waiters for overlapping ranges.
+    // Assumes synchronized already on this.lockObject.
     private void doRelease(LockOwner owner) {
+        boolean wakeup = false;
         for (Lock lock : owner.locks) {
             this.locksByMin.remove(lock);
             this.locksByMax.remove(lock);
+            if (!wakeup) {
+                for (Lock waiter : this.waiters) {
+                    if (waiter.overlaps(lock)) {
+                        wakeup = true;
+                        break;
+                    }
+                }
+            }
         }
         owner.locks.clear();
-        this.lockObject.notifyAll();
+        if (wakeup)
+            this.lockObject.notifyAll();
     }
 
     // Check whether we can lock, and fill the list of mergers and return zero if so. If not, return time remaining.
@@ -317,12 +453,22 @@ public class LockManager {
             // Get locks whose max is > lockMin
             final NavigableSet<Lock> rhs = this.locksByMax.tailSet(Lock.getMaxKey(ByteUtil.getNextKey(lockMin), false), true);
 
+            // Overlapping locks are in both sets, so we only need to scan the smaller one; to find it without
+            // counting either set in full, step through both in parallel until one of them runs out
+            final Iterator<Lock> lhsIterator = lhs.descendingIterator();
+            final Iterator<Lock> rhsIterator = rhs.iterator();
+            while (lhsIterator.hasNext() && rhsIterator.hasNext()) {
+                lhsIterator.next();
+                rhsIterator.next();
+            }
+            final NavigableSet<Lock> candidates = lhsIterator.hasNext() ? rhs : lhs;
+
             // Find overlapping locks and check for conflicts
-            final HashSet<Lock> overlaps = new HashSet<>();
-            for (Lock other : lhs) {
+            final ArrayList<Lock> overlaps = new ArrayList<>();
+            for (Lock other : candidates) {
 
                 // Does this lock overlap?
-                if (!rhs.contains(other))
+                if (!lock.overlaps(other))
                     continue;
 
                 // Do this lock & other lock conflict?
@@ -334,8 +480,8 @@ public class LockManager {
                     if (remaining == -1)
                         continue startOver;
 
-                    // Return time remaining until conflicting owner's hold timeout
-                    return Math.max(remaining, 1);
+                    // Return time remaining until conflicting owner's hold timeout, if any
+                    return remaining == 0 ? TEN_YEARS_MILLIS : remaining;
                 }
 
                 // Add overlap
@@ -11,11 +11,15 @@ import io.permazen.kv.AbstractKVStore;
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
 import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
 import io.permazen.kv.KeyRanges;
+import io.permazen.kv.SplittableKVStore;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -52,9 +56,13 @@ import javax.annotation.concurrent.ThreadSafe;
  * <p>
  * Instances are thread safe; however, directly accessing the associated {@link Reads} or {@link Writes} is not thread safe
  * without first locking the containing instance.
+ *
+ * <p>
+ * The {@link SplittableKVStore} methods are forwarded to the underlying {@link KVStore}, if it supports them; the results
+ * do not reflect any mutations recorded by this instance, and are not recorded as reads.
  */
 @ThreadSafe
-public class MutableView extends AbstractKVStore implements ReadTracking, Cloneable {
+public class MutableView extends AbstractKVStore implements SplittableKVStore, ReadTracking, Cloneable {
 
     @GuardedBy("this")
     private KVStore kv;
@@ -330,6 +338,24 @@ public class MutableView extends AbstractKVStore implements ReadTracking, Clonea
         super.apply(mutations);
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        final KVStore kvstore = this.getKVStore();
+        return kvstore instanceof SplittableKVStore ? ((SplittableKVStore)kvstore).estimateSize(range) : null;
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count >= 0, "count < 0");
+        final KVStore kvstore = this.getKVStore();
+        return kvstore instanceof SplittableKVStore ?
+          ((SplittableKVStore)kvstore).getSplitKeys(range, count) : Collections.emptyList();
+    }
+
 // Cloneable
 
     /**
@@ -40,6 +40,7 @@ public class ReadRemoveConflict extends Conflict {
      *
      * @return the affected key range
      */
+    @Override
     public KeyRange getKeyRange() {
         return this.range;
     }
@@ -7,6 +7,7 @@ package io.permazen.kv.mvcc;
 
 import com.google.common.base.Preconditions;
 
+import io.permazen.kv.KeyRange;
 import io.permazen.util.ByteUtil;
 
 import java.util.Arrays;
@@ -34,6 +35,11 @@ abstract class SingleKeyConflict extends Conflict {
         return this.key;
     }
 
+    @Override
+    public KeyRange getKeyRange() {
+        return new KeyRange(this.key);
+    }
+
 // Object
 
     @Override
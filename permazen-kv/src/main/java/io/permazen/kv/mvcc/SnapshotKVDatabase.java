@@ -9,7 +9,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.InstrumentedKVDatabase;
 import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
 import io.permazen.kv.KVTransactionException;
 import io.permazen.kv.RetryTransactionException;
 import io.permazen.kv.StaleTransactionException;
@@ -39,7 +41,7 @@ import org.slf4j.LoggerFactory;
  * do not contend for any locks until commit time. During each transaction, reads are noted and derive from the snapshot,
  * while writes are batched up. At commit time, if any other transaction has committed writes since the transaction's
  * snapshot was created, and any of those writes {@linkplain Reads#isConflict conflict} with any of the committing
- * transaction's reads, a {@link RetryTransactionException} is thrown. Otherwise, the transaction is committed and its
+ * transaction's reads, a {@link TransactionConflictException} is thrown. Otherwise, the transaction is committed and its
  * writes are applied.
  *
  * <p>
@@ -49,15 +51,47 @@ import org.slf4j.LoggerFactory;
  * <p>
  * {@linkplain SnapshotKVTransaction#watchKey Key watches} are supported.
  *
+ * <p>
+ * If a {@link ChangeLog} is {@linkplain #setChangeLog configured}, the mutations of each committed transaction are also
+ * recorded in the database itself, in commit order, atomically with the mutations they describe. This supports change data
+ * capture: consumers can {@linkplain ChangeLog#tail tail} the log and resume from where they left off after a restart.
+ *
+ * <p>
+ * Instances gather {@linkplain #getMetrics metrics} including commit latency, MVCC conflicts (which are reported via
+ * {@link TransactionConflictException}), the number of key ranges in each transaction's read set, the number of mutations
+ * in each transaction's write set, and the number of bytes written.
+ *
+ * <p><b>Group Commit</b>
+ *
+ * <p>
+ * By default, each transaction's mutations are applied to the underlying {@link AtomicKVStore} while holding this
+ * instance's lock, so commits are serialized on the underlying store's write path. If {@linkplain #setGroupCommit group commit}
+ * is enabled, conflict checking still happens immediately at commit time, but the mutations of non-conflicting transactions
+ * are accumulated in memory and applied to the underlying store in batches via a single {@link AtomicKVStore#mutate mutate()}
+ * operation performed without holding this instance's lock. {@link SnapshotKVTransaction#commit commit()} does not return
+ * until the transaction's batch has been applied. This amortizes the cost of each write (and any associated sync) across
+ * all transactions committing concurrently, which is especially helpful for stores such as LMDB that only allow one writer
+ * at a time.
+ *
+ * <p>
+ * Committed mutations do not become visible to other transactions, advance the {@linkplain #getCurrentVersion current version},
+ * or trigger key watches until their batch has been durably applied. Instead, a committing transaction is also checked for
+ * conflicts against all committed but not yet applied mutations, and when a batch is applied, open transactions are checked
+ * for conflicts against it before being rebased onto the new snapshot. If applying a batch fails, the transactions in that
+ * batch fail with a {@link KVTransactionException}; because their mutations were never visible, no other transactions
+ * are affected.
+ *
  * @see AtomicKVDatabase
  */
 @ThreadSafe
-public abstract class SnapshotKVDatabase implements KVDatabase {
+public abstract class SnapshotKVDatabase implements InstrumentedKVDatabase {
 
 // Locking order: (1) SnapshotKVTransaction, (2) SnapshotKVDatabase, (3) MutableView
 
     protected final Logger log = LoggerFactory.getLogger(this.getClass());
 
+    private final KVDatabaseMetrics metrics = new KVDatabaseMetrics();
+
 /*
 
    Open transactions (only) are contained in this.transactions; this.snapshot is the read-only view
@@ -84,11 +118,23 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
     @GuardedBy("this")
     private KeyWatchTracker keyWatchTracker;
     @GuardedBy("this")
-    private long currentVersion;
+    private long currentVersion;                                            // version visible to new transactions
+    @GuardedBy("this")
+    private long commitVersion;                                             // version of most recent commit (maybe not applied)
     @GuardedBy("this")
     private boolean started;
     @GuardedBy("this")
     private boolean stopping;
+    @GuardedBy("this")
+    private boolean groupCommit;
+    @GuardedBy("this")
+    private ChangeLog changeLog;
+
+    // Group commit state
+    @GuardedBy("this")
+    private WriteBatch pendingBatch = new WriteBatch();                     // batch accumulating committed writes
+    @GuardedBy("this")
+    private WriteBatch flushingBatch;                                       // batch currently being applied, if any
 
 // Constructors
 
@@ -144,6 +190,68 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         return this.currentVersion;
     }
 
+    /**
+     * Determine whether group commit is enabled.
+     *
+     * @return true if group commit is enabled
+     */
+    public synchronized boolean isGroupCommit() {
+        return this.groupCommit;
+    }
+
+    /**
+     * Configure whether to enable group commit.
+     *
+     * <p>
+     * When enabled, the mutations of concurrently committing transactions are applied to the underlying
+     * {@link AtomicKVStore} in batches. See the class description for details.
+     *
+     * <p>
+     * Default false.
+     *
+     * @param groupCommit true to enable group commit
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setGroupCommit(boolean groupCommit) {
+        Preconditions.checkState(!this.started, "already started");
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Get the configured {@link ChangeLog}, if any.
+     *
+     * @return change log, or null if none is configured
+     */
+    public synchronized ChangeLog getChangeLog() {
+        return this.changeLog;
+    }
+
+    /**
+     * Configure a {@link ChangeLog} in which to record the mutations of each committed transaction.
+     *
+     * <p>
+     * With {@linkplain #setGroupCommit group commit}, a transaction's log entry is committed, i.e., reflected by
+     * {@link ChangeLog#getLastSequence}, only once the batch containing it has been applied; if the batch fails,
+     * its entries' sequence numbers are skipped.
+     *
+     * <p>
+     * Default null (none).
+     *
+     * @param changeLog change log, or null for none
+     * @throws IllegalStateException if this instance is already started
+     */
+    public synchronized void setChangeLog(ChangeLog changeLog) {
+        Preconditions.checkState(!this.started, "already started");
+        this.changeLog = changeLog;
+    }
+
+// InstrumentedKVDatabase
+
+    @Override
+    public KVDatabaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
 // KVDatabase
 
     @Override
@@ -153,6 +261,8 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
             return;
         Preconditions.checkState(this.kvstore != null, "no KVStore configured");
         this.kvstore.start();
+        if (this.changeLog != null)
+            this.changeLog.initialize(this.kvstore);
         this.started = true;
     }
 
@@ -174,6 +284,20 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         // Finish up
         synchronized (this) {
             assert this.started;
+
+            // Wait for any committed writes to be applied; the committing threads will apply them
+            boolean interrupted = false;
+            while (this.flushingBatch != null || !this.pendingBatch.writes.isEmpty()) {
+                try {
+                    this.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+
+            // Release snapshots
             if (this.snapshot != null) {
                 this.snapshot.unref();
                 this.snapshot = null;
@@ -210,6 +334,7 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         final SnapshotKVTransaction tx = this.createSnapshotKVTransaction(view, this.currentVersion);
         assert !this.transactions.contains(tx);
         this.transactions.add(tx);
+        this.metrics.recordTransactionOpened();
         if (this.log.isTraceEnabled())
             this.log.trace("created new transaction " + tx + " (new total " + this.transactions.size() + ")");
 
@@ -234,6 +359,7 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
           + "[kvstore=" + this.kvstore
           + ",started=" + this.started
           + ",currentVersion=" + this.currentVersion
+          + (this.groupCommit ? ",groupCommit" : "")
           + "]";
     }
 
@@ -300,14 +426,27 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
     /**
      * Commit a transaction.
      */
-    synchronized void commit(SnapshotKVTransaction tx, boolean readOnly) {
+    void commit(SnapshotKVTransaction tx, boolean readOnly) {
         assert Thread.holdsLock(tx);
+        final long startTime = System.nanoTime();
         try {
-            this.doCommit(tx, readOnly);
-        } finally {
-            tx.error = null;                                // from this point on, throw a StaleTransactionException if accessed
-            this.cleanupTransaction(tx);
+            final WriteBatch batch;
+            synchronized (this) {
+                try {
+                    batch = this.doCommit(tx, readOnly);
+                } finally {
+                    tx.error = null;                        // from this point on, throw a StaleTransactionException if accessed
+                    this.cleanupTransaction(tx);
+                }
+            }
+            if (batch != null)
+                this.awaitBatch(tx, batch);
+        } catch (RuntimeException e) {
+            if (!(e instanceof RetryTransactionException))   // conflicts are recorded when detected
+                this.metrics.recordFailure();
+            throw e;
         }
+        this.metrics.recordCommit(System.nanoTime() - startTime);
     }
 
     /**
@@ -317,8 +456,13 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         assert Thread.holdsLock(tx);
         if (this.log.isTraceEnabled())
             this.log.trace("rolling back transaction " + tx);
+        final KVTransactionException error = tx.error;
         tx.error = null;                                    // from this point on, throw a StaleTransactionException if accessed
         this.cleanupTransaction(tx);
+        if (error == null)
+            this.metrics.recordRollback();
+        else if (!(error instanceof RetryTransactionException))   // conflicts are recorded when detected
+            this.metrics.recordFailure();
     }
 
 // SnapshotKVTransaction Methods
@@ -332,7 +476,8 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
 // Internal methods
 
-    private synchronized void doCommit(SnapshotKVTransaction tx, boolean readOnly) {
+    // Returns the batch containing the transaction's writes, if they are still waiting to be applied (group commit only)
+    private synchronized WriteBatch doCommit(SnapshotKVTransaction tx, boolean readOnly) {
 
         // Sanity checks
         assert Thread.holdsLock(tx);
@@ -354,8 +499,13 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
         // Grab transaction reads & writes, set to immutable
         final Writes txWrites;
+        final Reads reads;
         synchronized (tx.view) {
             txWrites = tx.getMutableView().getWrites();
+            reads = tx.view.getReads();
+            this.metrics.recordReadSetSize(reads != null ? reads.size() : 0);
+            this.metrics.recordWriteSetSize(
+              txWrites.getRemoves().size() + txWrites.getPuts().size() + txWrites.getAdjusts().size());
             tx.view.disableReadTracking();
             tx.view.setReadOnly();
         }
@@ -364,22 +514,52 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
         if (readOnly || txWrites.isEmpty()) {
             if (this.log.isTraceEnabled())
                 this.log.trace("no mutations in " + tx + ", staying at version " + this.currentVersion);
-            return;
+            return null;
+        }
+
+        // With group commit, the transaction has not seen mutations that are committed but not yet applied
+        if (this.groupCommit && reads != null) {
+            final Conflict conflict = this.findUnappliedConflict(reads);
+            if (conflict != null) {
+                this.metrics.recordRetry();
+                this.metrics.recordConflict(conflict);
+                throw this.logException(new TransactionConflictException(tx, conflict,
+                  "transaction conflicts with committed mutations that have not yet been applied"));
+            }
         }
 
         // Apply the transaction's mutations
         if (this.log.isTraceEnabled()) {
             this.log.trace("applying " + tx + " mutations and advancing version from "
-              + this.currentVersion + " -> " + (this.currentVersion + 1));
+              + this.commitVersion + " -> " + (this.commitVersion + 1));
+        }
+        final Writes logWrites = this.changeLog != null ? this.changeLog.append(txWrites) : null;
+        final Writes writes = logWrites != null ? logWrites : txWrites;
+        final long logSequence = logWrites != null ? this.changeLog.getAllocatedSequence() : 0;
+        tx.setCommitVersion(++this.commitVersion);
+        if (this.groupCommit) {
+
+            // Add mutations to the pending batch; they become visible once the batch is applied
+            final WriteBatch batch = this.pendingBatch;
+            writes.applyTo(new MutableView(this.kvstore, null, batch.writes));
+            batch.version = this.commitVersion;
+            if (logWrites != null)
+                batch.logSequence = logSequence;            // the log entry is not committed until the batch is applied
+            this.metrics.recordBytesWritten(txWrites.serializedLength());
+            return batch;
         }
-        this.kvstore.mutate(txWrites, true);
+        this.kvstore.mutate(writes, true);
+        this.metrics.recordBytesWritten(txWrites.serializedLength());
+        if (logWrites != null)
+            this.changeLog.appended(logSequence);
 
         // Discard the obsolete snapshot and advance the database version
         final SnapshotRefs oldSnapshot = this.snapshot;
         this.snapshot = null;
-        tx.setCommitVersion(++this.currentVersion);
+        this.currentVersion = this.commitVersion;
 
-        // Check concurrent transactions and invalidate any that have conflicts, or rebase them on the new version
+        // Check concurrent transactions and invalidate any that have conflicts, or rebase them on the new version.
+        // Note we check against txWrites, so that reading the change log (if any) never causes a conflict.
         int numTx = this.transactions.size();                                                       // only used for logging
         for (Iterator<SnapshotKVTransaction> i = this.transactions.iterator(); i.hasNext(); ) {
             final SnapshotKVTransaction victim = i.next();
@@ -398,9 +578,11 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
                     // Mark transaction for failure
                     i.remove();
-                    victim.error = new RetryTransactionException(victim, "transaction is based on version "
+                    victim.error = new TransactionConflictException(victim, conflict, "transaction is based on version "
                       + victim.baseVersion + " but the transaction committed at version "
                       + this.currentVersion + " contains conflicting writes");
+                    this.metrics.recordRetry();
+                    this.metrics.recordConflict(conflict);
                     if (this.log.isTraceEnabled())
                         this.log.trace("removed conflicting transaction " + victim + " (new total " + --numTx + ")");
 
@@ -421,7 +603,132 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
 
         // Notify watches
         if (this.keyWatchTracker != null)
-            this.keyWatchTracker.trigger(txWrites);
+            this.keyWatchTracker.trigger(writes);
+
+        // Done
+        return null;
+    }
+
+    // Find a conflict between the given reads and any committed mutations that have not yet been applied
+    private Conflict findUnappliedConflict(Reads reads) {
+        assert Thread.holdsLock(this);
+        if (this.flushingBatch != null) {
+            final Conflict conflict = reads.findConflict(this.flushingBatch.writes);
+            if (conflict != null)
+                return conflict;
+        }
+        return !this.pendingBatch.writes.isEmpty() ? reads.findConflict(this.pendingBatch.writes) : null;
+    }
+
+    // Wait for the given batch to be applied, applying it ourselves if nobody else is
+    private void awaitBatch(SnapshotKVTransaction tx, WriteBatch batch) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+
+                // Wait for our batch to be applied, or for our turn to apply the next batch
+                final WriteBatch flushBatch;
+                final AtomicKVStore flushKVStore;
+                synchronized (this) {
+                    if (batch.done) {
+                        if (batch.error != null) {
+                            throw this.logException(new KVTransactionException(tx,
+                              "failed to apply batch of committed mutations", batch.error));
+                        }
+                        return;
+                    }
+                    if (this.flushingBatch != null) {
+                        try {
+                            this.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;                     // our mutations are already visible, so we must keep waiting
+                        }
+                        continue;
+                    }
+
+                    // Start applying the pending batch, which must contain our writes
+                    assert batch == this.pendingBatch;
+                    this.getCurrentSnapshot();                      // ensure snapshot is taken before applying batch
+                    flushBatch = this.pendingBatch;
+                    this.flushingBatch = flushBatch;
+                    this.pendingBatch = new WriteBatch();
+                    flushKVStore = this.kvstore;
+                }
+
+                // Apply batch while not holding lock
+                if (this.log.isTraceEnabled())
+                    this.log.trace("applying batch of committed mutations through version " + flushBatch.version);
+                RuntimeException error = null;
+                try {
+                    flushKVStore.mutate(flushBatch.writes, true);
+                } catch (RuntimeException e) {
+                    this.log.error("failed to apply batch of committed mutations", e);
+                    error = e;
+                }
+
+                // Update state and wake up waiters
+                synchronized (this) {
+                    this.finishBatch(flushBatch, error);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void finishBatch(WriteBatch batch, RuntimeException error) {
+
+        // Sanity check
+        assert Thread.holdsLock(this);
+        assert batch == this.flushingBatch;
+
+        // Mark batch completed
+        this.flushingBatch = null;
+        batch.done = true;
+        batch.error = error;
+
+        // If the batch failed, its mutations were never visible, so nothing else needs to change
+        if (error != null) {
+            this.notifyAll();
+            return;
+        }
+
+        // Make the batch visible: check open transactions for conflicts, rebasing the others on a new snapshot
+        final SnapshotRefs oldSnapshot = this.snapshot;
+        this.snapshot = new SnapshotRefs(this.kvstore.snapshot());
+        this.currentVersion = batch.version;
+        for (Iterator<SnapshotKVTransaction> i = this.transactions.iterator(); i.hasNext(); ) {
+            final SnapshotKVTransaction victim = i.next();
+            assert victim.error == null;
+            synchronized (victim.view) {
+                final Conflict conflict = victim.view.getReads().findConflict(batch.writes);
+                if (conflict != null) {
+                    i.remove();
+                    victim.error = new TransactionConflictException(victim, conflict, "transaction is based on version "
+                      + victim.baseVersion + " but the batch applied through version "
+                      + this.currentVersion + " contains conflicting writes");
+                    this.metrics.recordRetry();
+                    this.metrics.recordConflict(conflict);
+                    victim.view.setKVStore(victim);
+                    continue;
+                }
+                victim.view.setKVStore(this.snapshot.getKVStore());
+            }
+        }
+        if (oldSnapshot != null)
+            oldSnapshot.unref();
+
+        // Record log entries as committed
+        if (batch.logSequence != 0)
+            this.changeLog.appended(batch.logSequence);
+
+        // Notify watches
+        if (this.keyWatchTracker != null)
+            this.keyWatchTracker.trigger(batch.writes);
+
+        // Wake up waiters
+        this.notifyAll();
     }
 
     private void cleanupTransaction(SnapshotKVTransaction tx) {
@@ -440,11 +747,23 @@ public abstract class SnapshotKVDatabase implements KVDatabase {
     private SnapshotRefs getCurrentSnapshot() {
         assert Thread.holdsLock(this);
         if (this.snapshot == null) {
+            assert this.flushingBatch == null;                      // otherwise the snapshot could include the batch
             this.snapshot = new SnapshotRefs(this.kvstore.snapshot());
             if (this.log.isTraceEnabled())
                 this.log.trace("created new snapshot for version " + this.currentVersion);
         }
         return this.snapshot;
     }
+
+// WriteBatch
+
+    private static final class WriteBatch {
+
+        final Writes writes = new Writes();
+        long version;
+        long logSequence;                                   // sequence number of the last change log entry, or zero
+        boolean done;
+        RuntimeException error;
+    }
 }
 
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Set;
+import java.util.Spliterator;
 
 /**
  * {@link java.util.NavigableMap} support superclass for maps backed by keys and values encoded as {@code byte[]}
@@ -492,6 +493,21 @@ public abstract class AbstractKVNavigableMap<K, V> extends AbstractNavigableMap<
             };
         }
 
+        @Override
+        public Spliterator<Map.Entry<K, V>> spliterator() {
+            return new AbstractKVSpliterator<Map.Entry<K, V>>(AbstractKVNavigableMap.this.kv,
+              AbstractKVNavigableMap.this.prefixMode, AbstractKVNavigableMap.this.reversed, AbstractKVNavigableMap.this.keyRange,
+              AbstractKVNavigableMap.this.keyFilter, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL, null) {
+
+                @Override
+                protected Map.Entry<K, V> decodePair(KVPair pair, ByteReader keyReader) {
+                    final K key = AbstractKVNavigableMap.this.decodeKey(keyReader);
+                    final V value = AbstractKVNavigableMap.this.decodeValue(pair);
+                    return new MapEntry(key, value);
+                }
+            };
+        }
+
         @Override
         @SuppressWarnings("unchecked")
         public boolean contains(Object obj) {
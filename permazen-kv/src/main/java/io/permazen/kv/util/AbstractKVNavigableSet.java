@@ -21,6 +21,7 @@ import io.permazen.util.CloseableIterator;
 
 import java.util.NavigableSet;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 /**
  * {@link java.util.NavigableSet} support superclass for sets backed by elements encoded as {@code byte[]}
@@ -50,6 +51,8 @@ import java.util.NoSuchElementException;
  * <ul>
  *  <li>{@link #iterator} returns an {@link java.util.Iterator} whose {@link java.util.Iterator#remove Iterator.remove()}
  *      method delegates to this instance's {@link #remove remove()} method.
+ *  <li>{@link #spliterator} returns an {@link AbstractKVSpliterator}, which splits by bisecting the key range,
+ *      so parallel streams are processed in parallel.
  * </ul>
  *
  * <p><b>Prefix Mode</b></p>
@@ -333,6 +336,25 @@ public abstract class AbstractKVNavigableSet<E> extends AbstractNavigableSet<E>
         };
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The implementation in {@link AbstractKVNavigableSet} returns an {@link AbstractKVSpliterator}, which supports splitting
+     * on element boundaries, so that parallel streams over this set are processed in parallel.
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new AbstractKVSpliterator<E>(this.kv, this.prefixMode, this.reversed, this.keyRange, this.keyFilter,
+          Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT, this.comparator()) {
+
+            @Override
+            protected E decodePair(KVPair pair, ByteReader keyReader) {
+                return AbstractKVNavigableSet.this.decode(keyReader);
+            }
+        };
+    }
+
     /**
      * Create a view of this instance with additional filtering applied to the underlying {@code byte[]} encoded keys.
      * Any set element for which the corresponding key does not pass {@code keyFilter} will be effectively hidden from view.
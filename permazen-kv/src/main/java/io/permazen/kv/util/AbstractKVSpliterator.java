@@ -0,0 +1,314 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyFilter;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.SplittableKVStore;
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteUtil;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} implementation for iterating elements encoded as {@code byte[]} keys in a {@link KVStore},
+ * which supports splitting by bisecting the underlying {@link KeyRange}.
+ *
+ * <p>
+ * This allows parallel streams over {@link AbstractKVNavigableSet}s and {@link AbstractKVNavigableMap}s to actually
+ * run in parallel. Each split iterates its own sub-range of keys with its own {@link KVStore} iterator, and applies
+ * the same {@link KeyFilter}, if any.
+ *
+ * <p><b>Subclass Methods</b></p>
+ *
+ * <p>
+ * Subclasses must implement {@linkplain #decodePair decodePair()} to convert key/value pairs into iteration elements.
+ *
+ * <p><b>Split Points</b></p>
+ *
+ * <p>
+ * Splitting is only possible before iteration starts. If the {@link KVStore} implements {@link SplittableKVStore},
+ * its {@linkplain SplittableKVStore#getSplitKeys split key hint} is used; otherwise, the split point is chosen as the
+ * bytewise midpoint between the first and last keys in the range. Either way, the split point is then adjusted to be the
+ * first key of some element; in "prefix mode" (see {@link AbstractKVNavigableSet}) the element's prefix is used, so that
+ * all of the keys associated with any one element (e.g., all of the keys of an object with some {@code ObjId} prefix)
+ * are always in the same split. A range containing only one element is never split.
+ *
+ * <p>
+ * Because the number of elements is unknown, instances never report {@link #SIZED}; the {@linkplain #estimateSize estimated
+ * size} starts out at {@link Long#MAX_VALUE} and is halved with each split.
+ *
+ * <p>
+ * Instances are read-only; they do not support removal.
+ *
+ * @param <E> element type
+ * @see AbstractKVIterator
+ */
+public abstract class AbstractKVSpliterator<E> implements Spliterator<E> {
+
+    /**
+     * The underlying {@link KVStore}.
+     */
+    protected final KVStore kv;
+
+    /**
+     * Whether we are in "prefix" mode.
+     */
+    protected final boolean prefixMode;
+
+    /**
+     * Whether the ordering of this instance is reversed.
+     */
+    protected final boolean reversed;
+
+    /**
+     * Key filter, or null if all keys in the key range should be visible.
+     */
+    protected final KeyFilter keyFilter;
+
+    private final int characteristics;
+    private final Comparator<? super E> comparator;
+
+    private byte[] minKey;                          // inclusive lower bound, never null
+    private byte[] maxKey;                          // exclusive upper bound, or null for none
+    private long estimate;
+    private AbstractKVIterator<E> iterator;
+
+    /**
+     * Constructor.
+     *
+     * @param kv underlying {@link KVStore}
+     * @param prefixMode whether to allow keys to have trailing garbage
+     * @param reversed whether to iterate in the reverse direction
+     * @param keyRange range of keys to iterate, or null for all keys
+     * @param keyFilter filter for visible keys, or null for none
+     * @param characteristics spliterator characteristics; must not include {@link #SIZED} or {@link #SUBSIZED}
+     * @param comparator element sort order, or null for natural ordering; ignored unless {@code characteristics}
+     *  includes {@link #SORTED}
+     * @throws IllegalArgumentException if {@code kv} is null
+     * @throws IllegalArgumentException if {@code characteristics} includes {@link #SIZED} or {@link #SUBSIZED}
+     */
+    protected AbstractKVSpliterator(KVStore kv, boolean prefixMode, boolean reversed,
+      KeyRange keyRange, KeyFilter keyFilter, int characteristics, Comparator<? super E> comparator) {
+        this(kv, prefixMode, reversed, keyRange, keyFilter, characteristics, comparator, Long.MAX_VALUE);
+    }
+
+    private AbstractKVSpliterator(KVStore kv, boolean prefixMode, boolean reversed,
+      KeyRange keyRange, KeyFilter keyFilter, int characteristics, Comparator<? super E> comparator, long estimate) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument((characteristics & (SIZED | SUBSIZED)) == 0, "SIZED/SUBSIZED not supported");
+        this.kv = kv;
+        this.prefixMode = prefixMode;
+        this.reversed = reversed;
+        this.keyFilter = keyFilter;
+        this.characteristics = characteristics;
+        this.comparator = comparator;
+        this.minKey = keyRange != null ? keyRange.getMin() : ByteUtil.EMPTY;
+        this.maxKey = keyRange != null ? keyRange.getMax() : null;
+        this.estimate = estimate;
+    }
+
+    /**
+     * Convert the next iterated key/value pair into an iteration element.
+     *
+     * <p>
+     * In prefix mode, this method is also used to determine the length of an element's key prefix when
+     * choosing split points, so it must not have any side effects.
+     *
+     * @param pair key/value pair
+     * @param keyReader key input
+     * @return decoded iteration element
+     * @see AbstractKVIterator#decodePair AbstractKVIterator.decodePair()
+     */
+    protected abstract E decodePair(KVPair pair, ByteReader keyReader);
+
+// Spliterator
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        Preconditions.checkArgument(action != null, "null action");
+        final AbstractKVIterator<E> i = this.getIterator();
+        if (!i.hasNext()) {
+            i.close();
+            return false;
+        }
+        action.accept(i.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        Preconditions.checkArgument(action != null, "null action");
+        try (AbstractKVIterator<E> i = this.getIterator()) {
+            while (i.hasNext())
+                action.accept(i.next());
+        }
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+
+        // Splitting is only possible prior to iteration
+        if (this.iterator != null)
+            return null;
+
+        // Find split key
+        final byte[] splitKey = this.findSplitKey();
+        if (splitKey == null)
+            return null;
+
+        // Split range; the returned spliterator covers the first half in iteration order
+        final KeyRange prefix;
+        if (this.reversed) {
+            prefix = new KeyRange(splitKey, this.maxKey);
+            this.maxKey = splitKey;
+        } else {
+            prefix = new KeyRange(this.minKey, splitKey);
+            this.minKey = splitKey;
+        }
+        this.estimate >>>= 1;
+        return new Split<>(this, prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return this.characteristics;
+    }
+
+    @Override
+    public Comparator<? super E> getComparator() {
+        if ((this.characteristics & SORTED) == 0)
+            throw new IllegalStateException("not SORTED");
+        return this.comparator;
+    }
+
+// Internal methods
+
+    private AbstractKVIterator<E> getIterator() {
+        if (this.iterator == null) {
+            final KeyRange keyRange = new KeyRange(this.minKey, this.maxKey);
+            this.iterator = new AbstractKVIterator<E>(this.kv, this.prefixMode, this.reversed, keyRange, this.keyFilter) {
+                @Override
+                protected E decodePair(KVPair pair, ByteReader keyReader) {
+                    return AbstractKVSpliterator.this.decodePair(pair, keyReader);
+                }
+            };
+        }
+        return this.iterator;
+    }
+
+    /**
+     * Choose a key that splits this instance's remaining range into two non-empty pieces on an element boundary.
+     *
+     * @return split key, or null if no split is possible
+     */
+    private byte[] findSplitKey() {
+
+        // Narrow the range using the key filter, if any
+        byte[] min = this.minKey;
+        byte[] max = this.maxKey;
+        if (this.keyFilter != null) {
+            if ((min = this.keyFilter.seekHigher(min)) == null)
+                return null;
+            final byte[] lower = this.keyFilter.seekLower(max != null ? max : ByteUtil.EMPTY);
+            if (lower == null)
+                return null;
+            max = lower.length > 0 ? lower : null;
+            if (max != null && ByteUtil.compare(min, max) >= 0)
+                return null;
+        }
+
+        // Find the first and last elements
+        final KVPair first = this.kv.getAtLeast(min, max);
+        if (first == null)
+            return null;
+        final KVPair last = this.kv.getAtMost(max, min);
+        if (last == null)
+            return null;
+        final byte[] firstPrefix = this.elementPrefix(first);
+        if (Arrays.equals(firstPrefix, this.elementPrefix(last)))
+            return null;
+
+        // Pick a candidate split key, preferring a hint from the k/v store
+        byte[] candidate = null;
+        if (this.kv instanceof SplittableKVStore) {
+            final List<byte[]> hints = ((SplittableKVStore)this.kv).getSplitKeys(new KeyRange(min, max), 1);
+            if (hints != null && !hints.isEmpty())
+                candidate = hints.get(0);
+        }
+        if (candidate == null)
+            candidate = SplitKeyUtil.interpolate(firstPrefix, last.getKey(), 0.5);
+
+        // Align the candidate with the first key of the element at or after it
+        final KVPair pair = this.kv.getAtLeast(candidate, max);
+        byte[] splitKey = pair != null ? this.elementPrefix(pair) : null;
+
+        // If that put the split within (or before) the first element, split just after the first element instead
+        if (splitKey == null || ByteUtil.compare(splitKey, firstPrefix) <= 0) {
+            final byte[] nextKey;
+            if (this.prefixMode) {
+                try {
+                    nextKey = ByteUtil.getKeyAfterPrefix(firstPrefix);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            } else
+                nextKey = ByteUtil.getNextKey(firstPrefix);
+            final KVPair next = this.kv.getAtLeast(nextKey, max);
+            if (next == null)
+                return null;
+            splitKey = this.elementPrefix(next);
+        }
+
+        // Sanity check the split key is strictly inside our range
+        if (ByteUtil.compare(splitKey, this.minKey) <= 0 || (this.maxKey != null && ByteUtil.compare(splitKey, this.maxKey) >= 0))
+            return null;
+        return splitKey;
+    }
+
+    /**
+     * Get the first key of the element corresponding to the given key/value pair.
+     */
+    private byte[] elementPrefix(KVPair pair) {
+        final byte[] key = pair.getKey();
+        if (!this.prefixMode)
+            return key;
+        final ByteReader reader = new ByteReader(key);
+        this.decodePair(pair, reader);
+        return reader.getBytes(0, reader.getOffset());
+    }
+
+// Split
+
+    private static final class Split<E> extends AbstractKVSpliterator<E> {
+
+        private final AbstractKVSpliterator<E> parent;
+
+        Split(AbstractKVSpliterator<E> parent, KeyRange keyRange) {
+            super(parent.kv, parent.prefixMode, parent.reversed, keyRange,
+              parent.keyFilter, parent.characteristics, parent.comparator, parent.estimate);
+            this.parent = parent;
+        }
+
+        @Override
+        protected E decodePair(KVPair pair, ByteReader keyReader) {
+            return this.parent.decodePair(pair, keyReader);
+        }
+    }
+}
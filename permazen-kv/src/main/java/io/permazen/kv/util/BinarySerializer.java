@@ -0,0 +1,495 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.RetryTransactionException;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.util.ByteReader;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ByteWriter;
+import io.permazen.util.CloseableIterator;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility methods for serializing and deserializing the contents of a {@link KVStore} to/from a compact binary format.
+ *
+ * <p>
+ * This is a faster and more compact alternative to {@link XMLSerializer}. The output consists of a header followed by
+ * a sequence of independent chunks, each containing up to {@linkplain #getChunkSize a configurable number} of key/value pairs
+ * from some contiguous key range. Within a chunk, keys are sorted and prefix-compressed; however, chunks may appear in any order.
+ * This allows the key range to be divided into shards that are exported in parallel, and allows chunks to be imported in
+ * parallel as well.
+ *
+ * <p>
+ * The format is as follows; all integers are encoded via {@link UnsignedIntEncoder}:
+ * <ul>
+ *  <li>Header: the four bytes {@code "PZKV"} followed by the format version byte (currently {@code 0x01})</li>
+ *  <li>Zero or more chunks, each consisting of the chunk length in bytes followed by:
+ *  <ul>
+ *      <li>The number of key/value pairs in the chunk</li>
+ *      <li>For each key/value pair in the chunk: the length of the prefix the key shares with the previous key
+ *          in the chunk (zero for the first key), the length of the remainder of the key, the remainder of the key,
+ *          the length of the value, and the value</li>
+ *  </ul>
+ *  </li>
+ *  <li>Trailer: a zero byte (i.e., a zero chunk length)</li>
+ * </ul>
+ *
+ * <p>
+ * The combined length of a key and its value may not exceed 64MB; this bounds the length of a chunk, so that
+ * invalid input can't cause an arbitrarily large allocation.
+ *
+ * <p>
+ * When an instance is created with a {@link KVDatabase} instead of a {@link KVStore}, export occurs within a single
+ * read-only transaction, while on import each chunk is written via {@link KVStore#apply KVStore.apply()} in its own transaction.
+ * This keeps transactions bounded in size no matter how much data is imported, at the cost of atomicity.
+ * Transactions that fail with a {@link RetryTransactionException} are retried.
+ */
+public class BinarySerializer {
+
+    /**
+     * Default maximum number of key/value pairs in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private static final byte[] MAGIC = new byte[] { (byte)'P', (byte)'Z', (byte)'K', (byte)'V' };
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_CHUNK_BYTES = 1024 * 1024;         // flush a chunk early if it gets this big
+    private static final int MAX_PAIR_BYTES = 64 * 1024 * 1024;     // maximum key length plus value length
+    private static final int MAX_CHUNK_LENGTH = MAX_CHUNK_BYTES + MAX_PAIR_BYTES + 4 * UnsignedIntEncoder.MAX_ENCODED_LENGTH;
+    private static final int SHARDS_PER_THREAD = 4;
+    private static final int MAX_PENDING_CHUNKS_PER_THREAD = 2;
+    private static final int MAX_RETRIES = 10;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final KVStore kv;
+    private final KVDatabase kvdb;
+
+    private int parallelism = 1;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Constructor for operating on a {@link KVStore}.
+     *
+     * @param kv key/value store on which to operate
+     * @throws IllegalArgumentException if {@code kv} is null
+     */
+    public BinarySerializer(KVStore kv) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        this.kv = kv;
+        this.kvdb = null;
+    }
+
+    /**
+     * Constructor for operating on a {@link KVDatabase} using bounded transactions.
+     *
+     * @param kvdb key/value database on which to operate
+     * @throws IllegalArgumentException if {@code kvdb} is null
+     */
+    public BinarySerializer(KVDatabase kvdb) {
+        Preconditions.checkArgument(kvdb != null, "null kvdb");
+        this.kv = null;
+        this.kvdb = kvdb;
+    }
+
+    /**
+     * Get the number of threads used for export and import.
+     *
+     * <p>
+     * Default is 1, i.e., all work is performed in the calling thread.
+     *
+     * @return number of threads
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Set the number of threads used for export and import.
+     *
+     * <p>
+     * When greater than one, on export the key range is divided into shards, which are exported in parallel;
+     * on import, chunks are decoded and applied in parallel. The underlying {@link KVStore} or {@link KVDatabase}
+     * must support concurrent access.
+     *
+     * @param parallelism number of threads
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public void setParallelism(int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism <= 0");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Get the maximum number of key/value pairs in each exported chunk.
+     *
+     * <p>
+     * Default is {@link #DEFAULT_CHUNK_SIZE}.
+     *
+     * @return maximum chunk size
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Set the maximum number of key/value pairs in each exported chunk.
+     *
+     * <p>
+     * Because each chunk is imported in a single operation (and, when importing into a {@link KVDatabase}, in a
+     * single transaction), this also determines the size of import batches.
+     *
+     * @param chunkSize maximum chunk size
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive
+     */
+    public void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize <= 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Export all key/value pairs to the given output.
+     *
+     * <p>
+     * This is a convenience method, equivalent to:
+     * <blockquote><pre>
+     * write(output, null, null)
+     * </pre></blockquote>
+     *
+     * @param output binary output; will not be closed by this method
+     * @return the number of key/value pairs written
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code output} is null
+     */
+    public long write(OutputStream output) throws IOException {
+        return this.write(output, null, null);
+    }
+
+    /**
+     * Export a range of key/value pairs to the given output.
+     *
+     * <p>
+     * If this instance was created with a {@link KVDatabase}, the export occurs in a single read-only transaction.
+     *
+     * @param output binary output; will not be closed by this method
+     * @param minKey minimum key (inclusive), or null for none
+     * @param maxKey maximum key (exclusive), or null for none
+     * @return the number of key/value pairs written
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if {@code output} is null
+     * @throws IllegalArgumentException if {@code minKey > maxKey}
+     */
+    public long write(OutputStream output, byte[] minKey, byte[] maxKey) throws IOException {
+        Preconditions.checkArgument(output != null, "null output");
+        final KeyRange range = new KeyRange(minKey != null ? minKey : ByteUtil.EMPTY, maxKey);
+        if (this.kv != null)
+            return this.write(this.kv, output, range);
+        final KVTransaction kvt = this.kvdb.createTransaction();
+        boolean success = false;
+        try {
+            kvt.setReadOnly(true);
+            final long count = this.write(kvt, output, range);
+            kvt.commit();
+            success = true;
+            return count;
+        } finally {
+            if (!success)
+                kvt.rollback();
+        }
+    }
+
+    /**
+     * Import key/value pairs from the given input.
+     *
+     * <p>
+     * If this instance was created with a {@link KVDatabase}, each chunk is imported in a separate transaction.
+     *
+     * @param input binary input; will not be closed by this method
+     * @return the number of key/value pairs read
+     * @throws IOException if an I/O error occurs
+     * @throws IOException if the input is invalid
+     * @throws IllegalArgumentException if {@code input} is null
+     */
+    public long read(InputStream input) throws IOException {
+        Preconditions.checkArgument(input != null, "null input");
+
+        // Read and verify header
+        final byte[] header = new byte[MAGIC.length + 1];
+        ByteStreams.readFully(input, header);
+        if (!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC))
+            throw new IOException("invalid input: unrecognized header");
+        if ((header[MAGIC.length] & 0xff) != FORMAT_VERSION)
+            throw new IOException("invalid input: unsupported format version " + (header[MAGIC.length] & 0xff));
+
+        // Import chunks in this thread?
+        long count = 0;
+        if (this.parallelism <= 1) {
+            byte[] chunk;
+            while ((chunk = this.readChunk(input)) != null)
+                count += this.apply(chunk);
+            return count;
+        }
+
+        // Import chunks in a thread pool, limiting how many chunks are buffered in memory
+        final ExecutorService executor = this.newExecutor();
+        try {
+            final ArrayDeque<Future<Integer>> pending = new ArrayDeque<>();
+            byte[] chunk;
+            while ((chunk = this.readChunk(input)) != null) {
+                if (pending.size() >= this.parallelism * MAX_PENDING_CHUNKS_PER_THREAD)
+                    count += BinarySerializer.await(pending.removeFirst());
+                final byte[] chunk2 = chunk;
+                pending.add(executor.submit(() -> this.apply(chunk2)));
+            }
+            while (!pending.isEmpty())
+                count += BinarySerializer.await(pending.removeFirst());
+        } finally {
+            executor.shutdownNow();
+        }
+        return count;
+    }
+
+// Internal methods
+
+    private long write(KVStore source, OutputStream output, KeyRange range) throws IOException {
+
+        // Write header
+        output.write(MAGIC);
+        output.write(FORMAT_VERSION);
+
+        // Divide key range into shards
+        final List<KeyRange> shards = this.parallelism > 1 ?
+          SplitKeyUtil.split(source, range, this.parallelism * SHARDS_PER_THREAD) : Collections.singletonList(range);
+
+        // Export shards, in parallel if possible
+        long count = 0;
+        if (this.parallelism <= 1 || shards.size() == 1) {
+            for (KeyRange shard : shards)
+                count += this.writeShard(source, output, shard);
+        } else {
+            final ExecutorService executor = this.newExecutor();
+            try {
+                final ArrayList<Future<Long>> futures = new ArrayList<>(shards.size());
+                for (KeyRange shard : shards)
+                    futures.add(executor.submit(() -> this.writeShard(source, output, shard)));
+                for (Future<Long> future : futures)
+                    count += BinarySerializer.await(future);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        // Write trailer
+        UnsignedIntEncoder.write(output, 0);
+        output.flush();
+        return count;
+    }
+
+    private long writeShard(KVStore source, OutputStream output, KeyRange range) throws IOException {
+        final ByteWriter writer = new ByteWriter();
+        long count = 0;
+        int chunkCount = 0;
+        byte[] prevKey = ByteUtil.EMPTY;
+        try (CloseableIterator<KVPair> i = source.getRange(range)) {
+            while (i.hasNext()) {
+                final KVPair pair = i.next();
+                final byte[] key = pair.getKey();
+                final byte[] value = pair.getValue();
+                if ((long)key.length + value.length > MAX_PAIR_BYTES) {
+                    throw new IOException("key/value pair with key " + ByteUtil.toString(key) + " is too large ("
+                      + ((long)key.length + value.length) + " > " + MAX_PAIR_BYTES + " bytes)");
+                }
+
+                // Encode key/value pair
+                final int prefixLength = BinarySerializer.getCommonPrefixLength(prevKey, key);
+                UnsignedIntEncoder.write(writer, prefixLength);
+                UnsignedIntEncoder.write(writer, key.length - prefixLength);
+                writer.write(key, prefixLength, key.length - prefixLength);
+                UnsignedIntEncoder.write(writer, value.length);
+                writer.write(value);
+                prevKey = key;
+                count++;
+
+                // Flush chunk if full
+                if (++chunkCount >= this.chunkSize || writer.getLength() >= MAX_CHUNK_BYTES) {
+                    this.writeChunk(output, chunkCount, writer);
+                    writer.reset(0);
+                    chunkCount = 0;
+                    prevKey = ByteUtil.EMPTY;
+                }
+            }
+        }
+        if (chunkCount > 0)
+            this.writeChunk(output, chunkCount, writer);
+        return count;
+    }
+
+    private void writeChunk(OutputStream output, int count, ByteWriter writer) throws IOException {
+        final byte[] data = writer.getBytes();
+        synchronized (output) {
+            UnsignedIntEncoder.write(output, UnsignedIntEncoder.encodeLength(count) + data.length);
+            UnsignedIntEncoder.write(output, count);
+            output.write(data);
+        }
+    }
+
+    private byte[] readChunk(InputStream input) throws IOException {
+        final int length;
+        try {
+            length = UnsignedIntEncoder.read(input);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid input: invalid chunk length", e);
+        }
+        if (length == 0)
+            return null;
+        if (length > MAX_CHUNK_LENGTH)
+            throw new IOException("invalid input: chunk length " + length + " exceeds maximum " + MAX_CHUNK_LENGTH);
+        final byte[] chunk = new byte[length];
+        ByteStreams.readFully(input, chunk);
+        return chunk;
+    }
+
+    private int apply(byte[] data) throws IOException {
+
+        // Decode chunk
+        final Chunk chunk;
+        try {
+            chunk = new Chunk(data);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("invalid input: invalid chunk content", e);
+        }
+
+        // Apply to key/value store
+        if (this.kv != null) {
+            this.kv.apply(chunk);
+            return chunk.size();
+        }
+
+        // Apply to key/value database in its own transaction
+        for (int attempt = 1; true; attempt++) {
+            final KVTransaction kvt = this.kvdb.createTransaction();
+            boolean success = false;
+            try {
+                kvt.apply(chunk);
+                kvt.commit();
+                success = true;
+                return chunk.size();
+            } catch (RetryTransactionException e) {
+                if (attempt >= MAX_RETRIES)
+                    throw e;
+            } finally {
+                if (!success)
+                    kvt.rollback();
+            }
+        }
+    }
+
+    private ExecutorService newExecutor() {
+        return Executors.newFixedThreadPool(this.parallelism, r -> {
+            final Thread thread = new Thread(r);
+            thread.setName(this.getClass().getSimpleName() + "-" + THREAD_COUNTER.incrementAndGet());
+            return thread;
+        });
+    }
+
+    private static <T extends Number> long await(Future<T> future) throws IOException {
+        try {
+            return future.get().longValue();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause() != null ? e.getCause() : e;
+            Throwables.throwIfInstanceOf(cause, IOException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        }
+    }
+
+    private static int getCommonPrefixLength(byte[] key1, byte[] key2) {
+        final int limit = Math.min(key1.length, key2.length);
+        int length = 0;
+        while (length < limit && key1[length] == key2[length])
+            length++;
+        return length;
+    }
+
+// Chunk
+
+    /**
+     * A decoded chunk, in the form of {@link Mutations} containing only puts.
+     */
+    private static class Chunk implements Mutations {
+
+        private final ArrayList<Map.Entry<byte[], byte[]>> puts;
+
+        Chunk(byte[] data) {
+            final ByteReader reader = new ByteReader(data);
+            final int count = UnsignedIntEncoder.read(reader);
+            Preconditions.checkArgument(count > 0, "empty chunk");
+            this.puts = new ArrayList<>(Math.min(count, reader.remain()));
+            byte[] prevKey = ByteUtil.EMPTY;
+            for (int i = 0; i < count; i++) {
+                final int prefixLength = UnsignedIntEncoder.read(reader);
+                Preconditions.checkArgument(prefixLength <= prevKey.length, "invalid key prefix length");
+                final byte[] suffix = reader.readBytes(UnsignedIntEncoder.read(reader));
+                final byte[] key = Arrays.copyOf(prevKey, prefixLength + suffix.length);
+                System.arraycopy(suffix, 0, key, prefixLength, suffix.length);
+                Preconditions.checkArgument(i == 0 || ByteUtil.compare(key, prevKey) > 0, "keys are out of order");
+                final byte[] value = reader.readBytes(UnsignedIntEncoder.read(reader));
+                this.puts.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+                prevKey = key;
+            }
+            Preconditions.checkArgument(reader.remain() == 0, "chunk contains trailing garbage");
+        }
+
+        public int size() {
+            return this.puts.size();
+        }
+
+        @Override
+        public List<KeyRange> getRemoveRanges() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Map.Entry<byte[], byte[]>> getPutPairs() {
+            return this.puts;
+        }
+
+        @Override
+        public List<Map.Entry<byte[], Long>> getAdjustPairs() {
+            return Collections.emptyList();
+        }
+    }
+}
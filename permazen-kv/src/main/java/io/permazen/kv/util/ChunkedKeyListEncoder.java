@@ -0,0 +1,293 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.mvcc.Writes;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Serializes a sequence of key/value pairs as a stream of independent, optionally compressed chunks.
+ *
+ * <p>
+ * Unlike {@link KeyListEncoder#writePairs KeyListEncoder.writePairs()}, the encoded length need not be known
+ * ahead of time, and both encoder and decoder only ever buffer a single chunk, so arbitrarily large
+ * key/value stores may be transferred with a bounded memory footprint.
+ *
+ * <p>
+ * The encoding consists of zero or more chunks followed by a terminating {@link #CHUNK_END} byte. Each chunk
+ * consists of a type byte ({@link #CHUNK_PLAIN} or {@link #CHUNK_DEFLATE}), the length of the uncompressed chunk
+ * content, and (for compressed chunks only) the length of the compressed content, all lengths being encoded via
+ * {@link UnsignedIntEncoder}, followed by the (possibly compressed) content. The uncompressed content of a chunk
+ * is a sequence of key/value pairs encoded via {@link KeyListEncoder#write KeyListEncoder.write()}; key prefix
+ * compression is reset at the start of each chunk. Compressed chunks use raw "deflate" format.
+ *
+ * <p>
+ * Because the encoded chunk lengths determine how much memory the decoder allocates, the decoder rejects chunks
+ * longer than a configurable maximum (by default {@link #DEFAULT_MAX_CHUNK_LENGTH}).
+ */
+public final class ChunkedKeyListEncoder {
+
+    /**
+     * Default target chunk size ({@value #DEFAULT_CHUNK_SIZE} bytes).
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Default maximum uncompressed chunk length accepted when decoding ({@value #DEFAULT_MAX_CHUNK_LENGTH} bytes).
+     */
+    public static final int DEFAULT_MAX_CHUNK_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Chunk type byte indicating end of stream.
+     */
+    public static final int CHUNK_END = 0x00;
+
+    /**
+     * Chunk type byte indicating an uncompressed chunk.
+     */
+    public static final int CHUNK_PLAIN = 0x01;
+
+    /**
+     * Chunk type byte indicating a chunk compressed in raw "deflate" format.
+     */
+    public static final int CHUNK_DEFLATE = 0x02;
+
+    private ChunkedKeyListEncoder() {
+    }
+
+    /**
+     * Encode an iteration of key/value pairs.
+     *
+     * <p>
+     * The {@code output} is flushed after each chunk is written.
+     *
+     * @param kvpairs key/value pair iteration
+     * @param output encoded output
+     * @param chunkSize target uncompressed chunk size in bytes; chunks may be larger if a single key/value pair is larger
+     * @param compress true to compress chunks (when doing so makes them smaller)
+     * @return number of key/value pairs written
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if either {@code kvpairs} or {@code output} is null
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive
+     */
+    public static long writePairs(Iterator<KVPair> kvpairs, OutputStream output, int chunkSize, boolean compress)
+      throws IOException {
+
+        // Sanity check
+        Preconditions.checkArgument(kvpairs != null, "null kvpairs");
+        Preconditions.checkArgument(output != null, "null output");
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize <= 0");
+
+        // Write chunks
+        final ByteArrayOutputStream chunk = new ByteArrayOutputStream(chunkSize + (chunkSize >> 3));
+        final Deflater deflater = compress ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+        long count = 0;
+        try {
+            byte[] prev = null;
+            while (kvpairs.hasNext()) {
+                final KVPair kv = kvpairs.next();
+                final byte[] key = kv.getKey();
+                KeyListEncoder.write(chunk, key, prev);
+                KeyListEncoder.write(chunk, kv.getValue(), null);
+                prev = key;
+                count++;
+                if (chunk.size() >= chunkSize) {
+                    ChunkedKeyListEncoder.writeChunk(output, chunk, deflater);
+                    prev = null;
+                }
+            }
+            if (chunk.size() > 0)
+                ChunkedKeyListEncoder.writeChunk(output, chunk, deflater);
+        } finally {
+            if (deflater != null)
+                deflater.end();
+        }
+
+        // Write terminator
+        output.write(CHUNK_END);
+        output.flush();
+        return count;
+    }
+
+    /**
+     * Decode key/value pairs previously encoded by {@link #writePairs writePairs()} and apply them to the given
+     * {@link KVStore}.
+     *
+     * <p>
+     * The key/value pairs in each chunk are applied to {@code kvstore} as a single batch via {@link KVStore#apply}.
+     *
+     * <p>
+     * Equivalent to: {@link #readPairs(InputStream, KVStore, int) readPairs}{@code (input, kvstore, }{@link
+     * #DEFAULT_MAX_CHUNK_LENGTH}{@code )}.
+     *
+     * @param input encoded input
+     * @param kvstore destination for decoded key/value pairs
+     * @return number of key/value pairs read
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if an unexpected EOF is encountered
+     * @throws IllegalArgumentException if {@code input} contains invalid data
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static long readPairs(InputStream input, KVStore kvstore) throws IOException {
+        return ChunkedKeyListEncoder.readPairs(input, kvstore, DEFAULT_MAX_CHUNK_LENGTH);
+    }
+
+    /**
+     * Decode key/value pairs previously encoded by {@link #writePairs writePairs()} and apply them to the given
+     * {@link KVStore}, rejecting overly long chunks.
+     *
+     * <p>
+     * The key/value pairs in each chunk are applied to {@code kvstore} as a single batch via {@link KVStore#apply}.
+     *
+     * @param input encoded input
+     * @param kvstore destination for decoded key/value pairs
+     * @param maxChunkLength maximum uncompressed chunk length in bytes
+     * @return number of key/value pairs read
+     * @throws IOException if an I/O error occurs
+     * @throws EOFException if an unexpected EOF is encountered
+     * @throws IllegalArgumentException if {@code input} contains invalid data or a chunk longer than {@code maxChunkLength}
+     * @throws IllegalArgumentException if either {@code input} or {@code kvstore} is null
+     * @throws IllegalArgumentException if {@code maxChunkLength} is not positive
+     */
+    public static long readPairs(InputStream input, KVStore kvstore, int maxChunkLength) throws IOException {
+
+        // Sanity check
+        Preconditions.checkArgument(input != null, "null input");
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(maxChunkLength > 0, "maxChunkLength <= 0");
+
+        // Read chunks
+        final Inflater inflater = new Inflater(true);
+        long count = 0;
+        try {
+            while (true) {
+
+                // Read chunk header and content
+                final int type = input.read();
+                if (type == -1)
+                    throw new EOFException("truncated input");
+                if (type == CHUNK_END)
+                    break;
+                final byte[] content;
+                switch (type) {
+                case CHUNK_PLAIN:
+                    content = new byte[ChunkedKeyListEncoder.readLength(input, maxChunkLength)];
+                    ChunkedKeyListEncoder.readFully(input, content, content.length);
+                    break;
+                case CHUNK_DEFLATE:
+                    final int length = ChunkedKeyListEncoder.readLength(input, maxChunkLength);
+                    final int compressedLength = ChunkedKeyListEncoder.readLength(input, length);  // compression always shrinks
+                    final byte[] compressed = new byte[compressedLength + 1];           // note: extra trailing byte required
+                    ChunkedKeyListEncoder.readFully(input, compressed, compressedLength);
+                    content = ChunkedKeyListEncoder.inflate(inflater, compressed, length);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format("invalid chunk type 0x%02x", type));
+                }
+
+                // Decode key/value pairs and apply them as a batch
+                final Writes writes = new Writes();
+                final ByteArrayInputStream chunk = new ByteArrayInputStream(content);
+                byte[] prev = null;
+                while (chunk.available() > 0) {
+                    final byte[] key = KeyListEncoder.read(chunk, prev);
+                    final byte[] value = KeyListEncoder.read(chunk, null);
+                    writes.getPuts().put(key, value);
+                    prev = key;
+                    count++;
+                }
+                kvstore.apply(writes);
+            }
+        } finally {
+            inflater.end();
+        }
+        return count;
+    }
+
+    private static void writeChunk(OutputStream output, ByteArrayOutputStream chunk, Deflater deflater) throws IOException {
+        final byte[] content = chunk.toByteArray();
+        chunk.reset();
+
+        // Try to compress, but only use the result if it's actually smaller
+        if (deflater != null) {
+            deflater.reset();
+            deflater.setInput(content);
+            deflater.finish();
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length);
+            final byte[] temp = new byte[4096];
+            while (!deflater.finished() && compressed.size() < content.length) {
+                final int r = deflater.deflate(temp);
+                compressed.write(temp, 0, r);
+            }
+            if (deflater.finished() && compressed.size() < content.length) {
+                output.write(CHUNK_DEFLATE);
+                UnsignedIntEncoder.write(output, content.length);
+                UnsignedIntEncoder.write(output, compressed.size());
+                compressed.writeTo(output);
+                output.flush();
+                return;
+            }
+        }
+
+        // Write uncompressed
+        output.write(CHUNK_PLAIN);
+        UnsignedIntEncoder.write(output, content.length);
+        output.write(content);
+        output.flush();
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] compressed, int length) {
+        final byte[] content = new byte[length];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int total = 0;
+            while (total < length) {
+                final int r = inflater.inflate(content, total, length - total);
+                if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                total += r;
+            }
+            if (total != length)
+                throw new IllegalArgumentException("compressed chunk length does not match declared length " + length);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("invalid compressed chunk", e);
+        }
+        return content;
+    }
+
+    private static int readLength(InputStream input, int maxLength) throws IOException {
+        final int length = UnsignedIntEncoder.read(input);
+        if (length > maxLength)
+            throw new IllegalArgumentException("chunk length " + length + " exceeds the maximum " + maxLength);
+        return length;
+    }
+
+    private static void readFully(InputStream input, byte[] buf, int length) throws IOException {
+        int off = 0;
+        while (off < length) {
+            final int r = input.read(buf, off, length - off);
+            if (r == -1)
+                throw new EOFException("truncated input");
+            off += r;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.AsyncKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Adapts any {@link KVStore} into an {@link AsyncKVStore} by performing reads synchronously using an {@link Executor}.
+ *
+ * <p>
+ * Each asynchronous read is performed as a separate task, so reads may proceed concurrently to the extent permitted by
+ * the executor. This relies on the requirement that {@link KVStore} instances be thread safe.
+ */
+@ThreadSafe
+public class ExecutorAsyncKVStore extends ForwardingKVStore implements AsyncKVStore {
+
+    private final KVStore kvstore;
+    private final Executor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param kvstore underlying key/value store
+     * @param executor executor for performing reads
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public ExecutorAsyncKVStore(KVStore kvstore, Executor executor) {
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(executor != null, "null executor");
+        this.kvstore = kvstore;
+        this.executor = executor;
+    }
+
+    /**
+     * Get an {@link AsyncKVStore} view of the given {@link KVStore}.
+     *
+     * <p>
+     * If {@code kvstore} already implements {@link AsyncKVStore}, it is returned unmodified; otherwise it is
+     * wrapped in a new {@link ExecutorAsyncKVStore} using {@code executor}.
+     *
+     * @param kvstore key/value store
+     * @param executor executor for performing reads, if necessary
+     * @return asynchronous view of {@code kvstore}
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public static AsyncKVStore of(KVStore kvstore, Executor executor) {
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(executor != null, "null executor");
+        return kvstore instanceof AsyncKVStore ? (AsyncKVStore)kvstore : new ExecutorAsyncKVStore(kvstore, executor);
+    }
+
+    /**
+     * Get the {@link Executor} associated with this instance.
+     *
+     * @return read executor
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    @Override
+    protected KVStore delegate() {
+        return this.kvstore;
+    }
+
+// AsyncKVStore
+
+    @Override
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+        if (key == null)
+            throw new NullPointerException("null key");
+        return CompletableFuture.supplyAsync(() -> this.kvstore.get(key), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<List<KVPair>> getRangeAsync(byte[] minKey, byte[] maxKey, boolean reverse, int limit) {
+        Preconditions.checkArgument(limit >= 0, "limit < 0");
+        return CompletableFuture.supplyAsync(() -> {
+            final ArrayList<KVPair> list = new ArrayList<>();
+            try (CloseableIterator<KVPair> i = this.kvstore.getRange(minKey, maxKey, reverse)) {
+                while (i.hasNext() && (limit == 0 || list.size() < limit))
+                    list.add(i.next());
+            }
+            return list;
+        }, this.executor);
+    }
+}
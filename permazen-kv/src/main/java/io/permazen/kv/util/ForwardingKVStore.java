@@ -5,15 +5,26 @@
 
 package io.permazen.kv.util;
 
+import com.google.common.base.Preconditions;
+
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.util.CloseableIterator;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Forwards all {@link KVStore} operations to another underlying {@link KVStore}.
+ *
+ * <p>
+ * The {@link SplittableKVStore} methods are also forwarded, if the underlying {@link KVStore} supports them.
  */
-public abstract class ForwardingKVStore implements KVStore {
+public abstract class ForwardingKVStore implements SplittableKVStore {
 
     /**
      * Get the underlying {@link KVStore}.
@@ -78,5 +89,35 @@ public abstract class ForwardingKVStore implements KVStore {
     public void apply(Mutations mutations) {
         this.delegate().apply(mutations);
     }
-}
 
+// SplittableKVStore
+
+    /**
+     * Estimate the size of the given range.
+     *
+     * <p>
+     * The implementation in {@link ForwardingKVStore} forwards to the underlying {@link KVStore}
+     * if it implements {@link SplittableKVStore}, otherwise returns null.
+     */
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        final KVStore kv = this.delegate();
+        return kv instanceof SplittableKVStore ? ((SplittableKVStore)kv).estimateSize(range) : null;
+    }
+
+    /**
+     * Get split keys for the given range.
+     *
+     * <p>
+     * The implementation in {@link ForwardingKVStore} forwards to the underlying {@link KVStore}
+     * if it implements {@link SplittableKVStore}, otherwise returns an empty list.
+     */
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count >= 0, "count < 0");
+        final KVStore kv = this.delegate();
+        return kv instanceof SplittableKVStore ? ((SplittableKVStore)kv).getSplitKeys(range, count) : Collections.emptyList();
+    }
+}
@@ -131,7 +131,7 @@ public class KVNavigableMap extends AbstractKVNavigableMap<byte[], byte[]> {
 
     @Override
     protected byte[] decodeKey(ByteReader reader) {
-        return reader.getBytes();
+        return reader.readBytes(reader.remain());
     }
 
     @Override
@@ -10,24 +10,32 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import io.permazen.kv.KeyRange;
 import io.permazen.kv.mvcc.Mutations;
 import io.permazen.util.ByteUtil;
+import io.permazen.util.MovingAverage;
 
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
@@ -38,6 +46,10 @@ import org.slf4j.LoggerFactory;
  * Utility class used to track key watches.
  *
  * <p>
+ * In addition to individual keys, instances support watches on whole key ranges (including key prefixes),
+ * which fire when any key in the range is modified.
+ *
+ * <p>
  * To limit memory consumption, instances are configured with a maximum maximum number of key watches supported,
  * as well as a maximum lifetime for each key watch. When these limits are exceeded, one or more key watches
  * is evicted and a corresponding spurious notification occurs.
@@ -50,8 +62,13 @@ import org.slf4j.LoggerFactory;
  * {@link ListenableFuture} interface, because with a listener registration, there is no longer any need
  * to directly reference the {@link ListenableFuture}, and so it may be reclaimed before firing. Therefore,
  * by default strong references are used.
- * In any case, {@link ListenableFuture} notifications are performed on a separate dedicated notification
- * thread to avoid re-entrancy issues.
+ * In any case, {@link ListenableFuture} notifications are performed asynchronously to avoid re-entrancy issues,
+ * either by a dedicated notification thread or by a caller-supplied {@link Executor}. All of the watches fired
+ * by a single {@code trigger()} invocation are notified together as one batch.
+ *
+ * <p>
+ * Individual keys are indexed in a concurrent map, so triggering does not block registration or other triggers.
+ * Range watches are checked by scanning all of them, so they are intended for modest numbers of ranges.
  *
  * <p>
  * For space efficiency, this class does not track the original values associated with a key. Therefore,
@@ -65,7 +82,7 @@ import org.slf4j.LoggerFactory;
 @ThreadSafe
 public class KeyWatchTracker implements Closeable {
 
-    // Note locking order: KeyInfo, then KeyWatchTracker
+    // Note locking order: WatchInfo, then rangeInfos, then KeyWatchTracker
 
     /**
      * Default capacity ({@value #DEFAULT_CAPACITY}).
@@ -82,10 +99,20 @@ public class KeyWatchTracker implements Closeable {
      */
     public static final boolean DEFAULT_WEAK_REFERENCE = false;
 
+    private static final double LAG_AVERAGE_ALPHA = 0.05;
+
+    private final ConcurrentSkipListMap<byte[], KeyInfo> keyInfos = new ConcurrentSkipListMap<>(ByteUtil.COMPARATOR);
+    private final AtomicInteger numKeyInfos = new AtomicInteger();
+    @GuardedBy("rangeInfos")
+    private final TreeMap<KeyRange, RangeInfo> rangeInfos = new TreeMap<>(KeyRange.SORT_BY_MIN);
+    private final Cache<KeyFuture, WatchInfo> futureMap;
+    private final Executor notifyExecutor;
+    private final ExecutorService privateExecutor;
+
+    @GuardedBy("this")
+    private final MovingAverage notifyLag = new MovingAverage(LAG_AVERAGE_ALPHA);
     @GuardedBy("this")
-    private final TreeMap<byte[], KeyInfo> keyInfos = new TreeMap<>(ByteUtil.COMPARATOR);
-    private final Cache<KeyFuture, KeyInfo> futureMap;
-    private final ExecutorService notifyExecutor;
+    private long notifyCount;
 
     /**
      * Default constructor.
@@ -101,35 +128,61 @@ public class KeyWatchTracker implements Closeable {
     /**
      * Constructor.
      *
+     * <p>
+     * Notifications are delivered by a private notification thread.
+     *
      * @param capacity maximum number of key watches allowed
      * @param maxLifetime maximum lifetime for a key watch in seconds
      * @param weakReferences true to only weakly reference registered {@link ListenableFuture}s
      * @throws IllegalArgumentException if {@code capacity} or {@code maxLifetime} is zero or negative
      */
     public KeyWatchTracker(long capacity, long maxLifetime, boolean weakReferences) {
+        this(capacity, maxLifetime, weakReferences, null);
+    }
+
+    /**
+     * Constructor with caller-supplied notification {@link Executor}.
+     *
+     * <p>
+     * If {@code notifyExecutor} is null, notifications are delivered by a private notification thread,
+     * which is shut down by {@link #close}. A caller-supplied {@link Executor} is not shut down by {@link #close}.
+     *
+     * @param capacity maximum number of key watches allowed
+     * @param maxLifetime maximum lifetime for a key watch in seconds
+     * @param weakReferences true to only weakly reference registered {@link ListenableFuture}s
+     * @param notifyExecutor executor for delivering notifications, or null for a private notification thread
+     * @throws IllegalArgumentException if {@code capacity} or {@code maxLifetime} is zero or negative
+     */
+    public KeyWatchTracker(long capacity, long maxLifetime, boolean weakReferences, Executor notifyExecutor) {
 
         // Sanity check
         Preconditions.checkArgument(capacity > 0, "capacity <= 0");
         Preconditions.checkArgument(maxLifetime > 0, "maxLifetime <= 0");
 
         // Initialize
-        CacheBuilder<KeyFuture, KeyInfo> cacheBuilder = CacheBuilder.newBuilder()
+        CacheBuilder<KeyFuture, WatchInfo> cacheBuilder = CacheBuilder.newBuilder()
           .maximumSize(capacity)
           .expireAfterWrite(maxLifetime, TimeUnit.SECONDS)
-          .<KeyFuture, KeyInfo>removalListener(new RemovalListener<KeyFuture, KeyInfo>() {
+          .<KeyFuture, WatchInfo>removalListener(new RemovalListener<KeyFuture, WatchInfo>() {
             @Override
-            public void onRemoval(RemovalNotification<KeyFuture, KeyInfo> notification) {
+            public void onRemoval(RemovalNotification<KeyFuture, WatchInfo> notification) {
                 notification.getValue().handleRemoval(notification.getKey());
             }
           });
         if (weakReferences)
             cacheBuilder = cacheBuilder.weakKeys();
         this.futureMap = cacheBuilder.build();
-        this.notifyExecutor = Executors.newSingleThreadExecutor(action -> {
-            final Thread thread = new Thread(action);
-            thread.setName("Key Watch Notify");
-            return thread;
-        });
+        if (notifyExecutor == null) {
+            this.privateExecutor = Executors.newSingleThreadExecutor(action -> {
+                final Thread thread = new Thread(action);
+                thread.setName("Key Watch Notify");
+                return thread;
+            });
+            this.notifyExecutor = this.privateExecutor;
+        } else {
+            this.privateExecutor = null;
+            this.notifyExecutor = notifyExecutor;
+        }
     }
 
     /**
@@ -148,18 +201,44 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(key != null, "null key");
 
-        // Get/create KeyInfo object for this key
-        KeyInfo keyInfo;
-        synchronized (this) {
-            if ((keyInfo = this.keyInfos.get(key)) == null) {
-                key = key.clone();                              // avoid external mutation of key contents
-                keyInfo = new KeyInfo(key);
-                this.keyInfos.put(key, keyInfo);
-            }
+        // Get/create KeyInfo object for this key and add a new future; retry if we lose a race with its removal
+        while (true) {
+            final KeyFuture future = this.getKeyInfo(key).createFuture();
+            if (future != null)
+                return future;
         }
+    }
 
-        // Create new future for this key
-        return keyInfo.createFuture();
+    /**
+     * Register a new watch on a range of keys.
+     *
+     * <p>
+     * If the returned {@link java.util.concurrent.Future} is {@link java.util.concurrent.Future#cancel cancel()}'ed,
+     * the watch is automatically unregistered.
+     *
+     * @param range the range of keys to watch
+     * @return a {@link ListenableFuture} that returns when the value associated with any key in {@code range} is modified
+     * @throws IllegalArgumentException if {@code range} is null
+     * @see KeyRange#forPrefix KeyRange.forPrefix()
+     */
+    public ListenableFuture<Void> register(KeyRange range) {
+
+        // Sanity check
+        Preconditions.checkArgument(range != null, "null range");
+
+        // Get/create RangeInfo object for this range and add a new future; retry if we lose a race with its removal
+        while (true) {
+            RangeInfo rangeInfo;
+            synchronized (this.rangeInfos) {
+                if ((rangeInfo = this.rangeInfos.get(range)) == null) {
+                    rangeInfo = new RangeInfo(range);
+                    this.rangeInfos.put(range, rangeInfo);
+                }
+            }
+            final KeyFuture future = rangeInfo.createFuture();
+            if (future != null)
+                return future;
+        }
     }
 
     /**
@@ -167,11 +246,59 @@ public class KeyWatchTracker implements Closeable {
      *
      * <p>
      * Note that the same key can be watched more than once, so this only counts keys being watched, not total watches.
+     * Range watches are not included.
      *
      * @return number of keys being watched
      */
-    public synchronized int getNumKeysWatched() {
-        return this.keyInfos.size();
+    public int getNumKeysWatched() {
+        return this.numKeyInfos.get();
+    }
+
+    /**
+     * Count the number of key ranges being watched.
+     *
+     * <p>
+     * Note that the same range can be watched more than once, so this only counts ranges being watched, not total watches.
+     *
+     * @return number of key ranges being watched
+     */
+    public int getNumRangesWatched() {
+        synchronized (this.rangeInfos) {
+            return this.rangeInfos.size();
+        }
+    }
+
+    /**
+     * Count the total number of outstanding watches, including key watches and range watches.
+     *
+     * <p>
+     * The returned value is approximate.
+     *
+     * @return number of outstanding watches
+     */
+    public long getNumWatches() {
+        return this.futureMap.size();
+    }
+
+    /**
+     * Get the total number of watch notifications delivered so far, including spurious and failure notifications.
+     *
+     * @return number of notifications delivered
+     */
+    public synchronized long getNotificationCount() {
+        return this.notifyCount;
+    }
+
+    /**
+     * Get the average notification lag, i.e., the time from triggering to delivery of notifications.
+     *
+     * <p>
+     * The returned value is an exponential moving average over recent notification batches.
+     *
+     * @return average notification lag in nanoseconds, or {@link Double#NaN} if no notifications have been delivered yet
+     */
+    public synchronized double getAverageNotificationLag() {
+        return this.notifyLag.get();
     }
 
     /**
@@ -186,16 +313,17 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(key != null, "null key");
 
-        // Extract KeyInfo object for this key
-        final KeyInfo keyInfo;
-        synchronized (this) {
-            if ((keyInfo = this.keyInfos.remove(key)) == null)
-                return false;
+        // Extract WatchInfo objects for this key
+        final ArrayList<WatchInfo> triggerList = new ArrayList<>();
+        this.removeKeyInfo(key, triggerList);
+        if (this.hasRangeInfos()) {
+            final TreeSet<byte[]> keySet = new TreeSet<>(ByteUtil.COMPARATOR);
+            keySet.add(key);
+            this.removeRangeInfos(keySet, Collections.emptyList(), triggerList);
         }
 
         // Trigger all associated futures
-        keyInfo.triggerAll();
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -210,21 +338,20 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(keys != null, "null keys");
 
-        // Extract KeyInfo objects for all keys
-        final ArrayList<KeyInfo> triggerList = new ArrayList<>();
-        synchronized (this) {
-            for (byte[] key : keys) {
-                final KeyInfo keyInfo = this.keyInfos.remove(key);
-                if (keyInfo != null)
-                    triggerList.add(keyInfo);
-            }
+        // Extract WatchInfo objects for all keys
+        final ArrayList<WatchInfo> triggerList = new ArrayList<>();
+        final boolean checkRanges = this.hasRangeInfos();
+        final TreeSet<byte[]> keySet = checkRanges ? new TreeSet<>(ByteUtil.COMPARATOR) : null;
+        for (byte[] key : keys) {
+            this.removeKeyInfo(key, triggerList);
+            if (checkRanges)
+                keySet.add(key);
         }
-        if (triggerList.isEmpty())
-            return false;
+        if (checkRanges)
+            this.removeRangeInfos(keySet, Collections.emptyList(), triggerList);
 
         // Trigger all associated futures
-        triggerList.forEach(KeyInfo::triggerAll);
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -239,26 +366,22 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(range != null, "null range");
 
-        // Extract KeyInfo objects for all keys in the range
-        final ArrayList<KeyInfo> triggerList = new ArrayList<>();
-        synchronized (this) {
-            final NavigableMap<byte[], KeyInfo> subMap = range.getMax() != null ?
-              this.keyInfos.subMap(range.getMin(), true, range.getMax(), false) :
-              this.keyInfos.tailMap(range.getMin(), true);
-            triggerList.addAll(subMap.values());
-            subMap.clear();
-        }
-        if (triggerList.isEmpty())
-            return false;
+        // Extract WatchInfo objects for all keys in the range
+        final ArrayList<WatchInfo> triggerList = new ArrayList<>();
+        this.removeKeyInfos(range, triggerList);
+        if (this.hasRangeInfos())
+            this.removeRangeInfos(new TreeSet<>(ByteUtil.COMPARATOR), Collections.singleton(range), triggerList);
 
         // Trigger all associated futures
-        triggerList.forEach(KeyInfo::triggerAll);
-        return true;
+        return this.triggerAll(triggerList);
     }
 
     /**
      * Trigger all watches associated with the given mutations.
      *
+     * <p>
+     * All of the watches triggered are notified together as a single batch.
+     *
      * @param mutations mutations
      * @return true if any watches were triggered, otherwise false
      * @throws IllegalArgumentException if {@code mutations} is null
@@ -269,15 +392,35 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(mutations != null, "null mutations");
 
-        // Trigger all keys affected by any mutation
-        boolean result = false;
-        for (KeyRange range : mutations.getRemoveRanges())
-            result |= this.trigger(range);
-        result |= this.trigger(Iterables.transform(mutations.getPutPairs(), Map.Entry::getKey));
-        result |= this.trigger(Iterables.transform(mutations.getAdjustPairs(), Map.Entry::getKey));
+        // Anything to do?
+        final boolean checkRanges = this.hasRangeInfos();
+        if (this.keyInfos.isEmpty() && !checkRanges)
+            return false;
 
-        // Done
-        return result;
+        // Extract WatchInfo objects for all keys affected by any mutation
+        final ArrayList<WatchInfo> triggerList = new ArrayList<>();
+        final ArrayList<KeyRange> removeList = checkRanges ? new ArrayList<>() : null;
+        final TreeSet<byte[]> keySet = checkRanges ? new TreeSet<>(ByteUtil.COMPARATOR) : null;
+        for (KeyRange range : mutations.getRemoveRanges()) {
+            this.removeKeyInfos(range, triggerList);
+            if (checkRanges)
+                removeList.add(range);
+        }
+        for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs()) {
+            this.removeKeyInfo(entry.getKey(), triggerList);
+            if (checkRanges)
+                keySet.add(entry.getKey());
+        }
+        for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs()) {
+            this.removeKeyInfo(entry.getKey(), triggerList);
+            if (checkRanges)
+                keySet.add(entry.getKey());
+        }
+        if (checkRanges)
+            this.removeRangeInfos(keySet, removeList, triggerList);
+
+        // Trigger all associated futures
+        return this.triggerAll(triggerList);
     }
 
     /**
@@ -300,9 +443,11 @@ public class KeyWatchTracker implements Closeable {
         // Sanity check
         Preconditions.checkArgument(e != null, "null e");
 
-        // Extract KeyInfo objects for all keys and fail all associated futures
-        for (KeyInfo keyInfo : this.removeAllKeyInfos())
-            keyInfo.failAll(e);
+        // Extract WatchInfo objects for all keys and ranges and fail all associated futures
+        final ArrayList<KeyFuture> futures = new ArrayList<>();
+        for (WatchInfo watchInfo : this.removeAllWatchInfos())
+            futures.addAll(watchInfo.removeAllFutures());
+        this.notifyFutures(futures, e);
     }
 
     /**
@@ -313,24 +458,28 @@ public class KeyWatchTracker implements Closeable {
      */
     public void absorb(KeyWatchTracker that) {
 
-        // Grab all KeyInfo objects from 'that'
-        final KeyInfo[] thatKeyInfos = that.removeAllKeyInfos();
-
-        // Add all of their futures to this instance
-        for (KeyInfo thatKeyInfo : thatKeyInfos) {
-            final byte[] key = thatKeyInfo.getKey();
-            KeyInfo thisKeyInfo;
-            synchronized (this) {
-                if ((thisKeyInfo = this.keyInfos.get(key)) == null) {
-                    thisKeyInfo = new KeyInfo(key);
-                    this.keyInfos.put(key, thisKeyInfo);
+        // Grab all WatchInfo objects from 'that' and add all of their futures to this instance
+        for (WatchInfo thatWatchInfo : that.removeAllWatchInfos()) {
+            final ArrayList<KeyFuture> futures = thatWatchInfo.removeAllFutures();
+            while (!futures.isEmpty()) {
+                final WatchInfo thisWatchInfo;
+                if (thatWatchInfo instanceof KeyInfo)
+                    thisWatchInfo = this.getKeyInfo(((KeyInfo)thatWatchInfo).getKey());
+                else {
+                    final KeyRange range = ((RangeInfo)thatWatchInfo).getRange();
+                    synchronized (this.rangeInfos) {
+                        thisWatchInfo = this.rangeInfos.computeIfAbsent(range, RangeInfo::new);
+                    }
+                }
+                while (!futures.isEmpty()) {
+                    final KeyFuture future = futures.get(futures.size() - 1);
+                    future.setOwner(this.futureMap);
+                    if (!thisWatchInfo.addFuture(future))
+                        break;                                      // lost a race with removal; get a new WatchInfo
+                    futures.remove(futures.size() - 1);
+                    if (future.isDone())
+                        this.futureMap.invalidate(future);          // handle race with future's owner vs. future completion
                 }
-            }
-            for (KeyFuture future : thatKeyInfo.removeAllFutures()) {
-                thisKeyInfo.addFuture(future);
-                future.setOwner(this.futureMap);
-                if (future.isDone())
-                    this.futureMap.invalidate(future);          // handle race with future's owner vs. future completion
             }
         }
 
@@ -338,11 +487,117 @@ public class KeyWatchTracker implements Closeable {
         that.futureMap.invalidateAll();
     }
 
-    private synchronized KeyInfo[] removeAllKeyInfos() {
-        final Collection<KeyInfo> allKeyInfos = this.keyInfos.values();
-        final KeyInfo[] result = allKeyInfos.toArray(new KeyInfo[allKeyInfos.size()]);
-        this.keyInfos.clear();
-        return result;
+    private KeyInfo getKeyInfo(byte[] key) {
+        KeyInfo keyInfo = this.keyInfos.get(key);
+        if (keyInfo == null) {
+            final KeyInfo newKeyInfo = new KeyInfo(key.clone());    // avoid external mutation of key contents
+            if ((keyInfo = this.keyInfos.putIfAbsent(newKeyInfo.getKey(), newKeyInfo)) == null) {
+                this.numKeyInfos.incrementAndGet();
+                keyInfo = newKeyInfo;
+            }
+        }
+        return keyInfo;
+    }
+
+    private void removeKeyInfo(byte[] key, List<WatchInfo> triggerList) {
+        final KeyInfo keyInfo = this.keyInfos.remove(key);
+        if (keyInfo != null) {
+            this.numKeyInfos.decrementAndGet();
+            triggerList.add(keyInfo);
+        }
+    }
+
+    private void removeKeyInfos(KeyRange range, List<WatchInfo> triggerList) {
+        final NavigableMap<byte[], KeyInfo> subMap = range.getMax() != null ?
+          this.keyInfos.subMap(range.getMin(), true, range.getMax(), false) :
+          this.keyInfos.tailMap(range.getMin(), true);
+        for (KeyInfo keyInfo : subMap.values()) {
+            if (this.keyInfos.remove(keyInfo.getKey(), keyInfo)) {
+                this.numKeyInfos.decrementAndGet();
+                triggerList.add(keyInfo);
+            }
+        }
+    }
+
+    private boolean hasRangeInfos() {
+        synchronized (this.rangeInfos) {
+            return !this.rangeInfos.isEmpty();
+        }
+    }
+
+    // Remove all RangeInfo's containing any of the given keys or overlapping any of the given removed ranges
+    private void removeRangeInfos(TreeSet<byte[]> keys, Collection<KeyRange> removes, List<WatchInfo> triggerList) {
+        synchronized (this.rangeInfos) {
+            for (Iterator<RangeInfo> i = this.rangeInfos.values().iterator(); i.hasNext(); ) {
+                final RangeInfo rangeInfo = i.next();
+                final KeyRange range = rangeInfo.getRange();
+                boolean hit = false;
+                final byte[] key = keys.ceiling(range.getMin());
+                if (key != null && range.contains(key))
+                    hit = true;
+                else {
+                    for (KeyRange remove : removes) {
+                        if (range.overlaps(remove)) {
+                            hit = true;
+                            break;
+                        }
+                    }
+                }
+                if (hit) {
+                    i.remove();
+                    triggerList.add(rangeInfo);
+                }
+            }
+        }
+    }
+
+    private WatchInfo[] removeAllWatchInfos() {
+        final ArrayList<WatchInfo> watchInfos = new ArrayList<>();
+        this.removeKeyInfos(KeyRange.FULL, watchInfos);
+        synchronized (this.rangeInfos) {
+            watchInfos.addAll(this.rangeInfos.values());
+            this.rangeInfos.clear();
+        }
+        return watchInfos.toArray(new WatchInfo[watchInfos.size()]);
+    }
+
+    // Trigger all futures associated with the given WatchInfo's (which have already been removed) as a single batch
+    private boolean triggerAll(List<WatchInfo> triggerList) {
+        if (triggerList.isEmpty())
+            return false;
+        final ArrayList<KeyFuture> futures = new ArrayList<>();
+        for (WatchInfo watchInfo : triggerList)
+            futures.addAll(watchInfo.removeAllFutures());
+        this.notifyFutures(futures, null);
+        return true;
+    }
+
+    // Notify futures of result, using our notifyExecutor to avoid any re-entrancy from direct listeners on the futures
+    private void notifyFutures(final List<KeyFuture> futures, final Exception e) {
+        if (futures.isEmpty())
+            return;
+        final long startTime = System.nanoTime();
+        try {
+            this.notifyExecutor.execute(() -> {
+                for (KeyFuture future : futures) {
+                    try {
+                        if (e != null)
+                            future.setException(e);
+                        else
+                            future.set(null);
+                    } catch (Throwable t) {
+                        LoggerFactory.getLogger(this.getClass()).error("exception from key watch listener", t);
+                    }
+                }
+                final long lag = System.nanoTime() - startTime;
+                synchronized (this) {
+                    this.notifyLag.add(lag);
+                    this.notifyCount += futures.size();
+                }
+            });
+        } catch (RejectedExecutionException e2) {
+            LoggerFactory.getLogger(this.getClass()).debug("key watch notification rejected by executor", e2);
+        }
     }
 
 // Closeable
@@ -356,61 +611,60 @@ public class KeyWatchTracker implements Closeable {
     @Override
     public void close() {
         this.failAll(new Exception("key watch tracker closed"));
-        this.notifyExecutor.shutdownNow();
-        try {
-            this.notifyExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        if (this.privateExecutor != null) {
+            this.privateExecutor.shutdown();
+            try {
+                this.privateExecutor.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.privateExecutor.shutdownNow();
         }
     }
 
-// KeyInfo
+// WatchInfo
 
-    // Note locking order: KeyInfo, then KeyWatchTracker
-    private class KeyInfo {
+    // Note locking order: WatchInfo, then rangeInfos, then KeyWatchTracker
+    private abstract class WatchInfo {
 
-        private final byte[] key;
         @GuardedBy("this")
         private final HashSet<KeyFuture> futures = new HashSet<>(1);
+        @GuardedBy("this")
+        private boolean detached;                                       // no longer indexed; no new futures allowed
 
-        KeyInfo(byte[] key) {
-            assert key != null;
-            this.key = key;
-        }
-
-        public byte[] getKey() {
-            return this.key;
-        }
-
+        /**
+         * Create and add a new future.
+         *
+         * @return new future, or null if this instance has been detached
+         */
         KeyFuture createFuture() {
             final KeyFuture future = new KeyFuture(KeyWatchTracker.this.futureMap);
-            this.addFuture(future);
-            return future;
+            return this.addFuture(future) ? future : null;
         }
 
-        void addFuture(KeyFuture future) {
+        /**
+         * Add a future.
+         *
+         * @return true if added, false if this instance has been detached
+         */
+        boolean addFuture(KeyFuture future) {
             KeyWatchTracker.this.futureMap.put(future, this);
             synchronized (this) {
-                this.futures.add(future);
+                if (!this.detached) {
+                    this.futures.add(future);
+                    return true;
+                }
             }
+            KeyWatchTracker.this.futureMap.invalidate(future);
+            return false;
         }
 
         void handleRemoval(KeyFuture future) {
-            if (this.removeFuture(future) && future.getOwner() == KeyWatchTracker.this.futureMap)
-                this.notifyFuture(future, null);            // if future has not completed yet, trigger a spurious notification
-        }
-
-        // This assumes this instance is already removed from KeyWatchTracker.this.keyInfos
-        void triggerAll() {
-            for (KeyFuture future : this.removeAllFutures())
-                this.notifyFuture(future, null);
-        }
-
-        // This assumes this instance is already removed from KeyWatchTracker.this.keyInfos
-        void failAll(Exception e) {
-            assert e != null;
-            for (KeyFuture future : this.removeAllFutures())
-                this.notifyFuture(future, e);
+            if (this.removeFuture(future) && future.getOwner() == KeyWatchTracker.this.futureMap) {
+                final ArrayList<KeyFuture> futureList = new ArrayList<>(1);
+                futureList.add(future);
+                KeyWatchTracker.this.notifyFutures(futureList, null);         // if not completed yet, trigger spurious notify
+            }
         }
 
         /**
@@ -422,55 +676,88 @@ public class KeyWatchTracker implements Closeable {
             final boolean removed;
             synchronized (this) {
                 removed = this.futures.remove(future);
-                if (this.futures.isEmpty()) {                           // discard this instance if there are no futures left
-                    synchronized (KeyWatchTracker.this) {
-                        KeyWatchTracker.this.keyInfos.remove(this.key);
-                    }
+                if (this.futures.isEmpty() && !this.detached) {         // discard this instance if there are no futures left
+                    this.detached = true;
+                    this.unindex();
                 }
             }
             return removed;
         }
 
-        // Notify future of result, using the our notifyExecutor to avoid any re-entrancy from direct listeners on the future
-        private void notifyFuture(final KeyFuture future, final Exception e) {
-            KeyWatchTracker.this.notifyExecutor.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        if (e != null)
-                            future.setException(e);
-                        else
-                            future.set(null);
-                    } catch (Throwable t) {
-                        LoggerFactory.getLogger(this.getClass()).error("exception from key watch listener", t);
-                    }
-                }
-            });
-        }
-
         /**
          * Stop tracking all {@link KeyFuture}s.
          *
-         * We assume this instance is already removed from {@code KeyWatchTracker.this.keyInfos}.
+         * We assume this instance is already removed from its index.
          */
         ArrayList<KeyFuture> removeAllFutures() {
             final ArrayList<KeyFuture> futureList;
             synchronized (this) {
+                this.detached = true;
                 futureList = new ArrayList<>(this.futures);
                 this.futures.clear();
             }
             KeyWatchTracker.this.futureMap.invalidateAll(futureList);
             return futureList;
         }
+
+        /**
+         * Remove this instance from its index, if still present.
+         */
+        abstract void unindex();
+    }
+
+// KeyInfo
+
+    private class KeyInfo extends WatchInfo {
+
+        private final byte[] key;
+
+        KeyInfo(byte[] key) {
+            assert key != null;
+            this.key = key;
+        }
+
+        public byte[] getKey() {
+            return this.key;
+        }
+
+        @Override
+        void unindex() {
+            if (KeyWatchTracker.this.keyInfos.remove(this.key, this))
+                KeyWatchTracker.this.numKeyInfos.decrementAndGet();
+        }
+    }
+
+// RangeInfo
+
+    private class RangeInfo extends WatchInfo {
+
+        private final KeyRange range;
+
+        RangeInfo(KeyRange range) {
+            assert range != null;
+            this.range = range;
+        }
+
+        public KeyRange getRange() {
+            return this.range;
+        }
+
+        @Override
+        void unindex() {
+            synchronized (KeyWatchTracker.this.rangeInfos) {
+                KeyWatchTracker.this.rangeInfos.remove(this.range, this);
+            }
+        }
     }
 
 // KeyFuture
 
     private static class KeyFuture extends AbstractFuture<Void> {
 
-        private volatile Cache<KeyFuture, KeyInfo> futureMap;
+        private volatile Cache<KeyFuture, WatchInfo> futureMap;
 
-        KeyFuture(Cache<KeyFuture, KeyInfo> futureMap) {
+        KeyFuture(Cache<KeyFuture, WatchInfo> futureMap) {
             this.futureMap = futureMap;
         }
 
@@ -492,12 +779,11 @@ public class KeyWatchTracker implements Closeable {
             return super.cancel(mayInterruptIfRunning);
         }
 
-        Cache<KeyFuture, KeyInfo> getOwner() {
+        Cache<KeyFuture, WatchInfo> getOwner() {
             return this.futureMap;
         }
-        void setOwner(Cache<KeyFuture, KeyInfo> futureMap) {
+        void setOwner(Cache<KeyFuture, WatchInfo> futureMap) {
             this.futureMap = futureMap;
         }
     }
 }
-
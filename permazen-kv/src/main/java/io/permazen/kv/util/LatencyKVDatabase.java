@@ -0,0 +1,324 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVDatabase;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * {@link KVDatabase} wrapper that simulates a remote key/value store by injecting artificial delays.
+ *
+ * <p>
+ * Each read operation (i.e., {@link io.permazen.kv.KVStore#get get()}, {@link io.permazen.kv.KVStore#getAtLeast getAtLeast()},
+ * {@link io.permazen.kv.KVStore#getAtMost getAtMost()}, and the creation of a {@link io.permazen.kv.KVStore#getRange getRange()}
+ * iterator) incurs one {@linkplain #setReadLatency read latency} plus the time required to transfer the data read given the
+ * configured {@linkplain #setBandwidth bandwidth}. Each commit incurs one {@linkplain #setCommitLatency commit latency}.
+ * Mutations are assumed to be buffered locally until commit, so they incur no delay unless a non-zero
+ * {@linkplain #setWriteLatency write latency} is configured. All delays may be randomly perturbed by a configurable
+ * {@linkplain #setJitter jitter} factor.
+ *
+ * <p>
+ * Instances also count the number of simulated round trips, which is useful for measuring the effect of caching,
+ * read-ahead, and batching optimizations without requiring an actual remote database.
+ *
+ * <p>
+ * Instances ignore invocations to {@link #start} and {@link #stop}; instead, invoke these methods on the underlying
+ * {@link KVDatabase}.
+ */
+@ThreadSafe
+public class LatencyKVDatabase implements KVDatabase {
+
+    private final KVDatabase db;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong totalDelay = new AtomicLong();
+
+    @GuardedBy("this")
+    private long readLatency;
+    @GuardedBy("this")
+    private long writeLatency;
+    @GuardedBy("this")
+    private long commitLatency;
+    @GuardedBy("this")
+    private long bandwidth;
+    @GuardedBy("this")
+    private double jitter;
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     * Initially, all latencies are zero and bandwidth is unlimited.
+     *
+     * @param db the underlying {@link KVDatabase}
+     * @throws IllegalArgumentException if {@code db} is null
+     */
+    public LatencyKVDatabase(KVDatabase db) {
+        Preconditions.checkArgument(db != null, "null db");
+        this.db = db;
+    }
+
+    /**
+     * Get the underlying {@link KVDatabase} associated with this instance.
+     *
+     * @return the underlying {@link KVDatabase}
+     */
+    public KVDatabase getKVDatabase() {
+        return this.db;
+    }
+
+// Configuration
+
+    /**
+     * Get the simulated latency of each read operation.
+     *
+     * @return read latency in microseconds
+     */
+    public synchronized long getReadLatency() {
+        return this.readLatency;
+    }
+
+    /**
+     * Set the simulated latency of each read operation.
+     *
+     * <p>
+     * Default is zero.
+     *
+     * @param readLatency read latency in microseconds
+     * @throws IllegalArgumentException if {@code readLatency} is negative
+     */
+    public synchronized void setReadLatency(long readLatency) {
+        Preconditions.checkArgument(readLatency >= 0, "readLatency < 0");
+        this.readLatency = readLatency;
+    }
+
+    /**
+     * Get the simulated latency of each write operation.
+     *
+     * @return write latency in microseconds
+     */
+    public synchronized long getWriteLatency() {
+        return this.writeLatency;
+    }
+
+    /**
+     * Set the simulated latency of each write operation.
+     *
+     * <p>
+     * Default is zero, which models a database that buffers mutations locally until commit.
+     * If non-zero, each write operation is also counted as a round trip.
+     *
+     * @param writeLatency write latency in microseconds
+     * @throws IllegalArgumentException if {@code writeLatency} is negative
+     */
+    public synchronized void setWriteLatency(long writeLatency) {
+        Preconditions.checkArgument(writeLatency >= 0, "writeLatency < 0");
+        this.writeLatency = writeLatency;
+    }
+
+    /**
+     * Get the simulated latency of each commit.
+     *
+     * @return commit latency in microseconds
+     */
+    public synchronized long getCommitLatency() {
+        return this.commitLatency;
+    }
+
+    /**
+     * Set the simulated latency of each commit.
+     *
+     * <p>
+     * Default is zero.
+     *
+     * @param commitLatency commit latency in microseconds
+     * @throws IllegalArgumentException if {@code commitLatency} is negative
+     */
+    public synchronized void setCommitLatency(long commitLatency) {
+        Preconditions.checkArgument(commitLatency >= 0, "commitLatency < 0");
+        this.commitLatency = commitLatency;
+    }
+
+    /**
+     * Get the simulated bandwidth for data read.
+     *
+     * @return bandwidth in bytes per second, or zero for unlimited
+     */
+    public synchronized long getBandwidth() {
+        return this.bandwidth;
+    }
+
+    /**
+     * Set the simulated bandwidth for data read.
+     *
+     * <p>
+     * Default is zero (unlimited).
+     *
+     * @param bandwidth bandwidth in bytes per second, or zero for unlimited
+     * @throws IllegalArgumentException if {@code bandwidth} is negative
+     */
+    public synchronized void setBandwidth(long bandwidth) {
+        Preconditions.checkArgument(bandwidth >= 0, "bandwidth < 0");
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Get the jitter factor.
+     *
+     * @return jitter factor
+     */
+    public synchronized double getJitter() {
+        return this.jitter;
+    }
+
+    /**
+     * Set the jitter factor.
+     *
+     * <p>
+     * Each delay is multiplied by a random value uniformly distributed in the range
+     * {@code 1.0 - jitter} to {@code 1.0 + jitter}.
+     *
+     * <p>
+     * Default is zero (no jitter).
+     *
+     * @param jitter jitter factor between zero and one (inclusive)
+     * @throws IllegalArgumentException if {@code jitter} is not in the range 0.0 to 1.0
+     */
+    public synchronized void setJitter(double jitter) {
+        Preconditions.checkArgument(jitter >= 0.0 && jitter <= 1.0, "invalid jitter");
+        this.jitter = jitter;
+    }
+
+// Statistics
+
+    /**
+     * Get the total number of simulated round trips since this instance was created or
+     * {@linkplain #resetStatistics statistics were last reset}.
+     *
+     * @return number of round trips
+     */
+    public long getRoundTrips() {
+        return this.roundTrips.get();
+    }
+
+    /**
+     * Get the total number of key and value bytes read since this instance was created or
+     * {@linkplain #resetStatistics statistics were last reset}.
+     *
+     * @return number of bytes read
+     */
+    public long getBytesRead() {
+        return this.bytesRead.get();
+    }
+
+    /**
+     * Get the total simulated delay since this instance was created or
+     * {@linkplain #resetStatistics statistics were last reset}.
+     *
+     * @return total delay in microseconds
+     */
+    public long getTotalDelay() {
+        return this.totalDelay.get();
+    }
+
+    /**
+     * Reset statistics.
+     */
+    public void resetStatistics() {
+        this.roundTrips.set(0);
+        this.bytesRead.set(0);
+        this.totalDelay.set(0);
+    }
+
+// KVDatabase
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public LatencyKVTransaction createTransaction() {
+        return new LatencyKVTransaction(this, this.db.createTransaction());
+    }
+
+    @Override
+    public LatencyKVTransaction createTransaction(Map<String, ?> options) {
+        return new LatencyKVTransaction(this, this.db.createTransaction(options));
+    }
+
+// Delays
+
+    void readDelay(int bytes) {
+        final long latency;
+        final long transfer;
+        synchronized (this) {
+            latency = this.readLatency;
+            transfer = this.bandwidth != 0 ? bytes * 1000000L / this.bandwidth : 0;
+        }
+        this.roundTrips.incrementAndGet();
+        this.bytesRead.addAndGet(bytes);
+        this.delay(latency + transfer);
+    }
+
+    void transferDelay(int bytes) {
+        final long transfer;
+        synchronized (this) {
+            transfer = this.bandwidth != 0 ? bytes * 1000000L / this.bandwidth : 0;
+        }
+        this.bytesRead.addAndGet(bytes);
+        this.delay(transfer);
+    }
+
+    void writeDelay() {
+        final long latency;
+        synchronized (this) {
+            latency = this.writeLatency;
+        }
+        if (latency == 0)
+            return;
+        this.roundTrips.incrementAndGet();
+        this.delay(latency);
+    }
+
+    void commitDelay() {
+        final long latency;
+        synchronized (this) {
+            latency = this.commitLatency;
+        }
+        this.roundTrips.incrementAndGet();
+        this.delay(latency);
+    }
+
+    private void delay(long micros) {
+        final double jitterFactor;
+        synchronized (this) {
+            jitterFactor = this.jitter;
+        }
+        if (jitterFactor != 0.0)
+            micros = Math.round(micros * (1.0 + jitterFactor * (2.0 * ThreadLocalRandom.current().nextDouble() - 1.0)));
+        if (micros <= 0)
+            return;
+        this.totalDelay.addAndGet(micros);
+        try {
+            TimeUnit.MICROSECONDS.sleep(micros);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
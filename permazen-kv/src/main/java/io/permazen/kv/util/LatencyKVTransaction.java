@@ -0,0 +1,183 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.util.CloseableIterator;
+
+import java.util.concurrent.Future;
+
+/**
+ * {@link KVTransaction} created by a {@link LatencyKVDatabase}.
+ *
+ * <p>
+ * Instances forward all operations to an underlying transaction, injecting delays as configured
+ * in the associated {@link LatencyKVDatabase}.
+ */
+public class LatencyKVTransaction extends ForwardingKVStore implements KVTransaction {
+
+    private final LatencyKVDatabase db;
+    private final KVTransaction tx;
+
+    /**
+     * Constructor.
+     *
+     * @param db associated database
+     * @param tx underlying transaction
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    LatencyKVTransaction(LatencyKVDatabase db, KVTransaction tx) {
+        Preconditions.checkArgument(db != null, "null db");
+        Preconditions.checkArgument(tx != null, "null tx");
+        this.db = db;
+        this.tx = tx;
+    }
+
+// ForwardingKVStore
+
+    @Override
+    protected KVTransaction delegate() {
+        return this.tx;
+    }
+
+// KVStore
+
+    @Override
+    public byte[] get(byte[] key) {
+        final byte[] value = super.get(key);
+        this.db.readDelay(key.length + (value != null ? value.length : 0));
+        return value;
+    }
+
+    @Override
+    public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        final KVPair pair = super.getAtLeast(minKey, maxKey);
+        this.db.readDelay(LatencyKVTransaction.sizeOf(pair));
+        return pair;
+    }
+
+    @Override
+    public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        final KVPair pair = super.getAtMost(maxKey, minKey);
+        this.db.readDelay(LatencyKVTransaction.sizeOf(pair));
+        return pair;
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        final CloseableIterator<KVPair> i = super.getRange(minKey, maxKey, reverse);
+        this.db.readDelay(0);
+        return new CloseableIterator<KVPair>() {
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public KVPair next() {
+                final KVPair pair = i.next();
+                LatencyKVTransaction.this.db.transferDelay(LatencyKVTransaction.sizeOf(pair));
+                return pair;
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+                LatencyKVTransaction.this.db.writeDelay();
+            }
+
+            @Override
+            public void close() {
+                i.close();
+            }
+        };
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        super.put(key, value);
+        this.db.writeDelay();
+    }
+
+    @Override
+    public void remove(byte[] key) {
+        super.remove(key);
+        this.db.writeDelay();
+    }
+
+    @Override
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        super.removeRange(minKey, maxKey);
+        this.db.writeDelay();
+    }
+
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        super.adjustCounter(key, amount);
+        this.db.writeDelay();
+    }
+
+    @Override
+    public void apply(Mutations mutations) {
+        super.apply(mutations);
+        this.db.writeDelay();
+    }
+
+// KVTransaction
+
+    @Override
+    public LatencyKVDatabase getKVDatabase() {
+        return this.db;
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.tx.setTimeout(timeout);
+    }
+
+    @Override
+    public Future<Void> watchKey(byte[] key) {
+        return this.tx.watchKey(key);
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.tx.isReadOnly();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        this.tx.setReadOnly(readOnly);
+    }
+
+    @Override
+    public void commit() {
+        this.db.commitDelay();
+        this.tx.commit();
+    }
+
+    @Override
+    public void rollback() {
+        this.tx.rollback();
+    }
+
+    @Override
+    public CloseableKVStore mutableSnapshot() {
+        return this.tx.mutableSnapshot();
+    }
+
+// Internal methods
+
+    private static int sizeOf(KVPair pair) {
+        return pair != null ? pair.getKey().length + pair.getValue().length : 0;
+    }
+}
@@ -0,0 +1,106 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.InstrumentedKVDatabase;
+import io.permazen.kv.KVDatabase;
+import io.permazen.kv.KVDatabaseMetrics;
+
+import java.util.Map;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * {@link KVDatabase} wrapper that gathers {@link KVDatabaseMetrics} for any underlying {@link KVDatabase}.
+ *
+ * <p>
+ * All metrics are measured from the outside: commit latency includes all time spent in the underlying
+ * {@link io.permazen.kv.KVTransaction#commit commit()}, bytes read and written count the keys and values passing
+ * through each transaction, and the read and write set sizes are the number of read and write operations performed by
+ * each transaction. Retries and failures are counted from the exceptions thrown by the underlying transactions;
+ * conflicts are counted (and summarized by key prefix) when the underlying database reports them via
+ * {@link io.permazen.kv.mvcc.TransactionConflictException}.
+ *
+ * <p>
+ * Instances ignore invocations to {@link #start} and {@link #stop}; instead, invoke these methods on the underlying
+ * {@link KVDatabase}.
+ */
+@ThreadSafe
+public class MetricsKVDatabase implements InstrumentedKVDatabase {
+
+    private final KVDatabase db;
+    private final KVDatabaseMetrics metrics;
+
+    /**
+     * Constructor.
+     *
+     * @param db the underlying {@link KVDatabase}
+     * @throws IllegalArgumentException if {@code db} is null
+     */
+    public MetricsKVDatabase(KVDatabase db) {
+        this(db, new KVDatabaseMetrics());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param db the underlying {@link KVDatabase}
+     * @param metrics where to record metrics
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    public MetricsKVDatabase(KVDatabase db, KVDatabaseMetrics metrics) {
+        Preconditions.checkArgument(db != null, "null db");
+        Preconditions.checkArgument(metrics != null, "null metrics");
+        this.db = db;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the underlying {@link KVDatabase} associated with this instance.
+     *
+     * @return the underlying {@link KVDatabase}
+     */
+    public KVDatabase getKVDatabase() {
+        return this.db;
+    }
+
+// InstrumentedKVDatabase
+
+    @Override
+    public KVDatabaseMetrics getMetrics() {
+        return this.metrics;
+    }
+
+// KVDatabase
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public MetricsKVTransaction createTransaction() {
+        return this.createTransaction(null);
+    }
+
+    @Override
+    public MetricsKVTransaction createTransaction(Map<String, ?> options) {
+        final MetricsKVTransaction tx;
+        try {
+            tx = new MetricsKVTransaction(this, options != null ? this.db.createTransaction(options) : this.db.createTransaction());
+        } catch (RuntimeException e) {
+            this.metrics.recordException(e);
+            throw e;
+        }
+        this.metrics.recordTransactionOpened();
+        return tx;
+    }
+}
@@ -0,0 +1,257 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.CloseableKVStore;
+import io.permazen.kv.KVDatabaseMetrics;
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVTransaction;
+import io.permazen.kv.KVTransactionException;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Mutations;
+import io.permazen.util.CloseableIterator;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * {@link KVTransaction} created by a {@link MetricsKVDatabase}.
+ *
+ * <p>
+ * Instances forward all operations to an underlying transaction, recording metrics
+ * in the associated {@link MetricsKVDatabase}'s {@link KVDatabaseMetrics}.
+ */
+public class MetricsKVTransaction extends ForwardingKVStore implements KVTransaction {
+
+    private final MetricsKVDatabase db;
+    private final KVTransaction tx;
+    private final KVDatabaseMetrics metrics;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param db associated database
+     * @param tx underlying transaction
+     * @throws IllegalArgumentException if either parameter is null
+     */
+    MetricsKVTransaction(MetricsKVDatabase db, KVTransaction tx) {
+        Preconditions.checkArgument(db != null, "null db");
+        Preconditions.checkArgument(tx != null, "null tx");
+        this.db = db;
+        this.tx = tx;
+        this.metrics = db.getMetrics();
+    }
+
+// ForwardingKVStore
+
+    @Override
+    protected KVTransaction delegate() {
+        return this.tx;
+    }
+
+// KVStore
+
+    @Override
+    public byte[] get(byte[] key) {
+        final byte[] value = this.invoke(() -> super.get(key));
+        this.read(key.length + (value != null ? value.length : 0));
+        return value;
+    }
+
+    @Override
+    public KVPair getAtLeast(byte[] minKey, byte[] maxKey) {
+        final KVPair pair = this.invoke(() -> super.getAtLeast(minKey, maxKey));
+        this.read(MetricsKVTransaction.sizeOf(pair));
+        return pair;
+    }
+
+    @Override
+    public KVPair getAtMost(byte[] maxKey, byte[] minKey) {
+        final KVPair pair = this.invoke(() -> super.getAtMost(maxKey, minKey));
+        this.read(MetricsKVTransaction.sizeOf(pair));
+        return pair;
+    }
+
+    @Override
+    public CloseableIterator<KVPair> getRange(byte[] minKey, byte[] maxKey, boolean reverse) {
+        final CloseableIterator<KVPair> i = this.invoke(() -> super.getRange(minKey, maxKey, reverse));
+        this.read(0);
+        return new CloseableIterator<KVPair>() {
+
+            @Override
+            public boolean hasNext() {
+                return MetricsKVTransaction.this.invoke(i::hasNext);
+            }
+
+            @Override
+            public KVPair next() {
+                final KVPair pair = MetricsKVTransaction.this.invoke(i::next);
+                MetricsKVTransaction.this.metrics.recordBytesRead(MetricsKVTransaction.sizeOf(pair));
+                return pair;
+            }
+
+            @Override
+            public void remove() {
+                MetricsKVTransaction.this.invoke(() -> {
+                    i.remove();
+                    return null;
+                });
+                MetricsKVTransaction.this.write(0);
+            }
+
+            @Override
+            public void close() {
+                i.close();
+            }
+        };
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        this.invoke(() -> {
+            super.put(key, value);
+            return null;
+        });
+        this.write(key.length + value.length);
+    }
+
+    @Override
+    public void remove(byte[] key) {
+        this.invoke(() -> {
+            super.remove(key);
+            return null;
+        });
+        this.write(key.length);
+    }
+
+    @Override
+    public void removeRange(byte[] minKey, byte[] maxKey) {
+        this.invoke(() -> {
+            super.removeRange(minKey, maxKey);
+            return null;
+        });
+        this.write((minKey != null ? minKey.length : 0) + (maxKey != null ? maxKey.length : 0));
+    }
+
+    @Override
+    public void adjustCounter(byte[] key, long amount) {
+        this.invoke(() -> {
+            super.adjustCounter(key, amount);
+            return null;
+        });
+        this.write(key.length + 8);
+    }
+
+    @Override
+    public void apply(Mutations mutations) {
+        this.invoke(() -> {
+            super.apply(mutations);
+            return null;
+        });
+        long bytes = 0;
+        for (KeyRange range : mutations.getRemoveRanges())
+            bytes += range.getMin().length + (range.getMax() != null ? range.getMax().length : 0);
+        for (Map.Entry<byte[], byte[]> entry : mutations.getPutPairs())
+            bytes += entry.getKey().length + entry.getValue().length;
+        for (Map.Entry<byte[], Long> entry : mutations.getAdjustPairs())
+            bytes += entry.getKey().length + 8;
+        this.write(bytes);
+    }
+
+// KVTransaction
+
+    @Override
+    public MetricsKVDatabase getKVDatabase() {
+        return this.db;
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.tx.setTimeout(timeout);
+    }
+
+    @Override
+    public Future<Void> watchKey(byte[] key) {
+        return this.invoke(() -> this.tx.watchKey(key));
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return this.tx.isReadOnly();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) {
+        this.tx.setReadOnly(readOnly);
+    }
+
+    @Override
+    public void commit() {
+        final long startTime = System.nanoTime();
+        this.invoke(() -> {
+            this.tx.commit();
+            return null;
+        });
+        if (this.finish())
+            this.metrics.recordCommit(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void rollback() {
+        this.tx.rollback();
+        if (this.finish())
+            this.metrics.recordRollback();
+    }
+
+    @Override
+    public CloseableKVStore mutableSnapshot() {
+        return this.invoke(this.tx::mutableSnapshot);
+    }
+
+// Internal methods
+
+    // Perform an operation, recording any transaction failure
+    private <T> T invoke(Supplier<T> operation) {
+        try {
+            return operation.get();
+        } catch (KVTransactionException e) {
+            if (this.finish())
+                this.metrics.recordException(e);
+            throw e;
+        }
+    }
+
+    // Mark this transaction finished and record read and write set sizes; returns false if already finished
+    private boolean finish() {
+        if (!this.finished.compareAndSet(false, true))
+            return false;
+        this.metrics.recordReadSetSize(this.reads.get());
+        this.metrics.recordWriteSetSize(this.writes.get());
+        return true;
+    }
+
+    private void read(long bytes) {
+        this.reads.incrementAndGet();
+        this.metrics.recordBytesRead(bytes);
+    }
+
+    private void write(long bytes) {
+        this.writes.incrementAndGet();
+        this.metrics.recordBytesWritten(bytes);
+    }
+
+    private static int sizeOf(KVPair pair) {
+        return pair != null ? pair.getKey().length + pair.getValue().length : 0;
+    }
+}
@@ -11,9 +11,14 @@ import com.google.common.primitives.Bytes;
 
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
 import io.permazen.util.ByteUtil;
 import io.permazen.util.CloseableIterator;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * A {@link io.permazen.kv.KVStore} view of all keys having a common {@code byte[]} prefix
  * in an outer, containing {@link io.permazen.kv.KVStore}.
@@ -113,6 +118,22 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         this.delegate().adjustCounter(this.addPrefix(key), amount);
     }
 
+// SplittableKVStore
+
+    @Override
+    public KeyRangeEstimate estimateSize(KeyRange range) {
+        Preconditions.checkArgument(range != null, "null range");
+        return super.estimateSize(this.addPrefix(range));
+    }
+
+    @Override
+    public List<byte[]> getSplitKeys(KeyRange range, int count) {
+        Preconditions.checkArgument(range != null, "null range");
+        return super.getSplitKeys(this.addPrefix(range), count).stream()
+          .map(this::removePrefix)
+          .collect(Collectors.toList());
+    }
+
 // Key (un)prefixing
 
     private byte[] addPrefix(byte[] key) {
@@ -133,6 +154,10 @@ public abstract class PrefixKVStore extends ForwardingKVStore {
         return this.addPrefix(maxKey);
     }
 
+    private KeyRange addPrefix(KeyRange range) {
+        return new KeyRange(this.addMinPrefix(range.getMin()), this.addMaxPrefix(range.getMax()));
+    }
+
     private byte[] removePrefix(byte[] key) {
         if (!ByteUtil.isPrefixOf(this.keyPrefix, key)) {
             throw new IllegalArgumentException("read key " + ByteUtil.toString(key) + " not having "
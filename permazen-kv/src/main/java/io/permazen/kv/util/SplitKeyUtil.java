@@ -0,0 +1,254 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.kv.KVPair;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRangeEstimate;
+import io.permazen.kv.SplittableKVStore;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.CloseableIterator;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Utility methods to help implement {@link SplittableKVStore}.
+ *
+ * <p>
+ * Keys are treated as base-256 fractions, i.e., key {@code b0 b1 b2 ...} corresponds to the number
+ * {@code 0.b0b1b2...} in base 256, so that arithmetic on keys is consistent with their sort order.
+ */
+public final class SplitKeyUtil {
+
+    private static final int EXTRA_PRECISION = 4;               // extra bytes of precision beyond the longest key
+    private static final int MAX_BISECT_ITERATIONS = 64;
+    private static final int FRACTION_BITS = 32;
+
+    private SplitKeyUtil() {
+    }
+
+    /**
+     * Compute the key that lies the given fraction of the way from {@code minKey} to {@code maxKey},
+     * treating keys as base-256 fractions.
+     *
+     * <p>
+     * The returned key has no trailing zero bytes; it is greater than or equal to {@code minKey} and,
+     * if {@code fraction} is less than one, less than {@code maxKey}.
+     *
+     * @param minKey lower key
+     * @param maxKey upper key, or null for the upper limit of all keys
+     * @param fraction fraction of the distance from {@code minKey} to {@code maxKey}, from zero to one (inclusive)
+     * @return interpolated key
+     * @throws IllegalArgumentException if {@code minKey} is null
+     * @throws IllegalArgumentException if {@code maxKey} is less than {@code minKey}
+     * @throws IllegalArgumentException if {@code fraction} is not between zero and one
+     */
+    public static byte[] interpolate(byte[] minKey, byte[] maxKey, double fraction) {
+        Preconditions.checkArgument(minKey != null, "null minKey");
+        Preconditions.checkArgument(maxKey == null || ByteUtil.compare(minKey, maxKey) <= 0, "maxKey < minKey");
+        Preconditions.checkArgument(fraction >= 0.0 && fraction <= 1.0, "invalid fraction");
+        final int len = SplitKeyUtil.precision(minKey, maxKey);
+        final BigInteger min = SplitKeyUtil.toValue(minKey, len);
+        final BigInteger max = SplitKeyUtil.toValue(maxKey, len);
+        final BigInteger scaledFraction = BigInteger.valueOf(Math.round(fraction * (1L << FRACTION_BITS)));
+        final BigInteger value = min.add(max.subtract(min).multiply(scaledFraction).shiftRight(FRACTION_BITS));
+        return SplitKeyUtil.toKey(value.min(max.subtract(BigInteger.ONE)).max(min), len);
+    }
+
+    /**
+     * Choose split keys for a {@link KeyRange} using a function that approximates the size of any range.
+     *
+     * <p>
+     * This is a suitable implementation of {@link SplittableKVStore#getSplitKeys SplittableKVStore.getSplitKeys()} for
+     * implementations that can cheaply approximate the size of arbitrary ranges but have no direct way to locate split points.
+     * Each split key is found by bisecting the key space between the first and last keys in {@code range}.
+     * If {@code sizer} has no information about {@code range}, keys are assumed to be uniformly distributed.
+     *
+     * @param kv key/value store
+     * @param range range to divide
+     * @param count maximum number of split keys to return
+     * @param sizer function returning the approximate size (in any units) of a range, which must be monotonic
+     * @return list of split keys satisfying the requirements of {@link SplittableKVStore#getSplitKeys getSplitKeys()}
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    public static List<byte[]> bisect(KVStore kv, KeyRange range, int count, ToLongFunction<? super KeyRange> sizer) {
+
+        // Sanity check
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count >= 0, "count < 0");
+        Preconditions.checkArgument(sizer != null, "null sizer");
+        if (count == 0)
+            return Collections.emptyList();
+
+        // Find first and last keys
+        final KVPair first = kv.getAtLeast(range.getMin(), range.getMax());
+        if (first == null)
+            return Collections.emptyList();
+        final KVPair last = kv.getAtMost(range.getMax(), range.getMin());
+        if (last == null || ByteUtil.compare(first.getKey(), last.getKey()) >= 0)
+            return Collections.emptyList();
+        final int len = SplitKeyUtil.precision(first.getKey(), last.getKey());
+        final BigInteger firstValue = SplitKeyUtil.toValue(first.getKey(), len);
+        final BigInteger lastValue = SplitKeyUtil.toValue(last.getKey(), len);
+
+        // Get total size; if unknown, assume a uniform distribution
+        final long total = sizer.applyAsLong(range);
+        final ArrayList<byte[]> splitKeys = new ArrayList<>(count);
+        if (total <= 0) {
+            for (int i = 1; i <= count; i++) {
+                final byte[] key = SplitKeyUtil.interpolate(first.getKey(), last.getKey(), (double)i / (count + 1));
+                SplitKeyUtil.addSplitKey(splitKeys, range, key);
+            }
+            return splitKeys;
+        }
+
+        // Bisect to find each split key
+        BigInteger lower = firstValue;
+        for (int i = 1; i <= count && lower.compareTo(lastValue) < 0; i++) {
+            final long target = (long)((double)total * i / (count + 1));
+            BigInteger lo = lower;
+            BigInteger hi = lastValue;
+            for (int j = 0; j < MAX_BISECT_ITERATIONS && hi.subtract(lo).compareTo(BigInteger.ONE) > 0; j++) {
+                final BigInteger mid = lo.add(hi).shiftRight(1);
+                if (sizer.applyAsLong(new KeyRange(range.getMin(), SplitKeyUtil.toKey(mid, len))) < target)
+                    lo = mid;
+                else
+                    hi = mid;
+            }
+            SplitKeyUtil.addSplitKey(splitKeys, range, SplitKeyUtil.toKey(hi, len));
+            lower = hi;
+        }
+        return splitKeys;
+    }
+
+    /**
+     * Divide a {@link KeyRange} into at most {@code count} contiguous sub-ranges of approximately equal size.
+     *
+     * <p>
+     * If {@code kv} is a {@link SplittableKVStore}, its {@linkplain SplittableKVStore#getSplitKeys split keys} are used.
+     * Otherwise, or if none are available, keys are assumed to be uniformly distributed between the first and last keys
+     * in {@code range}.
+     *
+     * @param kv key/value store
+     * @param range range to divide
+     * @param count maximum number of sub-ranges
+     * @return contiguous, ascending list of non-empty sub-ranges whose union is {@code range}
+     * @throws IllegalArgumentException if {@code kv} or {@code range} is null
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    public static List<KeyRange> split(KVStore kv, KeyRange range, int count) {
+
+        // Sanity check
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(count > 0, "count <= 0");
+        if (count == 1)
+            return Collections.singletonList(range);
+
+        // Get split keys, preferring hints from the key/value store
+        List<byte[]> splitKeys = kv instanceof SplittableKVStore ?
+          ((SplittableKVStore)kv).getSplitKeys(range, count - 1) : Collections.emptyList();
+        if (splitKeys.isEmpty()) {
+            final KVPair first = kv.getAtLeast(range.getMin(), range.getMax());
+            final KVPair last = first != null ? kv.getAtMost(range.getMax(), range.getMin()) : null;
+            if (last == null || ByteUtil.compare(first.getKey(), last.getKey()) >= 0)
+                return Collections.singletonList(range);
+            splitKeys = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; i++) {
+                final byte[] key = SplitKeyUtil.interpolate(first.getKey(), last.getKey(), (double)i / count);
+                SplitKeyUtil.addSplitKey(splitKeys, range, key);
+            }
+        }
+
+        // Build sub-ranges
+        final ArrayList<KeyRange> ranges = new ArrayList<>(splitKeys.size() + 1);
+        byte[] prevKey = range.getMin();
+        for (byte[] splitKey : splitKeys) {
+            ranges.add(new KeyRange(prevKey, splitKey));
+            prevKey = splitKey;
+        }
+        ranges.add(new KeyRange(prevKey, range.getMax()));
+        return ranges;
+    }
+
+    /**
+     * Estimate the size of a {@link KeyRange} by sampling the key/value pairs at the start of the range.
+     *
+     * <p>
+     * If the range contains no more than {@code sampleSize} key/value pairs, the exact size is returned. Otherwise,
+     * the number of keys is extrapolated from the average size of the sampled key/value pairs and {@code numBytes}.
+     *
+     * @param kv key/value store
+     * @param range key range
+     * @param numBytes the approximate number of bytes in {@code range} (if known), otherwise zero
+     * @param sampleSize maximum number of key/value pairs to sample
+     * @return estimated range size
+     * @throws IllegalArgumentException if {@code kv} or {@code range} is null
+     * @throws IllegalArgumentException if {@code sampleSize} is not positive
+     */
+    public static KeyRangeEstimate sample(KVStore kv, KeyRange range, long numBytes, int sampleSize) {
+        Preconditions.checkArgument(kv != null, "null kv");
+        Preconditions.checkArgument(range != null, "null range");
+        Preconditions.checkArgument(sampleSize > 0, "sampleSize <= 0");
+        long sampledKeys = 0;
+        long sampledBytes = 0;
+        try (CloseableIterator<KVPair> i = kv.getRange(range.getMin(), range.getMax(), false)) {
+            while (sampledKeys < sampleSize) {
+                if (!i.hasNext())
+                    return new KeyRangeEstimate(sampledKeys, sampledBytes);
+                final KVPair pair = i.next();
+                sampledKeys++;
+                sampledBytes += pair.getKey().length + pair.getValue().length;
+            }
+        }
+        numBytes = Math.max(numBytes, sampledBytes);
+        final long numKeys = Math.max(sampledKeys, (long)((double)numBytes * sampledKeys / Math.max(sampledBytes, 1)));
+        return new KeyRangeEstimate(numKeys, numBytes);
+    }
+
+// Internal methods
+
+    private static void addSplitKey(List<byte[]> splitKeys, KeyRange range, byte[] key) {
+        if (ByteUtil.compare(key, range.getMin()) <= 0 || (range.getMax() != null && ByteUtil.compare(key, range.getMax()) >= 0))
+            return;
+        if (!splitKeys.isEmpty() && ByteUtil.compare(key, splitKeys.get(splitKeys.size() - 1)) <= 0)
+            return;
+        splitKeys.add(key);
+    }
+
+    private static int precision(byte[] key1, byte[] key2) {
+        return Math.max(key1.length, key2 != null ? key2.length : 0) + EXTRA_PRECISION;
+    }
+
+    // Convert key to integer scaled by 256^len; null means 1.0
+    private static BigInteger toValue(byte[] key, int len) {
+        if (key == null)
+            return BigInteger.ONE.shiftLeft(len * 8);
+        return new BigInteger(1, Arrays.copyOf(key, len));
+    }
+
+    // Convert integer scaled by 256^len (and less than 1.0) back into a key, trimming trailing zeroes
+    private static byte[] toKey(BigInteger value, int len) {
+        final byte[] bytes = value.toByteArray();
+        final byte[] key = new byte[len];
+        final int num = Math.min(bytes.length, len);
+        System.arraycopy(bytes, bytes.length - num, key, len - num, num);
+        int keyLen = len;
+        while (keyLen > 0 && key[keyLen - 1] == 0)
+            keyLen--;
+        return keyLen < len ? Arrays.copyOf(key, keyLen) : key;
+    }
+}
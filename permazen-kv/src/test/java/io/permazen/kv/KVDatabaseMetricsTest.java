@@ -0,0 +1,75 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv;
+
+import io.permazen.kv.mvcc.ReadRemoveConflict;
+import io.permazen.test.TestSupport;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KVDatabaseMetricsTest extends TestSupport {
+
+    @Test
+    public void testHistogram() throws Exception {
+        final KVDatabaseMetrics.Histogram histogram = new KVDatabaseMetrics.Histogram();
+        Assert.assertEquals(histogram.getPercentile(0.5), 0);
+        Assert.assertEquals(histogram.getMean(), 0.0);
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+        Assert.assertEquals(histogram.getCount(), 100);
+        Assert.assertEquals(histogram.getSum(), 5050);
+        Assert.assertEquals(histogram.getMax(), 100);
+        Assert.assertEquals(histogram.getMean(), 50.5);
+        Assert.assertEquals(histogram.getPercentile(0.0), 1);
+        Assert.assertEquals(histogram.getPercentile(0.5), 63);                  // 50 is in bucket [32, 64)
+        Assert.assertEquals(histogram.getPercentile(0.99), 100);                // capped at max
+        histogram.record(-5);
+        Assert.assertEquals(histogram.getBucketCounts()[0], 1);
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getMax(), 0);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        final KVDatabaseMetrics metrics = new KVDatabaseMetrics();
+        metrics.recordTransactionOpened();
+        metrics.recordTransactionOpened();
+        metrics.recordCommit(3000000);
+        metrics.recordRollback();
+        metrics.recordBytesRead(10);
+        metrics.recordBytesWritten(20);
+        Assert.assertEquals(metrics.getTransactionsOpened(), 2);
+        Assert.assertEquals(metrics.getCommits(), 1);
+        Assert.assertEquals(metrics.getRollbacks(), 1);
+        Assert.assertEquals(metrics.getBytesRead(), 10);
+        Assert.assertEquals(metrics.getBytesWritten(), 20);
+        Assert.assertEquals(metrics.getCommitLatencyMax(), 3000);
+
+        // Conflicts
+        metrics.recordConflict(new ReadRemoveConflict(new KeyRange(b("fc1234"), b("fc1299"))));
+        Assert.assertEquals(metrics.getConflicts(), 1);
+
+        // Conflict prefixes
+        metrics.recordConflict(new KeyRange(b("fc1234aabbcc")));
+        metrics.recordConflict(new KeyRange(b("fc56")));
+        metrics.recordConflict(KeyRange.FULL);
+        final Map<String, Long> prefixes = metrics.getConflictPrefixes();
+        Assert.assertEquals(prefixes.get("fc12"), (Long)1L);
+        Assert.assertEquals(prefixes.get("fc1234"), (Long)1L);
+        Assert.assertEquals(prefixes.get("fc56"), (Long)1L);
+        Assert.assertEquals(prefixes.get(""), (Long)1L);
+        Assert.assertEquals(metrics.getConflicts(), 4);
+
+        // Reset
+        metrics.reset();
+        Assert.assertEquals(metrics.getTransactionsOpened(), 0);
+        Assert.assertTrue(metrics.getConflictPrefixes().isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.mvcc;
+
+import io.permazen.test.TestSupport;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LockManagerTest extends TestSupport {
+
+    @Test
+    public void testConflictsAndMerging() throws Exception {
+        final LockManager lockManager = new LockManager();
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+
+        // Overlapping read locks are compatible
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("20"), false, 1), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner2, b("15"), b("25"), false, 1), LockManager.LockResult.SUCCESS);
+
+        // Write locks conflict with other owners' overlapping locks, but not adjacent ones
+        Assert.assertEquals(lockManager.lock(owner2, b("1f"), b("21"), true, 1), LockManager.LockResult.WAIT_TIMEOUT_EXPIRED);
+        Assert.assertEquals(lockManager.lock(owner2, b("25"), b("30"), true, 1), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner1, b("00"), b("10"), true, 1), LockManager.LockResult.SUCCESS);
+
+        // Adjacent/overlapping same-owner locks are merged
+        Assert.assertEquals(lockManager.lock(owner2, b("20"), b("25"), false, 1), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.isLocked(owner2, b("15"), b("25"), false));
+        Assert.assertTrue(lockManager.isLocked(owner2, b("25"), b("30"), true));
+        Assert.assertFalse(lockManager.isLocked(owner2, b("15"), b("30"), true));
+        Assert.assertEquals(lockManager.getNumLocksHeld(), 4);
+
+        // Check statistics
+        Assert.assertEquals(lockManager.getLockCount(), 5);
+        Assert.assertEquals(lockManager.getWaitCount(), 1);
+        Assert.assertEquals(lockManager.getWaitTimeoutCount(), 1);
+
+        // Release
+        Assert.assertTrue(lockManager.release(owner1));
+        Assert.assertTrue(lockManager.release(owner2));
+        Assert.assertEquals(lockManager.getNumLocksHeld(), 0);
+    }
+
+    @Test
+    public void testWakeup() throws Exception {
+        final LockManager lockManager = new LockManager();
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+        final LockOwner owner3 = new LockOwner();
+
+        // Owner 1 write locks a range
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("20"), true, 0), LockManager.LockResult.SUCCESS);
+
+        // Owner 2 waits for it
+        final AtomicReference<LockManager.LockResult> result = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                result.set(lockManager.lock(owner2, b("18"), b("28"), true, 5000));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        while (lockManager.getNumWaiters() == 0)
+            Thread.sleep(10);
+
+        // Unrelated locks come and go without affecting the waiter
+        Assert.assertEquals(lockManager.lock(owner3, b("30"), b("40"), true, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.release(owner3));
+        Assert.assertEquals(lockManager.getNumWaiters(), 1);
+
+        // Release the conflicting lock; waiter should acquire its lock
+        Assert.assertTrue(lockManager.release(owner1));
+        thread.join(5000);
+        Assert.assertEquals(result.get(), LockManager.LockResult.SUCCESS);
+        Assert.assertTrue(lockManager.isLocked(owner2, b("18"), b("28"), true));
+        Assert.assertEquals(lockManager.getNumWaiters(), 0);
+        Assert.assertTrue(lockManager.release(owner2));
+    }
+
+    @Test
+    public void testHoldTimeout() throws Exception {
+        final LockManager lockManager = new LockManager();
+        lockManager.setHoldTimeout(50);
+        final LockOwner owner1 = new LockOwner();
+        final LockOwner owner2 = new LockOwner();
+
+        // Owner 1 holds a lock too long, so owner 2 forces it to be released
+        Assert.assertEquals(lockManager.lock(owner1, b("10"), b("20"), true, 0), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.lock(owner2, b("10"), b("20"), true, 1000), LockManager.LockResult.SUCCESS);
+        Assert.assertEquals(lockManager.getHoldTimeoutCount(), 1);
+        Assert.assertTrue(lockManager.getTotalHoldTime() >= 50);
+
+        // Owner 1 finds out
+        Assert.assertEquals(lockManager.lock(owner1, b("30"), b("40"), true, 0), LockManager.LockResult.HOLD_TIMEOUT_EXPIRED);
+        Assert.assertFalse(lockManager.release(owner1));
+        Assert.assertTrue(lockManager.release(owner2));
+    }
+}
@@ -0,0 +1,70 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.KeyRanges;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class AbstractKVSpliteratorTest extends TestSupport {
+
+    @Test
+    private void testSplit() throws Exception {
+        for (int count = 0; count < 50; count++) {
+
+            // Populate k/v store with random keys
+            final NavigableMapKVStore kv = new NavigableMapKVStore();
+            final int numKeys = this.random.nextInt(500);
+            for (int i = 0; i < numKeys; i++) {
+                final byte[] key = new byte[1 + this.random.nextInt(4)];
+                this.random.nextBytes(key);
+                kv.put(key, ByteUtil.EMPTY);
+            }
+
+            // Build set view, possibly reversed and/or filtered
+            NavigableSet<byte[]> set = new KVNavigableSet(kv);
+            if (this.random.nextBoolean()) {
+                final KeyRanges ranges = new KeyRanges(
+                  new KeyRange(new byte[] { (byte)0x10 }, new byte[] { (byte)0x50 }),
+                  new KeyRange(new byte[] { (byte)0x90 }, new byte[] { (byte)0xc0 }));
+                set = ((KVNavigableSet)set).filterKeys(ranges);
+            }
+            if (this.random.nextBoolean())
+                set = set.descendingSet();
+            final List<String> expected = set.stream().map(ByteUtil::toString).collect(Collectors.toList());
+
+            // Split recursively and verify the pieces, in order, cover the same elements
+            final List<String> actual = new ArrayList<>();
+            this.splitAndCollect(set.spliterator(), actual, 0);
+            Assert.assertEquals(actual, expected);
+
+            // Verify parallel stream gets the same result
+            final List<String> parallel = set.parallelStream().map(ByteUtil::toString).collect(Collectors.toList());
+            Assert.assertEquals(parallel, expected);
+        }
+    }
+
+    private void splitAndCollect(Spliterator<byte[]> spliterator, List<String> list, int depth) {
+        final Spliterator<byte[]> prefix = depth < 8 ? spliterator.trySplit() : null;
+        if (prefix != null) {
+            this.splitAndCollect(prefix, list, depth + 1);
+            this.splitAndCollect(spliterator, list, depth + 1);
+            return;
+        }
+        spliterator.forEachRemaining(key -> list.add(ByteUtil.toString(key)));
+        Assert.assertNull(spliterator.trySplit());
+    }
+}
@@ -0,0 +1,123 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import com.google.common.base.Converter;
+
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ConvertedNavigableMap;
+import io.permazen.util.UnsignedIntEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ChunkedKeyListEncoderTest extends TestSupport {
+
+    @Test
+    private void testEncodeDecode() throws Exception {
+        for (int count = 0; count < 500; count++) {
+
+            // Populate k/v store with random (and sometimes compressible) data
+            final NavigableMapKVStore original = new NavigableMapKVStore();
+            final int numPairs = this.random.nextInt(200);
+            for (int j = 0; j < numPairs; j++) {
+                final byte[] key = this.rb(1 << this.random.nextInt(6));
+                final byte[] val = this.rb(1 << this.random.nextInt(10));
+                if (this.random.nextBoolean())
+                    Arrays.fill(val, (byte)0x55);
+                original.put(key, val);
+            }
+
+            // Encode
+            final int chunkSize = 1 + this.random.nextInt(4096);
+            final boolean compress = this.random.nextBoolean();
+            final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            final long numWritten = ChunkedKeyListEncoder.writePairs(original.getRange(null, null), buf, chunkSize, compress);
+            Assert.assertEquals(numWritten, original.size());
+
+            // Decode
+            final NavigableMapKVStore copy = new NavigableMapKVStore();
+            final long numRead = ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(buf.toByteArray()), copy);
+            Assert.assertEquals(numRead, numWritten);
+
+            // Check same result
+            Assert.assertEquals(this.stringView(copy.getNavigableMap()), this.stringView(original.getNavigableMap()));
+
+            // Check truncated input is detected
+            if (buf.size() > 1) {
+                final byte[] truncated = Arrays.copyOf(buf.toByteArray(), this.random.nextInt(buf.size() - 1) + 1);
+                try {
+                    ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(truncated), new NavigableMapKVStore());
+                    assert false : "expected exception";
+                } catch (EOFException | IllegalArgumentException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test
+    private void testMaxChunkLength() throws Exception {
+
+        // Chunk claiming to be huge
+        final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        buf.write(ChunkedKeyListEncoder.CHUNK_PLAIN);
+        UnsignedIntEncoder.write(buf, Integer.MAX_VALUE);
+        try {
+            ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(buf.toByteArray()), new NavigableMapKVStore());
+            assert false : "expected exception";
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // Compressed chunk whose compressed length exceeds its uncompressed length
+        buf.reset();
+        buf.write(ChunkedKeyListEncoder.CHUNK_DEFLATE);
+        UnsignedIntEncoder.write(buf, 10);
+        UnsignedIntEncoder.write(buf, Integer.MAX_VALUE);
+        try {
+            ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(buf.toByteArray()), new NavigableMapKVStore());
+            assert false : "expected exception";
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // Legitimate chunk exceeding a configured maximum
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        kv.put(b("01"), new byte[1000]);
+        buf.reset();
+        ChunkedKeyListEncoder.writePairs(kv.getRange(null, null), buf, 100, false);
+        try {
+            ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(buf.toByteArray()), new NavigableMapKVStore(), 500);
+            assert false : "expected exception";
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        final NavigableMapKVStore copy = new NavigableMapKVStore();
+        Assert.assertEquals(ChunkedKeyListEncoder.readPairs(new ByteArrayInputStream(buf.toByteArray()), copy, 2000), 1);
+        Assert.assertEquals(copy.get(b("01")), new byte[1000]);
+    }
+
+    private byte[] rb(int len) {
+        final byte[] b = new byte[this.random.nextInt(len) + 1];
+        this.random.nextBytes(b);
+        return b;
+    }
+
+    private NavigableMap<String, String> stringView(NavigableMap<byte[], byte[]> byteMap) {
+        if (byteMap == null)
+            return null;
+        final Converter<String, byte[]> converter = ByteUtil.STRING_CONVERTER.reverse();
+        return new ConvertedNavigableMap<>(byteMap, converter, converter);
+    }
+}
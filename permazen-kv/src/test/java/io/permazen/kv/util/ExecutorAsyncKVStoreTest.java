@@ -0,0 +1,64 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.kv.util;
+
+import io.permazen.kv.AsyncKVStore;
+import io.permazen.kv.KVPair;
+import io.permazen.test.TestSupport;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ExecutorAsyncKVStoreTest extends TestSupport {
+
+    @Test
+    public void testAsyncReads() throws Exception {
+        final NavigableMapKVStore kv = new NavigableMapKVStore();
+        kv.put(b("10"), b("01"));
+        kv.put(b("20"), b("02"));
+        kv.put(b("30"), b("03"));
+        kv.put(b("40"), b("04"));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final AsyncKVStore async = ExecutorAsyncKVStore.of(kv, executor);
+            Assert.assertSame(ExecutorAsyncKVStore.of(async, executor), async);
+
+            // Single get
+            Assert.assertEquals(async.getAsync(b("20")).get(), b("02"));
+            Assert.assertNull(async.getAsync(b("25")).get());
+
+            // Multi-get
+            final List<byte[]> values = async.getAllAsync(Arrays.asList(b("40"), b("15"), b("10"))).get();
+            Assert.assertEquals(values.size(), 3);
+            Assert.assertEquals(values.get(0), b("04"));
+            Assert.assertNull(values.get(1));
+            Assert.assertEquals(values.get(2), b("01"));
+
+            // Ranges
+            Assert.assertEquals(async.getRangeAsync(b("20"), null, false, 0).get(), Arrays.asList(
+              new KVPair(b("20"), b("02")), new KVPair(b("30"), b("03")), new KVPair(b("40"), b("04"))));
+            Assert.assertEquals(async.getRangeAsync(null, b("40"), true, 2).get(), Arrays.asList(
+              new KVPair(b("30"), b("03")), new KVPair(b("20"), b("02"))));
+
+            // Errors are reported via the future
+            try {
+                async.getRangeAsync(b("40"), b("20"), false, 0).join();
+                assert false;
+            } catch (CompletionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -8,8 +8,12 @@ package io.permazen.kv.util;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 
+import io.permazen.kv.KeyRange;
+import io.permazen.kv.mvcc.Writes;
 import io.permazen.test.TestSupport;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -68,6 +72,47 @@ public class KeyWatchTrackerTest extends TestSupport {
             this.verifyNotComplete(future);
     }
 
+    @Test
+    private void testRangeTrigger() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final KeyWatchTracker tracker = new KeyWatchTracker(1000, 99999, false, executor);
+
+        final ListenableFuture<?> f1 = tracker.register(KeyRange.forPrefix(B1));
+        final ListenableFuture<?> f2 = tracker.register(KeyRange.forPrefix(B2));
+        final ListenableFuture<?> f3 = tracker.register(B3);
+        Assert.assertEquals(tracker.getNumKeysWatched(), 1);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 2);
+
+        // Put within the first prefix
+        final Writes writes1 = new Writes();
+        writes1.getPuts().put(new byte[] { B1[0], (byte)99 }, new byte[0]);
+        tracker.trigger(writes1);
+
+        this.verifyComplete(f1);
+        this.verifyNotComplete(f2);
+        this.verifyNotComplete(f3);
+
+        // Remove overlapping the second prefix and the watched key
+        final Writes writes2 = new Writes();
+        writes2.getRemoves().add(new KeyRange(new byte[] { B2[0], (byte)1 }, B3));
+        writes2.getRemoves().add(new KeyRange(B3));
+        tracker.trigger(writes2);
+
+        this.verifyComplete(f2);
+        this.verifyComplete(f3);
+        Assert.assertEquals(tracker.getNumKeysWatched(), 0);
+        Assert.assertEquals(tracker.getNumRangesWatched(), 0);
+
+        // Check metrics
+        Thread.sleep(100);
+        Assert.assertEquals(tracker.getNotificationCount(), 3);
+        Assert.assertTrue(tracker.getAverageNotificationLag() >= 0);
+
+        // Done
+        tracker.close();
+        executor.shutdown();
+    }
+
     @Test
     private void testCapacity() throws Exception {
         final KeyWatchTracker tracker = new KeyWatchTracker(2, 99999, false);
@@ -89,6 +89,14 @@ class ClassGenerator<T> {
     // Transaction method handles
     static final Method TRANSACTION_READ_SIMPLE_FIELD_METHOD;
     static final Method TRANSACTION_WRITE_SIMPLE_FIELD_METHOD;
+    static final Method TRANSACTION_READ_INT_FIELD_METHOD;
+    static final Method TRANSACTION_WRITE_INT_FIELD_METHOD;
+    static final Method TRANSACTION_READ_LONG_FIELD_METHOD;
+    static final Method TRANSACTION_WRITE_LONG_FIELD_METHOD;
+    static final Method TRANSACTION_READ_FLOAT_FIELD_METHOD;
+    static final Method TRANSACTION_WRITE_FLOAT_FIELD_METHOD;
+    static final Method TRANSACTION_READ_DOUBLE_FIELD_METHOD;
+    static final Method TRANSACTION_WRITE_DOUBLE_FIELD_METHOD;
 
     // ObjDumper method handles
     static final Method OBJ_DUMPER_TO_STRING_METHOD;
@@ -142,6 +150,22 @@ class ClassGenerator<T> {
               ObjId.class, int.class, boolean.class);
             TRANSACTION_WRITE_SIMPLE_FIELD_METHOD = Transaction.class.getMethod("writeSimpleField",
               ObjId.class, int.class, Object.class, boolean.class);
+            TRANSACTION_READ_INT_FIELD_METHOD = Transaction.class.getMethod("readIntField",
+              ObjId.class, int.class, boolean.class);
+            TRANSACTION_WRITE_INT_FIELD_METHOD = Transaction.class.getMethod("writeIntField",
+              ObjId.class, int.class, int.class, boolean.class);
+            TRANSACTION_READ_LONG_FIELD_METHOD = Transaction.class.getMethod("readLongField",
+              ObjId.class, int.class, boolean.class);
+            TRANSACTION_WRITE_LONG_FIELD_METHOD = Transaction.class.getMethod("writeLongField",
+              ObjId.class, int.class, long.class, boolean.class);
+            TRANSACTION_READ_FLOAT_FIELD_METHOD = Transaction.class.getMethod("readFloatField",
+              ObjId.class, int.class, boolean.class);
+            TRANSACTION_WRITE_FLOAT_FIELD_METHOD = Transaction.class.getMethod("writeFloatField",
+              ObjId.class, int.class, float.class, boolean.class);
+            TRANSACTION_READ_DOUBLE_FIELD_METHOD = Transaction.class.getMethod("readDoubleField",
+              ObjId.class, int.class, boolean.class);
+            TRANSACTION_WRITE_DOUBLE_FIELD_METHOD = Transaction.class.getMethod("writeDoubleField",
+              ObjId.class, int.class, double.class, boolean.class);
 
             // Converter
             CONVERTER_CONVERT_METHOD = Converter.class.getMethod("convert", Object.class);
@@ -195,6 +195,8 @@ public class JClass<T> extends JSchemaObject {
                     throw new IllegalArgumentException("invalid " + description + ": counter fields must not specify a type");
                 if (annotation.indexed())
                     throw new IllegalArgumentException("invalid " + description + ": counter fields cannot be indexed");
+                if (annotation.compressed())
+                    throw new IllegalArgumentException("invalid " + description + ": counter fields cannot be compressed");
 
                 // Create counter field
                 final JCounterField jfield = new JCounterField(this.jdb, fieldName, storageId, annotation,
@@ -580,6 +582,12 @@ public class JClass<T> extends JSchemaObject {
             throw new IllegalArgumentException("invalid " + description + ": unique() constraint not allowed on complex sub-field");
         if (annotation.uniqueExclude().length > 0 && !annotation.unique())
             throw new IllegalArgumentException("invalid " + description + ": use of uniqueExclude() requires unique = true");
+        if (isSubField && annotation.compressed())
+            throw new IllegalArgumentException("invalid " + description + ": compressed() not allowed on complex sub-field");
+        if (annotation.compressionDictionary().length() > 0 && !annotation.compressed()) {
+            throw new IllegalArgumentException("invalid " + description
+              + ": use of compressionDictionary() requires compressed = true");
+        }
 
         // See if field type encompasses one or more JClass types and is therefore a reference type
         final Class<?> fieldRawType = fieldTypeToken.getRawType();
@@ -705,6 +713,8 @@ public class JClass<T> extends JSchemaObject {
             throw new IllegalArgumentException("invalid " + description + ": onDelete() only allowed on reference fields");
         if (!isReferenceType && annotation.cascadeDelete())
             throw new IllegalArgumentException("invalid " + description + ": cascadeDelete() only allowed on reference fields");
+        if (isReferenceType && annotation.compressed())
+            throw new IllegalArgumentException("invalid " + description + ": compressed() not allowed on reference fields");
         if (!isReferenceType && annotation.unique() && !annotation.indexed())
             throw new IllegalArgumentException("invalid " + description + ": unique() constraint requires field to be indexed");
         if (nonReferenceType != null && nonReferenceType.getTypeToken().isPrimitive()
@@ -99,6 +99,14 @@ class JFieldScanner<T> extends AbstractFieldScanner<T, JField> {
             return false;
         }
         @Override
+        public boolean compressed() {
+            return false;
+        }
+        @Override
+        public String compressionDictionary() {
+            return "";
+        }
+        @Override
         public boolean unique() {
             return false;
         }
@@ -37,6 +37,8 @@ public class JSimpleField extends JField {
     final TypeToken<?> typeToken;
     final FieldType<?> fieldType;
     final boolean indexed;
+    final boolean compressed;
+    final String compressionDictionary;
     final boolean unique;
     final ArrayList<Object> uniqueExcludes;         // note: these are core API values, sorted by this.fieldType
     final UpgradeConversionPolicy upgradeConversion;
@@ -57,6 +59,9 @@ public class JSimpleField extends JField {
         this.typeToken = typeToken;
         this.fieldType = fieldType;
         this.indexed = indexed;
+        this.compressed = annotation.compressed();
+        this.compressionDictionary = this.compressed && annotation.compressionDictionary().length() > 0 ?
+          annotation.compressionDictionary() : null;
         this.unique = annotation.unique();
         this.setter = setter;
         this.upgradeConversion = annotation.upgradeConversion();
@@ -128,6 +133,16 @@ public class JSimpleField extends JField {
         return this.indexed;
     }
 
+    /**
+     * Get whether this field's values are compressed when stored.
+     *
+     * @return whether this field is compressed
+     * @see io.permazen.annotation.JField#compressed
+     */
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
     /**
      * Get the setter method associated with this field.
      *
@@ -184,6 +199,10 @@ public class JSimpleField extends JField {
             return false;
         if (this.indexed != that.indexed)
             return false;
+        if (this.compressed != that.compressed)
+            return false;
+        if (!Objects.equals(this.compressionDictionary, that.compressionDictionary))
+            return false;
         if (this.unique != that.unique)
             return false;
         if (!(Objects.equals(this.uniqueExcludes, that.uniqueExcludes)))
@@ -218,6 +237,8 @@ public class JSimpleField extends JField {
         super.initialize(jdb, schemaField);
         schemaField.setType(this.fieldType.getName());
         schemaField.setIndexed(this.indexed);
+        schemaField.setCompressed(this.compressed);
+        schemaField.setCompressionDictionary(this.compressionDictionary);
     }
 
     @Override
@@ -327,12 +348,17 @@ public class JSimpleField extends JField {
         mv.visitLabel(notCached);
         mv.visitFrame(Opcodes.F_SAME, 0, new Object[0], 0, new Object[0]);
 
-        // Retrieve (and unwrap if necessary) the value
+        // Retrieve (and unwrap if necessary) the value; if possible, use a primitive read method to avoid boxing
+        final Method primitiveReadMethod = JSimpleField.getPrimitiveReadMethod(propertyType);
         mv.visitVarInsn(Opcodes.ALOAD, 0);
-        this.outputReadCoreValueBytecode(generator, mv);
-        mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(this.typeToken.wrap().getRawType()));
-        if (propertyType.isPrimitive())
-            generator.unwrap(mv, Primitive.get(propertyType));
+        if (primitiveReadMethod != null)
+            this.outputReadCoreValueBytecode(generator, mv, primitiveReadMethod);
+        else {
+            this.outputReadCoreValueBytecode(generator, mv);
+            mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(this.typeToken.wrap().getRawType()));
+            if (propertyType.isPrimitive())
+                generator.unwrap(mv, Primitive.get(propertyType));
+        }
 
         // Cache the retrieved value
         mv.visitInsn(wide ? Opcodes.DUP2_X1 : Opcodes.DUP_X1);
@@ -365,11 +391,16 @@ public class JSimpleField extends JField {
                 mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(propertyType));
         }
 
-        // Wrap (if necessary) and write the value to the field
-        mv.visitInsn(wide ? Opcodes.DUP2 : Opcodes.DUP);
-        if (this.typeToken.isPrimitive())
-            generator.wrap(mv, Primitive.get(propertyType));
-        this.outputWriteCoreValueBytecode(generator, mv);
+        // Wrap (if necessary) and write the value to the field; if possible, use a primitive write method to avoid boxing
+        final Method primitiveWriteMethod = JSimpleField.getPrimitiveWriteMethod(propertyType);
+        if (primitiveWriteMethod != null)
+            this.outputWritePrimitiveValueBytecode(generator, mv, primitiveWriteMethod, propertyType);
+        else {
+            mv.visitInsn(wide ? Opcodes.DUP2 : Opcodes.DUP);
+            if (this.typeToken.isPrimitive())
+                generator.wrap(mv, Primitive.get(propertyType));
+            this.outputWriteCoreValueBytecode(generator, mv);
+        }
 
         // Now cache the value - only after a successful write
         mv.visitFieldInsn(Opcodes.PUTFIELD, className, this.getCachedValueFieldName(), Type.getDescriptor(propertyType));
@@ -439,8 +470,12 @@ public class JSimpleField extends JField {
     }
 
     void outputReadCoreValueBytecode(ClassGenerator<?> generator, MethodVisitor mv) {
+        this.outputReadCoreValueBytecode(generator, mv, ClassGenerator.TRANSACTION_READ_SIMPLE_FIELD_METHOD);
+    }
+
+    private void outputReadCoreValueBytecode(ClassGenerator<?> generator, MethodVisitor mv, Method readMethod) {
 
-        // this.$tx.getTransaction().readSimpleField(this.id, STORAGEID, true)
+        // this.$tx.getTransaction().readXXX(this.id, STORAGEID, true)
         mv.visitVarInsn(Opcodes.ALOAD, 0);
         mv.visitFieldInsn(Opcodes.GETFIELD, generator.getClassName(),
           ClassGenerator.TX_FIELD_NAME, Type.getDescriptor(JTransaction.class));
@@ -450,7 +485,7 @@ public class JSimpleField extends JField {
           ClassGenerator.ID_FIELD_NAME, Type.getDescriptor(ObjId.class));
         mv.visitLdcInsn(this.storageId);
         mv.visitInsn(Opcodes.ICONST_1);
-        generator.emitInvoke(mv, ClassGenerator.TRANSACTION_READ_SIMPLE_FIELD_METHOD);
+        generator.emitInvoke(mv, readMethod);
     }
 
     void outputWriteCoreValueBytecode(ClassGenerator<?> generator, MethodVisitor mv) {
@@ -474,5 +509,53 @@ public class JSimpleField extends JField {
         mv.visitInsn(Opcodes.ICONST_1);
         generator.emitInvoke(mv, ClassGenerator.TRANSACTION_WRITE_SIMPLE_FIELD_METHOD);
     }
+
+    // Unlike outputWriteCoreValueBytecode(), the stack is left unchanged; the new value is loaded from the setter parameter
+    private void outputWritePrimitiveValueBytecode(ClassGenerator<?> generator,
+      MethodVisitor mv, Method writeMethod, Class<?> propertyType) {
+
+        // JTransaction.registerJObject(this);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        generator.emitInvoke(mv, ClassGenerator.JTRANSACTION_REGISTER_JOBJECT_METHOD);
+
+        // this.$tx.getTransaction().writeXXXField(this.id, STORAGEID, value, true)
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, generator.getClassName(),
+          ClassGenerator.TX_FIELD_NAME, Type.getDescriptor(JTransaction.class));
+        generator.emitInvoke(mv, ClassGenerator.JTRANSACTION_GET_TRANSACTION_METHOD);
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitFieldInsn(Opcodes.GETFIELD, generator.getClassName(),
+          ClassGenerator.ID_FIELD_NAME, Type.getDescriptor(ObjId.class));
+        mv.visitLdcInsn(this.storageId);
+        mv.visitVarInsn(Type.getType(propertyType).getOpcode(Opcodes.ILOAD), 1);
+        mv.visitInsn(Opcodes.ICONST_1);
+        generator.emitInvoke(mv, writeMethod);
+    }
+
+    // Get the Transaction method that reads a field of the given primitive type without boxing, if any
+    private static Method getPrimitiveReadMethod(Class<?> type) {
+        if (type == int.class)
+            return ClassGenerator.TRANSACTION_READ_INT_FIELD_METHOD;
+        if (type == long.class)
+            return ClassGenerator.TRANSACTION_READ_LONG_FIELD_METHOD;
+        if (type == float.class)
+            return ClassGenerator.TRANSACTION_READ_FLOAT_FIELD_METHOD;
+        if (type == double.class)
+            return ClassGenerator.TRANSACTION_READ_DOUBLE_FIELD_METHOD;
+        return null;
+    }
+
+    // Get the Transaction method that writes a field of the given primitive type without boxing, if any
+    private static Method getPrimitiveWriteMethod(Class<?> type) {
+        if (type == int.class)
+            return ClassGenerator.TRANSACTION_WRITE_INT_FIELD_METHOD;
+        if (type == long.class)
+            return ClassGenerator.TRANSACTION_WRITE_LONG_FIELD_METHOD;
+        if (type == float.class)
+            return ClassGenerator.TRANSACTION_WRITE_FLOAT_FIELD_METHOD;
+        if (type == double.class)
+            return ClassGenerator.TRANSACTION_WRITE_DOUBLE_FIELD_METHOD;
+        return null;
+    }
 }
 
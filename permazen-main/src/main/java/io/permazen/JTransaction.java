@@ -69,6 +69,7 @@ import java.util.NavigableMap;
 import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
@@ -1113,6 +1114,31 @@ public class JTransaction {
         return this.tx.exists(id);
     }
 
+    /**
+     * Load the meta-data for multiple objects in a single batch, reading from the key/value store concurrently when possible.
+     *
+     * <p>
+     * When a large number of objects are about to be accessed for the first time, this method can reduce
+     * the number of serial round trips to the key/value store.
+     *
+     * @param jobjs objects to load
+     * @param executor executor for concurrent reads when the key/value transaction does not support
+     *  asynchronous reads natively, or null to read serially in that case
+     * @return the number of objects in {@code jobjs} that exist in this transaction
+     * @throws StaleTransactionException if this transaction is no longer usable
+     * @throws IllegalArgumentException if {@code jobjs} or any element therein is null
+     * @see Transaction#loadObjects Transaction.loadObjects()
+     */
+    public int loadObjects(Collection<? extends JObject> jobjs, Executor executor) {
+        Preconditions.checkArgument(jobjs != null, "null jobjs");
+        final ArrayList<ObjId> ids = new ArrayList<>(jobjs.size());
+        for (JObject jobj : jobjs) {
+            Preconditions.checkArgument(jobj != null, "null jobj");
+            ids.add(jobj.getObjId());
+        }
+        return this.tx.loadObjects(ids, executor);
+    }
+
     /**
      * Recreate the given instance in this transaction.
      *
@@ -0,0 +1,541 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen;
+
+import com.google.common.base.Preconditions;
+
+import io.permazen.core.ObjId;
+import io.permazen.core.Transaction;
+import io.permazen.core.TypeNotInSchemaVersionException;
+import io.permazen.kv.RetryTransactionException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Upgrades database objects to the current schema version in the background.
+ *
+ * <p>
+ * Normally objects are upgraded lazily, i.e., the first time they are accessed by a transaction using a newer schema
+ * version. That means the cost of the upgrade is paid by whatever transaction happens to touch the object first,
+ * and transactions touching the same old objects right after a new schema is deployed can conflict with each other.
+ *
+ * <p>
+ * Instances of this class proactively walk the {@linkplain Transaction#queryVersion object version index} and upgrade
+ * objects having a schema version other than the {@link Permazen}'s configured schema version. The work is divided into
+ * small transactions of at most {@linkplain #setBatchSize batch size} objects each, and the rate of upgrades
+ * is limited to {@linkplain #setMaxObjectsPerSecond a configurable maximum}. Upgrades are performed via
+ * {@link JTransaction#updateSchemaVersion JTransaction.updateSchemaVersion()}, so
+ * {@link io.permazen.annotation.OnVersionChange &#64;OnVersionChange} methods are invoked as usual.
+ *
+ * <p>
+ * The object version index itself serves as the persistent record of progress: upgraded objects no longer appear
+ * under their old version, so an instance created after a restart simply resumes where the previous one left off.
+ * Objects that cannot be upgraded because their type no longer exists in the current schema version are skipped.
+ *
+ * <p>
+ * If {@linkplain #setDeleteEmptyVersions so configured}, a schema version is deleted from the database via
+ * {@link Transaction#deleteSchemaVersion Transaction.deleteSchemaVersion()} as soon as no objects having that
+ * version remain.
+ *
+ * <p>
+ * Migration can be performed on a dedicated background thread via {@link #start} and {@link #stop}, or
+ * one batch at a time by invoking {@link #migrateBatch} directly.
+ *
+ * <p>
+ * Instances are thread safe.
+ */
+@ThreadSafe
+public class SchemaMigrator {
+
+    /**
+     * Default maximum number of objects upgraded per transaction ({@value #DEFAULT_BATCH_SIZE}).
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /**
+     * Default maximum number of objects upgraded per second ({@value #DEFAULT_MAX_OBJECTS_PER_SECOND}).
+     */
+    public static final int DEFAULT_MAX_OBJECTS_PER_SECOND = 1000;
+
+    /**
+     * Default maximum number of retries of a batch transaction ({@value #DEFAULT_MAX_RETRIES}).
+     */
+    public static final int DEFAULT_MAX_RETRIES = 6;
+
+    /**
+     * Default delay after an unexpected error before trying again (in milliseconds) ({@value #DEFAULT_ERROR_DELAY}).
+     */
+    public static final int DEFAULT_ERROR_DELAY = 5000;
+
+    protected final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final Permazen jdb;
+
+    // Configuration
+    @GuardedBy("this")
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    @GuardedBy("this")
+    private int maxObjectsPerSecond = DEFAULT_MAX_OBJECTS_PER_SECOND;
+    @GuardedBy("this")
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    @GuardedBy("this")
+    private int errorDelay = DEFAULT_ERROR_DELAY;
+    @GuardedBy("this")
+    private boolean deleteEmptyVersions;
+    @GuardedBy("this")
+    private ValidationMode validationMode = ValidationMode.AUTOMATIC;
+
+    // Runtime state
+    @GuardedBy("this")
+    private final HashMap<Integer, ObjId> cursors = new HashMap<>();      // last object visited for each old version
+    @GuardedBy("this")
+    private Thread thread;
+    @GuardedBy("this")
+    private boolean finished;
+
+    // Metrics
+    private final AtomicLong objectsMigrated = new AtomicLong();
+    private final AtomicLong objectsSkipped = new AtomicLong();
+    private final AtomicLong batchesCommitted = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong versionsDeleted = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param jdb database whose objects should be upgraded to {@code jdb}'s configured schema version
+     * @throws IllegalArgumentException if {@code jdb} is null
+     */
+    public SchemaMigrator(Permazen jdb) {
+        Preconditions.checkArgument(jdb != null, "null jdb");
+        this.jdb = jdb;
+    }
+
+// Configuration
+
+    /**
+     * Get the maximum number of objects upgraded in a single transaction.
+     *
+     * @return batch size
+     */
+    public synchronized int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Set the maximum number of objects upgraded in a single transaction.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize batch size
+     * @throws IllegalArgumentException if {@code batchSize} is zero or negative
+     */
+    public synchronized void setBatchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batchSize <= 0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the maximum rate at which objects are upgraded by the background thread.
+     *
+     * @return maximum upgrades per second
+     */
+    public synchronized int getMaxObjectsPerSecond() {
+        return this.maxObjectsPerSecond;
+    }
+
+    /**
+     * Set the maximum rate at which objects are upgraded by the background thread.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_MAX_OBJECTS_PER_SECOND}.
+     *
+     * @param maxObjectsPerSecond maximum upgrades per second
+     * @throws IllegalArgumentException if {@code maxObjectsPerSecond} is zero or negative
+     */
+    public synchronized void setMaxObjectsPerSecond(int maxObjectsPerSecond) {
+        Preconditions.checkArgument(maxObjectsPerSecond > 0, "maxObjectsPerSecond <= 0");
+        this.maxObjectsPerSecond = maxObjectsPerSecond;
+    }
+
+    /**
+     * Get the maximum number of times a batch transaction is retried after a {@link RetryTransactionException}.
+     *
+     * @return maximum retries
+     */
+    public synchronized int getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    /**
+     * Set the maximum number of times a batch transaction is retried after a {@link RetryTransactionException}.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_MAX_RETRIES}.
+     *
+     * @param maxRetries maximum retries
+     * @throws IllegalArgumentException if {@code maxRetries} is negative
+     */
+    public synchronized void setMaxRetries(int maxRetries) {
+        Preconditions.checkArgument(maxRetries >= 0, "maxRetries < 0");
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Get the delay after an unexpected error before the background thread tries again.
+     *
+     * @return error delay in milliseconds
+     */
+    public synchronized int getErrorDelay() {
+        return this.errorDelay;
+    }
+
+    /**
+     * Set the delay after an unexpected error before the background thread tries again.
+     *
+     * <p>
+     * Default is {@value #DEFAULT_ERROR_DELAY}.
+     *
+     * @param errorDelay error delay in milliseconds
+     * @throws IllegalArgumentException if {@code errorDelay} is negative
+     */
+    public synchronized void setErrorDelay(int errorDelay) {
+        Preconditions.checkArgument(errorDelay >= 0, "errorDelay < 0");
+        this.errorDelay = errorDelay;
+    }
+
+    /**
+     * Determine whether schema versions are automatically deleted once they no longer have any objects.
+     *
+     * @return true if empty schema versions are deleted
+     */
+    public synchronized boolean isDeleteEmptyVersions() {
+        return this.deleteEmptyVersions;
+    }
+
+    /**
+     * Configure whether schema versions are automatically deleted once they no longer have any objects.
+     *
+     * <p>
+     * Default is false.
+     *
+     * @param deleteEmptyVersions true to delete empty schema versions
+     */
+    public synchronized void setDeleteEmptyVersions(boolean deleteEmptyVersions) {
+        this.deleteEmptyVersions = deleteEmptyVersions;
+    }
+
+    /**
+     * Get the {@link ValidationMode} used for batch transactions.
+     *
+     * @return validation mode
+     */
+    public synchronized ValidationMode getValidationMode() {
+        return this.validationMode;
+    }
+
+    /**
+     * Set the {@link ValidationMode} used for batch transactions.
+     *
+     * <p>
+     * Default is {@link ValidationMode#AUTOMATIC}.
+     *
+     * @param validationMode validation mode
+     * @throws IllegalArgumentException if {@code validationMode} is null
+     */
+    public synchronized void setValidationMode(ValidationMode validationMode) {
+        Preconditions.checkArgument(validationMode != null, "null validationMode");
+        this.validationMode = validationMode;
+    }
+
+// Metrics
+
+    /**
+     * Get the total number of objects upgraded by this instance.
+     *
+     * @return number of objects upgraded
+     */
+    public long getObjectsMigrated() {
+        return this.objectsMigrated.get();
+    }
+
+    /**
+     * Get the total number of objects skipped by this instance because their type does not exist
+     * in the target schema version.
+     *
+     * @return number of objects skipped
+     */
+    public long getObjectsSkipped() {
+        return this.objectsSkipped.get();
+    }
+
+    /**
+     * Get the total number of batch transactions successfully committed by this instance.
+     *
+     * @return number of committed batches
+     */
+    public long getBatchesCommitted() {
+        return this.batchesCommitted.get();
+    }
+
+    /**
+     * Get the total number of batch transaction retries performed by this instance.
+     *
+     * @return number of retries
+     */
+    public long getRetries() {
+        return this.retries.get();
+    }
+
+    /**
+     * Get the total number of schema versions deleted by this instance.
+     *
+     * @return number of schema versions deleted
+     */
+    public long getVersionsDeleted() {
+        return this.versionsDeleted.get();
+    }
+
+    /**
+     * Get the current position of this instance in the object version index.
+     *
+     * @return mapping from old schema version to the last object visited having that version
+     */
+    public synchronized Map<Integer, ObjId> getCursors() {
+        return Collections.unmodifiableMap(new HashMap<>(this.cursors));
+    }
+
+    /**
+     * Determine whether this instance has visited every object having an old schema version.
+     *
+     * @return true if migration is complete
+     */
+    public synchronized boolean isFinished() {
+        return this.finished;
+    }
+
+// Lifecycle
+
+    /**
+     * Start migrating objects on a background thread.
+     *
+     * <p>
+     * The background thread exits on its own once all objects have been visited.
+     * Does nothing if this instance is already started.
+     */
+    public synchronized void start() {
+        if (this.thread != null)
+            return;
+        this.thread = new Thread(this::runMigration, "Schema Migrator for " + this.jdb);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stop the background thread, if running, and wait for it to exit.
+     *
+     * <p>
+     * Any batch in progress is rolled back.
+     */
+    public void stop() {
+        final Thread stopThread;
+        synchronized (this) {
+            if ((stopThread = this.thread) == null)
+                return;
+            this.thread = null;
+        }
+        stopThread.interrupt();
+        try {
+            stopThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Determine whether the background thread is running.
+     *
+     * @return true if migrating in the background
+     */
+    public synchronized boolean isRunning() {
+        return this.thread != null && this.thread.isAlive();
+    }
+
+// Migration
+
+    /**
+     * Upgrade the next batch of objects in a new transaction.
+     *
+     * <p>
+     * Retries the transaction as needed, up to the configured {@linkplain #setMaxRetries maximum number of retries}.
+     *
+     * @return the number of objects visited, or zero if there are no more objects to upgrade
+     * @throws RetryTransactionException if the maximum number of retries is exceeded
+     */
+    public int migrateBatch() {
+        int retryNumber = 0;
+        while (true) {
+            try {
+                return this.doMigrateBatch();
+            } catch (RetryTransactionException e) {
+                if (retryNumber++ >= this.getMaxRetries())
+                    throw e;
+                this.retries.incrementAndGet();
+            }
+        }
+    }
+
+    private int doMigrateBatch() {
+
+        // Snapshot configuration
+        final int limit;
+        final boolean deleteEmpty;
+        final HashMap<Integer, ObjId> newCursors;
+        final ValidationMode mode;
+        synchronized (this) {
+            limit = this.batchSize;
+            deleteEmpty = this.deleteEmptyVersions;
+            newCursors = new HashMap<>(this.cursors);
+            mode = this.validationMode;
+        }
+
+        // Create transaction
+        final JTransaction jtx = this.jdb.createTransaction(false, mode);
+        JTransaction.setCurrent(jtx);
+        int count = 0;
+        int migrated = 0;
+        int skipped = 0;
+        int deleted = 0;
+        boolean success = false;
+        try {
+            final Transaction tx = jtx.getTransaction();
+            final int targetVersion = tx.getSchema().getVersionNumber();
+            final NavigableMap<Integer, NavigableSet<ObjId>> versionMap = tx.queryVersion().asMap();
+            for (Map.Entry<Integer, NavigableSet<ObjId>> entry : versionMap.entrySet()) {
+                final int version = entry.getKey();
+                if (version == targetVersion)
+                    continue;
+
+                // Gather the next batch of objects, resuming after the last object visited; we copy the IDs
+                // up front to avoid modifying the version index while iterating it
+                NavigableSet<ObjId> ids = entry.getValue();
+                final ObjId cursor = newCursors.get(version);
+                if (cursor != null)
+                    ids = ids.tailSet(cursor, false);
+                final ArrayList<ObjId> batch = new ArrayList<>(Math.min(limit - count, 64));
+                for (ObjId id : ids) {
+                    if (count + batch.size() >= limit)
+                        break;
+                    batch.add(id);
+                }
+
+                // Upgrade objects
+                for (ObjId id : batch) {
+                    try {
+                        jtx.updateSchemaVersion(jtx.get(id));
+                        migrated++;
+                    } catch (TypeNotInSchemaVersionException e) {
+                        skipped++;
+                    }
+                    newCursors.put(version, id);
+                }
+                count += batch.size();
+
+                // Delete the schema version if no objects remain
+                if (deleteEmpty && !tx.queryVersion().asMap().containsKey(version)) {
+                    if (tx.deleteSchemaVersion(version))
+                        deleted++;
+                    newCursors.remove(version);
+                }
+
+                // Batch full?
+                if (count >= limit)
+                    break;
+            }
+
+            // Commit
+            jtx.commit();
+            success = true;
+        } finally {
+            if (!success)
+                jtx.rollback();
+            JTransaction.setCurrent(null);
+        }
+
+        // Update state
+        synchronized (this) {
+            this.cursors.clear();
+            this.cursors.putAll(newCursors);
+            this.finished = count == 0;
+        }
+        this.objectsMigrated.addAndGet(migrated);
+        this.objectsSkipped.addAndGet(skipped);
+        this.versionsDeleted.addAndGet(deleted);
+        this.batchesCommitted.incrementAndGet();
+        if (this.log.isDebugEnabled() && count > 0)
+            this.log.debug("{} upgraded {} and skipped {} object(s)", this, migrated, skipped);
+        return count;
+    }
+
+    private void runMigration() {
+        if (this.log.isDebugEnabled())
+            this.log.debug("{} starting", this);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+
+                // Migrate next batch
+                final long startTime = System.nanoTime();
+                final int count;
+                try {
+                    count = this.migrateBatch();
+                } catch (RuntimeException e) {
+                    if (Thread.currentThread().isInterrupted())
+                        break;
+                    this.log.error("{} batch failed, will try again in {}ms", this, this.getErrorDelay(), e);
+                    Thread.sleep(this.getErrorDelay());
+                    continue;
+                }
+                if (count == 0)
+                    break;
+
+                // Throttle
+                final long minDuration = (count * 1000L) / this.getMaxObjectsPerSecond();
+                final long elapsed = (System.nanoTime() - startTime) / 1000000L;
+                if (elapsed < minDuration)
+                    Thread.sleep(minDuration - elapsed);
+            }
+        } catch (InterruptedException e) {
+            // exit
+        } finally {
+            synchronized (this) {
+                if (this.thread == Thread.currentThread())
+                    this.thread = null;
+            }
+        }
+        if (this.log.isDebugEnabled())
+            this.log.debug("{} stopping, {} object(s) upgraded", this, this.objectsMigrated.get());
+    }
+
+// Object
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName() + "[jdb=" + this.jdb + "]";
+    }
+}
@@ -277,6 +277,42 @@ public @interface JField {
      */
     boolean indexed() default false;
 
+    /**
+     * Whether this field's values are compressed when stored.
+     *
+     * <p>
+     * Compression can reduce the storage footprint of fields with large values, such as long {@link String}s
+     * and {@code byte[]} arrays. Values are compressed individually, and only when doing so actually makes them
+     * smaller; compression is transparent to indexes, which always contain the uncompressed value.
+     *
+     * <p>
+     * Changing this property (or {@link #compressionDictionary}) requires a new schema version; objects upgraded
+     * from an older schema version have their values re-encoded automatically.
+     *
+     * <p>
+     * This property must be false for reference fields, {@link io.permazen.Counter} fields, and sub-fields of complex fields.
+     *
+     * @return whether the field's values are compressed
+     * @see #compressionDictionary
+     */
+    boolean compressed() default false;
+
+    /**
+     * Specify a preset dictionary to use when compressing this field's values.
+     *
+     * <p>
+     * Short values compress poorly on their own; a dictionary containing text that commonly appears in this field's values,
+     * with the most common substrings toward the end, can greatly improve compression of short values. The dictionary
+     * is recorded as part of the schema, so changing it requires a new schema version.
+     *
+     * <p>
+     * This property must be left empty when {@link #compressed} is false.
+     *
+     * @return compression dictionary, or empty string for none
+     * @see #compressed
+     */
+    String compressionDictionary() default "";
+
     /**
      * Define forward copy cascades for the annotated reference field.
      *
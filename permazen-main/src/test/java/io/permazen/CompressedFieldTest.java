@@ -0,0 +1,74 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen;
+
+import io.permazen.annotation.JField;
+import io.permazen.annotation.PermazenType;
+import io.permazen.schema.SimpleSchemaField;
+import io.permazen.test.TestSupport;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CompressedFieldTest extends TestSupport {
+
+    @Test
+    public void testCompressedField() throws Exception {
+        final Permazen jdb = BasicTest.getPermazen(Document.class);
+
+        // Check schema
+        final SimpleSchemaField schemaField = (SimpleSchemaField)jdb.getSchemaModel()
+          .getSchemaObjectTypes().get(100).getSchemaFields().get(101);
+        Assert.assertTrue(schemaField.isCompressed());
+        Assert.assertEquals(schemaField.getCompressionDictionary(), "lorem ipsum dolor sit amet");
+
+        final char[] chars = new char[2000];
+        Arrays.fill(chars, 'x');
+        final String body = "lorem ipsum " + new String(chars);
+
+        final JTransaction jtx = jdb.createTransaction(true, ValidationMode.MANUAL);
+        JTransaction.setCurrent(jtx);
+        try {
+            final Document doc = jtx.create(Document.class);
+            doc.setBody(body);
+            Assert.assertEquals(doc.getBody(), body);
+            Assert.assertEquals(jtx.queryIndex(Document.class, "body", String.class).asMap().get(body), buildSet(doc));
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+    }
+
+    @Test
+    public void testInvalidCompressedField() throws Exception {
+        try {
+            BasicTest.getPermazen(BadDocument.class);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            this.log.info("got expected " + e);
+        }
+    }
+
+// Model Classes
+
+    @PermazenType(storageId = 100)
+    public abstract static class Document implements JObject {
+
+        @JField(storageId = 101, indexed = true, compressed = true, compressionDictionary = "lorem ipsum dolor sit amet")
+        public abstract String getBody();
+        public abstract void setBody(String body);
+    }
+
+    @PermazenType(storageId = 200)
+    public abstract static class BadDocument implements JObject {
+
+        @JField(storageId = 201, compressionDictionary = "foo")
+        public abstract String getBody();
+        public abstract void setBody(String body);
+    }
+}
@@ -0,0 +1,153 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen;
+
+import io.permazen.annotation.JField;
+import io.permazen.annotation.OnVersionChange;
+import io.permazen.annotation.PermazenType;
+import io.permazen.core.Database;
+import io.permazen.kv.simple.SimpleKVDatabase;
+import io.permazen.test.TestSupport;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SchemaMigratorTest extends TestSupport {
+
+    @Test
+    public void testMigrateBatches() {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final Database db = new Database(kvstore);
+
+    // Version 1
+
+        final Permazen jdb1 = new Permazen(db, 1, null, Arrays.<Class<?>>asList(Person1.class));
+        JTransaction jtx = jdb1.createTransaction(true, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+            for (int i = 0; i < 25; i++)
+                jtx.create(Person1.class).setIndex(i);
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+
+    // Version 2 - register schema
+
+        final Permazen jdb2 = new Permazen(db, 2, null, Arrays.<Class<?>>asList(Person2.class));
+        jtx = jdb2.createTransaction(true, ValidationMode.AUTOMATIC);
+        jtx.commit();
+
+    // Migrate
+
+        final SchemaMigrator migrator = new SchemaMigrator(jdb2);
+        migrator.setBatchSize(10);
+        migrator.setDeleteEmptyVersions(true);
+        Assert.assertEquals(migrator.migrateBatch(), 10);
+        Assert.assertFalse(migrator.isFinished());
+
+        // Simulate a restart
+        final SchemaMigrator migrator2 = new SchemaMigrator(jdb2);
+        migrator2.setBatchSize(10);
+        migrator2.setDeleteEmptyVersions(true);
+        Assert.assertEquals(migrator2.migrateBatch(), 10);
+        Assert.assertEquals(migrator2.migrateBatch(), 5);
+        Assert.assertEquals(migrator2.migrateBatch(), 0);
+        Assert.assertTrue(migrator2.isFinished());
+
+        Assert.assertEquals(migrator.getObjectsMigrated() + migrator2.getObjectsMigrated(), 25);
+        Assert.assertEquals(migrator2.getVersionsDeleted(), 1);
+
+    // Verify
+
+        jtx = jdb2.createTransaction(false, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+            Assert.assertEquals(jtx.queryVersion(JObject.class).keySet(), buildSet(2));
+            for (Person2 p : jtx.getAll(Person2.class))
+                Assert.assertEquals(p.getDoubleIndex(), p.getIndex() * 2);
+            Assert.assertEquals(jtx.getTransaction().getSchemas().getVersions().keySet(), buildSet(2));
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+    }
+
+    @Test
+    public void testBackgroundThread() throws Exception {
+
+        final SimpleKVDatabase kvstore = new SimpleKVDatabase();
+        final Database db = new Database(kvstore);
+
+        final Permazen jdb1 = new Permazen(db, 1, null, Arrays.<Class<?>>asList(Person1.class));
+        JTransaction jtx = jdb1.createTransaction(true, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+            for (int i = 0; i < 50; i++)
+                jtx.create(Person1.class).setIndex(i);
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+
+        final Permazen jdb2 = new Permazen(db, 2, null, Arrays.<Class<?>>asList(Person2.class));
+        jtx = jdb2.createTransaction(true, ValidationMode.AUTOMATIC);
+        jtx.commit();
+
+        final SchemaMigrator migrator = new SchemaMigrator(jdb2);
+        migrator.setBatchSize(7);
+        migrator.setMaxObjectsPerSecond(10000);
+        migrator.start();
+        for (int i = 0; i < 100 && migrator.isRunning(); i++)
+            Thread.sleep(100);
+        migrator.stop();
+
+        Assert.assertTrue(migrator.isFinished());
+        Assert.assertEquals(migrator.getObjectsMigrated(), 50);
+
+        jtx = jdb2.createTransaction(false, ValidationMode.AUTOMATIC);
+        JTransaction.setCurrent(jtx);
+        try {
+            Assert.assertEquals(jtx.queryVersion(JObject.class).keySet(), buildSet(2));
+            jtx.commit();
+        } finally {
+            JTransaction.setCurrent(null);
+        }
+    }
+
+// Model Classes
+
+    @PermazenType(storageId = 100)
+    public abstract static class Person1 implements JObject {
+
+        @JField(storageId = 101)
+        public abstract int getIndex();
+        public abstract void setIndex(int index);
+    }
+
+    @PermazenType(storageId = 100)
+    public abstract static class Person2 implements JObject {
+
+        @JField(storageId = 101)
+        public abstract int getIndex();
+        public abstract void setIndex(int index);
+
+        @JField(storageId = 102)
+        public abstract int getDoubleIndex();
+        public abstract void setDoubleIndex(int doubleIndex);
+
+        @OnVersionChange
+        private void versionChange(int oldVersion, int newVersion, Map<Integer, Object> oldValues) {
+            Assert.assertEquals(oldVersion, 1);
+            Assert.assertEquals(newVersion, 2);
+            this.setDoubleIndex(this.getIndex() * 2);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import io.permazen.JObject;
 import io.permazen.Permazen;
 import io.permazen.SnapshotJTransaction;
 import io.permazen.core.ObjId;
+import io.permazen.kv.KVStore;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -46,6 +47,8 @@ public class JObjectHttpMessageConverter extends AbstractHttpMessageConverter<JO
     private final Permazen jdb;
 
     private Class<?>[] validationGroups;
+    private int chunkSize;
+    private boolean compress;
 
     /**
      * Constructor.
@@ -87,10 +90,41 @@ public class JObjectHttpMessageConverter extends AbstractHttpMessageConverter<JO
         this.validationGroups = groups;
     }
 
+    /**
+     * Configure whether to encode payloads in the streaming, chunked format, and if so the target chunk size.
+     *
+     * <p>
+     * Payloads in the chunked format can only be decoded by peers that understand it, so this is disabled by default.
+     * Incoming payloads in either format are always accepted.
+     *
+     * @param chunkSize target chunk size in bytes, or zero to use the original, non-chunked format
+     * @throws IllegalArgumentException if {@code chunkSize} is negative
+     * @see KVStoreHttpMessageConverter#setChunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize >= 0, "chunkSize < 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Configure whether to compress chunks when encoding in the chunked format.
+     *
+     * <p>
+     * Default false.
+     *
+     * @param compress true to compress chunks
+     * @see KVStoreHttpMessageConverter#setCompress
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
 // AbstractHttpMessageConverter
 
     @Override
     protected Long getContentLength(JObject jobj, MediaType contentType) {
+        if (this.chunkSize != 0)
+            return null;
         return KVStoreHttpMessageConverter.getKVStoreContentLength(jobj.getTransaction().getTransaction().getKVTransaction());
     }
 
@@ -149,7 +183,11 @@ public class JObjectHttpMessageConverter extends AbstractHttpMessageConverter<JO
     @Override
     protected void writeInternal(JObject jobj, HttpOutputMessage output) throws IOException {
         output.getHeaders().setContentType(this.getDefaultContentType(jobj));
-        KVStoreHttpMessageConverter.writeKVStore(jobj.getTransaction().getTransaction().getKVTransaction(), output);
+        final KVStore kvstore = jobj.getTransaction().getTransaction().getKVTransaction();
+        if (this.chunkSize == 0)
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output);
+        else
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output, this.chunkSize, this.compress);
     }
 }
 
@@ -9,13 +9,17 @@ import com.google.common.base.Preconditions;
 
 import io.permazen.kv.KVPair;
 import io.permazen.kv.KVStore;
+import io.permazen.kv.util.ChunkedKeyListEncoder;
 import io.permazen.kv.util.KeyListEncoder;
 import io.permazen.kv.util.NavigableMapKVStore;
 import io.permazen.util.CloseableIterator;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
@@ -28,6 +32,14 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
  * to compress common prefixes of consecutive keys.
  *
  * <p>
+ * By default, the encoded length is calculated up front so that a {@code Content-Length} header can be sent, which requires
+ * an extra pass over the data. For large payloads, instances may instead be configured via {@link #setChunkSize setChunkSize()}
+ * to use the streaming format provided by {@link ChunkedKeyListEncoder}, in which case the key/value pairs are written
+ * as they are produced, in optionally {@linkplain #setCompress compressed} chunks, and are applied to the destination
+ * in batches as they are received. Such payloads are identified by the {@value #FORMAT_PARAMETER_NAME}={@value #CHUNKED_FORMAT}
+ * parameter in the MIME type; decoding automatically handles both formats.
+ *
+ * <p>
  * See {@link JObjectHttpMessageConverter} for a higher level API.
  *
  * @see SnapshotJTransactionHttpMessageConverter
@@ -40,6 +52,19 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
      */
     public static final MediaType DEFAULT_MIME_TYPE = new MediaType("application", "x-permazen-kvstore");
 
+    /**
+     * Name of the MIME type parameter indicating the payload format.
+     */
+    public static final String FORMAT_PARAMETER_NAME = "format";
+
+    /**
+     * Value of the {@value #FORMAT_PARAMETER_NAME} MIME type parameter indicating the {@link ChunkedKeyListEncoder} format.
+     */
+    public static final String CHUNKED_FORMAT = "chunked";
+
+    private int chunkSize;
+    private boolean compress;
+
     /**
      * Constructor.
      *
@@ -59,11 +84,56 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
         super(mimeTypes);
     }
 
+    /**
+     * Get the target chunk size used when encoding payloads in the streaming, chunked format.
+     *
+     * @return chunk size in bytes, or zero if the chunked format is not used for encoding
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Configure whether to encode payloads in the streaming, chunked format, and if so the target chunk size.
+     *
+     * <p>
+     * Payloads in the chunked format can only be decoded by peers that understand it, so this is disabled by default.
+     *
+     * @param chunkSize target chunk size in bytes (e.g., {@link ChunkedKeyListEncoder#DEFAULT_CHUNK_SIZE}),
+     *  or zero to use the original, non-chunked format
+     * @throws IllegalArgumentException if {@code chunkSize} is negative
+     */
+    public void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize >= 0, "chunkSize < 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Determine whether chunks are compressed when encoding in the chunked format.
+     *
+     * @return true if chunks are compressed
+     */
+    public boolean isCompress() {
+        return this.compress;
+    }
+
+    /**
+     * Configure whether to compress chunks when encoding in the chunked format.
+     *
+     * <p>
+     * This setting has no effect unless a {@linkplain #setChunkSize chunk size} is configured. Default false.
+     *
+     * @param compress true to compress chunks
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
 // AbstractHttpMessageConverter
 
     @Override
     protected Long getContentLength(KVStore kvstore, MediaType mediaType) {
-        return KVStoreHttpMessageConverter.getKVStoreContentLength(kvstore);
+        return this.chunkSize == 0 ? KVStoreHttpMessageConverter.getKVStoreContentLength(kvstore) : null;
     }
 
     @Override
@@ -80,7 +150,10 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
 
     @Override
     protected void writeInternal(KVStore kvstore, HttpOutputMessage output) throws IOException {
-        KVStoreHttpMessageConverter.writeKVStore(kvstore, output);
+        if (this.chunkSize == 0)
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output);
+        else
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output, this.chunkSize, this.compress);
     }
 
 // Utility methods
@@ -102,6 +175,10 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
     /**
      * Decode a key/value store HTTP payload.
      *
+     * <p>
+     * If the payload's {@code Content-Type} has the {@value #FORMAT_PARAMETER_NAME}={@value #CHUNKED_FORMAT} parameter,
+     * the payload is decoded via {@link ChunkedKeyListEncoder}, otherwise via {@link KeyListEncoder}.
+     *
      * @param kvstore key/value store to populate from input
      * @param input HTTP payload input
      * @throws HttpMessageNotReadableException if {@code input} contains invalid content
@@ -112,6 +189,10 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
         Preconditions.checkArgument(kvstore != null, "null kvstore");
         Preconditions.checkArgument(input != null, "null input");
         try {
+            if (KVStoreHttpMessageConverter.isChunked(input.getHeaders().getContentType())) {
+                ChunkedKeyListEncoder.readPairs(input.getBody(), kvstore);
+                return;
+            }
             for (Iterator<KVPair> i = KeyListEncoder.readPairs(input.getBody()); i.hasNext(); ) {
                 final KVPair kv = i.next();
                 kvstore.put(kv.getKey(), kv.getValue());
@@ -140,5 +221,47 @@ public class KVStoreHttpMessageConverter extends AbstractHttpMessageConverter<KV
             KeyListEncoder.writePairs(i, output.getBody());
         }
     }
-}
 
+    /**
+     * Encode a key/value store HTTP payload in the streaming, chunked format.
+     *
+     * <p>
+     * The {@value #FORMAT_PARAMETER_NAME}={@value #CHUNKED_FORMAT} parameter is added to the {@code Content-Type}
+     * header of {@code output}, if any, and no {@code Content-Length} header should be set.
+     *
+     * @param kvstore key/value store to encode
+     * @param output HTTP payload output
+     * @param chunkSize target chunk size in bytes
+     * @param compress true to compress chunks
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if either {@code kvstore} or {@code output} is null
+     * @throws IllegalArgumentException if {@code chunkSize} is not positive
+     * @see ChunkedKeyListEncoder
+     */
+    public static void writeKVStore(KVStore kvstore, HttpOutputMessage output, int chunkSize, boolean compress)
+      throws IOException {
+        Preconditions.checkArgument(kvstore != null, "null kvstore");
+        Preconditions.checkArgument(output != null, "null output");
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize <= 0");
+        final MediaType mediaType = output.getHeaders().getContentType();
+        if (mediaType != null) {
+            final Map<String, String> parameters = new LinkedHashMap<>(mediaType.getParameters());
+            parameters.put(FORMAT_PARAMETER_NAME, CHUNKED_FORMAT);
+            output.getHeaders().setContentType(new MediaType(mediaType, parameters));
+        }
+        output.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        try (CloseableIterator<KVPair> i = kvstore.getRange(null, null)) {
+            ChunkedKeyListEncoder.writePairs(i, output.getBody(), chunkSize, compress);
+        }
+    }
+
+    /**
+     * Determine whether the given MIME type indicates the streaming, chunked format.
+     *
+     * @param mediaType MIME type, or null
+     * @return true if {@code mediaType} has the {@value #FORMAT_PARAMETER_NAME}={@value #CHUNKED_FORMAT} parameter
+     */
+    public static boolean isChunked(MediaType mediaType) {
+        return mediaType != null && CHUNKED_FORMAT.equals(mediaType.getParameter(FORMAT_PARAMETER_NAME));
+    }
+}
@@ -12,6 +12,7 @@ import io.permazen.Permazen;
 import io.permazen.SnapshotJTransaction;
 import io.permazen.ValidationException;
 import io.permazen.ValidationMode;
+import io.permazen.kv.KVStore;
 import io.permazen.kv.util.NavigableMapKVStore;
 
 import java.io.IOException;
@@ -52,6 +53,8 @@ public class SnapshotJTransactionHttpMessageConverter extends AbstractHttpMessag
     private final Permazen jdb;
 
     private Class<?>[] validationGroups;
+    private int chunkSize;
+    private boolean compress;
 
     /**
      * Constructor.
@@ -91,10 +94,41 @@ public class SnapshotJTransactionHttpMessageConverter extends AbstractHttpMessag
         this.validationGroups = groups;
     }
 
+    /**
+     * Configure whether to encode payloads in the streaming, chunked format, and if so the target chunk size.
+     *
+     * <p>
+     * Payloads in the chunked format can only be decoded by peers that understand it, so this is disabled by default.
+     * Incoming payloads in either format are always accepted.
+     *
+     * @param chunkSize target chunk size in bytes, or zero to use the original, non-chunked format
+     * @throws IllegalArgumentException if {@code chunkSize} is negative
+     * @see KVStoreHttpMessageConverter#setChunkSize
+     */
+    public void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize >= 0, "chunkSize < 0");
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Configure whether to compress chunks when encoding in the chunked format.
+     *
+     * <p>
+     * Default false.
+     *
+     * @param compress true to compress chunks
+     * @see KVStoreHttpMessageConverter#setCompress
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
 // AbstractHttpMessageConverter
 
     @Override
     protected Long getContentLength(SnapshotJTransaction jtx, MediaType contentType) {
+        if (this.chunkSize != 0)
+            return null;
         return KVStoreHttpMessageConverter.getKVStoreContentLength(jtx.getTransaction().getKVStore());
     }
 
@@ -111,7 +145,11 @@ public class SnapshotJTransactionHttpMessageConverter extends AbstractHttpMessag
 
     @Override
     protected void writeInternal(SnapshotJTransaction jtx, HttpOutputMessage output) throws IOException {
-        KVStoreHttpMessageConverter.writeKVStore(jtx.getTransaction().getKVStore(), output);
+        final KVStore kvstore = jtx.getTransaction().getKVStore();
+        if (this.chunkSize == 0)
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output);
+        else
+            KVStoreHttpMessageConverter.writeKVStore(kvstore, output, this.chunkSize, this.compress);
     }
 
 // Utility methods
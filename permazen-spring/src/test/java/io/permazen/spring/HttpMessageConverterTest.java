@@ -0,0 +1,179 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.spring;
+
+import com.google.common.base.Converter;
+
+import io.permazen.JObject;
+import io.permazen.Permazen;
+import io.permazen.SnapshotJTransaction;
+import io.permazen.ValidationMode;
+import io.permazen.kv.KVStore;
+import io.permazen.kv.util.ChunkedKeyListEncoder;
+import io.permazen.kv.util.NavigableMapKVStore;
+import io.permazen.test.TestSupport;
+import io.permazen.util.ByteUtil;
+import io.permazen.util.ConvertedNavigableMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.NavigableMap;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class HttpMessageConverterTest extends TestSupport {
+
+    @Test(dataProvider = "formats")
+    public void testKVStoreConverter(int chunkSize, boolean compress) throws Exception {
+
+        // Populate k/v store with some compressible data
+        final NavigableMapKVStore original = new NavigableMapKVStore();
+        for (int i = 0; i < 500; i++) {
+            final byte[] value = new byte[this.random.nextInt(100)];
+            Arrays.fill(value, (byte)i);
+            original.put(b(String.format("%08x", i * 7)), value);
+        }
+
+        // Encode
+        final KVStoreHttpMessageConverter converter = new KVStoreHttpMessageConverter();
+        converter.setChunkSize(chunkSize);
+        converter.setCompress(compress);
+        final Output output = new Output();
+        converter.write(original, null, output);
+
+        // Check headers
+        final MediaType contentType = output.getHeaders().getContentType();
+        Assert.assertNotNull(contentType);
+        Assert.assertTrue(contentType.isCompatibleWith(KVStoreHttpMessageConverter.DEFAULT_MIME_TYPE));
+        Assert.assertEquals(KVStoreHttpMessageConverter.isChunked(contentType), chunkSize != 0);
+        if (chunkSize == 0)
+            Assert.assertEquals(output.getHeaders().getContentLength(), output.body.size());
+        else
+            Assert.assertEquals(output.getHeaders().getContentLength(), -1L);
+
+        // Decode and compare
+        final KVStore copy = converter.read(KVStore.class, new Input(output));
+        Assert.assertEquals(this.stringView(((NavigableMapKVStore)copy).getNavigableMap()),
+          this.stringView(original.getNavigableMap()));
+    }
+
+    @Test(dataProvider = "formats")
+    public void testSnapshotJTransactionConverter(int chunkSize, boolean compress) throws Exception {
+        final Permazen jdb = new Permazen(SimpleSpringTest.Banana.class);
+
+        // Create some objects
+        final SnapshotJTransaction original = jdb.createSnapshotTransaction(ValidationMode.DISABLED);
+        for (int i = 0; i < 100; i++)
+            original.create(SimpleSpringTest.Banana.class).setWeight(i);
+
+        // Encode
+        final SnapshotJTransactionHttpMessageConverter converter = new SnapshotJTransactionHttpMessageConverter(jdb);
+        converter.setChunkSize(chunkSize);
+        converter.setCompress(compress);
+        final Output output = new Output();
+        converter.write(original, null, output);
+        Assert.assertEquals(KVStoreHttpMessageConverter.isChunked(output.getHeaders().getContentType()), chunkSize != 0);
+
+        // Decode and compare
+        final SnapshotJTransaction copy = converter.read(SnapshotJTransaction.class, new Input(output));
+        Assert.assertEquals(copy.getAll(SimpleSpringTest.Banana.class).size(), 100);
+        for (SimpleSpringTest.Banana banana : original.getAll(SimpleSpringTest.Banana.class))
+            Assert.assertEquals(copy.get(banana).getWeight(), banana.getWeight());
+    }
+
+    @Test(dataProvider = "formats")
+    public void testJObjectConverter(int chunkSize, boolean compress) throws Exception {
+        final Permazen jdb = new Permazen(SimpleSpringTest.Banana.class);
+
+        // Create object
+        final SnapshotJTransaction jtx = jdb.createSnapshotTransaction(ValidationMode.DISABLED);
+        final SimpleSpringTest.Banana banana = jtx.create(SimpleSpringTest.Banana.class);
+        banana.setWeight(123.45f);
+
+        // Encode
+        final JObjectHttpMessageConverter converter = new JObjectHttpMessageConverter(jdb);
+        converter.setChunkSize(chunkSize);
+        converter.setCompress(compress);
+        final Output output = new Output();
+        converter.write(banana, null, output);
+
+        // Both the root object and format parameters must be present
+        final MediaType contentType = output.getHeaders().getContentType();
+        Assert.assertEquals(contentType.getParameter(JObjectHttpMessageConverter.ROOT_OBJECT_ID_PARAMETER_NAME),
+          banana.getObjId().toString());
+        Assert.assertEquals(KVStoreHttpMessageConverter.isChunked(contentType), chunkSize != 0);
+
+        // Decode and compare
+        final JObject copy = converter.read(SimpleSpringTest.Banana.class, new Input(output));
+        Assert.assertEquals(copy.getObjId(), banana.getObjId());
+        Assert.assertEquals(((SimpleSpringTest.Banana)copy).getWeight(), 123.45f);
+    }
+
+    @DataProvider(name = "formats")
+    public Object[][] genFormats() {
+        return new Object[][] {
+            { 0, false },
+            { 100, false },
+            { 100, true },
+            { ChunkedKeyListEncoder.DEFAULT_CHUNK_SIZE, true },
+        };
+    }
+
+    private NavigableMap<String, String> stringView(NavigableMap<byte[], byte[]> byteMap) {
+        final Converter<String, byte[]> converter = ByteUtil.STRING_CONVERTER.reverse();
+        return new ConvertedNavigableMap<>(byteMap, converter, converter);
+    }
+
+// Output
+
+    private static class Output implements HttpOutputMessage {
+
+        final HttpHeaders headers = new HttpHeaders();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return this.body;
+        }
+    }
+
+// Input
+
+    private static class Input implements HttpInputMessage {
+
+        final HttpHeaders headers = new HttpHeaders();
+        final byte[] body;
+
+        Input(Output output) {
+            this.headers.putAll(output.getHeaders());
+            this.body = output.body.toByteArray();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return this.headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(this.body);
+        }
+    }
+}
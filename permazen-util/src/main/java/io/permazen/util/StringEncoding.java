@@ -0,0 +1,251 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Order-preserving binary encoding for {@link String}s.
+ *
+ * <p>
+ * Strings are encoded as a sequence of characters followed by {@code 0x00}, where each character is encoded via
+ * {@link UnsignedIntEncoder}, with the special exception that the characters {@code 0x0000} and {@code 0x0001}
+ * are prefixed with a {@code 0x01} byte to avoid writing a {@code 0x00}. Because {@link UnsignedIntEncoder} encodes
+ * values up to {@code 0xfa} as a single byte equal to the value, characters {@code 0x02} through {@code 0xfa},
+ * which include all printable ASCII characters, are encoded as themselves; all other characters take two or three bytes.
+ *
+ * <p>
+ * This class is optimized for strings containing mostly single byte characters. When encoding, runs of such characters
+ * are copied directly; when decoding, the input is scanned for the first byte that is not a single byte character, and
+ * if that byte is the terminating {@code 0x00}, the string is created directly from the input bytes. Characters requiring
+ * multiple bytes are handled inline without invoking {@link UnsignedIntEncoder}.
+ */
+public final class StringEncoding {
+
+    private static final int END = 0x00;
+    private static final int ESCAPE = 0x01;
+    private static final int MIN_SINGLE = 0x02;
+    private static final int MAX_SINGLE = UnsignedIntEncoder.MIN_MULTI_BYTE_VALUE - 1;      // 0xfa
+    private static final int PREFIX_1 = UnsignedIntEncoder.MIN_MULTI_BYTE_VALUE;            // 0xfb
+    private static final int PREFIX_2 = UnsignedIntEncoder.MIN_MULTI_BYTE_VALUE + 1;        // 0xfc
+    private static final int MAX_PREFIX_1 = UnsignedIntEncoder.MIN_MULTI_BYTE_VALUE + 0xff; // 0x1fa
+
+    private static final int MIN_DECODE_BUFFER = 32;
+
+    private StringEncoding() {
+    }
+
+    /**
+     * Encode the given string and write it to the given output.
+     *
+     * @param writer destination for the encoded value
+     * @param value string to encode
+     * @throws NullPointerException if either parameter is null
+     */
+    @SuppressWarnings("deprecation")
+    public static void write(ByteWriter writer, String value) {
+
+        // Determine encoded length
+        final int length = value.length();
+        final int encodedLength = StringEncoding.encodeLength(value);
+
+        // Make room for the encoded string and terminator
+        writer.makeRoom(encodedLength + 1);
+        final byte[] buf = writer.buf;
+        int off = writer.len;
+
+        // Handle the common case where all characters are single bytes, which means they fit in the low byte
+        if (encodedLength == length) {
+            value.getBytes(0, length, buf, off);
+            off += length;
+        } else {
+            for (int i = 0; i < length; i++) {
+                final int ch = value.charAt(i);
+                if (ch >= MIN_SINGLE && ch <= MAX_SINGLE)
+                    buf[off++] = (byte)ch;
+                else if (ch < MIN_SINGLE) {
+                    buf[off++] = (byte)ESCAPE;
+                    buf[off++] = (byte)ch;
+                } else if (ch <= MAX_PREFIX_1) {
+                    buf[off++] = (byte)PREFIX_1;
+                    buf[off++] = (byte)(ch - PREFIX_1);
+                } else {
+                    final int adjusted = ch - PREFIX_1;
+                    buf[off++] = (byte)PREFIX_2;
+                    buf[off++] = (byte)(adjusted >> 8);
+                    buf[off++] = (byte)adjusted;
+                }
+            }
+        }
+        buf[off++] = (byte)END;
+        assert off == writer.len + encodedLength + 1;
+        writer.len = off;
+    }
+
+    /**
+     * Determine the encoded length of the given string, not including the terminating {@code 0x00} byte.
+     *
+     * @param value string
+     * @return encoded length of {@code value} in bytes, not counting the terminator
+     * @throws NullPointerException if {@code value} is null
+     */
+    public static int encodeLength(String value) {
+
+        // Add one extra byte for each character that needs escaping or is >= 0xfb, and another for each character > 0x1fa.
+        // This loop is branch-free so that the JIT can unroll and/or vectorize it.
+        final int length = value.length();
+        int extra = 0;
+        for (int i = 0; i < length; i++) {
+            final int ch = value.charAt(i);
+            extra += ((ch - MIN_SINGLE) >>> 31) + ((MAX_SINGLE - ch) >>> 31) + ((MAX_PREFIX_1 - ch) >>> 31);
+        }
+        return length + extra;
+    }
+
+    /**
+     * Read and decode a string from the given input.
+     *
+     * @param reader input for encoded value
+     * @return decoded string
+     * @throws IllegalArgumentException if the input contains an invalid encoding
+     * @throws IndexOutOfBoundsException if the input is truncated
+     * @throws NullPointerException if {@code reader} is null
+     */
+    public static String read(ByteReader reader) {
+
+        // Scan for the first byte that is not a single byte character
+        final byte[] buf = reader.buf;
+        final int start = reader.off;
+        final int max = reader.max;
+        int off = start;
+        while (off < max && StringEncoding.isSingle(buf[off]))
+            off++;
+
+        // If we found the terminator, we can decode the bytes directly into a String
+        if (off < max && buf[off] == END) {
+            reader.off = off + 1;
+            return new String(buf, start, off - start, StandardCharsets.ISO_8859_1);
+        }
+
+        // Copy the initial run of single byte characters
+        char[] chars = new char[Math.max(MIN_DECODE_BUFFER, (off - start) * 2)];
+        int len = 0;
+        for (int i = start; i < off; i++)
+            chars[len++] = (char)(buf[i] & 0xff);
+
+        // Decode the remainder
+        while (true) {
+
+            // Check for truncation; let the slow path generate the appropriate exception
+            if (off >= max)
+                return StringEncoding.readSlow(reader);
+
+            // Ensure room for another character
+            if (len == chars.length)
+                chars = Arrays.copyOf(chars, chars.length * 2);
+
+            // Decode the next character
+            final int b = buf[off] & 0xff;
+            if (b >= MIN_SINGLE && b <= MAX_SINGLE) {
+                chars[len++] = (char)b;
+                off++;
+                continue;
+            }
+            switch (b) {
+            case END:
+                reader.off = off + 1;
+                return new String(chars, 0, len);
+            case ESCAPE:
+                if (off + 1 >= max || (buf[off + 1] & ~1) != 0)
+                    return StringEncoding.readSlow(reader);
+                chars[len++] = (char)buf[off + 1];
+                off += 2;
+                break;
+            case PREFIX_1:
+                if (off + 1 >= max)
+                    return StringEncoding.readSlow(reader);
+                chars[len++] = (char)(PREFIX_1 + (buf[off + 1] & 0xff));
+                off += 2;
+                break;
+            case PREFIX_2:
+                if (off + 2 >= max)
+                    return StringEncoding.readSlow(reader);
+                final int ch = PREFIX_1 + (((buf[off + 1] & 0xff) << 8) | (buf[off + 2] & 0xff));
+                if ((ch & ~0xffff) != 0)
+                    return StringEncoding.readSlow(reader);
+                chars[len++] = (char)ch;
+                off += 3;
+                break;
+            default:
+                return StringEncoding.readSlow(reader);
+            }
+        }
+    }
+
+    /**
+     * Skip over an encoded string in the given input.
+     *
+     * @param reader input for encoded value
+     * @throws IllegalArgumentException if the input contains an invalid encoding
+     * @throws IndexOutOfBoundsException if the input is truncated
+     * @throws NullPointerException if {@code reader} is null
+     */
+    public static void skip(ByteReader reader) {
+        final byte[] buf = reader.buf;
+        final int max = reader.max;
+        int off = reader.off;
+        while (true) {
+            if (off >= max)
+                throw new IndexOutOfBoundsException();
+            final int b = buf[off++] & 0xff;
+            if (b >= MIN_SINGLE && b <= MAX_SINGLE)
+                continue;
+            switch (b) {
+            case END:
+                reader.off = off;
+                return;
+            case ESCAPE:
+                off++;
+                break;
+            default:
+                off += UnsignedIntEncoder.decodeLength(b) - 1;
+                break;
+            }
+        }
+    }
+
+    // Determine if the given byte encodes a single byte character, i.e., is in the range 0x02 - 0xfa; this compiles to
+    // a single unsigned comparison
+    private static boolean isSingle(byte b) {
+        return ((b & 0xff) - MIN_SINGLE) + Integer.MIN_VALUE <= (MAX_SINGLE - MIN_SINGLE) + Integer.MIN_VALUE;
+    }
+
+    /**
+     * Decode one character at a time. This is used to generate the appropriate exception for invalid input.
+     */
+    private static String readSlow(ByteReader reader) {
+        final StringBuilder buf = new StringBuilder();
+        while (true) {
+            int ch = UnsignedIntEncoder.read(reader);
+            switch (ch) {
+            case END:
+                return buf.toString();
+            case ESCAPE:
+                final int ch2 = reader.readByte();
+                if ((ch2 & ~1) != 0)
+                    throw new IllegalArgumentException(String.format("invalid string escape sequence 0x%02x 0x%02x", ch, ch2));
+                ch = ch2;
+                break;
+            default:
+                if ((ch & ~0xffff) != 0)
+                    throw new IllegalArgumentException(String.format("read out of range string character value 0x%08x", ch));
+                break;
+            }
+            buf.append((char)ch);
+        }
+    }
+}
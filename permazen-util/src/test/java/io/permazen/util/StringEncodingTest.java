@@ -0,0 +1,165 @@
+
+/*
+ * Copyright (C) 2015 Archie L. Cobbs. All rights reserved.
+ */
+
+package io.permazen.util;
+
+import io.permazen.test.TestSupport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StringEncodingTest extends TestSupport {
+
+    @Test(dataProvider = "strings")
+    public void testStringEncoding(String value) {
+
+        // Check encoding matches the reference implementation
+        final byte[] expected = this.referenceEncode(value);
+        final ByteWriter writer = new ByteWriter(1);
+        writer.writeByte(0x55);
+        StringEncoding.write(writer, value);
+        writer.writeByte(0x66);
+        final byte[] actual = writer.getBytes();
+        Assert.assertEquals(actual.length, expected.length + 2);
+        Assert.assertEquals(Arrays.copyOfRange(actual, 1, actual.length - 1), expected, "bad encoding of " + this.show(value));
+        Assert.assertEquals(StringEncoding.encodeLength(value), expected.length - 1);
+
+        // Check decoding
+        ByteReader reader = new ByteReader(actual, 1);
+        Assert.assertEquals(StringEncoding.read(reader), value);
+        Assert.assertEquals(reader.getOffset(), actual.length - 1);
+
+        // Check skipping
+        reader = new ByteReader(actual, 1);
+        StringEncoding.skip(reader);
+        Assert.assertEquals(reader.getOffset(), actual.length - 1);
+
+        // Check truncation
+        if (expected.length > 1) {
+            final byte[] truncated = Arrays.copyOf(expected, this.random.nextInt(expected.length - 1) + 1);
+            try {
+                StringEncoding.read(new ByteReader(truncated));
+                assert false;
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testStringSortOrder() {
+        final List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            strings.add(this.randomString());
+        for (String string1 : strings) {
+            final byte[] encoding1 = this.encode(string1);
+            for (int i = 0; i < 20; i++) {
+                final String string2 = strings.get(this.random.nextInt(strings.size()));
+                final byte[] encoding2 = this.encode(string2);
+                Assert.assertEquals(Integer.signum(ByteUtil.compare(encoding1, encoding2)),
+                  Integer.signum(string1.compareTo(string2)), "wrong order: " + this.show(string1) + " vs. " + this.show(string2));
+            }
+        }
+    }
+
+    @Test
+    public void testIllegalStringEncodings() {
+        this.checkIllegal(new byte[] { (byte)0x01, (byte)0x02, (byte)0x00 });
+        this.checkIllegal(new byte[] { (byte)0x41, (byte)0x01, (byte)0xff, (byte)0x00 });
+        this.checkIllegal(new byte[] { (byte)0x41, (byte)0xfc, (byte)0xff, (byte)0xff, (byte)0x00 });
+        this.checkIllegal(new byte[] { (byte)0xfd, (byte)0x01, (byte)0x00, (byte)0x00, (byte)0x00 });
+        this.checkIllegal(new byte[] { (byte)0x42, (byte)0xfe, (byte)0x00, (byte)0x01, (byte)0x00, (byte)0x00, (byte)0x00 });
+        this.checkIllegal(new byte[] { (byte)0x43, (byte)0xff, (byte)0x00 });
+    }
+
+    private void checkIllegal(byte[] encoding) {
+        final ByteReader reader = new ByteReader(encoding);
+        try {
+            StringEncoding.read(reader);
+            assert false : "decoded invalid encoding " + ByteUtil.toString(encoding);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @DataProvider(name = "strings")
+    public Object[][] genStrings() {
+        final ArrayList<Object[]> list = new ArrayList<>();
+        list.add(new Object[] { "" });
+        list.add(new Object[] { "abc" });
+        list.add(new Object[] { "\u0000" });
+        list.add(new Object[] { "\u0001\u0002" });
+        list.add(new Object[] { "\u00fa\u00fb\u00ff\u0100" });
+        list.add(new Object[] { "\u01fa\u01fb\u01fc" });
+        list.add(new Object[] { "\uffff\ud800\udfff" });
+        for (int i = 0; i < 500; i++)
+            list.add(new Object[] { this.randomString() });
+        return list.toArray(new Object[list.size()][]);
+    }
+
+// Internal methods
+
+    private String randomString() {
+        final int length = this.random.nextInt(4) == 0 ? this.random.nextInt(200) : this.random.nextInt(12);
+        final int range;
+        switch (this.random.nextInt(5)) {
+        case 0:
+            range = 0x80;
+            break;
+        case 1:
+            range = 0x100;
+            break;
+        case 2:
+            range = 0x200;
+            break;
+        case 3:
+            range = 0x10000;
+            break;
+        default:
+            range = 4;
+            break;
+        }
+        final boolean mostlyAscii = this.random.nextBoolean();
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = mostlyAscii && this.random.nextInt(10) != 0 ?
+              (char)(0x20 + this.random.nextInt(0x5f)) : (char)this.random.nextInt(range);
+        }
+        return new String(chars);
+    }
+
+    private byte[] encode(String value) {
+        final ByteWriter writer = new ByteWriter();
+        StringEncoding.write(writer, value);
+        return writer.getBytes();
+    }
+
+    // The original character-at-a-time algorithm
+    private byte[] referenceEncode(String value) {
+        final ByteWriter writer = new ByteWriter();
+        for (int i = 0; i < value.length(); i++) {
+            final int ch = value.charAt(i);
+            if (ch <= 0x01) {
+                writer.writeByte(0x01);
+                writer.writeByte(ch);
+            } else
+                UnsignedIntEncoder.write(writer, ch);
+        }
+        writer.writeByte(0x00);
+        return writer.getBytes();
+    }
+
+    private String show(String value) {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < value.length(); i++)
+            buf.append(String.format("\\u%04x", (int)value.charAt(i)));
+        return buf.toString();
+    }
+}